@@ -0,0 +1,44 @@
+package com.mcp.robot.benchmark;
+
+import com.mcp.robot.service.vector.FlatVectorIndex;
+import com.mcp.robot.service.vector.HnswVectorIndex;
+import com.mcp.robot.service.vector.QuantizedVectorIndex;
+import com.mcp.robot.service.vector.VectorIndex;
+
+/**
+ * 按检索模式创建并填充索引，参数与 application.yaml 的默认值一致
+ * <ul>
+ *     <li>flat：精确检索</li>
+ *     <li>int8：量化粗排 + 精排，精排直接从合成语料重新生成全精度向量</li>
+ *     <li>hnsw：近似最近邻图索引</li>
+ * </ul>
+ */
+final class BenchmarkIndexes {
+
+    private BenchmarkIndexes() {
+    }
+
+    static VectorIndex create(String mode, SyntheticCorpus corpus) {
+        return switch (mode) {
+            case "flat" -> new FlatVectorIndex();
+            case "int8" -> new QuantizedVectorIndex(corpus, 4, 1000, 0.01);
+            case "hnsw" -> new HnswVectorIndex(16, 200, 64, 0.2);
+            default -> throw new IllegalArgumentException("不支持的检索模式: " + mode);
+        };
+    }
+
+    /**
+     * 创建索引并写入整个语料，打印写入耗时与吞吐
+     */
+    static VectorIndex build(String mode, SyntheticCorpus corpus) {
+        VectorIndex index = create(mode, corpus);
+        long start = System.nanoTime();
+        for (int i = 0; i < corpus.size(); i++) {
+            index.add(SyntheticCorpus.id(i), corpus.vector(i));
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%n构建 %s 索引: %d 条 x %d 维, 耗时 %.1f s (%.0f 条/s, 含语料生成)%n",
+                mode, corpus.size(), corpus.dimension(), seconds, corpus.size() / seconds);
+        return index;
+    }
+}
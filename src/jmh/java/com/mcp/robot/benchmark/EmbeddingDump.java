@@ -0,0 +1,99 @@
+package com.mcp.robot.benchmark;
+
+import com.mcp.robot.service.vector.VectorCodec;
+import com.mcp.robot.service.vector.VectorSource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * knowledge_embedding 表的导出文件（制表符分隔，每行一个向量）：
+ * <pre>
+ * mysql -B -N -e "SELECT embedding_id, HEX(embedding_blob), embedding_vector FROM knowledge_embedding" robot > dump.tsv
+ * </pre>
+ * 第二列为二进制向量的十六进制；尚未迁移为二进制格式的旧行该列为 NULL，改读第三列的 JSON。
+ * 加载后全部向量常驻内存，同时充当 int8 索引精排时的 {@link VectorSource}。
+ */
+public final class EmbeddingDump implements VectorSource {
+
+    private static final String NULL = "NULL";
+
+    private final List<String> ids;
+    private final List<float[]> vectors;
+    private final Map<String, float[]> vectorById;
+
+    private EmbeddingDump(List<String> ids, List<float[]> vectors) {
+        this.ids = ids;
+        this.vectors = vectors;
+        this.vectorById = new HashMap<>(ids.size() * 2);
+        for (int i = 0; i < ids.size(); i++) {
+            vectorById.put(ids.get(i), vectors.get(i));
+        }
+    }
+
+    public static EmbeddingDump load(Path path) throws IOException {
+        List<String> ids = new ArrayList<>();
+        List<float[]> vectors = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] columns = line.split("\t", 3);
+                if (columns.length < 2) {
+                    throw new IllegalArgumentException("导出文件第 " + lineNumber + " 行列数不足: " + path);
+                }
+                ids.add(columns[0]);
+                vectors.add(decode(columns, lineNumber));
+            }
+        }
+        return new EmbeddingDump(ids, vectors);
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    public String id(int index) {
+        return ids.get(index);
+    }
+
+    public float[] vector(int index) {
+        return vectors.get(index);
+    }
+
+    @Override
+    public Map<String, float[]> fetch(Collection<String> ids) {
+        Map<String, float[]> result = new HashMap<>(ids.size() * 2);
+        for (String id : ids) {
+            float[] vector = vectorById.get(id);
+            if (vector != null) {
+                result.put(id, vector);
+            }
+        }
+        return result;
+    }
+
+    private static float[] decode(String[] columns, int lineNumber) {
+        String blob = columns[1];
+        if (!blob.isEmpty() && !NULL.equals(blob)) {
+            return VectorCodec.decode(HexFormat.of().parseHex(blob));
+        }
+        if (columns.length > 2 && !columns[2].isEmpty() && !NULL.equals(columns[2])) {
+            return VectorCodec.parseJson(columns[2]);
+        }
+        throw new IllegalArgumentException("导出文件第 " + lineNumber + " 行没有向量数据");
+    }
+}
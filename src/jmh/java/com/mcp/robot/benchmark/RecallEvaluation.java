@@ -0,0 +1,317 @@
+package com.mcp.robot.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mcp.robot.service.vector.FlatVectorIndex;
+import com.mcp.robot.service.vector.HnswVectorIndex;
+import com.mcp.robot.service.vector.MappedVectorIndex;
+import com.mcp.robot.service.vector.QuantizedVectorIndex;
+import com.mcp.robot.service.vector.ScoredId;
+import com.mcp.robot.service.vector.VectorIndex;
+import com.mcp.robot.service.vector.VectorKernels;
+import com.mcp.robot.service.vector.VectorSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+
+/**
+ * 离线召回 / 延迟评估：以 flat 精确检索的结果为真值，同一组查询依次跑各检索模式，
+ * 并列输出 recall@K、延迟分位数、堆内存与索引占用，结果写入 JSON 便于调参前后对比。
+ * <p>
+ * 数据来源：
+ * <ul>
+ *     <li>synthetic：{@link SyntheticCorpus} 合成语料，查询为同分布但不在语料中的向量</li>
+ *     <li>dump：knowledge_embedding 导出文件（见 {@link EmbeddingDump}），固定种子打乱后留出若干行作为查询</li>
+ * </ul>
+ * 运行：
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec@recall -Drecall.args="--source=synthetic --size=100000 --modes=int8,hnsw"
+ * mvn -Pjmh test-compile exec:exec@recall -Drecall.args="--source=dump --dump=dump.tsv --hnsw-ef-search=128"
+ * </pre>
+ */
+public final class RecallEvaluation {
+
+    private static final long SEED = 42;
+
+    private RecallEvaluation() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int queryCount = intOption(options, "queries", 200);
+        int k = intOption(options, "k", 10);
+        int repeat = intOption(options, "repeat", 3);
+        List<String> modes = Arrays.asList(options.getOrDefault("modes", "flat,int8,hnsw,mmap").split(","));
+
+        Dataset dataset = loadDataset(options, queryCount);
+        System.out.printf("数据集: %s, %d 条 x %d 维, %d 个查询, K=%d%n",
+                dataset.description(), dataset.size(), dataset.dimension(), dataset.queries().length, k);
+
+        List<Set<String>> truth = groundTruth(dataset, k);
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (String mode : modes) {
+            results.add(evaluate(mode.trim(), options, dataset, truth, k, repeat));
+        }
+        printTable(results, k);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("created_at", LocalDateTime.now().toString());
+        report.put("config", options);
+        report.put("dataset", Map.of(
+                "source", dataset.description(),
+                "size", dataset.size(),
+                "dimension", dataset.dimension(),
+                "queries", dataset.queries().length,
+                "k", k,
+                "repeat", repeat));
+        report.put("jvm", Map.of(
+                "version", Runtime.version().toString(),
+                "max_heap_bytes", Runtime.getRuntime().maxMemory(),
+                "processors", Runtime.getRuntime().availableProcessors(),
+                "kernel", VectorKernels.implementation()));
+        report.put("results", results);
+
+        Path output = Path.of(options.getOrDefault("output", "target/recall-eval/recall-"
+                + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json"));
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output.toFile(), report);
+        System.out.println("结果已写入 " + output.toAbsolutePath());
+    }
+
+    // ==================== 数据集 ====================
+
+    /**
+     * 评估用数据集：语料按下标读取，查询不在语料中
+     */
+    private record Dataset(String description, int size, int dimension, IntFunction<String> ids,
+                           IntFunction<float[]> vectors, VectorSource source, float[][] queries) {
+    }
+
+    private static Dataset loadDataset(Map<String, String> options, int queryCount) throws IOException {
+        String source = options.getOrDefault("source", "synthetic");
+        if ("synthetic".equals(source)) {
+            SyntheticCorpus corpus = new SyntheticCorpus(intOption(options, "size", 100_000),
+                    intOption(options, "dimension", SyntheticCorpus.DIMENSION), SEED);
+            float[][] queries = new float[queryCount][];
+            for (int i = 0; i < queryCount; i++) {
+                queries[i] = corpus.outside(i);
+            }
+            return new Dataset("synthetic", corpus.size(), corpus.dimension(),
+                    SyntheticCorpus::id, corpus::vector, corpus, queries);
+        }
+        if (!"dump".equals(source)) {
+            throw new IllegalArgumentException("不支持的数据来源: " + source);
+        }
+        String path = options.get("dump");
+        if (path == null) {
+            throw new IllegalArgumentException("--source=dump 需要指定 --dump=<导出文件>");
+        }
+        EmbeddingDump dump = EmbeddingDump.load(Path.of(path));
+        if (dump.size() <= queryCount) {
+            throw new IllegalArgumentException("导出文件只有 " + dump.size() + " 条向量，不足以留出 " + queryCount + " 个查询");
+        }
+        int[] order = shuffledIndexes(dump.size());
+        float[][] queries = new float[queryCount][];
+        for (int i = 0; i < queryCount; i++) {
+            queries[i] = dump.vector(order[i]);
+        }
+        int[] corpus = Arrays.copyOfRange(order, queryCount, order.length);
+        return new Dataset("dump:" + path, corpus.length, dump.vector(0).length,
+                i -> dump.id(corpus[i]), i -> dump.vector(corpus[i]), dump, queries);
+    }
+
+    private static int[] shuffledIndexes(int size) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Random random = new Random(SEED);
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        return order;
+    }
+
+    // ==================== 评估 ====================
+
+    /**
+     * flat 精确检索的 top-K 作为真值
+     */
+    private static List<Set<String>> groundTruth(Dataset dataset, int k) {
+        VectorIndex exact = new FlatVectorIndex();
+        fill(exact, dataset);
+        List<Set<String>> truth = new ArrayList<>(dataset.queries().length);
+        for (float[] query : dataset.queries()) {
+            truth.add(ids(exact.search(query, k, -1)));
+        }
+        exact.clear();
+        return truth;
+    }
+
+    private static Map<String, Object> evaluate(String mode, Map<String, String> options, Dataset dataset,
+                                                List<Set<String>> truth, int k, int repeat) throws Exception {
+        Path directory = "mmap".equals(mode) ? Files.createTempDirectory("recall-eval-mmap") : null;
+        try {
+            long heapBefore = usedHeap();
+            VectorIndex index = create(mode, options, dataset.source(), directory);
+            long start = System.nanoTime();
+            fill(index, dataset);
+            long buildNanos = System.nanoTime() - start;
+            long heapBytes = Math.max(0, usedHeap() - heapBefore);
+
+            float[][] queries = dataset.queries();
+            // 预热一轮，结果同时用于计算召回率
+            double recallSum = 0;
+            for (int q = 0; q < queries.length; q++) {
+                Set<String> found = ids(index.search(queries[q], k, -1));
+                found.retainAll(truth.get(q));
+                recallSum += truth.get(q).isEmpty() ? 1.0 : (double) found.size() / truth.get(q).size();
+            }
+            long[] latencies = new long[queries.length * repeat];
+            int n = 0;
+            long measureStart = System.nanoTime();
+            for (int r = 0; r < repeat; r++) {
+                for (float[] query : queries) {
+                    long t = System.nanoTime();
+                    index.search(query, k, -1);
+                    latencies[n++] = System.nanoTime() - t;
+                }
+            }
+            double measureSeconds = (System.nanoTime() - measureStart) / 1e9;
+            Arrays.sort(latencies);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("mode", mode);
+            result.put("recall_at_k", recallSum / queries.length);
+            result.put("build_seconds", buildNanos / 1e9);
+            result.put("heap_bytes", heapBytes);
+            result.put("latency_us", Map.of(
+                    "mean", Arrays.stream(latencies).average().orElse(0) / 1e3,
+                    "p50", percentile(latencies, 0.50) / 1e3,
+                    "p90", percentile(latencies, 0.90) / 1e3,
+                    "p99", percentile(latencies, 0.99) / 1e3,
+                    "max", latencies[latencies.length - 1] / 1e3));
+            result.put("qps", latencies.length / measureSeconds);
+            result.put("index_stats", new HashMap<>(index.stats()));
+
+            if (index instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+            index.clear();
+            return result;
+        } finally {
+            if (directory != null) {
+                deleteRecursively(directory);
+            }
+        }
+    }
+
+    private static VectorIndex create(String mode, Map<String, String> options, VectorSource source, Path directory) {
+        return switch (mode) {
+            case "flat" -> new FlatVectorIndex();
+            case "int8" -> new QuantizedVectorIndex(source, intOption(options, "int8-rescore-factor", 4),
+                    intOption(options, "int8-calibration-size", 1000), 0.01);
+            case "hnsw" -> new HnswVectorIndex(intOption(options, "hnsw-m", 16),
+                    intOption(options, "hnsw-ef-construction", 200), intOption(options, "hnsw-ef-search", 64), 0.2);
+            case "mmap" -> new MappedVectorIndex(directory, 16384, 0.3);
+            default -> throw new IllegalArgumentException("不支持的检索模式: " + mode);
+        };
+    }
+
+    private static void fill(VectorIndex index, Dataset dataset) {
+        for (int i = 0; i < dataset.size(); i++) {
+            index.add(dataset.ids().apply(i), dataset.vectors().apply(i));
+        }
+    }
+
+    private static Set<String> ids(List<ScoredId> hits) {
+        Set<String> ids = new HashSet<>(hits.size() * 2);
+        for (ScoredId hit : hits) {
+            ids.add(hit.getId());
+        }
+        return ids;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // ==================== 输出 ====================
+
+    @SuppressWarnings("unchecked")
+    private static void printTable(List<Map<String, Object>> results, int k) {
+        System.out.printf("%n%-6s %10s %9s %9s %9s %9s %9s %11s %12s%n",
+                "mode", "recall@" + k, "p50(us)", "p90(us)", "p99(us)", "qps", "build(s)", "heap(MB)", "offheap(MB)");
+        results.forEach(r -> {
+            Map<String, Object> latency = (Map<String, Object>) r.get("latency_us");
+            Map<String, Object> stats = (Map<String, Object>) r.get("index_stats");
+            long offHeap = ((Number) stats.getOrDefault("mapped_bytes", 0L)).longValue();
+            System.out.printf("%-6s %10.4f %9.1f %9.1f %9.1f %9.0f %9.1f %11.1f %12.1f%n",
+                    r.get("mode"), r.get("recall_at_k"), latency.get("p50"), latency.get("p90"), latency.get("p99"),
+                    r.get("qps"), r.get("build_seconds"), (long) r.get("heap_bytes") / 1048576.0, offHeap / 1048576.0);
+        });
+    }
+
+    // ==================== 参数 ====================
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("参数格式应为 --key=value: " + arg);
+            }
+            int split = arg.indexOf('=');
+            options.put(arg.substring(2, split), arg.substring(split + 1));
+        }
+        return options;
+    }
+
+    private static int intOption(Map<String, String> options, String key, int defaultValue) {
+        String value = options.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static void deleteRecursively(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
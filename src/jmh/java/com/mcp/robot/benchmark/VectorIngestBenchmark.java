@@ -0,0 +1,71 @@
+package com.mcp.robot.benchmark;
+
+import com.mcp.robot.service.vector.VectorIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 写入吞吐基准：向已有 size 条向量的索引持续覆盖写入（重新入库的典型场景），索引规模保持不变。
+ * 全量构建的耗时和吞吐在每个 trial 的准备阶段打印
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class VectorIngestBenchmark {
+
+    private static final int POOL = 1024;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"flat", "int8", "hnsw"})
+    public String mode;
+
+    private VectorIndex index;
+    private float[][] pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticCorpus corpus = new SyntheticCorpus(size, SyntheticCorpus.DIMENSION, 42);
+        index = BenchmarkIndexes.build(mode, corpus);
+        // 写入的向量预先生成，避免把语料生成计入写入耗时
+        pool = new float[POOL][];
+        for (int i = 0; i < POOL; i++) {
+            pool[i] = corpus.outside(i);
+        }
+    }
+
+    @Benchmark
+    public void upsert(WriteCursor cursor) {
+        int position = cursor.next();
+        index.add(SyntheticCorpus.id(position % size), pool[position & (POOL - 1)]);
+    }
+
+    /**
+     * 每个线程独立的写入位置
+     */
+    @State(Scope.Thread)
+    public static class WriteCursor {
+        private int position;
+
+        int next() {
+            position = (position + 1) & Integer.MAX_VALUE;
+            return position;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.mcp.robot.benchmark;
+
+import com.mcp.robot.service.vector.ScoredId;
+import com.mcp.robot.service.vector.VectorIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 检索延迟基准：SampleTime 模式按次采样，输出 p50 / p90 / p99 / p99.9 等分位数。
+ * 配合 -prof gc 可得到每次检索的分配量（gc.alloc.rate.norm）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class VectorSearchBenchmark {
+
+    private static final int QUERIES = 256;
+    private static final int BATCH = 8;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"flat", "int8", "hnsw"})
+    public String mode;
+
+    @Param({"10"})
+    public int topK;
+
+    private VectorIndex index;
+    private float[][] queries;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticCorpus corpus = new SyntheticCorpus(size, SyntheticCorpus.DIMENSION, 42);
+        index = BenchmarkIndexes.build(mode, corpus);
+        queries = new float[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = corpus.outside(i);
+        }
+    }
+
+    /**
+     * 单查询检索
+     */
+    @Benchmark
+    public List<ScoredId> search(QueryCursor cursor) {
+        return index.search(queries[cursor.next()], topK, -1);
+    }
+
+    /**
+     * 多查询批量检索（多查询 RAG 的一次检索）
+     */
+    @Benchmark
+    public List<List<ScoredId>> searchBatch(QueryCursor cursor) {
+        float[][] batch = new float[BATCH][];
+        for (int i = 0; i < BATCH; i++) {
+            batch[i] = queries[cursor.next()];
+        }
+        return index.searchBatch(batch, topK, -1, null);
+    }
+
+    /**
+     * 每个线程独立轮询查询池
+     */
+    @State(Scope.Thread)
+    public static class QueryCursor {
+        private int position;
+
+        int next() {
+            return position++ & (QUERIES - 1);
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.mcp.robot.config;
 
 import com.mcp.robot.service.MysqlEmbeddingStore;
 import com.mcp.robot.service.PersistentChatMemoryStore;
+import com.mcp.robot.service.retrieval.HybridContentRetriever;
+import com.mcp.robot.service.schema.SchemaLookupContentRetriever;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.memory.chat.ChatMemoryProvider;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
@@ -9,6 +11,7 @@ import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.rag.content.retriever.ContentRetriever;
 import dev.langchain4j.rag.content.retriever.EmbeddingStoreContentRetriever;
 import dev.langchain4j.store.embedding.EmbeddingStore;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
@@ -20,6 +23,27 @@ import org.springframework.web.client.RestTemplate;
 @EnableCaching
 public class AiConfiguration {
 
+    @Value("${rag.retrieval.mode:hybrid}")
+    private String retrievalMode;
+
+    @Value("${rag.retrieval.max-results:5}")
+    private int retrievalMaxResults;
+
+    @Value("${rag.retrieval.min-score:0.3}")
+    private double retrievalMinScore;
+
+    @Value("${rag.retrieval.candidate-multiplier:4}")
+    private int retrievalCandidateMultiplier;
+
+    @Value("${rag.retrieval.rrf-k:60}")
+    private int retrievalRrfK;
+
+    @Value("${rag.schema-lookup.enabled:true}")
+    private boolean schemaLookupEnabled;
+
+    @Value("${rag.schema-lookup.max-results:5}")
+    private int schemaLookupMaxResults;
+
     @Bean
     public ChatMemoryProvider chatMemoryProvider(PersistentChatMemoryStore persistentChatMemoryStore) {
         return memoryId -> MessageWindowChatMemory
@@ -39,19 +63,51 @@ public class AiConfiguration {
     }
 
     /**
-     * 内容检索器（RAG 核心组件）
+     * 内容检索器（RAG 核心组件），检索全部知识集合
+     * <p>
+     * hybrid：向量 + BM25 倒数排名融合，标识符类查询也能精确命中，较小的 K 即可；
+     * vector：纯向量检索
      */
     @Bean
     public ContentRetriever contentRetriever(
             EmbeddingStore<TextSegment> embeddingStore,
+            MysqlEmbeddingStore mysqlEmbeddingStore,
             EmbeddingModel embeddingModel) {
-        return EmbeddingStoreContentRetriever
-                .builder()
-                .embeddingStore(embeddingStore)
-                .embeddingModel(embeddingModel)
-                .maxResults(10)
-                .minScore(0.3)
-                .build();
+        return createRetriever(embeddingStore, mysqlEmbeddingStore, null, embeddingModel);
+    }
+
+    /**
+     * 只检索 DDL 集合的内容检索器，SQL 生成类服务使用，不扫描业务知识向量。
+     * 开启表结构查找时先按表名、列名、注释关键词精确命中表结构片段，未命中再走向量 / 混合检索
+     */
+    @Bean
+    public ContentRetriever ddlContentRetriever(
+            MysqlEmbeddingStore mysqlEmbeddingStore,
+            EmbeddingModel embeddingModel) {
+        ContentRetriever retriever = createRetriever(mysqlEmbeddingStore.collection(MysqlEmbeddingStore.DDL_COLLECTION),
+                mysqlEmbeddingStore, MysqlEmbeddingStore.DDL_COLLECTION, embeddingModel);
+        if (!schemaLookupEnabled) {
+            return retriever;
+        }
+        return new SchemaLookupContentRetriever(mysqlEmbeddingStore, MysqlEmbeddingStore.DDL_COLLECTION,
+                retriever, schemaLookupMaxResults);
+    }
+
+    private ContentRetriever createRetriever(EmbeddingStore<TextSegment> embeddingStore,
+                                             MysqlEmbeddingStore mysqlEmbeddingStore,
+                                             String collection,
+                                             EmbeddingModel embeddingModel) {
+        if ("vector".equalsIgnoreCase(retrievalMode)) {
+            return EmbeddingStoreContentRetriever
+                    .builder()
+                    .embeddingStore(embeddingStore)
+                    .embeddingModel(embeddingModel)
+                    .maxResults(retrievalMaxResults)
+                    .minScore(retrievalMinScore)
+                    .build();
+        }
+        return new HybridContentRetriever(mysqlEmbeddingStore, embeddingModel, collection,
+                retrievalMaxResults, retrievalCandidateMultiplier, retrievalMinScore, retrievalRrfK);
     }
 
     @Bean
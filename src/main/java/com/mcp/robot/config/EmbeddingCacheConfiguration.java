@@ -0,0 +1,54 @@
+package com.mcp.robot.config;
+
+import com.mcp.robot.mapper.EmbeddingCacheMapper;
+import com.mcp.robot.service.embedding.CachingEmbeddingModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * 向量模型缓存配置
+ * <p>
+ * 用 BeanPostProcessor 把自动配置的 EmbeddingModel 包装为 {@link CachingEmbeddingModel}，
+ * 所有注入 EmbeddingModel 的地方（检索器、RAG 服务、入库服务）无需改动即走缓存。
+ * BeanPostProcessor 必须尽早创建，因此用静态方法声明，配置从 Environment 读取，Mapper 延迟到首次调用时获取。
+ */
+@Slf4j
+@Configuration
+public class EmbeddingCacheConfiguration {
+
+    @Bean
+    public static BeanPostProcessor cachingEmbeddingModelPostProcessor(Environment environment,
+                                                                       ObjectProvider<EmbeddingCacheMapper> mapperProvider) {
+        boolean enabled = environment.getProperty("rag.embedding-cache.enabled", Boolean.class, true);
+        long maxEntries = environment.getProperty("rag.embedding-cache.max-entries", Long.class, 20000L);
+        boolean persistent = environment.getProperty("rag.embedding-cache.persistent", Boolean.class, true);
+        long failureBackoffSeconds = environment.getProperty("rag.embedding-cache.failure-backoff-seconds", Long.class, 60L);
+        String modelName = cacheModelName(environment);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!enabled || !(bean instanceof EmbeddingModel model) || bean instanceof CachingEmbeddingModel) {
+                    return bean;
+                }
+                log.info("向量模型缓存: bean={}, model={}, maxEntries={}, persistent={}",
+                        beanName, modelName, maxEntries, persistent);
+                return new CachingEmbeddingModel(model, modelName, mapperProvider::getObject,
+                        maxEntries, persistent, failureBackoffSeconds);
+            }
+        };
+    }
+
+    /**
+     * 缓存键中的模型标识：模型名，配置了输出维度时附带维度，切换模型或维度后旧缓存自然不再命中
+     */
+    private static String cacheModelName(Environment environment) {
+        String modelName = environment.getProperty("langchain4j.open-ai.embedding-model.model-name", "default");
+        String dimensions = environment.getProperty("langchain4j.open-ai.embedding-model.dimensions");
+        return dimensions == null ? modelName : modelName + ":" + dimensions;
+    }
+}
@@ -0,0 +1,135 @@
+package com.mcp.robot.config;
+
+import com.mcp.robot.service.retrieval.QueryResultCache;
+import com.mcp.robot.service.vector.DurableVectorIndex;
+import com.mcp.robot.service.vector.FlatVectorIndex;
+import com.mcp.robot.service.vector.HnswVectorIndex;
+import com.mcp.robot.service.vector.MappedVectorIndex;
+import com.mcp.robot.service.vector.MysqlVectorSource;
+import com.mcp.robot.service.vector.QuantizedVectorIndex;
+import com.mcp.robot.service.vector.VectorIndex;
+import com.mcp.robot.service.vector.VectorIndexFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * 向量存储配置
+ */
+@Slf4j
+@Configuration
+public class VectorStoreConfiguration {
+
+    private static final Set<String> INDEX_TYPES = Set.of("flat", "hnsw", "int8", "mmap");
+
+    @Value("${vector-store.index.type:flat}")
+    private String indexType;
+
+    @Value("${vector-store.index.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${vector-store.index.hnsw.ef-construction:200}")
+    private int hnswEfConstruction;
+
+    @Value("${vector-store.index.hnsw.ef-search:64}")
+    private int hnswEfSearch;
+
+    @Value("${vector-store.index.hnsw.rebuild-threshold:0.2}")
+    private double hnswRebuildThreshold;
+
+    @Value("${vector-store.index.int8.rescore-factor:4}")
+    private int int8RescoreFactor;
+
+    @Value("${vector-store.index.int8.calibration-size:1000}")
+    private int int8CalibrationSize;
+
+    @Value("${vector-store.index.int8.recalibrate-clamped-ratio:0.01}")
+    private double int8RecalibrateClampedRatio;
+
+    @Value("${vector-store.index.mmap.directory:data/vector-segments}")
+    private String mmapDirectory;
+
+    @Value("${vector-store.index.mmap.records-per-segment:16384}")
+    private int mmapRecordsPerSegment;
+
+    @Value("${vector-store.index.mmap.compaction-threshold:0.3}")
+    private double mmapCompactionThreshold;
+
+    @Value("${vector-store.index.persistence.enabled:false}")
+    private boolean persistenceEnabled;
+
+    @Value("${vector-store.index.persistence.directory:data/vector-index}")
+    private String persistenceDirectory;
+
+    @Value("${vector-store.index.persistence.checkpoint-records:5000}")
+    private long checkpointRecords;
+
+    @Value("${vector-store.index.persistence.checkpoint-interval-seconds:300}")
+    private long checkpointIntervalSeconds;
+
+    @Value("${vector-store.query-cache.enabled:true}")
+    private boolean queryCacheEnabled;
+
+    @Value("${vector-store.query-cache.max-entries:10000}")
+    private long queryCacheMaxEntries;
+
+    @Value("${vector-store.query-cache.ttl-seconds:600}")
+    private long queryCacheTtlSeconds;
+
+    @Value("${vector-store.query-cache.lsh-bits:64}")
+    private int queryCacheLshBits;
+
+    /**
+     * 常驻内存的向量索引（MysqlEmbeddingStore 的检索加速层），每个知识集合一个实例
+     * <ul>
+     *     <li>flat：精确暴力检索，适合中小规模知识库</li>
+     *     <li>hnsw：近似最近邻图索引，检索耗时随数据量亚线性增长</li>
+     *     <li>int8：标量量化粗排 + 全精度精排，常驻内存约为 flat 的 1/4</li>
+     *     <li>mmap：向量存放在内存映射的段文件中，不占堆内存，重启后无需全量重建</li>
+     * </ul>
+     * 开启 persistence 后，非 mmap 索引外包一层快照 + WAL，重启时从本地文件恢复后只与 MySQL 对账差异。
+     */
+    @Bean
+    public VectorIndexFactory vectorIndexFactory(MysqlVectorSource mysqlVectorSource) {
+        log.info("向量索引类型: {}, 快照持久化: {}", indexType, persistenceEnabled);
+        String type = indexType.toLowerCase();
+        if (!INDEX_TYPES.contains(type)) {
+            throw new IllegalArgumentException("不支持的向量索引类型: " + indexType);
+        }
+        return collection -> {
+            VectorIndex index = createIndex(type, collection, mysqlVectorSource);
+            if (!persistenceEnabled || index.persistent()) {
+                return index;
+            }
+            return new DurableVectorIndex(index, Path.of(persistenceDirectory, type, collection),
+                    checkpointRecords, checkpointIntervalSeconds);
+        };
+    }
+
+    /**
+     * 检索结果缓存：按查询文本和查询向量的 LSH 签名缓存 top-K 结果ID，集合版本号变化后失效。
+     * lsh-bits 越多，共用结果的查询向量要求越接近
+     */
+    @Bean
+    public QueryResultCache queryResultCache() {
+        log.info("检索结果缓存: enabled={}, maxEntries={}, ttl={}s, lshBits={}",
+                queryCacheEnabled, queryCacheMaxEntries, queryCacheTtlSeconds, queryCacheLshBits);
+        return new QueryResultCache(queryCacheEnabled, queryCacheMaxEntries, queryCacheTtlSeconds, queryCacheLshBits);
+    }
+
+    private VectorIndex createIndex(String type, String collection, MysqlVectorSource mysqlVectorSource) {
+        return switch (type) {
+            case "flat" -> new FlatVectorIndex();
+            case "hnsw" -> new HnswVectorIndex(hnswM, hnswEfConstruction, hnswEfSearch, hnswRebuildThreshold);
+            case "int8" -> new QuantizedVectorIndex(mysqlVectorSource, int8RescoreFactor, int8CalibrationSize,
+                    int8RecalibrateClampedRatio);
+            case "mmap" -> new MappedVectorIndex(Path.of(mmapDirectory, collection),
+                    mmapRecordsPerSegment, mmapCompactionThreshold);
+            default -> throw new IllegalArgumentException("不支持的向量索引类型: " + indexType);
+        };
+    }
+}
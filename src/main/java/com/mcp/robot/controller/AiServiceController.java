@@ -5,29 +5,48 @@ import com.mcp.robot.mcp.McpServer;
 import com.mcp.robot.model.McpToolRequest;
 import com.mcp.robot.model.Person;
 import com.mcp.robot.service.*;
+import com.mcp.robot.service.embedding.CachingEmbeddingModel;
+import com.mcp.robot.service.ingestion.IngestionJob;
+import com.mcp.robot.service.ingestion.IngestionJobService;
+import com.mcp.robot.service.vector.EmbeddingFormatMigrator;
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.Metadata;
 import dev.langchain4j.data.document.splitter.DocumentSplitters;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.output.Response;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
 import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
 import dev.langchain4j.store.embedding.EmbeddingSearchResult;
 import dev.langchain4j.store.embedding.EmbeddingStore;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+
 /**
  * AI 服务控制器
  * 提供聊天、向量检索、知识库管理等功能
@@ -38,8 +57,23 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class AiServiceController {
 
+    /**
+     * 知识片段的来源标记（写入元数据，检索时可按来源过滤），同时也是写入的知识集合名
+     */
+    private static final String SOURCE_KEY = "source";
+    private static final String SOURCE_KNOWLEDGE = MysqlEmbeddingStore.KNOWLEDGE_COLLECTION;
+    private static final String SOURCE_DDL = MysqlEmbeddingStore.DDL_COLLECTION;
+    private static final String SOURCE_BUSINESS = MysqlEmbeddingStore.BUSINESS_COLLECTION;
+    /**
+     * 上传文件名的元数据键
+     */
+    private static final String FILE_NAME_KEY = "file_name";
+    private static final String DDL_MODE_SCHEMA = "schema";
+
     private final EmbeddingModel embeddingModel;
     private final EmbeddingStore<TextSegment> embeddingStore;
+    private final MysqlEmbeddingStore mysqlEmbeddingStore;
+    private final KnowledgeIngestionService knowledgeIngestionService;
     private final AiSqlAssistantService aiSqlAssistantService;
     private final AgentService agentService;
     private final AdvancedRagService advancedRagService;
@@ -49,6 +83,9 @@ public class AiServiceController {
     private final ChatModel chatModel;
     private final McpAssistantService mcpAssistantService;
     private final DynamicSqlAssistantService dynamicSqlAssistantService;
+    private final EmbeddingFormatMigrator embeddingFormatMigrator;
+    private final IndexMaintenanceService indexMaintenanceService;
+    private final IngestionJobService ingestionJobService;
 
 
     // ==================== 基础聊天功能 ====================
@@ -112,56 +149,155 @@ public class AiServiceController {
         log.info("添加知识库内容，长度: {}", content.length());
 
         // 1. 创建文档并分割
-        Document document = Document.from(content);
+        Document document = Document.from(content, Metadata.from(SOURCE_KEY, SOURCE_KNOWLEDGE));
         DocumentSplitter splitter = DocumentSplitters.recursive(500, 50);
         List<TextSegment> segments = splitter.split(document);
         log.info("文档分割成 {} 个片段", segments.size());
 
-        // 2. 向量化
-        Response<List<Embedding>> embedResponse = embeddingModel.embedAll(segments);
-        List<Embedding> embeddings = embedResponse.content();
-
-        // 3. 存入向量库
-        embeddingStore.addAll(embeddings, segments);
+        // 2. 去重后向量化并存入向量库
+        KnowledgeIngestionService.IngestionResult result = knowledgeIngestionService.ingest(SOURCE_KNOWLEDGE, segments);
 
-        log.info("成功添加 {} 个向量到向量库", embeddings.size());
-        return String.format("成功添加 %d 个知识片段", segments.size());
+        return "成功添加知识：" + result.summary();
     }
 
     /**
      * 批量添加知识
      *
      * @param contents 知识内容列表
+     * @param async    为 true 时提交异步入库任务后立即返回
      * @return 添加结果信息
      */
     @PostMapping("/knowledge/batch")
-    public String addKnowledgeBatch(@RequestBody List<String> contents) {
-        int totalSegments = 0;
+    public String addKnowledgeBatch(@RequestBody List<String> contents,
+                                    @RequestParam(defaultValue = "false") boolean async) {
+        if (async) {
+            IngestionJob job = submitJob(SOURCE_KNOWLEDGE, contents);
+            return String.format("已提交入库任务 %s：%d 条知识，进度查询 /ai/chat/knowledge/jobs/%s",
+                    job.getId(), contents.size(), job.getId());
+        }
+        DocumentSplitter splitter = DocumentSplitters.recursive(500, 50);
+        List<TextSegment> allSegments = new ArrayList<>();
 
         for (String content : contents) {
-            Document document = Document.from(content);
-            DocumentSplitter splitter = DocumentSplitters.recursive(500, 50);
-            List<TextSegment> segments = splitter.split(document);
+            Document document = Document.from(content, Metadata.from(SOURCE_KEY, SOURCE_KNOWLEDGE));
+            allSegments.addAll(splitter.split(document));
+        }
+
+        // 所有片段去重后一次性批量写入
+        KnowledgeIngestionService.IngestionResult result = knowledgeIngestionService.ingest(SOURCE_KNOWLEDGE, allSegments);
+
+        log.info("批量添加完成，总计 {} 个知识片段", allSegments.size());
+        return String.format("成功添加 %d 条知识，%s", contents.size(), result.summary());
+    }
 
-            Response<List<Embedding>> embedResponse = embeddingModel.embedAll(segments);
-            embeddingStore.addAll(embedResponse.content(), segments);
+    /**
+     * 提交异步入库任务：文档进入入库流水线后立即返回，不占用请求线程等待向量化和写库
+     *
+     * @param collection 目标集合，默认 knowledge
+     * @param contents   文档内容列表（纯文本）
+     * @return 任务状态，入库队列已满时返回 429
+     */
+    @PostMapping("/knowledge/jobs")
+    public Map<String, Object> submitIngestionJob(@RequestParam(defaultValue = SOURCE_KNOWLEDGE) String collection,
+                                                  @RequestBody List<String> contents) {
+        return submitJob(collection, contents).toMap();
+    }
 
-            totalSegments += segments.size();
+    /**
+     * 查询入库任务状态与进度
+     */
+    @GetMapping("/knowledge/jobs/{jobId}")
+    public Map<String, Object> getIngestionJob(@PathVariable String jobId) {
+        IngestionJob job = ingestionJobService.job(jobId);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "入库任务不存在: " + jobId);
         }
+        return job.toMap();
+    }
 
-        log.info("批量添加完成，总计 {} 个知识片段", totalSegments);
-        return String.format("成功添加 %d 条知识，共 %d 个片段", contents.size(), totalSegments);
+    /**
+     * 最近的入库任务及流水线状态（队列积压、向量化并发、限流次数）
+     */
+    @GetMapping("/knowledge/jobs")
+    public Map<String, Object> listIngestionJobs(@RequestParam(defaultValue = "20") int limit) {
+        return Map.of(
+                "pipeline", ingestionJobService.status(),
+                "jobs", ingestionJobService.recentJobs(limit).stream().map(IngestionJob::toMap).toList()
+        );
+    }
+
+    /**
+     * 上传大文档（multipart，字段名 file）：按窗口边读边切分，片段随读随进入向量化和写库，内存占用与文件大小无关。
+     * multipart 内容先由容器写入临时文件；不希望落盘时改用请求体直传的同名接口。
+     *
+     * @param file       文档（纯文本）
+     * @param collection 目标集合，默认 knowledge
+     * @param charset    文档编码，默认 UTF-8
+     * @return 读完上传内容时的任务状态，向量化和写入在后台继续，进度通过 GET /knowledge/jobs/{jobId} 查询
+     */
+    @PostMapping(value = "/knowledge/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Map<String, Object> uploadKnowledge(@RequestParam("file") MultipartFile file,
+                                               @RequestParam(defaultValue = SOURCE_KNOWLEDGE) String collection,
+                                               @RequestParam(defaultValue = "UTF-8") String charset)
+            throws IOException, InterruptedException {
+        try (InputStream input = file.getInputStream()) {
+            return streamJob(collection, input, charset, file.getOriginalFilename());
+        }
+    }
+
+    /**
+     * 上传大文档（请求体即文档内容，支持 chunked 传输），直接从请求流读取，不落临时文件
+     */
+    @PostMapping(value = "/knowledge/upload",
+            consumes = {MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public Map<String, Object> uploadKnowledgeStream(HttpServletRequest request,
+                                                     @RequestParam(defaultValue = SOURCE_KNOWLEDGE) String collection,
+                                                     @RequestParam(defaultValue = "UTF-8") String charset,
+                                                     @RequestParam(required = false) String fileName)
+            throws IOException, InterruptedException {
+        try (InputStream input = request.getInputStream()) {
+            return streamJob(collection, input, charset, fileName);
+        }
+    }
+
+    private Map<String, Object> streamJob(String collection, InputStream input, String charset, String fileName)
+            throws IOException, InterruptedException {
+        Metadata metadata = Metadata.from(SOURCE_KEY, collection);
+        if (fileName != null && !fileName.isBlank()) {
+            metadata.put(FILE_NAME_KEY, fileName);
+        }
+        Reader reader = new InputStreamReader(input, Charset.forName(charset));
+        try {
+            return ingestionJobService.ingestStream(collection, reader, metadata).toMap();
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, e.getMessage());
+        }
+    }
+
+    private IngestionJob submitJob(String collection, List<String> contents) {
+        List<Document> documents = contents.stream()
+                .map(content -> Document.from(content, Metadata.from(SOURCE_KEY, collection)))
+                .toList();
+        try {
+            return ingestionJobService.submit(collection, documents);
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, e.getMessage());
+        }
     }
 
     /**
      * 向量检索测试（不调用AI，直接返回相似内容）
      *
-     * @param query 查询文本
+     * @param query      查询文本
+     * @param source     可选，按知识来源过滤（knowledge / ddl / business）
+     * @param collection 可选，只检索指定集合，不传则检索全部集合
      * @return 相似度匹配结果列表
      */
     @GetMapping("/knowledge/search")
-    public List<String> searchKnowledge(@RequestParam String query) {
-        log.info("搜索知识库: {}", query);
+    public List<String> searchKnowledge(@RequestParam String query,
+                                        @RequestParam(required = false) String source,
+                                        @RequestParam(required = false) String collection) {
+        log.info("搜索知识库: {}, source={}, collection={}", query, source, collection);
 
         // 1. 将查询文本转为向量
         Response<Embedding> queryEmbedding = embeddingModel.embed(query);
@@ -171,21 +307,138 @@ public class AiServiceController {
                 .queryEmbedding(queryEmbedding.content())
                 .maxResults(10)
                 .minScore(0.45)
+                .filter(source != null ? metadataKey(SOURCE_KEY).isEqualTo(source) : null)
                 .build();
 
         // 3. 执行向量检索
-        EmbeddingSearchResult<TextSegment> searchResult = embeddingStore.search(searchRequest);
+        EmbeddingSearchResult<TextSegment> searchResult = collection != null
+                ? mysqlEmbeddingStore.search(collection, searchRequest)
+                : embeddingStore.search(searchRequest);
 
         log.info(" 找到 {} 个相关结果", searchResult.matches().size());
 
         // 4. 返回匹配结果
-        return searchResult.matches().stream()
+        return formatMatches(searchResult.matches());
+    }
+
+    private List<String> formatMatches(List<EmbeddingMatch<TextSegment>> matches) {
+        return matches.stream()
                 .map(match -> String.format("[相似度: %.2f] %s",
                         match.score(),
                         match.embedded().text()))
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 多查询批量检索：所有查询一次向量化、一次扫描，返回每个查询的结果和融合排序
+     *
+     * @param queries    查询文本列表
+     * @param collection 可选，只检索指定集合
+     */
+    @PostMapping("/knowledge/search/batch")
+    public Map<String, Object> searchKnowledgeBatch(@RequestBody List<String> queries,
+                                                    @RequestParam(required = false) String collection) {
+        log.info("批量搜索知识库: {} 个查询, collection={}", queries.size(), collection);
+
+        List<Embedding> embeddings = embeddingModel.embedAll(queries.stream()
+                .map(TextSegment::from)
+                .collect(Collectors.toList())).content();
+        MysqlEmbeddingStore.BatchSearchResult result =
+                mysqlEmbeddingStore.searchBatch(collection, embeddings, 10, 0.45, null);
+
+        return Map.of(
+                "per_query", result.getPerQuery().stream()
+                        .map(this::formatMatches)
+                        .collect(Collectors.toList()),
+                "fused", formatMatches(result.getFused())
+        );
+    }
+
+    /**
+     * 列出知识集合及各集合的向量数
+     */
+    @GetMapping("/knowledge/collections")
+    public Map<String, Integer> listCollections() {
+        return mysqlEmbeddingStore.collectionSizes();
+    }
+
+    /**
+     * 添加知识到指定集合
+     *
+     * @param collection 集合名（字母、数字、下划线、连字符）
+     * @param content    知识内容（纯文本）
+     */
+    @PostMapping("/knowledge/collections/{collection}/add")
+    public String addCollectionKnowledge(@PathVariable String collection, @RequestBody String content) {
+        log.info("添加知识到集合 {}，长度: {}", collection, content.length());
+
+        Document document = Document.from(content, Metadata.from(SOURCE_KEY, collection));
+        List<TextSegment> segments = DocumentSplitters.recursive(500, 50).split(document);
+        KnowledgeIngestionService.IngestionResult result = knowledgeIngestionService.ingest(collection, segments);
+
+        return String.format("成功添加知识到集合 %s，%s", collection, result.summary());
+    }
+
+    /**
+     * 按来源文档增量同步：同一 sourceId 再次提交时只向量化变化的片段，删除不再出现的片段，
+     * 未变化的片段保留原向量；version 与已入库版本相同时直接跳过
+     *
+     * @param sourceId   来源文档的稳定ID（如业务系统中的文档编号）
+     * @param version    文档版本（可选，如修改时间或修订号）
+     * @param collection 目标集合，默认 knowledge
+     * @param content    文档全文（纯文本）
+     */
+    @PutMapping("/knowledge/sources/{sourceId}")
+    public Map<String, Object> syncSource(@PathVariable String sourceId,
+                                          @RequestParam(required = false) String version,
+                                          @RequestParam(defaultValue = SOURCE_KNOWLEDGE) String collection,
+                                          @RequestBody String content) {
+        Document document = Document.from(content, Metadata.from(SOURCE_KEY, collection));
+        List<TextSegment> segments = DocumentSplitters.recursive(500, 50).split(document);
+        KnowledgeIngestionService.SourceSyncResult result =
+                knowledgeIngestionService.syncSource(collection, sourceId, version, segments);
+        return Map.of(
+                "source_id", sourceId,
+                "version", version != null ? version : "",
+                "previous_version", result.getPreviousVersion() != null ? result.getPreviousVersion() : "",
+                "summary", result.summary(),
+                "added_ids", result.getAddedIds()
+        );
+    }
+
+    /**
+     * 删除来源文档的全部片段
+     */
+    @DeleteMapping("/knowledge/sources/{sourceId}")
+    public String removeSource(@PathVariable String sourceId,
+                               @RequestParam(defaultValue = SOURCE_KNOWLEDGE) String collection) {
+        int removed = knowledgeIngestionService.removeSource(collection, sourceId);
+        return String.format("来源文档 %s 已删除: %d 个片段", sourceId, removed);
+    }
+
+    /**
+     * 只在指定集合内做向量检索
+     *
+     * @param collection 集合名
+     * @param query      查询文本
+     */
+    @GetMapping("/knowledge/collections/{collection}/search")
+    public List<String> searchCollection(@PathVariable String collection, @RequestParam String query) {
+        return searchKnowledge(query, null, collection);
+    }
+
+    /**
+     * 清空指定集合
+     *
+     * @param collection 集合名
+     */
+    @DeleteMapping("/knowledge/collections/{collection}")
+    public String clearCollection(@PathVariable String collection) {
+        mysqlEmbeddingStore.removeCollection(collection);
+        log.info("集合 {} 已清空", collection);
+        return "集合已清空: " + collection;
+    }
+
     /**
      * 清空知识库（删除所有向量）
      */
@@ -228,15 +481,24 @@ public class AiServiceController {
     @GetMapping("/knowledge/stats")
     public Map<String, Object> getStats() {
         long count = 0;
+        Map<String, Object> index = Map.of();
 
         // 如果是 MysqlEmbeddingStore，可以获取准确计数
         if (embeddingStore instanceof MysqlEmbeddingStore) {
-            count = ((MysqlEmbeddingStore) embeddingStore).count();
+            count = mysqlEmbeddingStore.count();
+            index = mysqlEmbeddingStore.indexStats();
         }
 
+        Map<String, Object> embeddingCache = embeddingModel instanceof CachingEmbeddingModel caching
+                ? caching.stats() : Map.of("enabled", false);
+
         return Map.of(
                 "total_vectors", count,
-                "status", count > 0 ? "有数据" : "空库"
+                "status", count > 0 ? "有数据" : "空库",
+                "index", index,
+                "format_migration", embeddingFormatMigrator.status(),
+                "index_maintenance", indexMaintenanceService.status(),
+                "embedding_cache", embeddingCache
         );
     }
 
@@ -269,19 +531,27 @@ public class AiServiceController {
 
     /**
      * 加载学生成绩系统 DDL 到向量库
-     * 使用分号分割 SQL 语句
+     * schema：按表解析，每张表一个片段，并建立表名、列名、注释到片段的精确索引；
+     * recursive：通用递归分割器（按长度切分，建表语句可能被截断）
      */
     @PostMapping("/knowledge/load-student-ddl")
-    public String loadStudentDdl() {
+    public String loadStudentDdl(@RequestParam(defaultValue = DDL_MODE_SCHEMA) String mode) {
         try {
-            log.info("开始加载学生成绩系统 DDL");
+            log.info("开始加载学生成绩系统 DDL: mode={}", mode);
 
             // 1. 从 classpath 加载 SQL 文件
             ClassPathResource resource = new ClassPathResource("student_ddl.sql");
             String sqlContent = new String(resource.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
 
+            if (DDL_MODE_SCHEMA.equalsIgnoreCase(mode)) {
+                // 2. 每张表一个片段，以文件名为来源增量同步，文件未变化时跳过
+                KnowledgeIngestionService.SourceSyncResult result = knowledgeIngestionService.syncDdl(
+                        SOURCE_DDL, resource.getFilename(), sqlContent, Metadata.from(SOURCE_KEY, SOURCE_DDL));
+                return "成功加载学生成绩系统 DDL，" + result.summary();
+            }
+
             // 2. 创建文档
-            Document document = Document.from(sqlContent);
+            Document document = Document.from(sqlContent, Metadata.from(SOURCE_KEY, SOURCE_DDL));
 
             // 3. 使用递归分割器
             DocumentSplitter splitter = DocumentSplitters.recursive(
@@ -292,28 +562,10 @@ public class AiServiceController {
             List<TextSegment> segments = splitter.split(document);
             log.info("SQL 文档分割成 {} 个片段", segments.size());
 
-            // 4. 分批向量化（每批最多10个）
-            int batchSize = 10;
-            List<Embedding> allEmbeddings = new ArrayList<>();
-
-            for (int i = 0; i < segments.size(); i += batchSize) {
-                int end = Math.min(i + batchSize, segments.size());
-                List<TextSegment> batch = segments.subList(i, end);
-
-                log.info("处理第 {}/{} 批，片段数: {}",
-                        (i / batchSize + 1),
-                        (segments.size() + batchSize - 1) / batchSize,
-                        batch.size());
-
-                Response<List<Embedding>> embedResponse = embeddingModel.embedAll(batch);
-                allEmbeddings.addAll(embedResponse.content());
-            }
-
-            // 5. 存入向量库
-            embeddingStore.addAll(allEmbeddings, segments);
+            // 4. 跳过已加载过的片段，新片段分批向量化（每批最多10个）后存入 DDL 集合，SQL 生成只检索该集合
+            KnowledgeIngestionService.IngestionResult result = knowledgeIngestionService.ingest(SOURCE_DDL, segments);
 
-            log.info("成功加载学生成绩系统 DDL，共 {} 个向量", allEmbeddings.size());
-            return String.format("成功加载学生成绩系统 DDL，共 %d 个片段", segments.size());
+            return "成功加载学生成绩系统 DDL，" + result.summary();
 
         } catch (Exception e) {
             log.error("加载 DDL 失败", e);
@@ -321,6 +573,23 @@ public class AiServiceController {
         }
     }
 
+    /**
+     * 按表加载任意 DDL 脚本：每张表一个片段，以 sourceId 为来源增量同步，
+     * SQL 生成时可按表名、列名、注释关键词直接命中
+     */
+    @PostMapping("/knowledge/ddl")
+    public Map<String, Object> loadDdl(@RequestParam String sourceId,
+                                       @RequestParam(defaultValue = SOURCE_DDL) String collection,
+                                       @RequestBody String sql) {
+        KnowledgeIngestionService.SourceSyncResult result = knowledgeIngestionService.syncDdl(
+                collection, sourceId, sql, Metadata.from(SOURCE_KEY, collection));
+        return Map.of(
+                "source_id", sourceId,
+                "collection", collection,
+                "tables", result.getTotal(),
+                "summary", result.summary());
+    }
+
     // ==================== AI Agent 功能 ====================
 
     /**
@@ -360,15 +629,13 @@ public class AiServiceController {
         log.info("添加业务知识，长度: {}", knowledge.length());
 
         // 复用现有的 addKnowledge 逻辑
-        Document document = Document.from(knowledge);
+        Document document = Document.from(knowledge, Metadata.from(SOURCE_KEY, SOURCE_BUSINESS));
         DocumentSplitter splitter = DocumentSplitters.recursive(500, 50);
         List<TextSegment> segments = splitter.split(document);
 
-        Response<List<Embedding>> embedResponse = embeddingModel.embedAll(segments);
-        embeddingStore.addAll(embedResponse.content(), segments);
+        KnowledgeIngestionService.IngestionResult result = knowledgeIngestionService.ingest(SOURCE_BUSINESS, segments);
 
-        log.info("成功添加 {} 个知识片段", segments.size());
-        return String.format("成功添加业务知识，共 %d 个片段", segments.size());
+        return "成功添加业务知识，" + result.summary();
     }
 
     // ====================  Prompt 管理功能 ====================
@@ -0,0 +1,39 @@
+package com.mcp.robot.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.mcp.robot.model.EmbeddingCacheEntity;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 文本向量缓存 Mapper
+ */
+@Mapper
+public interface EmbeddingCacheMapper extends BaseMapper<EmbeddingCacheEntity> {
+
+    /**
+     * 按文本哈希批量读取同一模型的缓存向量
+     */
+    @Select("<script>" +
+            "SELECT text_hash, embedding_blob FROM embedding_cache WHERE model_name = #{modelName} AND text_hash IN " +
+            "<foreach collection='hashes' item='hash' open='(' separator=',' close=')'>#{hash}</foreach>" +
+            "</script>")
+    List<EmbeddingCacheEntity> selectByHashes(@Param("modelName") String modelName,
+                                              @Param("hashes") Collection<String> hashes);
+
+    /**
+     * 多行 INSERT IGNORE，并发写入同一文本时以先写入的为准
+     */
+    @Insert("<script>" +
+            "INSERT IGNORE INTO embedding_cache (model_name, text_hash, embedding_blob, created_time) VALUES " +
+            "<foreach collection='list' item='item' separator=','>" +
+            "(#{item.modelName}, #{item.textHash}, #{item.embeddingBlob}, #{item.createdTime})" +
+            "</foreach>" +
+            "</script>")
+    int insertIgnoreBatch(@Param("list") List<EmbeddingCacheEntity> entities);
+}
@@ -2,11 +2,33 @@ package com.mcp.robot.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.mcp.robot.model.KnowledgeEmbeddingEntity;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
 
 /**
  * 知识库向量 Mapper
  */
 @Mapper
 public interface KnowledgeEmbeddingMapper extends BaseMapper<KnowledgeEmbeddingEntity> {
-}
\ No newline at end of file
+
+    /**
+     * 多行 INSERT，一条语句写入整批向量
+     */
+    @Insert("<script>" +
+            "INSERT INTO knowledge_embedding (embedding_id, collection, content, content_hash, source_id, embedding_blob, metadata_json, created_time) VALUES " +
+            "<foreach collection='list' item='item' separator=','>" +
+            "(#{item.embeddingId}, #{item.collection}, #{item.content}, #{item.contentHash}, #{item.sourceId}, #{item.embeddingBlob}, #{item.metadataJson}, #{item.createdTime})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("list") List<KnowledgeEmbeddingEntity> entities);
+
+    /**
+     * 已有数据的知识集合
+     */
+    @Select("SELECT DISTINCT collection FROM knowledge_embedding")
+    List<String> selectCollections();
+}
@@ -0,0 +1,47 @@
+package com.mcp.robot.model;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 文本向量缓存实体
+ */
+@Data
+@TableName("embedding_cache")
+public class EmbeddingCacheEntity {
+
+    /**
+     * 主键ID
+     */
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 向量模型（模型名，指定了输出维度时附带维度）
+     */
+    @TableField("model_name")
+    private String modelName;
+
+    /**
+     * 规范化文本的 SHA-256（十六进制）
+     */
+    @TableField("text_hash")
+    private String textHash;
+
+    /**
+     * 向量数据（float32 小端二进制，带格式头，见 VectorCodec）
+     */
+    @TableField("embedding_blob")
+    private byte[] embeddingBlob;
+
+    /**
+     * 创建时间
+     */
+    @TableField("created_time")
+    private LocalDateTime createdTime;
+}
@@ -27,6 +27,12 @@ public class KnowledgeEmbeddingEntity {
     @TableField("embedding_id")
     private String embeddingId;
 
+    /**
+     * 所属知识集合
+     */
+    @TableField("collection")
+    private String collection;
+
     /**
      * 文本内容
      */
@@ -34,11 +40,35 @@ public class KnowledgeEmbeddingEntity {
     private String content;
 
     /**
-     * 向量数据（JSON数组格式）
+     * 规范化文本的 SHA-256（十六进制），同一集合内相同内容只存一份
+     */
+    @TableField("content_hash")
+    private String contentHash;
+
+    /**
+     * 来源文档ID（按来源增量同步的片段才有），同一来源的片段整体按内容哈希比对更新
+     */
+    @TableField("source_id")
+    private String sourceId;
+
+    /**
+     * 来源文档版本，同步完成后该来源的全部片段更新为最新版本
+     */
+    @TableField("source_version")
+    private String sourceVersion;
+
+    /**
+     * 向量数据（旧版 JSON 数组格式，迁移为二进制后置空）
      */
     @TableField("embedding_vector")
     private String embeddingVector;
 
+    /**
+     * 向量数据（float32 小端二进制，带格式头，见 VectorCodec）
+     */
+    @TableField("embedding_blob")
+    private byte[] embeddingBlob;
+
     /**
      * 元数据（JSON格式）
      */
@@ -12,9 +12,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,6 +23,7 @@ public class AdvancedRagService {
     private final QueryTransformAiService queryTransformAiService;
     private final EmbeddingModel embeddingModel;
     private final EmbeddingStore<TextSegment> embeddingStore;
+    private final MysqlEmbeddingStore mysqlEmbeddingStore;
     private final ChatModel chatModel;
 
     /**
@@ -76,25 +75,18 @@ public class AdvancedRagService {
         List<String> queries = queryTransformAiService.generateMultiQueries(userQuery);
         log.info("🔍 生成 {} 个查询视角", queries.size());
 
-        // 2. 对每个查询进行检索
-        Set<TextSegment> allResults = new HashSet<>();
-        for (String query : queries) {
-            Response<Embedding> embedding = embeddingModel.embed(query);
-            EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
-                    .queryEmbedding(embedding.content())
-                    .maxResults(3)
-                    .minScore(0.3)
-                    .build();
+        // 2. 所有查询一次向量化、一次批量检索，结果按倒数排名融合去重
+        List<Embedding> embeddings = embeddingModel.embedAll(queries.stream()
+                .map(TextSegment::from)
+                .collect(Collectors.toList())).content();
+        MysqlEmbeddingStore.BatchSearchResult result =
+                mysqlEmbeddingStore.searchBatch(null, embeddings, 3, 0.3, null);
 
-            EmbeddingSearchResult<TextSegment> result = embeddingStore.search(request);
-            result.matches().forEach(match -> allResults.add(match.embedded()));
-        }
-
-        log.info("合并后共 {} 个独特结果", allResults.size());
+        log.info("合并后共 {} 个独特结果", result.getFused().size());
 
         // 3. 合并结果，生成回答
-        String context = allResults.stream()
-                .map(TextSegment::text)
+        String context = result.getFused().stream()
+                .map(match -> match.embedded().text())
                 .collect(Collectors.joining("\n\n"));
 
         String finalPrompt = String.format("""
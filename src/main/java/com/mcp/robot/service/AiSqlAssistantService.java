@@ -18,7 +18,7 @@ import static dev.langchain4j.service.spring.AiServiceWiringMode.EXPLICIT;
  * @author Kinch.zhu
  * @date 2025/5/16
  */
-@AiService(wiringMode = EXPLICIT, chatModel = "openAiChatModel", streamingChatModel = "openAiStreamingChatModel", chatMemoryProvider = "chatMemoryProvider", contentRetriever = "contentRetriever", tools = {"sysTools"})
+@AiService(wiringMode = EXPLICIT, chatModel = "openAiChatModel", streamingChatModel = "openAiStreamingChatModel", chatMemoryProvider = "chatMemoryProvider", contentRetriever = "ddlContentRetriever", tools = {"sysTools"})
 public interface AiSqlAssistantService {
 
     String test(@UserMessage String message);
@@ -16,7 +16,7 @@ import static dev.langchain4j.service.spring.AiServiceWiringMode.EXPLICIT;
         wiringMode = EXPLICIT,
         chatModel = "openAiChatModel",
         chatMemoryProvider = "chatMemoryProvider",
-        contentRetriever = "contentRetriever",
+        contentRetriever = "ddlContentRetriever",
         tools = {"sysTools"}
 )
 public interface DynamicSqlAssistantService {
@@ -0,0 +1,213 @@
+package com.mcp.robot.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 向量索引后台维护
+ * <p>
+ * 定期检查各集合的向量索引，对积累了退化的索引分步执行维护：
+ * <ul>
+ *     <li>mmap：合并墓碑比例超过阈值的段文件</li>
+ *     <li>hnsw：墓碑过多时重建图</li>
+ *     <li>int8：数据分布偏离校准样本时重新校准量化参数并重新编码</li>
+ * </ul>
+ * 维护在单个后台线程中一步一步执行，每步之后按 CPU 预算休眠（长期占用不超过 cpu-budget 个核）；
+ * 有检索正在进行或检索频率超过 max-search-rate 时暂停，负载下降后继续。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IndexMaintenanceService {
+
+    private static final long PAUSE_MILLIS = 1000;
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final MysqlEmbeddingStore mysqlEmbeddingStore;
+
+    @Value("${vector-store.maintenance.enabled:true}")
+    private boolean enabled;
+
+    @Value("${vector-store.maintenance.check-interval-seconds:30}")
+    private long checkIntervalSeconds;
+
+    /**
+     * 维护线程占用单核 CPU 的比例上限，取值 (0, 1]
+     */
+    @Value("${vector-store.maintenance.cpu-budget:0.25}")
+    private double cpuBudget;
+
+    /**
+     * 每秒检索次数超过该值时暂停维护
+     */
+    @Value("${vector-store.maintenance.max-search-rate:20}")
+    private double maxSearchRate;
+
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "vector-index-maintainer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final AtomicLong steps = new AtomicLong();
+    private final AtomicLong pauses = new AtomicLong();
+    private final AtomicLong cpuNanos = new AtomicLong();
+    private final Map<String, Map<String, Object>> lastRuns = new ConcurrentHashMap<>();
+
+    private volatile String state = "idle";
+    private volatile String currentCollection;
+    private volatile int currentSteps;
+    private volatile double searchRate;
+    private long rateSampleCount;
+    private long rateSampleNanos;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            state = "disabled";
+            log.info("向量索引后台维护已关闭");
+            return;
+        }
+        if (cpuBudget <= 0 || cpuBudget > 1) {
+            throw new IllegalArgumentException("vector-store.maintenance.cpu-budget 取值应在 (0, 1]: " + cpuBudget);
+        }
+        rateSampleCount = mysqlEmbeddingStore.searchCount();
+        rateSampleNanos = System.nanoTime();
+        scheduler.scheduleWithFixedDelay(this::runOnce, checkIntervalSeconds, checkIntervalSeconds, TimeUnit.SECONDS);
+        log.info("向量索引后台维护已启动: interval={}s, cpuBudget={}, maxSearchRate={}/s",
+                checkIntervalSeconds, cpuBudget, maxSearchRate);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 维护状态：当前阶段、正在维护的集合、累计步数与 CPU 耗时、各集合最近一次维护结果
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("state", state);
+        status.put("collection", currentCollection != null ? currentCollection : "");
+        status.put("current_steps", currentSteps);
+        status.put("steps", steps.get());
+        status.put("pauses", pauses.get());
+        status.put("cpu_ms", TimeUnit.NANOSECONDS.toMillis(cpuNanos.get()));
+        status.put("search_rate", searchRate);
+        status.put("pending", mysqlEmbeddingStore.collectionsNeedingMaintenance());
+        status.put("last_runs", new TreeMap<>(lastRuns));
+        return status;
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private void runOnce() {
+        try {
+            for (String collection : mysqlEmbeddingStore.collectionsNeedingMaintenance()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                maintain(collection);
+            }
+        } catch (Exception e) {
+            log.error("向量索引维护失败，将在下次检查时重试", e);
+        } finally {
+            state = "idle";
+            currentCollection = null;
+        }
+    }
+
+    private void maintain(String collection) {
+        log.info("开始维护集合 {} 的向量索引", collection);
+        currentCollection = collection;
+        currentSteps = 0;
+        long start = System.currentTimeMillis();
+        long collectionCpu = 0;
+        boolean more = true;
+        while (more) {
+            if (underLoad()) {
+                state = "paused";
+                pauses.incrementAndGet();
+                if (!sleep(TimeUnit.MILLISECONDS.toNanos(PAUSE_MILLIS))) {
+                    return;
+                }
+                continue;
+            }
+            state = "running";
+            long cpuBefore = cpuTime();
+            more = mysqlEmbeddingStore.maintenanceStep(collection);
+            long cpu = cpuTime() - cpuBefore;
+            collectionCpu += cpu;
+            cpuNanos.addAndGet(cpu);
+            steps.incrementAndGet();
+            currentSteps++;
+            // CPU 预算：耗时 c 的一步之后休眠 c * (1 / budget - 1)
+            if (!sleep((long) (cpu * (1 / cpuBudget - 1)))) {
+                return;
+            }
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        lastRuns.put(collection, Map.of(
+                "finished_at", LocalDateTime.now().toString(),
+                "steps", currentSteps,
+                "elapsed_ms", elapsed,
+                "cpu_ms", TimeUnit.NANOSECONDS.toMillis(collectionCpu)
+        ));
+        log.info("集合 {} 的向量索引维护完成: steps={}, 耗时 {} ms, CPU {} ms",
+                collection, currentSteps, elapsed, TimeUnit.NANOSECONDS.toMillis(collectionCpu));
+    }
+
+    /**
+     * 有检索正在进行，或最近一个采样窗口内的检索频率超过阈值
+     */
+    private boolean underLoad() {
+        long now = System.nanoTime();
+        if (now - rateSampleNanos >= RATE_WINDOW_NANOS) {
+            long count = mysqlEmbeddingStore.searchCount();
+            searchRate = (count - rateSampleCount) * 1e9 / (now - rateSampleNanos);
+            rateSampleCount = count;
+            rateSampleNanos = now;
+        }
+        return mysqlEmbeddingStore.activeSearches() > 0 || searchRate > maxSearchRate;
+    }
+
+    private long cpuTime() {
+        return threadMXBean.isCurrentThreadCpuTimeSupported()
+                ? threadMXBean.getCurrentThreadCpuTime()
+                : System.nanoTime();
+    }
+
+    /**
+     * 返回 false 表示线程被中断（服务关闭）
+     */
+    private static boolean sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.mcp.robot.service;
+
+import com.google.common.util.concurrent.Striped;
+import com.mcp.robot.service.schema.DdlSchemaParser;
+import com.mcp.robot.service.schema.TableSchema;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 知识写入服务
+ * <p>
+ * 每个片段按规范化文本计算内容哈希，目标集合中已存在的片段、以及同一批次内重复的片段
+ * 既不调用向量化模型也不写库，只有新片段才会向量化并写入。
+ * 并发写入相同内容时两边都可能通过检查，由表上 (collection, plain_content_hash) 唯一键兜底，后写入的一方跳过该片段。
+ * <p>
+ * 新片段再按 SimHash 指纹查找近似重复（改动很小的副本），按 rag.dedup.near-duplicate 处理：
+ * <ul>
+ *     <li>link：照常写入，元数据 variant_of 指向已有片段，检索时与其折叠</li>
+ *     <li>skip：视为已有片段的副本，不写入</li>
+ *     <li>off：不检测</li>
+ * </ul>
+ * 带来源文档ID的写入走 {@link #syncSource}：按来源比对片段，只处理变化部分。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class KnowledgeIngestionService {
+
+    /**
+     * 近似重复片段指向已有片段ID的元数据键
+     */
+    public static final String VARIANT_OF_KEY = "variant_of";
+
+    private final EmbeddingModel embeddingModel;
+    private final MysqlEmbeddingStore mysqlEmbeddingStore;
+
+    /**
+     * 每次调用向量化模型的片段数上限
+     */
+    @Value("${rag.ingestion.embed-batch-size:10}")
+    private int embedBatchSize;
+
+    /**
+     * 近似重复片段的处理方式：link / skip / off
+     */
+    @Value("${rag.dedup.near-duplicate:link}")
+    private String nearDuplicatePolicy;
+
+    /**
+     * 同一来源文档的同步与删除串行执行
+     */
+    private final Striped<Lock> sourceLocks = Striped.lock(64);
+
+    /**
+     * 写入片段到指定集合，跳过已存在的内容
+     */
+    public IngestionResult ingest(String collection, List<TextSegment> segments) {
+        PreparedSegments prepared = prepare(collection, segments);
+
+        // 4. 只对需要写入的片段分批向量化并写入
+        List<TextSegment> accepted = prepared.getSegments();
+        if (!accepted.isEmpty()) {
+            List<Embedding> embeddings = new ArrayList<>(accepted.size());
+            for (int from = 0; from < accepted.size(); from += embedBatchSize) {
+                List<TextSegment> batch = accepted.subList(from, Math.min(from + embedBatchSize, accepted.size()));
+                embeddings.addAll(embeddingModel.embedAll(batch).content());
+            }
+            mysqlEmbeddingStore.addAll(collection, prepared.getIds(), embeddings, accepted);
+        }
+
+        IngestionResult result = prepared.toResult(collection);
+        log.info("知识写入完成: {}", result);
+        return result;
+    }
+
+    /**
+     * 去重与近似重复检测，得到需要向量化写入的片段及其ID，不调用向量化模型也不写库。
+     * 异步入库任务按文档调用，向量化和写入由后续流水线阶段完成。
+     */
+    public PreparedSegments prepare(String collection, List<TextSegment> segments) {
+        // 1. 计算内容哈希，批次内重复的片段只保留第一个
+        Map<String, TextSegment> segmentByHash = new LinkedHashMap<>();
+        for (TextSegment segment : segments) {
+            segmentByHash.putIfAbsent(MysqlEmbeddingStore.contentHash(segment.text()), segment);
+        }
+
+        // 2. 过滤集合中已存在的内容
+        Set<String> existing = mysqlEmbeddingStore.existingContentHashes(collection, segmentByHash.keySet());
+        List<TextSegment> fresh = new ArrayList<>();
+        segmentByHash.forEach((hash, segment) -> {
+            if (!existing.contains(hash)) {
+                fresh.add(segment);
+            }
+        });
+
+        // 3. 近似重复检测：与集合中已有片段及本批中排在前面的片段比较
+        List<String> ids = new ArrayList<>(fresh.size());
+        List<TextSegment> accepted = new ArrayList<>(fresh.size());
+        int nearDuplicates = 0;
+        if ("off".equalsIgnoreCase(nearDuplicatePolicy)) {
+            accepted.addAll(fresh);
+            fresh.forEach(segment -> ids.add(UUID.randomUUID().toString()));
+        } else {
+            boolean skip = "skip".equalsIgnoreCase(nearDuplicatePolicy);
+            List<Long> acceptedFingerprints = new ArrayList<>(fresh.size());
+            for (TextSegment segment : fresh) {
+                long fingerprint = mysqlEmbeddingStore.fingerprint(segment.text());
+                String canonical = mysqlEmbeddingStore.findNearDuplicate(collection, fingerprint);
+                for (int i = 0; canonical == null && i < accepted.size(); i++) {
+                    if (mysqlEmbeddingStore.isNearDuplicate(fingerprint, acceptedFingerprints.get(i))) {
+                        canonical = ids.get(i);
+                    }
+                }
+                if (canonical != null) {
+                    nearDuplicates++;
+                    if (skip) {
+                        continue;
+                    }
+                    Metadata metadata = segment.metadata().copy();
+                    metadata.put(VARIANT_OF_KEY, canonical);
+                    segment = TextSegment.from(segment.text(), metadata);
+                }
+                ids.add(UUID.randomUUID().toString());
+                accepted.add(segment);
+                acceptedFingerprints.add(fingerprint);
+            }
+        }
+        return new PreparedSegments(segments.size(), segments.size() - fresh.size(), nearDuplicates, ids, accepted);
+    }
+
+    /**
+     * 按来源文档增量同步：新片段集合与该来源已入库的片段按内容哈希比对，
+     * 只向量化新增的片段，删除不再出现的片段，未变化的片段连同向量原样保留。
+     * 版本与已入库版本相同时直接跳过。先写入新增片段再删除旧片段，同步过程中检索不会缺失该文档的内容。
+     * <p>
+     * 来源片段只在本来源内去重，不复用其他来源或普通写入的相同内容，保证删除来源时不影响其他文档。
+     */
+    public SourceSyncResult syncSource(String collection, String sourceId, String version, List<TextSegment> segments) {
+        if (sourceId == null || sourceId.isBlank() || sourceId.length() > 128) {
+            throw new IllegalArgumentException("来源文档ID不能为空，长度不超过 128: " + sourceId);
+        }
+        if (version != null && version.length() > 64) {
+            throw new IllegalArgumentException("来源文档版本长度不超过 64: " + version);
+        }
+        Lock lock = sourceLocks.get(collection + '/' + sourceId);
+        lock.lock();
+        try {
+            String previousVersion = mysqlEmbeddingStore.sourceVersion(collection, sourceId);
+            Map<String, List<String>> stored = mysqlEmbeddingStore.sourceChunks(collection, sourceId);
+            if (version != null && version.equals(previousVersion) && !stored.isEmpty()) {
+                SourceSyncResult result = new SourceSyncResult(collection, sourceId, version, previousVersion,
+                        true, stored.size(), stored.size(), 0, 0, List.of());
+                log.info("来源文档版本未变化，跳过同步: {}", result);
+                return result;
+            }
+
+            // 1. 新片段集合，文档内重复的片段只保留第一个
+            Map<String, TextSegment> incoming = new LinkedHashMap<>();
+            for (TextSegment segment : segments) {
+                Metadata metadata = segment.metadata().copy();
+                metadata.put(MysqlEmbeddingStore.SOURCE_ID_KEY, sourceId);
+                incoming.putIfAbsent(MysqlEmbeddingStore.contentHash(segment.text()), TextSegment.from(segment.text(), metadata));
+            }
+
+            // 2. 比对：已入库但不再出现的删除（同一内容的多余副本一并删除），未入库的新增
+            List<String> removedIds = new ArrayList<>();
+            int unchanged = 0;
+            for (Map.Entry<String, List<String>> entry : stored.entrySet()) {
+                List<String> ids = entry.getValue();
+                if (incoming.containsKey(entry.getKey())) {
+                    unchanged++;
+                    removedIds.addAll(ids.subList(1, ids.size()));
+                } else {
+                    removedIds.addAll(ids);
+                }
+            }
+            List<TextSegment> added = new ArrayList<>();
+            incoming.forEach((hash, segment) -> {
+                if (!stored.containsKey(hash)) {
+                    added.add(segment);
+                }
+            });
+
+            // 3. 新增片段向量化写入，再删除旧片段，最后统一版本
+            List<String> addedIds = new ArrayList<>(added.size());
+            if (!added.isEmpty()) {
+                List<Embedding> embeddings = new ArrayList<>(added.size());
+                for (int from = 0; from < added.size(); from += embedBatchSize) {
+                    List<TextSegment> batch = added.subList(from, Math.min(from + embedBatchSize, added.size()));
+                    embeddings.addAll(embeddingModel.embedAll(batch).content());
+                }
+                added.forEach(segment -> addedIds.add(UUID.randomUUID().toString()));
+                mysqlEmbeddingStore.addAll(collection, addedIds, embeddings, added);
+            }
+            mysqlEmbeddingStore.removeAll(collection, removedIds);
+            mysqlEmbeddingStore.updateSourceVersion(collection, sourceId, version);
+
+            SourceSyncResult result = new SourceSyncResult(collection, sourceId, version, previousVersion,
+                    false, incoming.size(), unchanged, added.size(), removedIds.size(), addedIds);
+            log.info("来源文档同步完成: {}", result);
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 删除来源文档的全部片段，返回删除的片段数
+     */
+    public int removeSource(String collection, String sourceId) {
+        Lock lock = sourceLocks.get(collection + '/' + sourceId);
+        lock.lock();
+        try {
+            List<String> ids = new ArrayList<>();
+            mysqlEmbeddingStore.sourceChunks(collection, sourceId).values().forEach(ids::addAll);
+            mysqlEmbeddingStore.removeAll(collection, ids);
+            log.info("来源文档已删除: collection={}, sourceId={}, chunks={}", collection, sourceId, ids.size());
+            return ids.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * DDL 按表入库：解析脚本，每张表（建表语句及其外键、索引语句）作为一个片段，
+     * 以 sourceId 为来源增量同步，版本取脚本内容哈希，脚本未变化时直接跳过
+     */
+    public SourceSyncResult syncDdl(String collection, String sourceId, String sql, Metadata metadata) {
+        List<TableSchema> tables = DdlSchemaParser.parse(sql);
+        if (tables.isEmpty()) {
+            throw new IllegalArgumentException("DDL 中没有可解析的 CREATE TABLE 语句");
+        }
+        List<TextSegment> segments = new ArrayList<>(tables.size());
+        tables.forEach(table -> segments.add(table.toSegment(metadata)));
+        log.info("DDL 解析出 {} 张表: sourceId={}", tables.size(), sourceId);
+        return syncSource(collection, sourceId, MysqlEmbeddingStore.contentHash(sql), segments);
+    }
+
+    /**
+     * 去重后待写入的片段：ids 与 segments 一一对应
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class PreparedSegments {
+        private final int total;
+        private final int reused;
+        private final int nearDuplicates;
+        private final List<String> ids;
+        private final List<TextSegment> segments;
+
+        public IngestionResult toResult(String collection) {
+            return new IngestionResult(collection, total, segments.size(), reused, nearDuplicates, ids);
+        }
+    }
+
+    /**
+     * 来源同步结果：新片段集合的片段数、保留 / 新增 / 删除的片段数，skipped 表示版本未变化未做比对
+     */
+    @Getter
+    @ToString(exclude = "addedIds")
+    @RequiredArgsConstructor
+    public static class SourceSyncResult {
+        private final String collection;
+        private final String sourceId;
+        private final String version;
+        private final String previousVersion;
+        private final boolean skipped;
+        private final int total;
+        private final int unchanged;
+        private final int added;
+        private final int removed;
+        private final List<String> addedIds;
+
+        public String summary() {
+            if (skipped) {
+                return String.format("版本 %s 未变化，跳过同步（%d 个片段）", version, total);
+            }
+            return String.format("共 %d 个片段，保留 %d 个，新增 %d 个，删除 %d 个", total, unchanged, added, removed);
+        }
+    }
+
+    /**
+     * 写入结果：总片段数、新写入数、因内容完全相同而复用的片段数、近似重复的片段数
+     */
+    @Getter
+    @ToString(exclude = "ids")
+    @RequiredArgsConstructor
+    public static class IngestionResult {
+        private final String collection;
+        private final int total;
+        private final int added;
+        private final int reused;
+        private final int nearDuplicates;
+        private final List<String> ids;
+
+        public String summary() {
+            return String.format("共 %d 个片段，新增 %d 个，复用已有 %d 个，近似重复 %d 个",
+                    total, added, reused, nearDuplicates);
+        }
+    }
+}
@@ -1,36 +1,128 @@
 package com.mcp.robot.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mcp.robot.mapper.KnowledgeEmbeddingMapper;
 import com.mcp.robot.model.KnowledgeEmbeddingEntity;
+import com.mcp.robot.service.retrieval.KeywordIndex;
+import com.mcp.robot.service.retrieval.NearDuplicateIndex;
+import com.mcp.robot.service.retrieval.QueryResultCache;
+import com.mcp.robot.service.retrieval.SimHash;
+import com.mcp.robot.service.retrieval.TextTokenizer;
+import com.mcp.robot.service.vector.MetadataIndex;
+import com.mcp.robot.service.vector.MysqlVectorSource;
+import com.mcp.robot.service.vector.ScoredId;
+import com.mcp.robot.service.vector.VectorCodec;
+import com.mcp.robot.service.vector.VectorIndex;
+import com.mcp.robot.service.vector.VectorIndexFactory;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.store.embedding.EmbeddingMatch;
 import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
 import dev.langchain4j.store.embedding.EmbeddingSearchResult;
 import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
  * 基于 MySQL 的向量存储实现（符合最新接口）
+ * <p>
+ * MySQL 负责持久化，检索走常驻内存的 {@link VectorIndex}，
+ * 索引在启动时加载一次，之后随 add/remove 同步更新。
+ * 检索请求中的元数据过滤条件由 {@link MetadataIndex} 解析为候选集后下推到向量扫描。
+ * 同时维护文本内容的 BM25 倒排索引 {@link KeywordIndex}，供混合检索使用。
+ * <p>
+ * 知识按集合（collection 列）划分，每个集合持有独立的向量、元数据和关键词索引。
+ * 带集合名的方法或 {@link #collection(String)} 视图只读写对应集合；
+ * 接口原有方法检索时跨全部集合合并结果，写入时落到 {@link #DEFAULT_COLLECTION}。
+ * 每个集合另有 SimHash 近似重复索引，写入时用于识别改动很小的副本，检索时用于折叠重复结果。
+ * <p>
+ * 向量检索结果经 {@link QueryResultCache} 按查询向量的 LSH 签名缓存，
+ * 每个集合维护一个随 add/remove 递增的版本号，缓存条目版本不符即失效。
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class MysqlEmbeddingStore implements EmbeddingStore<TextSegment> {
 
+    public static final String DEFAULT_COLLECTION = "default";
+    public static final String KNOWLEDGE_COLLECTION = "knowledge";
+    public static final String DDL_COLLECTION = "ddl";
+    public static final String BUSINESS_COLLECTION = "business";
+    /**
+     * 来源文档ID的元数据键，写入时同时落到 source_id 列
+     */
+    public static final String SOURCE_ID_KEY = "source_id";
+
+    private static final int LOAD_BATCH_SIZE = 1000;
+    private static final int FUSION_RRF_K = 60;
+    private static final Pattern COLLECTION_NAME = Pattern.compile("[a-zA-Z0-9_-]{1,64}");
+    private static final Pattern WHITESPACE = Pattern.compile("[ \\t\\n\\r\\f\\u000B]+");
+    private static final int HASH_QUERY_BATCH_SIZE = 500;
+    /**
+     * 折叠近似重复结果时多取的候选倍数，折叠后仍能凑满 maxResults
+     */
+    private static final int COLLAPSE_HEADROOM = 2;
+
     private final KnowledgeEmbeddingMapper knowledgeEmbeddingMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final VectorIndexFactory vectorIndexFactory;
+    private final MysqlVectorSource mysqlVectorSource;
+    private final QueryResultCache queryResultCache;
+    private final TextTokenizer tokenizer = TextTokenizer.withDefaultDictionary();
+    private final Map<String, CollectionIndex> collections = new ConcurrentHashMap<>();
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Object indexLock = new Object();
+    private volatile boolean indexLoaded;
+    /**
+     * 检索负载（累计次数、进行中的请求数），后台索引维护据此让路
+     */
+    private final LongAdder searchCount = new LongAdder();
+    private final AtomicInteger activeSearches = new AtomicInteger();
+
+    /**
+     * 批量写入时每条多行 INSERT 包含的行数
+     */
+    @Value("${vector-store.insert.batch-size:200}")
+    private int insertBatchSize;
+
+    /**
+     * SimHash 指纹汉明距离不超过该值的片段视为近似重复
+     */
+    @Value("${rag.dedup.max-distance:6}")
+    private int nearDuplicateDistance;
+
+    /**
+     * 检索结果中是否折叠近似重复的片段
+     */
+    @Value("${rag.dedup.collapse-results:true}")
+    private boolean collapseNearDuplicates;
 
     /**
      * 添加单个向量（自动生成ID）
@@ -45,7 +137,7 @@ public class MysqlEmbeddingStore implements EmbeddingStore<TextSegment> {
      */
     @Override
     public void add(String id, Embedding embedding) {
-        addInternal(id, embedding, null);
+        addInternal(DEFAULT_COLLECTION, id, embedding, null);
     }
 
     /**
@@ -54,7 +146,7 @@ public class MysqlEmbeddingStore implements EmbeddingStore<TextSegment> {
     @Override
     public String add(Embedding embedding, TextSegment textSegment) {
         String id = UUID.randomUUID().toString();
-        addInternal(id, embedding, textSegment);
+        addInternal(DEFAULT_COLLECTION, id, embedding, textSegment);
         return id;
     }
 
@@ -74,86 +166,136 @@ public class MysqlEmbeddingStore implements EmbeddingStore<TextSegment> {
      */
     @Override
     public List<String> addAll(List<Embedding> embeddings, List<TextSegment> embedded) {
-        List<String> ids = generateIds(embeddings.size());
-        addAll(ids, embeddings, embedded);
-        return ids;
+        return addAll(DEFAULT_COLLECTION, embeddings, embedded);
     }
 
     /**
-     * 批量添加向量、文本段和指定ID（核心实现）
+     * 批量添加向量、文本段和指定ID（写入默认集合）
      */
     @Override
     public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        addAll(DEFAULT_COLLECTION, ids, embeddings, embedded);
+    }
+
+    /**
+     * 批量添加向量和文本段到指定集合（自动生成ID）
+     */
+    public List<String> addAll(String collection, List<Embedding> embeddings, List<TextSegment> embedded) {
+        List<String> ids = generateIds(embeddings.size());
+        addAll(collection, ids, embeddings, embedded);
+        return ids;
+    }
+
+    /**
+     * 批量添加向量、文本段和指定ID到指定集合（核心实现）
+     */
+    public void addAll(String collection, List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+        checkCollectionName(collection);
         if (embeddings == null || embeddings.isEmpty()) {
             return;
         }
 
-        for (int i = 0; i < embeddings.size(); i++) {
-            String id = ids.get(i);
-            Embedding embedding = embeddings.get(i);
-            TextSegment segment = (embedded != null && i < embedded.size()) ? embedded.get(i) : null;
+        // 按批写入：每批一条多行 INSERT、一个事务，提交后再同步到内存索引
+        for (int from = 0; from < embeddings.size(); from += insertBatchSize) {
+            int to = Math.min(from + insertBatchSize, embeddings.size());
+            List<KnowledgeEmbeddingEntity> entities = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                TextSegment segment = (embedded != null && i < embedded.size()) ? embedded.get(i) : null;
+                entities.add(toEntity(collection, ids.get(i), embeddings.get(i), segment));
+            }
+            Set<String> inserted = insertSkippingDuplicates(collection, entities);
 
-            addInternal(id, embedding, segment);
+            int offset = from;
+            syncIndex(() -> {
+                CollectionIndex index = collectionIndex(collection);
+                for (int i = offset; i < to; i++) {
+                    if (!inserted.contains(ids.get(i))) {
+                        continue;
+                    }
+                    TextSegment segment = (embedded != null && i < embedded.size()) ? embedded.get(i) : null;
+                    index.add(ids.get(i), embeddings.get(i).vector(),
+                            segment != null ? segment.metadata().toMap() : Map.of(),
+                            segment != null ? segment.text() : "");
+                }
+            });
         }
 
-        log.info("批量添加 {} 个向量到 MySQL", ids.size());
+        log.info("批量添加 {} 个向量到集合 {}（每批 {} 条）", ids.size(), collection, insertBatchSize);
     }
 
     /**
-     * 核心搜索方法（最新接口要求）
+     * 核心搜索方法（最新接口要求），跨全部集合检索后合并
+     * 在内存索引中完成相似度计算，只回表读取命中结果的文本和元数据
      */
     @Override
     public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
-        log.info("开始向量检索: maxResults={}, minScore={}",
-                request.maxResults(), request.minScore());
+        ensureIndexLoaded();
+        return searchCached(null, request);
+    }
 
-        // 查询所有向量
-        List<KnowledgeEmbeddingEntity> allEntities = knowledgeEmbeddingMapper.selectList(null);
-        log.info("据库中共有 {} 个向量", allEntities.size());
+    /**
+     * 只在指定集合内检索
+     */
+    public EmbeddingSearchResult<TextSegment> search(String collection, EmbeddingSearchRequest request) {
+        checkCollectionName(collection);
+        ensureIndexLoaded();
+        return searchCached(collection, request);
+    }
 
-        if (allEntities.isEmpty()) {
-            log.warn("向量库为空，请先添加知识");
-            return new EmbeddingSearchResult<>(Collections.emptyList());
+    /**
+     * 多查询批量检索：所有查询向量在一次索引扫描中完成打分，返回每个查询各自的 top-K
+     * 以及按倒数排名融合后的去重结果。collection 为 null 时跨全部集合
+     */
+    public BatchSearchResult searchBatch(String collection, List<Embedding> queries,
+                                         int maxResults, double minScore, Filter filter) {
+        ensureIndexLoaded();
+        if (queries.isEmpty()) {
+            return new BatchSearchResult(List.of(), List.of());
         }
+        beginSearch();
+        try {
+            return searchBatchInternal(collection, queries, maxResults, minScore, filter);
+        } finally {
+            activeSearches.decrementAndGet();
+        }
+    }
 
-        // 计算相似度
-        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>();
-        Embedding queryEmbedding = request.queryEmbedding();
-        List<Float> queryVector = queryEmbedding.vectorAsList();
-        double minScore = request.minScore();
+    private BatchSearchResult searchBatchInternal(String collection, List<Embedding> queries,
+                                                  int maxResults, double minScore, Filter filter) {
+        long start = System.nanoTime();
+        // 版本号先于检索读取，检索期间发生的写入会让本次写入的缓存条目直接过期
+        String scope = cacheScope(collection);
+        String params = searchParams(maxResults, minScore, filter);
+        long version = version(collection);
+        List<CollectionIndex> targets = targets(collection);
 
-        for (KnowledgeEmbeddingEntity entity : allEntities) {
-            try {
-                List<Float> storedVector = jsonToVector(entity.getEmbeddingVector());
-                double similarity = cosineSimilarity(queryVector, storedVector);
-
-                // 应用最小分数过滤
-                if (similarity >= minScore) {
-                    TextSegment segment = TextSegment.from(
-                            entity.getContent(),
-                            jsonToMetadata(entity.getMetadataJson())
-                    );
-
-                    matches.add(new EmbeddingMatch<>(
-                            similarity,
-                            entity.getEmbeddingId(),
-                            Embedding.from(storedVector),
-                            segment
-                    ));
-                }
-            } catch (Exception e) {
-                log.error("处理向量失败: id={}", entity.getEmbeddingId(), e);
+        // 已缓存的查询直接复用，其余查询在一次扫描中完成
+        List<List<ScoredId>> hits = new ArrayList<>(queries.size());
+        List<Integer> missed = new ArrayList<>();
+        for (Embedding query : queries) {
+            List<ScoredId> cached = queryResultCache.getByEmbedding(scope, query.vector(), params, version);
+            if (cached == null) {
+                missed.add(hits.size());
             }
+            hits.add(cached);
         }
-
-        // 排序并限制结果数量
-        matches.sort((a, b) -> Double.compare(b.score(), a.score()));
-        List<EmbeddingMatch<TextSegment>> result = matches.stream()
-                .limit(request.maxResults())
-                .collect(Collectors.toList());
-
-        log.info(" 检索完成，返回 {} 个结果", result.size());
-        return new EmbeddingSearchResult<>(result);
+        if (!missed.isEmpty()) {
+            float[][] vectors = new float[missed.size()][];
+            for (int m = 0; m < vectors.length; m++) {
+                vectors[m] = queries.get(missed.get(m)).vector();
+            }
+            List<List<ScoredId>> scored = scoreHits(targets, vectors, maxResults, minScore, filter);
+            for (int m = 0; m < vectors.length; m++) {
+                hits.set(missed.get(m), scored.get(m));
+                queryResultCache.putByEmbedding(scope, vectors[m], params, version, scored.get(m));
+            }
+        }
+        List<List<EmbeddingMatch<TextSegment>>> perQuery = toMatches(targets, hits);
+        List<EmbeddingMatch<TextSegment>> fused =
+                collapseNearDuplicates(fuse(perQuery), EmbeddingMatch::embeddingId, Integer.MAX_VALUE);
+        log.info("批量检索完成: queries={}, 缓存命中 {} 个, 去重结果 {} 个, 耗时 {} ms",
+                queries.size(), queries.size() - missed.size(), fused.size(), (System.nanoTime() - start) / 1_000_000);
+        return new BatchSearchResult(perQuery, fused);
     }
 
     /**
@@ -165,6 +307,7 @@ public class MysqlEmbeddingStore implements EmbeddingStore<TextSegment> {
         wrapper.eq(KnowledgeEmbeddingEntity::getEmbeddingId, id);
 
         int deleted = knowledgeEmbeddingMapper.delete(wrapper);
+        syncIndex(() -> collections.values().forEach(index -> index.remove(id)));
         log.info("删除向量: id={}, deleted={}", id, deleted);
     }
 
@@ -181,6 +324,7 @@ public class MysqlEmbeddingStore implements EmbeddingStore<TextSegment> {
         wrapper.in(KnowledgeEmbeddingEntity::getEmbeddingId, ids);
 
         int deleted = knowledgeEmbeddingMapper.delete(wrapper);
+        syncIndex(() -> collections.values().forEach(index -> ids.forEach(index::remove)));
         log.info("批量删除向量: count={}, deleted={}", ids.size(), deleted);
     }
 
@@ -190,77 +334,791 @@ public class MysqlEmbeddingStore implements EmbeddingStore<TextSegment> {
     @Override
     public void removeAll() {
         knowledgeEmbeddingMapper.delete(null);
+        syncIndex(() -> collections.values().forEach(CollectionIndex::clear));
         log.info("已清空所有向量数据");
     }
 
-    // ==================== 私有辅助方法 ====================
+    /**
+     * 按元数据条件删除向量
+     */
+    @Override
+    public void removeAll(Filter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("删除条件不能为空");
+        }
+        ensureIndexLoaded();
+        Set<String> ids = new HashSet<>();
+        collections.values().forEach(index -> ids.addAll(index.metadataIndex.resolve(filter)));
+        removeAll(ids);
+    }
 
     /**
-     * 内部添加方法
+     * 删除指定集合内的向量，不属于该集合的ID忽略
      */
-    private void addInternal(String id, Embedding embedding, TextSegment textSegment) {
-        KnowledgeEmbeddingEntity entity = new KnowledgeEmbeddingEntity();
-        entity.setEmbeddingId(id);
-        entity.setContent(textSegment != null ? textSegment.text() : "");
-        entity.setEmbeddingVector(vectorToJson(embedding.vectorAsList()));
-        entity.setMetadataJson(metadataToJson(textSegment));
-        entity.setCreatedTime(LocalDateTime.now());
+    public void removeAll(String collection, Collection<String> ids) {
+        checkCollectionName(collection);
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
 
-        knowledgeEmbeddingMapper.insert(entity);
-        log.debug("添加向量: id={}, content length={}", id, entity.getContent().length());
+        LambdaQueryWrapper<KnowledgeEmbeddingEntity> wrapper = Wrappers.lambdaQuery();
+        wrapper.eq(KnowledgeEmbeddingEntity::getCollection, collection)
+                .in(KnowledgeEmbeddingEntity::getEmbeddingId, ids);
+
+        int deleted = knowledgeEmbeddingMapper.delete(wrapper);
+        syncIndex(() -> {
+            CollectionIndex index = collections.get(collection);
+            if (index != null) {
+                ids.forEach(index::remove);
+            }
+        });
+        log.info("删除集合 {} 内向量: count={}, deleted={}", collection, ids.size(), deleted);
+    }
+
+    /**
+     * 清空指定集合
+     */
+    public void removeCollection(String collection) {
+        checkCollectionName(collection);
+        LambdaQueryWrapper<KnowledgeEmbeddingEntity> wrapper = Wrappers.lambdaQuery();
+        wrapper.eq(KnowledgeEmbeddingEntity::getCollection, collection);
+
+        int deleted = knowledgeEmbeddingMapper.delete(wrapper);
+        syncIndex(() -> {
+            CollectionIndex index = collections.get(collection);
+            if (index != null) {
+                index.clear();
+            }
+        });
+        log.info("已清空集合 {}: deleted={}", collection, deleted);
     }
 
     /**
-     * 计算余弦相似度
+     * 指定集合的 {@link EmbeddingStore} 视图，读写都限定在该集合内
      */
-    private double cosineSimilarity(List<Float> vector1, List<Float> vector2) {
-        if (vector1.size() != vector2.size()) {
-            throw new IllegalArgumentException(
-                    String.format("向量维度不匹配: %d vs %d", vector1.size(), vector2.size())
-            );
+    public EmbeddingStore<TextSegment> collection(String collection) {
+        checkCollectionName(collection);
+        return new CollectionStore(collection);
+    }
+
+    /**
+     * 各集合的向量数量（不含空集合）
+     */
+    public Map<String, Integer> collectionSizes() {
+        ensureIndexLoaded();
+        Map<String, Integer> sizes = new TreeMap<>();
+        collections.forEach((name, index) -> {
+            int size = index.vectorIndex.size();
+            if (size > 0) {
+                sizes.put(name, size);
+            }
+        });
+        return sizes;
+    }
+
+    /**
+     * 集合版本号，每次写入或删除后递增，用作检索结果缓存的失效依据。
+     * collection 为 null 时返回全部集合版本号之和（集合只增不减，和同样单调递增）
+     */
+    public long version(String collection) {
+        if (collection == null) {
+            return collections.values().stream().mapToLong(index -> index.version.get()).sum();
         }
+        CollectionIndex index = collections.get(collection);
+        return index != null ? index.version.get() : 0L;
+    }
+
+    /**
+     * 检索结果缓存，供上层按查询文本缓存最终结果
+     */
+    public QueryResultCache queryResultCache() {
+        return queryResultCache;
+    }
 
-        double dotProduct = 0.0;
-        double norm1 = 0.0;
-        double norm2 = 0.0;
+    /**
+     * BM25 关键词检索（跨全部集合），返回 (ID, BM25 分数)，按分数降序
+     */
+    public List<ScoredId> keywordSearch(String query, int maxResults, Filter filter) {
+        return keywordSearch(null, query, maxResults, filter);
+    }
 
-        for (int i = 0; i < vector1.size(); i++) {
-            double v1 = vector1.get(i);
-            double v2 = vector2.get(i);
+    /**
+     * BM25 关键词检索，collection 为 null 时跨全部集合。
+     * 各集合的 IDF 独立统计，跨集合合并时分数只作近似排序
+     */
+    public List<ScoredId> keywordSearch(String collection, String query, int maxResults, Filter filter) {
+        ensureIndexLoaded();
+        beginSearch();
+        try {
+            List<CollectionIndex> targets = targets(collection);
+            List<ScoredId> hits = new ArrayList<>();
+            for (CollectionIndex index : targets) {
+                Set<String> candidateIds = filter != null ? index.metadataIndex.resolve(filter) : null;
+                if (candidateIds != null && candidateIds.isEmpty()) {
+                    continue;
+                }
+                hits.addAll(index.keywordIndex.search(query, maxResults, candidateIds));
+            }
+            return targets.size() > 1 ? topScored(hits, maxResults) : hits;
+        } finally {
+            activeSearches.decrementAndGet();
+        }
+    }
 
-            dotProduct += v1 * v2;
-            norm1 += v1 * v1;
-            norm2 += v2 * v2;
+    /**
+     * 指定集合中普通写入的片段已有的内容哈希（hashes 的子集）。
+     * 来源文档的片段不参与复用：来源同步或删除时会删掉它们，复用后普通写入的内容会随之丢失
+     */
+    public Set<String> existingContentHashes(String collection, Collection<String> hashes) {
+        checkCollectionName(collection);
+        Set<String> existing = new HashSet<>();
+        List<String> pending = new ArrayList<>(hashes);
+        for (int from = 0; from < pending.size(); from += HASH_QUERY_BATCH_SIZE) {
+            List<String> batch = pending.subList(from, Math.min(from + HASH_QUERY_BATCH_SIZE, pending.size()));
+            LambdaQueryWrapper<KnowledgeEmbeddingEntity> wrapper = Wrappers.lambdaQuery();
+            wrapper.select(KnowledgeEmbeddingEntity::getContentHash)
+                    .eq(KnowledgeEmbeddingEntity::getCollection, collection)
+                    .isNull(KnowledgeEmbeddingEntity::getSourceId)
+                    .in(KnowledgeEmbeddingEntity::getContentHash, batch);
+            knowledgeEmbeddingMapper.selectList(wrapper).forEach(entity -> existing.add(entity.getContentHash()));
         }
+        return existing;
+    }
 
-        if (norm1 == 0.0 || norm2 == 0.0) {
-            return 0.0;
+    /**
+     * 来源文档当前已入库的片段：内容哈希 → 向量ID（同一内容存在多行时全部列出）
+     */
+    public Map<String, List<String>> sourceChunks(String collection, String sourceId) {
+        checkCollectionName(collection);
+        LambdaQueryWrapper<KnowledgeEmbeddingEntity> wrapper = Wrappers.lambdaQuery();
+        wrapper.select(KnowledgeEmbeddingEntity::getEmbeddingId, KnowledgeEmbeddingEntity::getContentHash)
+                .eq(KnowledgeEmbeddingEntity::getCollection, collection)
+                .eq(KnowledgeEmbeddingEntity::getSourceId, sourceId)
+                .orderByAsc(KnowledgeEmbeddingEntity::getId);
+        Map<String, List<String>> chunks = new LinkedHashMap<>();
+        for (KnowledgeEmbeddingEntity entity : knowledgeEmbeddingMapper.selectList(wrapper)) {
+            chunks.computeIfAbsent(entity.getContentHash(), hash -> new ArrayList<>()).add(entity.getEmbeddingId());
         }
+        return chunks;
+    }
+
+    /**
+     * 来源文档已入库的版本，没有片段或未记录版本时返回 null
+     */
+    public String sourceVersion(String collection, String sourceId) {
+        checkCollectionName(collection);
+        LambdaQueryWrapper<KnowledgeEmbeddingEntity> wrapper = Wrappers.lambdaQuery();
+        wrapper.select(KnowledgeEmbeddingEntity::getSourceVersion)
+                .eq(KnowledgeEmbeddingEntity::getCollection, collection)
+                .eq(KnowledgeEmbeddingEntity::getSourceId, sourceId)
+                .last("LIMIT 1");
+        KnowledgeEmbeddingEntity entity = knowledgeEmbeddingMapper.selectOne(wrapper);
+        return entity != null ? entity.getSourceVersion() : null;
+    }
 
-        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
+    /**
+     * 把来源文档的全部片段标记为指定版本（保留的旧片段与新写入的片段版本一致）
+     */
+    public void updateSourceVersion(String collection, String sourceId, String version) {
+        checkCollectionName(collection);
+        LambdaUpdateWrapper<KnowledgeEmbeddingEntity> wrapper = Wrappers.lambdaUpdate();
+        wrapper.set(KnowledgeEmbeddingEntity::getSourceVersion, version)
+                .eq(KnowledgeEmbeddingEntity::getCollection, collection)
+                .eq(KnowledgeEmbeddingEntity::getSourceId, sourceId);
+        knowledgeEmbeddingMapper.update(null, wrapper);
     }
 
     /**
-     * 向量转 JSON 字符串
+     * 规范化文本（连续空白折叠为一个空格、去掉首尾空格）后的 SHA-256 十六进制串。
+     * 规则与迁移脚本中回填存量数据的 SQL 保持一致
      */
-    private String vectorToJson(List<Float> vector) {
+    public static String contentHash(String text) {
+        String normalized = WHITESPACE.matcher(text).replaceAll(" ");
+        int start = normalized.startsWith(" ") ? 1 : 0;
+        int end = normalized.endsWith(" ") && normalized.length() > start ? normalized.length() - 1 : normalized.length();
         try {
-            return objectMapper.writeValueAsString(vector);
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException("向量序列化失败", e);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(
+                    digest.digest(normalized.substring(start, end).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    /**
+     * 文本的 SimHash 指纹，特征过少时为 {@link SimHash#NONE}
+     */
+    public long fingerprint(String text) {
+        return SimHash.fingerprint(tokenizer, text);
+    }
+
+    /**
+     * 在指定集合的普通写入片段中查找与指纹近似重复的片段，没有时返回 null。
+     * 来源文档的片段会随来源同步或删除消失，不作为 variant_of 的指向目标
+     */
+    public String findNearDuplicate(String collection, long fingerprint) {
+        checkCollectionName(collection);
+        ensureIndexLoaded();
+        CollectionIndex index = collections.get(collection);
+        return index != null
+                ? index.nearDuplicateIndex.findNearest(fingerprint, id -> !index.sourceChunkIds.contains(id))
+                : null;
+    }
+
+    public boolean isNearDuplicate(long a, long b) {
+        return a != SimHash.NONE && b != SimHash.NONE && SimHash.distance(a, b) <= nearDuplicateDistance;
+    }
+
+    /**
+     * 按排名顺序折叠近似重复的结果：与排名更靠前的已保留结果近似重复的条目被跳过，最多保留 limit 条。
+     * 未开启 rag.dedup.collapse-results 时只做截断
+     */
+    public <T> List<T> collapseNearDuplicates(List<T> ranked, Function<T, String> idOf, int limit) {
+        if (!collapseNearDuplicates) {
+            return ranked.size() > limit ? ranked.subList(0, limit) : ranked;
+        }
+        List<T> kept = new ArrayList<>(Math.min(ranked.size(), limit));
+        List<Long> keptFingerprints = new ArrayList<>();
+        for (T item : ranked) {
+            if (kept.size() >= limit) {
+                break;
+            }
+            long fingerprint = fingerprintOf(idOf.apply(item));
+            boolean duplicate = false;
+            for (long keptFingerprint : keptFingerprints) {
+                if (isNearDuplicate(fingerprint, keptFingerprint)) {
+                    duplicate = true;
+                    break;
+                }
+            }
+            if (!duplicate) {
+                kept.add(item);
+                keptFingerprints.add(fingerprint);
+            }
+        }
+        if (kept.size() < ranked.size()) {
+            log.debug("折叠近似重复结果: {} -> {}", ranked.size(), kept.size());
+        }
+        return kept;
+    }
+
+    /**
+     * 按ID批量读取文本段（含元数据），不存在的ID不出现在结果中
+     */
+    public Map<String, TextSegment> loadSegments(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        LambdaQueryWrapper<KnowledgeEmbeddingEntity> wrapper = Wrappers.lambdaQuery();
+        wrapper.select(KnowledgeEmbeddingEntity::getEmbeddingId,
+                        KnowledgeEmbeddingEntity::getContent,
+                        KnowledgeEmbeddingEntity::getMetadataJson)
+                .in(KnowledgeEmbeddingEntity::getEmbeddingId, ids);
+        Map<String, TextSegment> segments = new HashMap<>(ids.size() * 2);
+        for (KnowledgeEmbeddingEntity entity : knowledgeEmbeddingMapper.selectList(wrapper)) {
+            segments.putIfAbsent(entity.getEmbeddingId(),
+                    TextSegment.from(entity.getContent(), jsonToMetadata(entity.getMetadataJson())));
+        }
+        return segments;
+    }
+
+    /**
+     * 集合内全部文本段（含元数据），按写入顺序返回；一次读出整个集合，只用于 DDL 这类小集合
+     */
+    public Map<String, TextSegment> collectionSegments(String collection) {
+        checkCollectionName(collection);
+        LambdaQueryWrapper<KnowledgeEmbeddingEntity> wrapper = Wrappers.lambdaQuery();
+        wrapper.select(KnowledgeEmbeddingEntity::getEmbeddingId,
+                        KnowledgeEmbeddingEntity::getContent,
+                        KnowledgeEmbeddingEntity::getMetadataJson)
+                .eq(KnowledgeEmbeddingEntity::getCollection, collection)
+                .orderByAsc(KnowledgeEmbeddingEntity::getId);
+        Map<String, TextSegment> segments = new LinkedHashMap<>();
+        for (KnowledgeEmbeddingEntity entity : knowledgeEmbeddingMapper.selectList(wrapper)) {
+            segments.putIfAbsent(entity.getEmbeddingId(),
+                    TextSegment.from(entity.getContent(), jsonToMetadata(entity.getMetadataJson())));
+        }
+        return segments;
+    }
+
+    // ==================== 内存索引 ====================
+
+    /**
+     * 启动后在后台预热索引，避免首个检索请求承担加载耗时
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpIndex() {
+        Thread loader = new Thread(() -> {
+            try {
+                ensureIndexLoaded();
+            } catch (Exception e) {
+                log.warn("向量索引预热失败，将在首次检索时重试: {}", e.getMessage());
+            }
+        }, "vector-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * 关闭持有文件句柄或后台线程的索引（mmap 段文件、快照 + WAL）
+     */
+    @PreDestroy
+    public void closeIndexes() {
+        synchronized (indexLock) {
+            for (CollectionIndex index : collections.values()) {
+                if (index.vectorIndex instanceof AutoCloseable closeable) {
+                    try {
+                        closeable.close();
+                    } catch (Exception e) {
+                        log.warn("关闭集合 {} 的向量索引失败", index.name, e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 索引统计信息（按集合）
+     */
+    public Map<String, Object> indexStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("loaded", indexLoaded);
+        Map<String, Object> perCollection = new TreeMap<>();
+        collections.forEach((name, index) -> {
+            Map<String, Object> collectionStats = new LinkedHashMap<>(index.vectorIndex.stats());
+            collectionStats.put("metadata", index.metadataIndex.stats());
+            collectionStats.put("keyword", index.keywordIndex.stats());
+            collectionStats.put("near_duplicate", index.nearDuplicateIndex.stats());
+            perCollection.put(name, collectionStats);
+        });
+        stats.put("collections", perCollection);
+        stats.put("query_cache", queryResultCache.stats());
+        return stats;
+    }
+
+    // ==================== 后台维护 ====================
+
+    /**
+     * 向量索引积累了退化、需要后台维护的集合（索引尚未加载时为空）
+     */
+    public List<String> collectionsNeedingMaintenance() {
+        if (!indexLoaded) {
+            return List.of();
+        }
+        List<String> names = new ArrayList<>();
+        collections.forEach((name, index) -> {
+            if (index.vectorIndex.needsMaintenance()) {
+                names.add(name);
+            }
+        });
+        return names;
+    }
+
+    /**
+     * 对集合的向量索引执行一步维护，返回是否还有剩余工作。
+     * 维护完成时递增集合版本号（重建后的近似检索结果可能略有不同），缓存的旧结果随之失效
+     */
+    public boolean maintenanceStep(String collection) {
+        CollectionIndex index = collections.get(collection);
+        if (index == null) {
+            return false;
+        }
+        boolean more = index.vectorIndex.maintenanceStep();
+        if (!more) {
+            index.version.incrementAndGet();
         }
+        return more;
     }
 
     /**
-     * JSON 字符串转向量
+     * 累计检索次数（向量、批量、关键词）
      */
-    private List<Float> jsonToVector(String json) {
+    public long searchCount() {
+        return searchCount.sum();
+    }
+
+    /**
+     * 正在进行的检索请求数
+     */
+    public int activeSearches() {
+        return activeSearches.get();
+    }
+
+    /**
+     * 确保索引已从 MySQL 加载（只加载一次）
+     */
+    private void ensureIndexLoaded() {
+        if (indexLoaded) {
+            return;
+        }
+        synchronized (indexLock) {
+            if (indexLoaded) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            // 持久化索引保留已有向量，只补齐缺失的、清理多余的；其余索引清空后全量加载。
+            // 先按已有集合建好索引，扫描时各行按所属集合路由
+            Map<String, Set<String>> orphanIds = new HashMap<>();
+            knowledgeEmbeddingMapper.selectCollections()
+                    .forEach(name -> collections.computeIfAbsent(collectionName(name), this::newCollection));
+            collections.values().forEach(index -> orphanIds.put(index.name, index.prepareForLoad()));
+
+            // 索引类型对所有集合一致，全部为持久化索引时不读取向量列，缺失的向量再单独补齐
+            boolean persistent = !collections.isEmpty()
+                    && collections.values().stream().allMatch(index -> index.vectorIndex.persistent());
+
+            int fetched = 0;
+            long lastId = 0;
+            while (true) {
+                LambdaQueryWrapper<KnowledgeEmbeddingEntity> wrapper = Wrappers.lambdaQuery();
+                if (persistent) {
+                    wrapper.select(KnowledgeEmbeddingEntity::getId,
+                            KnowledgeEmbeddingEntity::getEmbeddingId,
+                            KnowledgeEmbeddingEntity::getCollection,
+                            KnowledgeEmbeddingEntity::getContent,
+                            KnowledgeEmbeddingEntity::getMetadataJson);
+                } else {
+                    wrapper.select(KnowledgeEmbeddingEntity::getId,
+                            KnowledgeEmbeddingEntity::getEmbeddingId,
+                            KnowledgeEmbeddingEntity::getCollection,
+                            KnowledgeEmbeddingEntity::getEmbeddingBlob,
+                            KnowledgeEmbeddingEntity::getEmbeddingVector,
+                            KnowledgeEmbeddingEntity::getContent,
+                            KnowledgeEmbeddingEntity::getMetadataJson);
+                }
+                wrapper.gt(KnowledgeEmbeddingEntity::getId, lastId)
+                        .orderByAsc(KnowledgeEmbeddingEntity::getId)
+                        .last("LIMIT " + LOAD_BATCH_SIZE);
+                List<KnowledgeEmbeddingEntity> batch = knowledgeEmbeddingMapper.selectList(wrapper);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                Map<CollectionIndex, List<String>> missingIds = new HashMap<>();
+                for (KnowledgeEmbeddingEntity entity : batch) {
+                    try {
+                        CollectionIndex index = collections.computeIfAbsent(
+                                collectionName(entity.getCollection()), this::newCollection);
+                        Set<String> orphans = orphanIds.computeIfAbsent(index.name, name -> index.prepareForLoad());
+                        if (!persistent) {
+                            index.vectorIndex.add(entity.getEmbeddingId(), MysqlVectorSource.decodeVector(entity));
+                        } else if (!orphans.remove(entity.getEmbeddingId())) {
+                            missingIds.computeIfAbsent(index, key -> new ArrayList<>()).add(entity.getEmbeddingId());
+                        }
+                        index.addRow(entity.getEmbeddingId(), jsonToMetadata(entity.getMetadataJson()).toMap(),
+                                entity.getContent());
+                    } catch (Exception e) {
+                        log.error("加载向量失败: id={}", entity.getEmbeddingId(), e);
+                    }
+                }
+                for (Map.Entry<CollectionIndex, List<String>> entry : missingIds.entrySet()) {
+                    mysqlVectorSource.fetch(entry.getValue()).forEach(entry.getKey().vectorIndex::add);
+                    fetched += entry.getValue().size();
+                }
+                lastId = batch.get(batch.size() - 1).getId();
+            }
+            // MySQL 中已不存在的向量
+            int removed = 0;
+            for (Map.Entry<String, Set<String>> entry : orphanIds.entrySet()) {
+                entry.getValue().forEach(collections.get(entry.getKey()).vectorIndex::remove);
+                removed += entry.getValue().size();
+            }
+
+            indexLoaded = true;
+            log.info("向量索引加载完成: collections={}, 从 MySQL 补齐 {} 条, 清理 {} 条, 耗时 {} ms",
+                    collectionSizes(), fetched, removed, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * 将写操作同步到索引。索引尚未加载时跳过（加载时会从 MySQL 读到最新数据），
+     * 与加载过程互斥，避免加载期间的写入丢失。
+     */
+    private void syncIndex(Runnable mutation) {
+        synchronized (indexLock) {
+            if (indexLoaded) {
+                mutation.run();
+            }
+        }
+    }
+
+    /**
+     * 获取集合索引，不存在时创建。加载完成后才出现的集合在 MySQL 中没有存量数据，
+     * 本地残留的持久化向量直接清空
+     */
+    private CollectionIndex collectionIndex(String collection) {
+        return collections.computeIfAbsent(collection, name -> {
+            CollectionIndex index = newCollection(name);
+            if (!index.vectorIndex.persistedIds().isEmpty()) {
+                index.vectorIndex.clear();
+            }
+            return index;
+        });
+    }
+
+    private CollectionIndex newCollection(String collection) {
+        log.info("创建集合索引: {}", collection);
+        return new CollectionIndex(collection, vectorIndexFactory.create(collection), tokenizer, nearDuplicateDistance);
+    }
+
+    /**
+     * 检索目标集合，collection 为 null 表示全部
+     */
+    private List<CollectionIndex> targets(String collection) {
+        if (collection == null) {
+            return new ArrayList<>(collections.values());
+        }
+        checkCollectionName(collection);
+        CollectionIndex index = collections.get(collection);
+        return index != null ? List.of(index) : List.of();
+    }
+
+    /**
+     * 单查询检索，先按查询向量查缓存，未命中时扫描索引并写回缓存；collection 为 null 时跨全部集合。
+     * 开启 rag.dedup.collapse-results 时多取候选、折叠近似重复后再截断到 maxResults，缓存的是折叠后的结果
+     */
+    private EmbeddingSearchResult<TextSegment> searchCached(String collection, EmbeddingSearchRequest request) {
+        beginSearch();
         try {
-            return objectMapper.readValue(json, new TypeReference<List<Float>>() {
-            });
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException("向量反序列化失败: " + json, e);
+            return searchCachedInternal(collection, request);
+        } finally {
+            activeSearches.decrementAndGet();
+        }
+    }
+
+    private EmbeddingSearchResult<TextSegment> searchCachedInternal(String collection, EmbeddingSearchRequest request) {
+        float[] query = request.queryEmbedding().vector();
+        String scope = cacheScope(collection);
+        String params = searchParams(request.maxResults(), request.minScore(), request.filter());
+        long version = version(collection);
+        List<CollectionIndex> targets = targets(collection);
+
+        List<ScoredId> hits = queryResultCache.getByEmbedding(scope, query, params, version);
+        boolean cached = hits != null;
+        if (!cached) {
+            int candidates = collapseNearDuplicates
+                    ? (int) Math.min(Integer.MAX_VALUE, (long) request.maxResults() * COLLAPSE_HEADROOM)
+                    : request.maxResults();
+            hits = collapseNearDuplicates(scoreHits(targets, new float[][]{query},
+                    candidates, request.minScore(), request.filter()).get(0), ScoredId::getId, request.maxResults());
+            queryResultCache.putByEmbedding(scope, query, params, version, hits);
+        }
+        List<EmbeddingMatch<TextSegment>> result = toMatches(targets, List.of(hits)).get(0);
+        log.info("向量检索完成: collection={}, maxResults={}, minScore={}, 缓存命中={}, 返回 {} 个结果",
+                scope, request.maxResults(), request.minScore(), cached, result.size());
+        return new EmbeddingSearchResult<>(result);
+    }
+
+    /**
+     * 批量打分：每个集合一次扫描给所有查询打分，多个集合的结果按分数合并取前 K
+     */
+    private List<List<ScoredId>> scoreHits(List<CollectionIndex> targets, float[][] queries,
+                                           int maxResults, double minScore, Filter filter) {
+        List<List<ScoredId>> hits = new ArrayList<>(queries.length);
+        for (int q = 0; q < queries.length; q++) {
+            hits.add(new ArrayList<>());
+        }
+        for (CollectionIndex index : targets) {
+            if (index.vectorIndex.size() == 0) {
+                continue;
+            }
+            // 元数据过滤下推：先由倒排索引得到候选集，向量扫描只覆盖候选
+            Set<String> candidateIds = null;
+            if (filter != null) {
+                candidateIds = index.metadataIndex.resolve(filter);
+                log.info("集合 {} 元数据过滤候选数: {}", index.name, candidateIds.size());
+                if (candidateIds.isEmpty()) {
+                    continue;
+                }
+            }
+            List<List<ScoredId>> collectionHits = index.vectorIndex.searchBatch(queries, maxResults, minScore, candidateIds);
+            for (int q = 0; q < queries.length; q++) {
+                hits.get(q).addAll(collectionHits.get(q));
+            }
+        }
+        if (targets.size() > 1) {
+            hits.replaceAll(queryHits -> topScored(queryHits, maxResults));
+        }
+        return hits;
+    }
+
+    /**
+     * 命中结果回表读取文本和元数据（多个查询命中同一条时只读一次）。
+     * 检索时已带回全精度向量的命中（量化索引精排）直接复用，其余向量从目标集合的索引中读取
+     */
+    private List<List<EmbeddingMatch<TextSegment>>> toMatches(List<CollectionIndex> targets, List<List<ScoredId>> hits) {
+        Set<String> hitIds = new HashSet<>();
+        Map<String, float[]> vectorById = new HashMap<>();
+        for (List<ScoredId> queryHits : hits) {
+            for (ScoredId hit : queryHits) {
+                hitIds.add(hit.getId());
+                if (hit.getVector() != null) {
+                    vectorById.put(hit.getId(), hit.getVector());
+                }
+            }
+        }
+        if (hitIds.isEmpty()) {
+            return Collections.nCopies(hits.size(), List.of());
+        }
+        Map<String, TextSegment> segmentById = loadSegments(hitIds);
+        Set<String> pending = new HashSet<>(hitIds);
+        pending.removeAll(vectorById.keySet());
+        for (CollectionIndex index : targets) {
+            if (pending.isEmpty()) {
+                break;
+            }
+            Map<String, float[]> vectors = index.vectorIndex.getAll(pending);
+            vectorById.putAll(vectors);
+            pending.removeAll(vectors.keySet());
+        }
+
+        List<List<EmbeddingMatch<TextSegment>>> results = new ArrayList<>(hits.size());
+        for (List<ScoredId> queryHits : hits) {
+            List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(queryHits.size());
+            for (ScoredId hit : queryHits) {
+                TextSegment segment = segmentById.get(hit.getId());
+                float[] vector = vectorById.get(hit.getId());
+                if (segment == null || vector == null) {
+                    // 检索与删除并发时可能出现，直接跳过
+                    continue;
+                }
+                matches.add(new EmbeddingMatch<>(hit.getScore(), hit.getId(), Embedding.from(vector), segment));
+            }
+            results.add(matches);
+        }
+        return results;
+    }
+
+    /**
+     * 倒数排名融合：score(d) = Σ 1 / (rrfK + rank(d))，被多个查询命中的结果排在前面。
+     * 融合结果中每条保留各查询里的最高相似度
+     */
+    private static List<EmbeddingMatch<TextSegment>> fuse(List<List<EmbeddingMatch<TextSegment>>> perQuery) {
+        Map<String, Double> fusedScores = new HashMap<>();
+        Map<String, EmbeddingMatch<TextSegment>> bestMatch = new HashMap<>();
+        for (List<EmbeddingMatch<TextSegment>> matches : perQuery) {
+            for (int rank = 0; rank < matches.size(); rank++) {
+                EmbeddingMatch<TextSegment> match = matches.get(rank);
+                fusedScores.merge(match.embeddingId(), 1.0 / (FUSION_RRF_K + rank + 1), Double::sum);
+                bestMatch.merge(match.embeddingId(), match, (a, b) -> a.score() >= b.score() ? a : b);
+            }
+        }
+        return fusedScores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .map(entry -> bestMatch.get(entry.getKey()))
+                .collect(Collectors.toList());
+    }
+
+    private long fingerprintOf(String id) {
+        for (CollectionIndex index : collections.values()) {
+            long fingerprint = index.nearDuplicateIndex.fingerprint(id);
+            if (fingerprint != SimHash.NONE) {
+                return fingerprint;
+            }
+        }
+        return SimHash.NONE;
+    }
+
+    private static List<ScoredId> topScored(List<ScoredId> hits, int maxResults) {
+        return hits.stream()
+                .sorted(Comparator.comparingDouble(ScoredId::getScore).reversed())
+                .limit(maxResults)
+                .collect(Collectors.toList());
+    }
+
+    private void beginSearch() {
+        searchCount.increment();
+        activeSearches.incrementAndGet();
+    }
+
+    private static String cacheScope(String collection) {
+        return collection != null ? collection : "*";
+    }
+
+    /**
+     * 影响检索结果的参数，作为缓存键的一部分
+     */
+    private static String searchParams(int maxResults, double minScore, Filter filter) {
+        return maxResults + "|" + minScore + "|" + filter;
+    }
+
+    private static String collectionName(String collection) {
+        return collection == null || collection.isEmpty() ? DEFAULT_COLLECTION : collection;
+    }
+
+    /**
+     * 校验集合名，非法时抛出 IllegalArgumentException
+     */
+    public static void checkCollectionName(String collection) {
+        if (collection == null || !COLLECTION_NAME.matcher(collection).matches()) {
+            throw new IllegalArgumentException("集合名只能包含字母、数字、下划线和连字符，长度 1-64: " + collection);
+        }
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 内部添加方法
+     */
+    private void addInternal(String collection, String id, Embedding embedding, TextSegment textSegment) {
+        KnowledgeEmbeddingEntity entity = toEntity(collection, id, embedding, textSegment);
+
+        if (insertSkippingDuplicates(collection, List.of(entity)).isEmpty()) {
+            return;
+        }
+        syncIndex(() -> collectionIndex(collection).add(id, embedding.vector(),
+                textSegment != null ? textSegment.metadata().toMap() : Map.of(), entity.getContent()));
+        log.debug("添加向量: id={}, content length={}", id, entity.getContent().length());
+    }
+
+    /**
+     * 写入一批实体，返回实际写入的向量ID。
+     * 去重检查与写入之间没有加锁，并发写入相同内容时后写入的一方触发 (collection, plain_content_hash) 唯一键冲突：
+     * 整批回滚后查出已存在的内容哈希，去掉这些普通片段（以及批内重复的普通片段）再重试；
+     * 冲突不是普通片段的内容哈希引起时（如向量ID重复）原样抛出
+     */
+    private Set<String> insertSkippingDuplicates(String collection, List<KnowledgeEmbeddingEntity> entities) {
+        List<KnowledgeEmbeddingEntity> pending = entities;
+        while (!pending.isEmpty()) {
+            List<KnowledgeEmbeddingEntity> batch = pending;
+            try {
+                transactionTemplate.executeWithoutResult(status -> knowledgeEmbeddingMapper.insertBatch(batch));
+                break;
+            } catch (DuplicateKeyException e) {
+                Set<String> plainHashes = new HashSet<>();
+                batch.stream().filter(entity -> entity.getSourceId() == null)
+                        .forEach(entity -> plainHashes.add(entity.getContentHash()));
+                Set<String> existing = existingContentHashes(collection, plainHashes);
+                Set<String> seen = new HashSet<>();
+                List<KnowledgeEmbeddingEntity> remaining = new ArrayList<>(batch.size());
+                for (KnowledgeEmbeddingEntity entity : batch) {
+                    if (entity.getSourceId() != null
+                            || !existing.contains(entity.getContentHash()) && seen.add(entity.getContentHash())) {
+                        remaining.add(entity);
+                    }
+                }
+                if (remaining.size() == batch.size()) {
+                    throw e;
+                }
+                log.info("相同内容已由并发写入入库，跳过 {} 个片段: collection={}", batch.size() - remaining.size(), collection);
+                pending = remaining;
+            }
         }
+        Set<String> inserted = new HashSet<>(pending.size() * 2);
+        pending.forEach(entity -> inserted.add(entity.getEmbeddingId()));
+        return inserted;
+    }
+
+    private KnowledgeEmbeddingEntity toEntity(String collection, String id, Embedding embedding, TextSegment textSegment) {
+        KnowledgeEmbeddingEntity entity = new KnowledgeEmbeddingEntity();
+        entity.setEmbeddingId(id);
+        entity.setCollection(collection);
+        entity.setContent(textSegment != null ? textSegment.text() : "");
+        entity.setContentHash(contentHash(entity.getContent()));
+        entity.setSourceId(textSegment != null ? textSegment.metadata().getString(SOURCE_ID_KEY) : null);
+        entity.setEmbeddingBlob(VectorCodec.encode(embedding.vector()));
+        entity.setMetadataJson(metadataToJson(textSegment));
+        entity.setCreatedTime(LocalDateTime.now());
+        return entity;
     }
 
     /**
@@ -301,4 +1159,174 @@ public class MysqlEmbeddingStore implements EmbeddingStore<TextSegment> {
     public long count() {
         return knowledgeEmbeddingMapper.selectCount(null);
     }
-}
\ No newline at end of file
+
+    /**
+     * 批量检索结果：与查询一一对应的 top-K，以及融合排序后的去重结果
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static final class BatchSearchResult {
+        private final List<List<EmbeddingMatch<TextSegment>>> perQuery;
+        private final List<EmbeddingMatch<TextSegment>> fused;
+    }
+
+    /**
+     * 单个集合的内存索引：向量、元数据倒排、BM25 倒排、SimHash 近似重复索引
+     */
+    private static final class CollectionIndex {
+        private final String name;
+        private final VectorIndex vectorIndex;
+        private final MetadataIndex metadataIndex = new MetadataIndex();
+        private final TextTokenizer tokenizer;
+        private final KeywordIndex keywordIndex;
+        private final NearDuplicateIndex nearDuplicateIndex;
+        /**
+         * 属于来源文档的片段ID（元数据带 source_id）
+         */
+        private final Set<String> sourceChunkIds = ConcurrentHashMap.newKeySet();
+        /**
+         * 内容版本号，变更完成后递增，检索期间的写入会使当次缓存结果过期
+         */
+        private final AtomicLong version = new AtomicLong();
+
+        private CollectionIndex(String name, VectorIndex vectorIndex, TextTokenizer tokenizer, int nearDuplicateDistance) {
+            this.name = name;
+            this.vectorIndex = vectorIndex;
+            this.tokenizer = tokenizer;
+            this.keywordIndex = new KeywordIndex(tokenizer);
+            this.nearDuplicateIndex = new NearDuplicateIndex(nearDuplicateDistance);
+        }
+
+        private void add(String id, float[] vector, Map<String, Object> metadata, String text) {
+            vectorIndex.add(id, vector);
+            addRow(id, metadata, text);
+            version.incrementAndGet();
+        }
+
+        /**
+         * 向量以外的索引：元数据、BM25、SimHash 指纹与来源片段标记
+         */
+        private void addRow(String id, Map<String, Object> metadata, String text) {
+            metadataIndex.add(id, metadata);
+            keywordIndex.add(id, text);
+            nearDuplicateIndex.add(id, SimHash.fingerprint(tokenizer, text));
+            if (metadata.get(SOURCE_ID_KEY) != null) {
+                sourceChunkIds.add(id);
+            } else {
+                sourceChunkIds.remove(id);
+            }
+        }
+
+        private void remove(String id) {
+            boolean removed = vectorIndex.remove(id);
+            metadataIndex.remove(id);
+            keywordIndex.remove(id);
+            nearDuplicateIndex.remove(id);
+            sourceChunkIds.remove(id);
+            if (removed) {
+                version.incrementAndGet();
+            }
+        }
+
+        private void clear() {
+            vectorIndex.clear();
+            metadataIndex.clear();
+            keywordIndex.clear();
+            nearDuplicateIndex.clear();
+            sourceChunkIds.clear();
+            version.incrementAndGet();
+        }
+
+        /**
+         * 加载前重置索引，返回持久化索引中待对账的ID（非持久化索引为空集）
+         */
+        private Set<String> prepareForLoad() {
+            Set<String> persistedIds = new HashSet<>(vectorIndex.persistedIds());
+            if (!vectorIndex.persistent()) {
+                vectorIndex.clear();
+            }
+            metadataIndex.clear();
+            keywordIndex.clear();
+            nearDuplicateIndex.clear();
+            sourceChunkIds.clear();
+            version.incrementAndGet();
+            return persistedIds;
+        }
+    }
+
+    /**
+     * 限定在单个集合内的存储视图
+     */
+    private final class CollectionStore implements EmbeddingStore<TextSegment> {
+        private final String collection;
+
+        private CollectionStore(String collection) {
+            this.collection = collection;
+        }
+
+        @Override
+        public String add(Embedding embedding) {
+            return add(embedding, null);
+        }
+
+        @Override
+        public void add(String id, Embedding embedding) {
+            addInternal(collection, id, embedding, null);
+        }
+
+        @Override
+        public String add(Embedding embedding, TextSegment textSegment) {
+            String id = UUID.randomUUID().toString();
+            addInternal(collection, id, embedding, textSegment);
+            return id;
+        }
+
+        @Override
+        public List<String> addAll(List<Embedding> embeddings) {
+            return MysqlEmbeddingStore.this.addAll(collection, embeddings,
+                    Collections.nCopies(embeddings.size(), null));
+        }
+
+        @Override
+        public List<String> addAll(List<Embedding> embeddings, List<TextSegment> embedded) {
+            return MysqlEmbeddingStore.this.addAll(collection, embeddings, embedded);
+        }
+
+        @Override
+        public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> embedded) {
+            MysqlEmbeddingStore.this.addAll(collection, ids, embeddings, embedded);
+        }
+
+        @Override
+        public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+            return MysqlEmbeddingStore.this.search(collection, request);
+        }
+
+        @Override
+        public void remove(String id) {
+            MysqlEmbeddingStore.this.removeAll(collection, List.of(id));
+        }
+
+        @Override
+        public void removeAll(Collection<String> ids) {
+            MysqlEmbeddingStore.this.removeAll(collection, ids);
+        }
+
+        @Override
+        public void removeAll() {
+            removeCollection(collection);
+        }
+
+        @Override
+        public void removeAll(Filter filter) {
+            if (filter == null) {
+                throw new IllegalArgumentException("删除条件不能为空");
+            }
+            ensureIndexLoaded();
+            CollectionIndex index = collections.get(collection);
+            if (index != null) {
+                MysqlEmbeddingStore.this.removeAll(collection, index.metadataIndex.resolve(filter));
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.mcp.robot.service.embedding;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.mcp.robot.mapper.EmbeddingCacheMapper;
+import com.mcp.robot.model.EmbeddingCacheEntity;
+import com.mcp.robot.service.MysqlEmbeddingStore;
+import com.mcp.robot.service.vector.VectorCodec;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 带缓存的向量模型：同一模型下规范化文本相同的片段只调用一次远端向量化接口
+ * <p>
+ * 两级缓存：
+ * <ul>
+ *     <li>堆内 LRU：热点查询直接命中，不访问数据库</li>
+ *     <li>embedding_cache 表：按 (模型, 文本哈希) 持久化，重启后和多实例之间共享</li>
+ * </ul>
+ * {@link #embedAll} 支持部分命中，只把未命中的片段（批内去重后）交给被装饰的模型。
+ * 持久层读写失败时退化为只用堆内缓存，并在退避时间内不再访问数据库，避免拖慢检索链路。
+ */
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    /**
+     * 单条 IN 查询 / 多行 INSERT 的文本数上限
+     */
+    private static final int PERSISTENT_BATCH = 500;
+
+    private final EmbeddingModel delegate;
+    private final String modelName;
+    private final Supplier<EmbeddingCacheMapper> mapperSupplier;
+    private final boolean persistent;
+    private final long failureBackoffMillis;
+    private final Cache<String, float[]> memory;
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder persistentHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder modelCalls = new LongAdder();
+    private final LongAdder persistentFailures = new LongAdder();
+    private volatile long persistentDisabledUntil;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, String modelName, Supplier<EmbeddingCacheMapper> mapperSupplier,
+                                 long maxEntries, boolean persistent, long failureBackoffSeconds) {
+        this.delegate = delegate;
+        this.modelName = modelName;
+        this.mapperSupplier = mapperSupplier;
+        this.persistent = persistent;
+        this.failureBackoffMillis = failureBackoffSeconds * 1000;
+        this.memory = CacheBuilder.newBuilder().maximumSize(maxEntries).build();
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+        String[] hashes = new String[segments.size()];
+        Map<String, float[]> found = new HashMap<>();
+        Map<String, TextSegment> missing = new LinkedHashMap<>();
+        for (int i = 0; i < segments.size(); i++) {
+            String hash = MysqlEmbeddingStore.contentHash(segments.get(i).text());
+            hashes[i] = hash;
+            if (found.containsKey(hash) || missing.containsKey(hash)) {
+                continue;
+            }
+            float[] vector = memory.getIfPresent(hash);
+            if (vector != null) {
+                memoryHits.increment();
+                found.put(hash, vector);
+            } else {
+                missing.put(hash, segments.get(i));
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            Map<String, float[]> stored = loadPersistent(List.copyOf(missing.keySet()));
+            stored.forEach((hash, vector) -> {
+                memory.put(hash, vector);
+                found.put(hash, vector);
+                missing.remove(hash);
+            });
+            persistentHits.add(stored.size());
+        }
+
+        Response<List<Embedding>> response = null;
+        if (!missing.isEmpty()) {
+            misses.add(missing.size());
+            modelCalls.increment();
+            List<String> missingHashes = List.copyOf(missing.keySet());
+            response = delegate.embedAll(List.copyOf(missing.values()));
+            List<Embedding> embeddings = response.content();
+            if (embeddings.size() != missingHashes.size()) {
+                throw new IllegalStateException("向量模型返回 " + embeddings.size() + " 个向量，请求了 " + missingHashes.size() + " 个片段");
+            }
+            Map<String, float[]> computed = new LinkedHashMap<>();
+            for (int i = 0; i < missingHashes.size(); i++) {
+                float[] vector = embeddings.get(i).vector().clone();
+                memory.put(missingHashes.get(i), vector);
+                found.put(missingHashes.get(i), vector);
+                computed.put(missingHashes.get(i), vector);
+            }
+            storePersistent(computed);
+        }
+
+        List<Embedding> result = new ArrayList<>(hashes.length);
+        for (String hash : hashes) {
+            // 返回副本，调用方对向量的原地修改（如 normalize）不影响缓存
+            result.add(Embedding.from(found.get(hash).clone()));
+        }
+        return response == null
+                ? Response.from(result)
+                : Response.from(result, response.tokenUsage(), response.finishReason());
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+
+    public Map<String, Object> stats() {
+        long memory = memoryHits.sum();
+        long stored = persistentHits.sum();
+        long total = memory + stored + misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("model", modelName);
+        stats.put("persistent", persistent);
+        stats.put("memory_entries", this.memory.size());
+        stats.put("memory_hits", memory);
+        stats.put("persistent_hits", stored);
+        stats.put("misses", misses.sum());
+        stats.put("hit_rate", total == 0 ? 0.0 : (double) (memory + stored) / total);
+        stats.put("model_calls", modelCalls.sum());
+        stats.put("persistent_failures", persistentFailures.sum());
+        stats.put("persistent_available", persistentAvailable());
+        return stats;
+    }
+
+    // ==================== 持久层 ====================
+
+    private Map<String, float[]> loadPersistent(List<String> hashes) {
+        Map<String, float[]> vectors = new HashMap<>();
+        if (!persistentAvailable()) {
+            return vectors;
+        }
+        try {
+            EmbeddingCacheMapper mapper = mapperSupplier.get();
+            for (List<String> batch : Lists.partition(hashes, PERSISTENT_BATCH)) {
+                for (EmbeddingCacheEntity entity : mapper.selectByHashes(modelName, batch)) {
+                    vectors.put(entity.getTextHash(), VectorCodec.decode(entity.getEmbeddingBlob()));
+                }
+            }
+        } catch (Exception e) {
+            persistentFailed("读取", e);
+        }
+        return vectors;
+    }
+
+    private void storePersistent(Map<String, float[]> vectors) {
+        if (vectors.isEmpty() || !persistentAvailable()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<EmbeddingCacheEntity> entities = new ArrayList<>(vectors.size());
+        vectors.forEach((hash, vector) -> {
+            EmbeddingCacheEntity entity = new EmbeddingCacheEntity();
+            entity.setModelName(modelName);
+            entity.setTextHash(hash);
+            entity.setEmbeddingBlob(VectorCodec.encode(vector));
+            entity.setCreatedTime(now);
+            entities.add(entity);
+        });
+        try {
+            EmbeddingCacheMapper mapper = mapperSupplier.get();
+            for (List<EmbeddingCacheEntity> batch : Lists.partition(entities, PERSISTENT_BATCH)) {
+                mapper.insertIgnoreBatch(batch);
+            }
+        } catch (Exception e) {
+            persistentFailed("写入", e);
+        }
+    }
+
+    private boolean persistentAvailable() {
+        return persistent && System.currentTimeMillis() >= persistentDisabledUntil;
+    }
+
+    private void persistentFailed(String operation, Exception e) {
+        persistentFailures.increment();
+        persistentDisabledUntil = System.currentTimeMillis() + failureBackoffMillis;
+        log.warn("向量缓存持久层{}失败，{} 秒内只使用堆内缓存: {}", operation, failureBackoffMillis / 1000, e.getMessage());
+    }
+}
@@ -0,0 +1,221 @@
+package com.mcp.robot.service.ingestion;
+
+import com.google.common.cache.CacheBuilder;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步入库任务：一次提交的一批文档，记录各阶段进度
+ * <p>
+ * 文档的全部片段写入（或失败）后该文档完成，全部文档完成后任务结束。
+ * 流式上传的任务边读边追加文档（每个读取窗口一个），读完后封口，文档总数此时才确定。
+ */
+@Getter
+public class IngestionJob {
+
+    /**
+     * 保留的错误信息条数
+     */
+    private static final int MAX_ERRORS = 10;
+    /**
+     * 流式任务记住的最近内容哈希数。窗口按读取顺序入库，同时在流水线中的片段
+     * （windows-in-flight × 每窗口片段数）远少于此数，被淘汰的哈希对应的片段早已落库，
+     * 之后的重复片段由 {@link com.mcp.robot.service.KnowledgeIngestionService#prepare} 按库内内容去重
+     */
+    private static final int STREAM_CLAIMED_HASHES = 10_000;
+
+    public enum State {
+        QUEUED, RUNNING, COMPLETED, COMPLETED_WITH_ERRORS, FAILED
+    }
+
+    private final String id;
+    private final String collection;
+    private volatile int documentsTotal;
+    private volatile boolean sealed;
+    private final AtomicLong charactersRead = new AtomicLong();
+    private final LocalDateTime createdTime = LocalDateTime.now();
+    private volatile LocalDateTime startedTime;
+    private volatile LocalDateTime finishedTime;
+
+    private final AtomicInteger documentsSplit = new AtomicInteger();
+    private final AtomicInteger documentsCompleted = new AtomicInteger();
+    private final AtomicInteger documentsFailed = new AtomicInteger();
+    private final AtomicInteger segmentsTotal = new AtomicInteger();
+    private final AtomicInteger segmentsReused = new AtomicInteger();
+    private final AtomicInteger segmentsNearDuplicate = new AtomicInteger();
+    private final AtomicInteger segmentsEmbedded = new AtomicInteger();
+    private final AtomicInteger segmentsStored = new AtomicInteger();
+    private final AtomicInteger segmentsFailed = new AtomicInteger();
+
+    /**
+     * 本任务已认领的内容哈希：不同文档中的相同片段只写入一次。
+     * 批量任务的文档已全部在内存中，不限大小；流式任务只保留最近的哈希，内存与上传长度无关
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<String, Boolean> claimedHashes;
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger documentsFinished = new AtomicInteger();
+    @Getter(AccessLevel.NONE)
+    private final Deque<String> errors = new ArrayDeque<>();
+    @Getter(AccessLevel.NONE)
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    @Getter(AccessLevel.NONE)
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    /**
+     * 文档数已知的任务
+     */
+    IngestionJob(String id, String collection, int documentsTotal) {
+        this(id, collection, new ConcurrentHashMap<>());
+        this.documentsTotal = documentsTotal;
+        seal();
+    }
+
+    /**
+     * 流式任务，文档通过 {@link #addDocument()} 追加，读完后调用 {@link #seal()}
+     */
+    IngestionJob(String id, String collection) {
+        this(id, collection, CacheBuilder.newBuilder()
+                .maximumSize(STREAM_CLAIMED_HASHES)
+                .<String, Boolean>build()
+                .asMap());
+    }
+
+    private IngestionJob(String id, String collection, Map<String, Boolean> claimedHashes) {
+        this.id = id;
+        this.collection = collection;
+        this.claimedHashes = claimedHashes;
+    }
+
+    public State getState() {
+        if (finishedTime != null) {
+            if (documentsFailed.get() == 0) {
+                return State.COMPLETED;
+            }
+            return documentsFailed.get() == documentsTotal ? State.FAILED : State.COMPLETED_WITH_ERRORS;
+        }
+        return startedTime == null ? State.QUEUED : State.RUNNING;
+    }
+
+    /**
+     * 已完成（含失败）的文档占比
+     */
+    public double getProgress() {
+        if (documentsTotal == 0) {
+            return sealed ? 1.0 : 0.0;
+        }
+        return (double) (documentsCompleted.get() + documentsFailed.get()) / documentsTotal;
+    }
+
+    /**
+     * 等待任务结束，超时返回 false
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("job_id", id);
+        map.put("collection", collection);
+        map.put("state", getState());
+        map.put("progress", getProgress());
+        map.put("documents", Map.of(
+                "total", documentsTotal,
+                "sealed", sealed,
+                "split", documentsSplit.get(),
+                "completed", documentsCompleted.get(),
+                "failed", documentsFailed.get()));
+        map.put("segments", Map.of(
+                "total", segmentsTotal.get(),
+                "reused", segmentsReused.get(),
+                "near_duplicates", segmentsNearDuplicate.get(),
+                "embedded", segmentsEmbedded.get(),
+                "stored", segmentsStored.get(),
+                "failed", segmentsFailed.get()));
+        if (charactersRead.get() > 0) {
+            map.put("characters_read", charactersRead.get());
+        }
+        map.put("created_time", createdTime.toString());
+        map.put("started_time", startedTime != null ? startedTime.toString() : "");
+        map.put("finished_time", finishedTime != null ? finishedTime.toString() : "");
+        map.put("errors", errors());
+        return map;
+    }
+
+    // ==================== 流水线回调 ====================
+
+    /**
+     * 认领内容哈希，已被本任务其他文档认领时返回 false
+     */
+    boolean claim(String contentHash) {
+        return claimedHashes.putIfAbsent(contentHash, Boolean.TRUE) == null;
+    }
+
+    void started() {
+        if (startedTime == null) {
+            startedTime = LocalDateTime.now();
+        }
+    }
+
+    /**
+     * 流式任务追加一个文档，只由读取上传内容的线程调用
+     */
+    void addDocument() {
+        documentsTotal++;
+    }
+
+    /**
+     * 文档总数确定，已全部完成时任务随即结束
+     */
+    void seal() {
+        sealed = true;
+        if (documentsFinished.get() == documentsTotal) {
+            finish();
+        }
+    }
+
+    void documentCompleted(boolean failed) {
+        (failed ? documentsFailed : documentsCompleted).incrementAndGet();
+        if (documentsFinished.incrementAndGet() == documentsTotal && sealed) {
+            finish();
+        }
+    }
+
+    void error(String message) {
+        synchronized (errors) {
+            if (errors.size() == MAX_ERRORS) {
+                errors.removeFirst();
+            }
+            errors.addLast(message);
+        }
+    }
+
+    private List<String> errors() {
+        synchronized (errors) {
+            return new ArrayList<>(errors);
+        }
+    }
+
+    private void finish() {
+        if (finished.compareAndSet(false, true)) {
+            finishedTime = LocalDateTime.now();
+            done.countDown();
+        }
+    }
+}
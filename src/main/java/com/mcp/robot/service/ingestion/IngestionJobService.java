@@ -0,0 +1,609 @@
+package com.mcp.robot.service.ingestion;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.mcp.robot.service.KnowledgeIngestionService;
+import com.mcp.robot.service.MysqlEmbeddingStore;
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.exception.RateLimitException;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 异步知识入库流水线
+ * <p>
+ * 提交的文档进入有界队列后立即返回任务ID，由三级工作线程依次处理，各级并发数独立配置：
+ * <ul>
+ *     <li>切分：分段、内容去重和近似重复检测（{@link KnowledgeIngestionService#prepare}）</li>
+ *     <li>向量化：从队列攒批调用 embedAll，队列积压时攒满批量上限，空闲时等待 linger 后即发出</li>
+ *     <li>写入：按集合分组，每批一条多行 INSERT</li>
+ * </ul>
+ * 级间队列同样有界：下游变慢时上游阻塞，最终提交因文档队列已满被拒绝。
+ * 大文件走 {@link #ingestStream}：按窗口边读边入库，流水线跟不上时暂停读取。
+ * 向量化接口限流（429）时所有向量化线程暂停并指数退避，同时把并发调用数减半，连续成功后逐步恢复。
+ * <p>
+ * 任务状态只保存在内存中，重启后丢失；未完成的文档需要重新提交（已写入的片段会按内容哈希复用）。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IngestionJobService {
+
+    private static final long POLL_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+    private static final int MAX_THROTTLE_RETRIES = 20;
+    /**
+     * 与同步入库接口一致的切分参数
+     */
+    private static final int CHUNK_SIZE = 500;
+    private static final int CHUNK_OVERLAP = 50;
+    private static final Runnable NO_CALLBACK = () -> {
+    };
+
+    private final KnowledgeIngestionService knowledgeIngestionService;
+    private final MysqlEmbeddingStore mysqlEmbeddingStore;
+    private final EmbeddingModel embeddingModel;
+
+    /**
+     * 等待切分的文档数上限，超过时拒绝提交
+     */
+    @Value("${rag.ingestion.jobs.queue-capacity:1000}")
+    private int queueCapacity;
+
+    /**
+     * 级间队列（待向量化、待写入）的片段数上限
+     */
+    @Value("${rag.ingestion.jobs.segment-queue-capacity:2000}")
+    private int segmentQueueCapacity;
+
+    @Value("${rag.ingestion.jobs.split-workers:2}")
+    private int splitWorkers;
+
+    @Value("${rag.ingestion.jobs.embed-workers:4}")
+    private int embedWorkers;
+
+    @Value("${rag.ingestion.jobs.store-workers:2}")
+    private int storeWorkers;
+
+    /**
+     * 单次 embedAll 的片段数上限（与同步入库共用）
+     */
+    @Value("${rag.ingestion.embed-batch-size:10}")
+    private int embedBatchSize;
+
+    /**
+     * 队列不足一批时等待更多片段的时间
+     */
+    @Value("${rag.ingestion.jobs.linger-millis:20}")
+    private long lingerMillis;
+
+    /**
+     * 每批写入的片段数，不超过 vector-store.insert.batch-size 保证一批一个事务，失败重试不会重复写入
+     */
+    @Value("${vector-store.insert.batch-size:200}")
+    private int storeBatchSize;
+
+    /**
+     * 非限流错误的重试次数
+     */
+    @Value("${rag.ingestion.jobs.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${rag.ingestion.jobs.throttle-backoff-millis:1000}")
+    private long throttleBackoffMillis;
+
+    /**
+     * 内存中保留的任务数，超过时淘汰最久未访问的任务
+     */
+    @Value("${rag.ingestion.jobs.retention:500}")
+    private int retention;
+
+    /**
+     * 流式入库的读取窗口字符数
+     */
+    @Value("${rag.ingestion.stream.window-chars:65536}")
+    private int streamWindowChars;
+
+    /**
+     * 每个流式上传同时在流水线中的窗口数上限
+     */
+    @Value("${rag.ingestion.stream.windows-in-flight:4}")
+    private int streamWindowsInFlight;
+
+    private final DocumentSplitter splitter = DocumentSplitters.recursive(CHUNK_SIZE, CHUNK_OVERLAP);
+    private final List<Thread> workers = new ArrayList<>();
+
+    private BlockingQueue<DocumentTask> documentQueue;
+    /**
+     * 文档队列的空位：入队前先占位，切分线程取走文档后归还。
+     * 批量提交一次占齐所有空位，流式上传逐个窗口阻塞等待，占到位后入队不会失败
+     */
+    private Semaphore documentSlots;
+    private BlockingQueue<SegmentTask> embedQueue;
+    private BlockingQueue<SegmentTask> storeQueue;
+    private Cache<String, IngestionJob> jobs;
+    private volatile boolean running;
+
+    // 限流退避：暂停截止时间、当前退避时长、允许的并发向量化调用数
+    private final Object embedPermits = new Object();
+    private int embedLimit;
+    private int embedInFlight;
+    private int successesSinceThrottle;
+    private volatile long pausedUntilNanos;
+    private final AtomicLong backoffMillis = new AtomicLong();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder embedCalls = new LongAdder();
+    private final LongAdder embeddedSegments = new LongAdder();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        documentQueue = new ArrayBlockingQueue<>(queueCapacity);
+        documentSlots = new Semaphore(queueCapacity);
+        embedQueue = new ArrayBlockingQueue<>(segmentQueueCapacity);
+        storeQueue = new ArrayBlockingQueue<>(segmentQueueCapacity);
+        jobs = CacheBuilder.newBuilder().maximumSize(retention).build();
+        embedLimit = embedWorkers;
+        backoffMillis.set(throttleBackoffMillis);
+        running = true;
+        startWorkers("split", splitWorkers, this::splitLoop);
+        startWorkers("embed", embedWorkers, this::embedLoop);
+        startWorkers("store", storeWorkers, this::storeLoop);
+        log.info("入库流水线已启动: split={}, embed={}, store={}, queue={}, embedBatch={}",
+                splitWorkers, embedWorkers, storeWorkers, queueCapacity, embedBatchSize);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+    }
+
+    /**
+     * 提交入库任务，文档全部入队或全部不入队：文档队列容纳不下时抛出 RejectedExecutionException
+     */
+    public IngestionJob submit(String collection, List<Document> documents) {
+        MysqlEmbeddingStore.checkCollectionName(collection);
+        if (!running) {
+            throw new RejectedExecutionException("入库流水线未启动");
+        }
+        if (!documentSlots.tryAcquire(documents.size())) {
+            throw new RejectedExecutionException(String.format("入库队列已满：排队 %d 个文档，本次提交 %d 个，上限 %d",
+                    documentQueue.size(), documents.size(), queueCapacity));
+        }
+        IngestionJob job = new IngestionJob(UUID.randomUUID().toString(), collection, documents.size());
+        jobs.put(job.getId(), job);
+        for (Document document : documents) {
+            documentQueue.add(new DocumentTask(job, document, NO_CALLBACK));
+        }
+        log.info("入库任务已提交: job={}, collection={}, documents={}", job.getId(), collection, documents.size());
+        return job;
+    }
+
+    /**
+     * 流式入库：边读边按窗口切分，每个窗口作为一个文档进入流水线，读完后任务封口。
+     * 每个上传同时在流水线中的窗口数有上限，流水线跟不上时暂停读取，调用方的上传随之放慢，
+     * 因此内存占用与上传内容的总长度无关。方法在读完输入后返回，向量化和写入在后台继续。
+     * 读取失败或等待队列时被中断，已入队的窗口继续入库，任务记为出错并照常结束。
+     */
+    public IngestionJob ingestStream(String collection, Reader reader, Metadata metadata)
+            throws IOException, InterruptedException {
+        MysqlEmbeddingStore.checkCollectionName(collection);
+        if (!running) {
+            throw new RejectedExecutionException("入库流水线未启动");
+        }
+        IngestionJob job = new IngestionJob(UUID.randomUUID().toString(), collection);
+        jobs.put(job.getId(), job);
+        log.info("流式入库开始: job={}, collection={}", job.getId(), collection);
+
+        Semaphore inFlight = new Semaphore(streamWindowsInFlight);
+        TextWindowReader windows = new TextWindowReader(reader, streamWindowChars);
+        try {
+            String window;
+            while ((window = windows.next()) != null) {
+                job.getCharactersRead().set(windows.charactersRead());
+                if (window.isBlank()) {
+                    continue;
+                }
+                DocumentTask task = new DocumentTask(job, Document.from(window, metadata.copy()), inFlight::release);
+                inFlight.acquire();
+                documentSlots.acquire();
+                // 占到空位后入队不会失败，此时才计入文档总数
+                job.addDocument();
+                documentQueue.add(task);
+            }
+        } catch (IOException e) {
+            log.warn("读取上传内容失败: job={}", job.getId(), e);
+            abortStream(job, "读取上传内容失败，已读取部分继续入库: " + e.getMessage());
+            throw e;
+        } catch (InterruptedException e) {
+            log.warn("流式入库被中断: job={}", job.getId());
+            abortStream(job, "上传被中断，已读取部分继续入库");
+            throw e;
+        } catch (RuntimeException e) {
+            log.warn("流式入库失败: job={}", job.getId(), e);
+            abortStream(job, "流式入库失败，已读取部分继续入库: " + e.getMessage());
+            throw e;
+        } finally {
+            job.seal();
+        }
+        log.info("流式入库读取完成: job={}, characters={}, windows={}",
+                job.getId(), windows.charactersRead(), job.getDocumentsTotal());
+        return job;
+    }
+
+    public IngestionJob job(String jobId) {
+        return jobs == null ? null : jobs.getIfPresent(jobId);
+    }
+
+    /**
+     * 最近提交的任务，按提交时间倒序
+     */
+    public List<IngestionJob> recentJobs(int limit) {
+        if (jobs == null) {
+            return List.of();
+        }
+        return jobs.asMap().values().stream()
+                .sorted(Comparator.comparing(IngestionJob::getCreatedTime).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * 流水线状态：各级队列积压、向量化并发与限流情况
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running);
+        status.put("queued_documents", documentQueue == null ? 0 : documentQueue.size());
+        status.put("pending_embed", embedQueue == null ? 0 : embedQueue.size());
+        status.put("pending_store", storeQueue == null ? 0 : storeQueue.size());
+        synchronized (embedPermits) {
+            status.put("embed_concurrency", embedLimit);
+            status.put("embed_in_flight", embedInFlight);
+        }
+        status.put("embed_calls", embedCalls.sum());
+        long calls = embedCalls.sum();
+        status.put("avg_embed_batch", calls == 0 ? 0.0 : (double) embeddedSegments.sum() / calls);
+        status.put("throttled", throttled.sum());
+        status.put("paused_ms", Math.max(0, TimeUnit.NANOSECONDS.toMillis(pausedUntilNanos - System.nanoTime())));
+        return status;
+    }
+
+    // ==================== 切分 ====================
+
+    private void splitLoop() throws InterruptedException {
+        while (running) {
+            DocumentTask task = documentQueue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (task == null) {
+                continue;
+            }
+            documentSlots.release();
+            IngestionJob job = task.job;
+            job.started();
+            try {
+                List<TextSegment> segments = splitter.split(task.document);
+                List<TextSegment> claimed = new ArrayList<>(segments.size());
+                for (TextSegment segment : segments) {
+                    if (job.claim(MysqlEmbeddingStore.contentHash(segment.text()))) {
+                        claimed.add(segment);
+                    }
+                }
+                KnowledgeIngestionService.PreparedSegments prepared =
+                        knowledgeIngestionService.prepare(job.getCollection(), claimed);
+                job.getSegmentsTotal().addAndGet(segments.size());
+                job.getSegmentsReused().addAndGet(segments.size() - claimed.size() + prepared.getReused());
+                job.getSegmentsNearDuplicate().addAndGet(prepared.getNearDuplicates());
+                job.getDocumentsSplit().incrementAndGet();
+
+                List<TextSegment> accepted = prepared.getSegments();
+                if (accepted.isEmpty()) {
+                    task.complete(false);
+                    continue;
+                }
+                task.remaining.set(accepted.size());
+                for (int i = 0; i < accepted.size(); i++) {
+                    embedQueue.put(new SegmentTask(task, prepared.getIds().get(i), accepted.get(i)));
+                }
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                log.warn("文档切分失败: job={}", job.getId(), e);
+                job.error("切分失败: " + e.getMessage());
+                task.complete(true);
+            }
+        }
+    }
+
+    // ==================== 向量化 ====================
+
+    private void embedLoop() throws InterruptedException {
+        while (running) {
+            SegmentTask first = embedQueue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                continue;
+            }
+            List<SegmentTask> batch = new ArrayList<>(embedBatchSize);
+            batch.add(first);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+            while (batch.size() < embedBatchSize) {
+                embedQueue.drainTo(batch, embedBatchSize - batch.size());
+                long remaining = deadline - System.nanoTime();
+                if (batch.size() >= embedBatchSize || remaining <= 0) {
+                    break;
+                }
+                SegmentTask next = embedQueue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+            }
+            embedBatch(batch);
+        }
+    }
+
+    private void embedBatch(List<SegmentTask> batch) throws InterruptedException {
+        List<TextSegment> segments = batch.stream().map(task -> task.segment).toList();
+        int failures = 0;
+        int throttles = 0;
+        while (true) {
+            awaitPause();
+            acquireEmbedPermit();
+            try {
+                List<Embedding> embeddings = embeddingModel.embedAll(segments).content();
+                embedSucceeded(segments.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    SegmentTask task = batch.get(i);
+                    task.embedding = embeddings.get(i);
+                    task.document.job.getSegmentsEmbedded().incrementAndGet();
+                    storeQueue.put(task);
+                }
+                return;
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                if (isThrottled(e)) {
+                    embedThrottled();
+                    if (++throttles <= MAX_THROTTLE_RETRIES) {
+                        continue;
+                    }
+                } else if (++failures <= maxRetries) {
+                    log.warn("向量化失败，第 {} 次重试: {}", failures, e.getMessage());
+                    Thread.sleep(throttleBackoffMillis * failures);
+                    continue;
+                }
+                log.error("向量化失败，放弃 {} 个片段", batch.size(), e);
+                fail(batch, "向量化失败: " + e.getMessage());
+                return;
+            } finally {
+                releaseEmbedPermit();
+            }
+        }
+    }
+
+    private void acquireEmbedPermit() throws InterruptedException {
+        synchronized (embedPermits) {
+            while (embedInFlight >= embedLimit) {
+                embedPermits.wait(POLL_MILLIS);
+            }
+            embedInFlight++;
+        }
+    }
+
+    private void releaseEmbedPermit() {
+        synchronized (embedPermits) {
+            embedInFlight--;
+            embedPermits.notifyAll();
+        }
+    }
+
+    private void awaitPause() throws InterruptedException {
+        long wait = pausedUntilNanos - System.nanoTime();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * 成功调用后退避时长复位；连续成功次数达到当前并发数后并发加一（加性增）
+     */
+    private void embedSucceeded(int segments) {
+        embedCalls.increment();
+        embeddedSegments.add(segments);
+        backoffMillis.set(throttleBackoffMillis);
+        synchronized (embedPermits) {
+            if (embedLimit < embedWorkers && ++successesSinceThrottle >= embedLimit) {
+                embedLimit++;
+                successesSinceThrottle = 0;
+                embedPermits.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 被限流：全体暂停一个退避周期（指数增长），并发减半（乘性减）
+     */
+    private void embedThrottled() {
+        throttled.increment();
+        long backoff = backoffMillis.getAndUpdate(current -> Math.min(MAX_BACKOFF_MILLIS, current * 2));
+        pausedUntilNanos = Math.max(pausedUntilNanos, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff));
+        int limit;
+        synchronized (embedPermits) {
+            embedLimit = Math.max(1, embedLimit / 2);
+            successesSinceThrottle = 0;
+            limit = embedLimit;
+        }
+        log.warn("向量化接口限流，暂停 {} ms，并发降为 {}", backoff, limit);
+    }
+
+    private static boolean isThrottled(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RateLimitException
+                    || cause instanceof HttpException http && http.statusCode() == 429) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ==================== 写入 ====================
+
+    private void storeLoop() throws InterruptedException {
+        while (running) {
+            SegmentTask first = storeQueue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                continue;
+            }
+            List<SegmentTask> batch = new ArrayList<>(storeBatchSize);
+            batch.add(first);
+            storeQueue.drainTo(batch, storeBatchSize - 1);
+
+            Map<String, List<SegmentTask>> byCollection = new LinkedHashMap<>();
+            for (SegmentTask task : batch) {
+                byCollection.computeIfAbsent(task.document.job.getCollection(), key -> new ArrayList<>()).add(task);
+            }
+            for (Map.Entry<String, List<SegmentTask>> entry : byCollection.entrySet()) {
+                storeBatch(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void storeBatch(String collection, List<SegmentTask> batch) throws InterruptedException {
+        List<String> ids = batch.stream().map(task -> task.id).toList();
+        List<Embedding> embeddings = batch.stream().map(task -> task.embedding).toList();
+        List<TextSegment> segments = batch.stream().map(task -> task.segment).toList();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                mysqlEmbeddingStore.addAll(collection, ids, embeddings, segments);
+                for (SegmentTask task : batch) {
+                    task.document.job.getSegmentsStored().incrementAndGet();
+                    task.document.segmentDone(false);
+                }
+                return;
+            } catch (Exception e) {
+                if (attempt >= maxRetries) {
+                    log.error("写入失败，放弃 {} 个片段: collection={}", batch.size(), collection, e);
+                    fail(batch, "写入失败: " + e.getMessage());
+                    return;
+                }
+                log.warn("写入失败，第 {} 次重试: {}", attempt + 1, e.getMessage());
+                Thread.sleep(throttleBackoffMillis * (attempt + 1));
+            }
+        }
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 流式上传中途失败：记一个失败文档，任务封口后随已入队的窗口完成而结束
+     */
+    private static void abortStream(IngestionJob job, String message) {
+        job.error(message);
+        job.addDocument();
+        job.documentCompleted(true);
+    }
+
+    private void fail(List<SegmentTask> batch, String message) {
+        for (SegmentTask task : batch) {
+            IngestionJob job = task.document.job;
+            job.getSegmentsFailed().incrementAndGet();
+            job.error(message);
+            task.document.segmentDone(true);
+        }
+    }
+
+    private void startWorkers(String stage, int count, StageLoop loop) {
+        for (int i = 0; i < count; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    loop.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "ingest-" + stage + "-" + i);
+            thread.setDaemon(true);
+            workers.add(thread);
+            thread.start();
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageLoop {
+        void run() throws InterruptedException;
+    }
+
+    /**
+     * 待切分的文档，remaining 为尚未写入完成的片段数，onComplete 在文档完成（含失败）后回调
+     */
+    private static final class DocumentTask {
+        private final IngestionJob job;
+        private final Document document;
+        private final Runnable onComplete;
+        private final AtomicInteger remaining = new AtomicInteger();
+        private volatile boolean failed;
+
+        private DocumentTask(IngestionJob job, Document document, Runnable onComplete) {
+            this.job = job;
+            this.document = document;
+            this.onComplete = onComplete;
+        }
+
+        private void segmentDone(boolean segmentFailed) {
+            if (segmentFailed) {
+                failed = true;
+            }
+            if (remaining.decrementAndGet() == 0) {
+                complete(failed);
+            }
+        }
+
+        private void complete(boolean documentFailed) {
+            job.documentCompleted(documentFailed);
+            onComplete.run();
+        }
+    }
+
+    /**
+     * 流经向量化、写入两级的片段
+     */
+    private static final class SegmentTask {
+        private final DocumentTask document;
+        private final String id;
+        private final TextSegment segment;
+        private Embedding embedding;
+
+        private SegmentTask(DocumentTask document, String id, TextSegment segment) {
+            this.document = document;
+            this.id = id;
+            this.segment = segment;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.mcp.robot.service.ingestion;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 把字符流切成有界窗口，窗口尽量在段落、换行或句末处截断，截断点之后的内容并入下一个窗口。
+ * 任意时刻只缓冲约一个窗口的字符，内存占用与输入总长度无关。
+ */
+final class TextWindowReader {
+
+    private static final String[] SENTENCE_ENDS = {"。", "！", "？", ". ", "! ", "? "};
+
+    private final Reader reader;
+    private final int windowChars;
+    private final char[] buffer = new char[8192];
+    private final StringBuilder pending;
+    private boolean eof;
+    private long charactersRead;
+
+    TextWindowReader(Reader reader, int windowChars) {
+        this.reader = reader;
+        this.windowChars = windowChars;
+        this.pending = new StringBuilder(windowChars + buffer.length);
+    }
+
+    /**
+     * 下一个窗口，读完返回 null
+     */
+    String next() throws IOException {
+        while (!eof && pending.length() < windowChars) {
+            int read = reader.read(buffer);
+            if (read < 0) {
+                eof = true;
+            } else {
+                pending.append(buffer, 0, read);
+                charactersRead += read;
+            }
+        }
+        if (pending.isEmpty()) {
+            return null;
+        }
+        int cut = eof && pending.length() <= windowChars ? pending.length() : boundary();
+        String window = pending.substring(0, cut);
+        pending.delete(0, cut);
+        return window;
+    }
+
+    long charactersRead() {
+        return charactersRead;
+    }
+
+    /**
+     * 在窗口后半段内从后往前找截断点：空行 > 换行 > 句末，都没有时按窗口长度硬截断
+     */
+    private int boundary() {
+        int limit = Math.min(windowChars, pending.length());
+        int floor = limit / 2;
+        int paragraph = pending.lastIndexOf("\n\n", limit - 2);
+        if (paragraph >= floor) {
+            return paragraph + 2;
+        }
+        int line = pending.lastIndexOf("\n", limit - 1);
+        if (line >= floor) {
+            return line + 1;
+        }
+        int sentence = -1;
+        for (String end : SENTENCE_ENDS) {
+            int index = pending.lastIndexOf(end, limit - end.length());
+            if (index >= floor) {
+                sentence = Math.max(sentence, index + end.length());
+            }
+        }
+        if (sentence > 0) {
+            return sentence;
+        }
+        // 硬截断时不拆开代理对
+        return Character.isHighSurrogate(pending.charAt(limit - 1)) ? limit - 1 : limit;
+    }
+}
@@ -0,0 +1,144 @@
+package com.mcp.robot.service.retrieval;
+
+import com.mcp.robot.service.MysqlEmbeddingStore;
+import com.mcp.robot.service.vector.ScoredId;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 向量 + BM25 混合检索器
+ * <p>
+ * 两路各取 maxResults * candidateMultiplier 个候选，用倒数排名融合（RRF）合并：
+ * score(d) = Σ 1 / (rrfK + rank(d))，只看排名、不看两路分数的量纲。
+ * 向量检索擅长语义相近的表述，BM25 负责表名、字段名、课程代码这类需要精确命中的标识符，
+ * 融合后较小的 K 就能覆盖两类需求，减少送入模型的上下文。
+ * 指定 collection 时两路检索都只覆盖该集合，为 null 时跨全部集合。
+ * <p>
+ * 融合后的最终结果按查询文本缓存（{@link QueryResultCache}），相同问题再次检索时
+ * 连查询向量化都省掉，只回表读取文本；集合内容变化后缓存自动失效。
+ */
+@Slf4j
+public class HybridContentRetriever implements ContentRetriever {
+
+    private final MysqlEmbeddingStore embeddingStore;
+    private final EmbeddingModel embeddingModel;
+    private final String collection;
+    private final int maxResults;
+    private final int candidateMultiplier;
+    private final double minScore;
+    private final int rrfK;
+
+    public HybridContentRetriever(MysqlEmbeddingStore embeddingStore, EmbeddingModel embeddingModel, String collection,
+                                  int maxResults, int candidateMultiplier, double minScore, int rrfK) {
+        this.embeddingStore = embeddingStore;
+        this.embeddingModel = embeddingModel;
+        this.collection = collection;
+        this.maxResults = maxResults;
+        this.candidateMultiplier = Math.max(1, candidateMultiplier);
+        this.minScore = minScore;
+        this.rrfK = rrfK;
+    }
+
+    @Override
+    public List<Content> retrieve(Query query) {
+        QueryResultCache cache = embeddingStore.queryResultCache();
+        String scope = collection != null ? collection : "*";
+        String params = "hybrid|" + maxResults + "|" + candidateMultiplier + "|" + minScore + "|" + rrfK;
+        long version = embeddingStore.version(collection);
+        List<ScoredId> cached = cache.getByText(scope, query.text(), params, version);
+        if (cached != null) {
+            Map<String, TextSegment> segments = embeddingStore.loadSegments(
+                    cached.stream().map(ScoredId::getId).collect(Collectors.toList()));
+            List<Content> contents = new ArrayList<>(cached.size());
+            for (ScoredId hit : cached) {
+                TextSegment segment = segments.get(hit.getId());
+                if (segment != null) {
+                    contents.add(toContent(segment, hit.getId(), hit.getScore()));
+                }
+            }
+            log.info("混合检索命中缓存: collection={}, 返回 {} 条", scope, contents.size());
+            return contents;
+        }
+
+        int candidates = maxResults * candidateMultiplier;
+
+        // 1. 向量检索
+        Embedding queryEmbedding = embeddingModel.embed(query.text()).content();
+        EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                .queryEmbedding(queryEmbedding)
+                .maxResults(candidates)
+                .minScore(minScore)
+                .build();
+        List<EmbeddingMatch<TextSegment>> vectorMatches = (collection != null
+                ? embeddingStore.search(collection, request)
+                : embeddingStore.search(request)).matches();
+
+        // 2. BM25 关键词检索
+        List<ScoredId> keywordHits = embeddingStore.keywordSearch(collection, query.text(), candidates, null);
+
+        // 3. 倒数排名融合
+        Map<String, Double> fused = new HashMap<>();
+        for (int rank = 0; rank < vectorMatches.size(); rank++) {
+            fused.merge(vectorMatches.get(rank).embeddingId(), 1.0 / (rrfK + rank + 1), Double::sum);
+        }
+        for (int rank = 0; rank < keywordHits.size(); rank++) {
+            fused.merge(keywordHits.get(rank).getId(), 1.0 / (rrfK + rank + 1), Double::sum);
+        }
+        // 按融合分数排序，折叠近似重复的片段后取前 maxResults
+        List<String> ranked = fused.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        Map<String, Double> top = new LinkedHashMap<>();
+        for (String id : embeddingStore.collapseNearDuplicates(ranked, id -> id, maxResults)) {
+            top.put(id, fused.get(id));
+        }
+
+        // 4. 只为仅由关键词命中的结果回表读取文本
+        Map<String, TextSegment> segments = new HashMap<>();
+        for (EmbeddingMatch<TextSegment> match : vectorMatches) {
+            if (top.containsKey(match.embeddingId())) {
+                segments.put(match.embeddingId(), match.embedded());
+            }
+        }
+        List<String> missing = top.keySet().stream()
+                .filter(id -> !segments.containsKey(id))
+                .collect(Collectors.toList());
+        segments.putAll(embeddingStore.loadSegments(missing));
+
+        List<Content> contents = new ArrayList<>(top.size());
+        List<ScoredId> hits = new ArrayList<>(top.size());
+        top.forEach((id, score) -> {
+            TextSegment segment = segments.get(id);
+            if (segment != null) {
+                contents.add(toContent(segment, id, score));
+                hits.add(new ScoredId(id, score));
+            }
+        });
+        cache.putByText(scope, query.text(), params, version, hits);
+        log.info("混合检索: collection={}, vector={}, keyword={}, fused={}, 返回 {} 条",
+                scope, vectorMatches.size(), keywordHits.size(), fused.size(), contents.size());
+        return contents;
+    }
+
+    private static Content toContent(TextSegment segment, String id, double score) {
+        return Content.from(segment, Map.of(
+                ContentMetadata.SCORE, score,
+                ContentMetadata.EMBEDDING_ID, id));
+    }
+}
@@ -0,0 +1,354 @@
+package com.mcp.robot.service.retrieval;
+
+import com.mcp.robot.service.vector.ScoredId;
+import com.mcp.robot.service.vector.TopKCollector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 基于 BM25 的内存倒排索引
+ * <p>
+ * 词经 {@link TermDictionary} 映射为紧凑的整数ID，倒排表按词ID存放在数组中，
+ * 每个倒排表是 (文档编号, 词频) 两个平行的 int 数组，索引和检索过程不产生装箱对象。
+ * 检索时按查询词遍历倒排表累加 BM25 分数，再用 {@link TopKCollector} 取前 K。
+ * <p>
+ * 删除只做标记，检索时跳过；已删除文档累积到一定比例后统一清理倒排表并回收文档编号，
+ * 避免每次删除都线性扫描高频词的长倒排表。
+ */
+public class KeywordIndex {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MIN_PURGE_DELETED = 1024;
+    /**
+     * 线程复用的打分缓冲最多覆盖的文档编号数（每个文档 8 字节），更大的索引每次检索单独分配
+     */
+    private static final int MAX_REUSED_DOCS = 1 << 20;
+    private static final ThreadLocal<Accumulator> ACCUMULATOR = ThreadLocal.withInitial(Accumulator::new);
+
+    private final TextTokenizer tokenizer;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TermDictionary terms = new TermDictionary();
+    private final Map<String, Integer> docById = new HashMap<>();
+    private final BitSet deletedDocs = new BitSet();
+
+    private Postings[] postings = new Postings[INITIAL_CAPACITY];
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int[] freeDocs = new int[0];
+    private int freeCount;
+    private int maxDoc;
+    private int deletedCount;
+    private long totalLength;
+
+    /**
+     * 写入时复用的词ID缓冲，受写锁保护
+     */
+    private int[] scratch = new int[256];
+    private int scratchSize;
+
+    public KeywordIndex() {
+        this(TextTokenizer.withDefaultDictionary());
+    }
+
+    public KeywordIndex(TextTokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+    }
+
+    public void add(String id, String text) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+
+            scratchSize = 0;
+            tokenizer.tokenize(text, (buffer, offset, length) -> appendScratch(terms.intern(buffer, offset, length)));
+            int tokenCount = scratchSize;
+            Arrays.sort(scratch, 0, scratchSize);
+
+            int doc = allocateDoc();
+            ids[doc] = id;
+            lengths[doc] = tokenCount;
+            totalLength += tokenCount;
+            docById.put(id, doc);
+
+            // 排序后相同词ID相邻，顺序统计词频
+            for (int i = 0; i < scratchSize; ) {
+                int term = scratch[i];
+                int frequency = 0;
+                while (i < scratchSize && scratch[i] == term) {
+                    frequency++;
+                    i++;
+                }
+                postingsFor(term).add(doc, frequency);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            terms.clear();
+            docById.clear();
+            deletedDocs.clear();
+            postings = new Postings[INITIAL_CAPACITY];
+            ids = new String[INITIAL_CAPACITY];
+            lengths = new int[INITIAL_CAPACITY];
+            freeDocs = new int[0];
+            freeCount = 0;
+            maxDoc = 0;
+            deletedCount = 0;
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * BM25 检索，结果按分数降序；candidateIds 为 null 表示不限制
+     */
+    public List<ScoredId> search(String query, int maxResults, Set<String> candidateIds) {
+        lock.readLock().lock();
+        try {
+            int docCount = docById.size();
+            if (docCount == 0) {
+                return List.of();
+            }
+            int[] queryTerms = queryTerms(query);
+            if (queryTerms.length == 0) {
+                return List.of();
+            }
+
+            float averageLength = Math.max(1f, (float) totalLength / docCount);
+            Accumulator accumulator = maxDoc <= MAX_REUSED_DOCS ? ACCUMULATOR.get() : new Accumulator();
+            accumulator.prepare(maxDoc);
+            try {
+                for (int term : queryTerms) {
+                    Postings list = postings[term];
+                    if (list == null || list.size == 0) {
+                        continue;
+                    }
+                    float idf = (float) Math.log(1 + (Math.max(0, docCount - list.size) + 0.5) / (list.size + 0.5));
+                    for (int i = 0; i < list.size; i++) {
+                        int doc = list.docs[i];
+                        if (deletedDocs.get(doc) || (candidateIds != null && !candidateIds.contains(ids[doc]))) {
+                            continue;
+                        }
+                        float frequency = list.frequencies[i];
+                        float norm = K1 * (1 - B + B * lengths[doc] / averageLength);
+                        accumulator.add(doc, idf * frequency * (K1 + 1) / (frequency + norm));
+                    }
+                }
+
+                TopKCollector topK = new TopKCollector(maxResults, Float.MIN_VALUE);
+                for (int i = 0; i < accumulator.touchedCount; i++) {
+                    int doc = accumulator.touched[i];
+                    topK.offer(accumulator.scores[doc], doc);
+                }
+                int[] docs = new int[topK.size()];
+                float[] topScores = topK.drain(docs);
+                List<ScoredId> result = new ArrayList<>(docs.length);
+                for (int i = 0; i < docs.length; i++) {
+                    result.add(new ScoredId(ids[docs[i]], topScores[i]));
+                }
+                return result;
+            } finally {
+                accumulator.reset();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        lock.readLock().lock();
+        try {
+            long postingEntries = 0;
+            for (int term = 0; term < terms.size(); term++) {
+                if (postings[term] != null) {
+                    postingEntries += postings[term].size;
+                }
+            }
+            return Map.of(
+                    "documents", docById.size(),
+                    "terms", terms.size(),
+                    "postings", postingEntries,
+                    "deleted_pending", deletedCount,
+                    "dictionary_words", tokenizer.dictionarySize(),
+                    "average_length", docById.isEmpty() ? 0 : totalLength / docById.size()
+            );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 查询词转词ID（去重），词典中不存在的词直接忽略
+     */
+    private int[] queryTerms(String query) {
+        int[][] holder = {new int[16]};
+        int[] count = {0};
+        tokenizer.tokenize(query, (buffer, offset, length) -> {
+            int term = terms.lookup(buffer, offset, length);
+            if (term >= 0) {
+                if (count[0] == holder[0].length) {
+                    holder[0] = Arrays.copyOf(holder[0], count[0] * 2);
+                }
+                holder[0][count[0]++] = term;
+            }
+        });
+        return Arrays.stream(holder[0], 0, count[0]).distinct().toArray();
+    }
+
+    private void removeInternal(String id) {
+        Integer doc = docById.remove(id);
+        if (doc == null) {
+            return;
+        }
+        totalLength -= lengths[doc];
+        ids[doc] = null;
+        deletedDocs.set(doc);
+        deletedCount++;
+        if (deletedCount >= MIN_PURGE_DELETED && deletedCount * 4 >= docById.size()) {
+            purgeDeleted();
+        }
+    }
+
+    /**
+     * 从所有倒排表中清除已删除文档，并回收其编号
+     */
+    private void purgeDeleted() {
+        for (int term = 0; term < terms.size(); term++) {
+            Postings list = postings[term];
+            if (list != null) {
+                list.removeIf(deletedDocs);
+            }
+        }
+        int[] freed = deletedDocs.stream().toArray();
+        if (freeCount + freed.length > freeDocs.length) {
+            freeDocs = Arrays.copyOf(freeDocs, freeCount + freed.length);
+        }
+        System.arraycopy(freed, 0, freeDocs, freeCount, freed.length);
+        freeCount += freed.length;
+        deletedDocs.clear();
+        deletedCount = 0;
+    }
+
+    private int allocateDoc() {
+        if (freeCount > 0) {
+            return freeDocs[--freeCount];
+        }
+        if (maxDoc == ids.length) {
+            int capacity = ids.length + (ids.length >> 1);
+            ids = Arrays.copyOf(ids, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        return maxDoc++;
+    }
+
+    private Postings postingsFor(int term) {
+        if (term >= postings.length) {
+            postings = Arrays.copyOf(postings, Math.max(term + 1, postings.length * 2));
+        }
+        Postings list = postings[term];
+        if (list == null) {
+            list = new Postings();
+            postings[term] = list;
+        }
+        return list;
+    }
+
+    private void appendScratch(int term) {
+        if (scratchSize == scratch.length) {
+            scratch = Arrays.copyOf(scratch, scratchSize * 2);
+        }
+        scratch[scratchSize++] = term;
+    }
+
+    /**
+     * 检索时的分数累加器：按文档编号寻址的分数数组 + 命中文档列表。
+     * 同一线程的检索复用同一个实例，结束时只清零命中过的位置，开销与命中数成正比而不是与文档总数成正比
+     */
+    private static final class Accumulator {
+        private float[] scores = new float[0];
+        private int[] touched = new int[0];
+        private int touchedCount;
+
+        private void prepare(int maxDoc) {
+            if (scores.length < maxDoc) {
+                int capacity = Math.max(maxDoc, scores.length + (scores.length >> 1));
+                scores = new float[capacity];
+                touched = new int[capacity];
+            }
+            touchedCount = 0;
+        }
+
+        /**
+         * BM25 单项分数恒为正，分数为 0 即本次检索首次命中
+         */
+        private void add(int doc, float score) {
+            if (scores[doc] == 0f) {
+                touched[touchedCount++] = doc;
+            }
+            scores[doc] += score;
+        }
+
+        private void reset() {
+            for (int i = 0; i < touchedCount; i++) {
+                scores[touched[i]] = 0f;
+            }
+            touchedCount = 0;
+        }
+    }
+
+    /**
+     * 单个词的倒排表：文档编号与词频的平行数组，顺序无关
+     */
+    private static final class Postings {
+        private int[] docs = new int[2];
+        private int[] frequencies = new int[2];
+        private int size;
+
+        private void add(int doc, int frequency) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            docs[size] = doc;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        private void removeIf(BitSet deleted) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!deleted.get(docs[i])) {
+                    docs[kept] = docs[i];
+                    frequencies[kept] = frequencies[i];
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.mcp.robot.service.retrieval;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * SimHash 指纹的近似重复索引（LSH 分段）
+ * <p>
+ * 64 位指纹切成 maxDistance + 1 段，每段的取值作为桶键。
+ * 汉明距离不超过 maxDistance 的两个指纹至少有一段完全相同（抽屉原理），
+ * 因此只需在各段的桶里找候选，再用完整汉明距离确认，不必与全部指纹比较。
+ */
+public class NearDuplicateIndex {
+
+    private final int maxDistance;
+    private final int bands;
+    private final int bandBits;
+    private final long bandMask;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Long> fingerprintById = new HashMap<>();
+    private final Map<Long, List<String>> buckets = new HashMap<>();
+
+    /**
+     * @param maxDistance 判定为近似重复的最大汉明距离，取值 0-15
+     */
+    public NearDuplicateIndex(int maxDistance) {
+        this.maxDistance = Math.max(0, Math.min(15, maxDistance));
+        this.bands = this.maxDistance + 1;
+        this.bandBits = 64 / bands;
+        this.bandMask = bandBits == 64 ? -1L : (1L << bandBits) - 1;
+    }
+
+    public void add(String id, long fingerprint) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+            if (fingerprint == SimHash.NONE) {
+                return;
+            }
+            fingerprintById.put(id, fingerprint);
+            for (int band = 0; band < bands; band++) {
+                buckets.computeIfAbsent(bucketKey(band, fingerprint), key -> new ArrayList<>(1)).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            fingerprintById.clear();
+            buckets.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 指纹，不存在或特征过少时返回 {@link SimHash#NONE}
+     */
+    public long fingerprint(String id) {
+        lock.readLock().lock();
+        try {
+            return fingerprintById.getOrDefault(id, SimHash.NONE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 在 candidate 接受的已有条目中查找汉明距离最近且不超过阈值的条目，没有时返回 null
+     */
+    public String findNearest(long fingerprint, Predicate<String> candidate) {
+        if (fingerprint == SimHash.NONE) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            String nearest = null;
+            int nearestDistance = maxDistance + 1;
+            for (int band = 0; band < bands; band++) {
+                List<String> bucket = buckets.get(bucketKey(band, fingerprint));
+                if (bucket == null) {
+                    continue;
+                }
+                for (String id : bucket) {
+                    int distance = SimHash.distance(fingerprint, fingerprintById.get(id));
+                    if (distance < nearestDistance && candidate.test(id)) {
+                        nearest = id;
+                        nearestDistance = distance;
+                    }
+                }
+            }
+            return nearest;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isNearDuplicate(long a, long b) {
+        return a != SimHash.NONE && b != SimHash.NONE && SimHash.distance(a, b) <= maxDistance;
+    }
+
+    public Map<String, Object> stats() {
+        lock.readLock().lock();
+        try {
+            return Map.of(
+                    "fingerprints", fingerprintById.size(),
+                    "buckets", buckets.size(),
+                    "max_distance", maxDistance
+            );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private void removeInternal(String id) {
+        Long fingerprint = fingerprintById.remove(id);
+        if (fingerprint == null) {
+            return;
+        }
+        for (int band = 0; band < bands; band++) {
+            long key = bucketKey(band, fingerprint);
+            List<String> bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.remove(id);
+                if (bucket.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * 桶键：高 8 位为段号，低位为该段的取值（只有一段时即完整指纹）
+     */
+    private long bucketKey(int band, long fingerprint) {
+        long value = (fingerprint >>> (band * bandBits)) & bandMask;
+        return bands == 1 ? value : ((long) band << 56) | value;
+    }
+}
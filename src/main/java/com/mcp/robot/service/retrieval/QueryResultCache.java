@@ -0,0 +1,191 @@
+package com.mcp.robot.service.retrieval;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.mcp.robot.service.MysqlEmbeddingStore;
+import com.mcp.robot.service.vector.ScoredId;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 检索结果缓存（有界 LRU + TTL），只缓存命中结果的 (ID, 分数)，文本仍按ID回表读取。
+ * 量化索引精排带回的全精度向量写入前去掉，否则每个条目要多占 K 个向量，抵消量化省下的内存
+ * <p>
+ * 两级键：
+ * <ul>
+ *     <li>查询文本：规范化文本的哈希，命中时连向量化调用一起省掉</li>
+ *     <li>查询向量：随机超平面 LSH 签名，向量几乎相同的查询共用结果，命中时省掉索引扫描</li>
+ * </ul>
+ * 每个条目记录写入时检索范围的集合版本号，集合发生 add/remove 后版本号变化，旧条目读取时即失效。
+ */
+public class QueryResultCache {
+
+    private static final long HYPERPLANE_SEED = 0x5eedL;
+
+    private final boolean enabled;
+    private final int lshBits;
+    private final Level byText;
+    private final Level byEmbedding;
+    private volatile float[][] hyperplanes;
+
+    public QueryResultCache(boolean enabled, long maxEntries, long ttlSeconds, int lshBits) {
+        this.enabled = enabled;
+        this.lshBits = Math.max(1, Math.min(256, lshBits));
+        this.byText = new Level(maxEntries, ttlSeconds);
+        this.byEmbedding = new Level(maxEntries, ttlSeconds);
+    }
+
+    /**
+     * 按查询文本读取，scope 为检索范围（集合名），params 为影响结果的检索参数
+     */
+    public List<ScoredId> getByText(String scope, String text, String params, long version) {
+        return enabled ? byText.get(textKey(scope, text, params), version) : null;
+    }
+
+    public void putByText(String scope, String text, String params, long version, List<ScoredId> hits) {
+        if (enabled) {
+            byText.cache.put(textKey(scope, text, params), new Entry(version, withoutVectors(hits)));
+        }
+    }
+
+    /**
+     * 按查询向量的 LSH 签名读取
+     */
+    public List<ScoredId> getByEmbedding(String scope, float[] embedding, String params, long version) {
+        return enabled ? byEmbedding.get(embeddingKey(scope, embedding, params), version) : null;
+    }
+
+    public void putByEmbedding(String scope, float[] embedding, String params, long version, List<ScoredId> hits) {
+        if (enabled) {
+            byEmbedding.cache.put(embeddingKey(scope, embedding, params), new Entry(version, withoutVectors(hits)));
+        }
+    }
+
+    public void invalidateAll() {
+        byText.cache.invalidateAll();
+        byEmbedding.cache.invalidateAll();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("text", byText.stats());
+        stats.put("embedding", byEmbedding.stats());
+        return stats;
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private static List<ScoredId> withoutVectors(List<ScoredId> hits) {
+        List<ScoredId> stripped = new ArrayList<>(hits.size());
+        for (ScoredId hit : hits) {
+            stripped.add(hit.getVector() == null ? hit : new ScoredId(hit.getId(), hit.getScore()));
+        }
+        return List.copyOf(stripped);
+    }
+
+    private static String textKey(String scope, String text, String params) {
+        return scope + '|' + params + '|' + MysqlEmbeddingStore.contentHash(text);
+    }
+
+    private String embeddingKey(String scope, float[] embedding, String params) {
+        return scope + '|' + params + '|' + signature(embedding);
+    }
+
+    /**
+     * 随机超平面 LSH：每个超平面取点积符号作为一位，夹角很小的向量签名相同
+     */
+    private String signature(float[] embedding) {
+        float[][] planes = hyperplanes(embedding.length);
+        long[] words = new long[(lshBits + 63) / 64];
+        for (int bit = 0; bit < lshBits; bit++) {
+            float[] plane = planes[bit];
+            double dot = 0;
+            for (int i = 0; i < embedding.length; i++) {
+                dot += plane[i] * embedding[i];
+            }
+            if (dot > 0) {
+                words[bit >>> 6] |= 1L << (bit & 63);
+            }
+        }
+        StringBuilder signature = new StringBuilder(embedding.length + ":");
+        for (long word : words) {
+            signature.append(Long.toHexString(word)).append('.');
+        }
+        return signature.toString();
+    }
+
+    /**
+     * 超平面按维度懒生成，固定种子保证重启后签名一致
+     */
+    private float[][] hyperplanes(int dimension) {
+        float[][] planes = hyperplanes;
+        if (planes == null || planes[0].length != dimension) {
+            Random random = new Random(HYPERPLANE_SEED);
+            planes = new float[lshBits][dimension];
+            for (float[] plane : planes) {
+                for (int i = 0; i < dimension; i++) {
+                    plane[i] = (float) random.nextGaussian();
+                }
+            }
+            hyperplanes = planes;
+        }
+        return planes;
+    }
+
+    /**
+     * 一级缓存。命中率自行统计：版本号已过期的条目按未命中计
+     */
+    private static final class Level {
+        private final Cache<String, Entry> cache;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        private Level(long maxEntries, long ttlSeconds) {
+            this.cache = CacheBuilder.newBuilder()
+                    .maximumSize(maxEntries)
+                    .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                    .recordStats()
+                    .build();
+        }
+
+        private List<ScoredId> get(String key, long version) {
+            Entry entry = cache.getIfPresent(key);
+            if (entry != null && entry.version != version) {
+                cache.invalidate(key);
+                entry = null;
+            }
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.hits;
+        }
+
+        private Map<String, Object> stats() {
+            long hitCount = hits.sum();
+            long total = hitCount + misses.sum();
+            return Map.of(
+                    "size", cache.size(),
+                    "hits", hitCount,
+                    "misses", total - hitCount,
+                    "hit_rate", total == 0 ? 0.0 : (double) hitCount / total,
+                    "evictions", cache.stats().evictionCount()
+            );
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static final class Entry {
+        private final long version;
+        private final List<ScoredId> hits;
+    }
+}
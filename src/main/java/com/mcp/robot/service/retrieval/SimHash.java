@@ -0,0 +1,72 @@
+package com.mcp.robot.service.retrieval;
+
+/**
+ * 64 位 SimHash 文本指纹
+ * <p>
+ * 以分词结果（中文二元组、英文词及词典词）为特征，每个特征哈希为 64 位后按位投票，
+ * 词频即权重。内容只做了少量改动的两段文本，指纹的汉明距离很小，可据此判定近似重复。
+ */
+public final class SimHash {
+
+    /**
+     * 特征数少于此值的文本指纹不稳定，不参与近似重复判定
+     */
+    public static final int MIN_FEATURES = 8;
+
+    /**
+     * 无效指纹（特征过少）
+     */
+    public static final long NONE = 0L;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private SimHash() {
+    }
+
+    /**
+     * 计算文本指纹，特征过少时返回 {@link #NONE}
+     */
+    public static long fingerprint(TextTokenizer tokenizer, String text) {
+        int[] votes = new int[64];
+        int[] features = {0};
+        tokenizer.tokenize(text, (buffer, offset, length) -> {
+            long hash = hash(buffer, offset, length);
+            for (int bit = 0; bit < 64; bit++) {
+                votes[bit] += ((hash >>> bit) & 1L) != 0 ? 1 : -1;
+            }
+            features[0]++;
+        });
+        if (features[0] < MIN_FEATURES) {
+            return NONE;
+        }
+        long fingerprint = 0L;
+        for (int bit = 0; bit < 64; bit++) {
+            if (votes[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * FNV-1a 后接 murmur3 的 fmix64，保证各位分布均匀
+     */
+    private static long hash(char[] buffer, int offset, int length) {
+        long hash = FNV_OFFSET;
+        for (int i = offset; i < offset + length; i++) {
+            hash ^= buffer[i];
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
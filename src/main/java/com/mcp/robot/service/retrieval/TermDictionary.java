@@ -0,0 +1,148 @@
+package com.mcp.robot.service.retrieval;
+
+import java.util.Arrays;
+
+/**
+ * 词 → 紧凑整数ID 的映射
+ * <p>
+ * 开放寻址哈希表，键直接按 (char[], offset, length) 切片比较，查找和登记都不需要先构造 String。
+ * 所有词的字符连续存放在一个 char[] 池中，ID 从 0 递增，可直接作为数组下标使用。
+ * 非线程安全，由调用方加锁。
+ */
+public class TermDictionary {
+
+    private static final int EMPTY = -1;
+
+    private int[] table = new int[1 << 12];
+    private char[] pool = new char[1 << 14];
+    private int[] offsets = new int[1 << 11];
+    private int[] lengths = new int[1 << 11];
+    private int[] hashes = new int[1 << 11];
+    private int poolSize;
+    private int size;
+
+    public TermDictionary() {
+        Arrays.fill(table, EMPTY);
+    }
+
+    /**
+     * 查找词ID，不存在返回 -1
+     */
+    public int lookup(char[] buffer, int offset, int length) {
+        int hash = hash(buffer, offset, length);
+        int mask = table.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot];
+            if (id == EMPTY) {
+                return EMPTY;
+            }
+            if (hashes[id] == hash && matches(id, buffer, offset, length)) {
+                return id;
+            }
+        }
+    }
+
+    public int lookup(String term) {
+        return lookup(term.toCharArray(), 0, term.length());
+    }
+
+    /**
+     * 查找词ID，不存在时登记为新词
+     */
+    public int intern(char[] buffer, int offset, int length) {
+        int hash = hash(buffer, offset, length);
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != EMPTY) {
+            int id = table[slot];
+            if (hashes[id] == hash && matches(id, buffer, offset, length)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int id = size++;
+        if (id == offsets.length) {
+            offsets = Arrays.copyOf(offsets, id * 2);
+            lengths = Arrays.copyOf(lengths, id * 2);
+            hashes = Arrays.copyOf(hashes, id * 2);
+        }
+        if (poolSize + length > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + length));
+        }
+        System.arraycopy(buffer, offset, pool, poolSize, length);
+        offsets[id] = poolSize;
+        lengths[id] = length;
+        hashes[id] = hash;
+        poolSize += length;
+        table[slot] = id;
+
+        // 负载因子超过 0.5 时扩容
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return id;
+    }
+
+    public int intern(String term) {
+        return intern(term.toCharArray(), 0, term.length());
+    }
+
+    public String term(int id) {
+        return new String(pool, offsets[id], lengths[id]);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        table = new int[1 << 12];
+        Arrays.fill(table, EMPTY);
+        pool = new char[1 << 14];
+        offsets = new int[1 << 11];
+        lengths = new int[1 << 11];
+        hashes = new int[1 << 11];
+        poolSize = 0;
+        size = 0;
+    }
+
+    /**
+     * 估算占用的字节数
+     */
+    public long memoryBytes() {
+        return (long) table.length * Integer.BYTES + (long) pool.length * Character.BYTES
+                + (long) offsets.length * Integer.BYTES * 3;
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private boolean matches(int id, char[] buffer, int offset, int length) {
+        return lengths[id] == length
+                && Arrays.equals(pool, offsets[id], offsets[id] + length, buffer, offset, offset + length);
+    }
+
+    private void rehash(int capacity) {
+        int[] newTable = new int[capacity];
+        Arrays.fill(newTable, EMPTY);
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (newTable[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            newTable[slot] = id;
+        }
+        table = newTable;
+    }
+
+    private static int hash(char[] buffer, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        // 打散低位，线性探测对聚集敏感
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
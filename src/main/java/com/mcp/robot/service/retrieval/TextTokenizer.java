@@ -0,0 +1,178 @@
+package com.mcp.robot.service.retrieval;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 关键词检索用的分词器
+ * <p>
+ * 英文、数字和下划线连续片段作为一个词（ASCII 转小写），带下划线的标识符额外拆出各部分，
+ * 保证 student_no、scores、CS101 这类表名、字段名、课程代码能精确命中。
+ * 中文片段输出相邻两字的二元组（单字片段输出单字），保证召回；
+ * 同时按领域词典做正向最大匹配，额外输出三字及以上的词典词，提升长词的精确度。
+ * <p>
+ * 分词结果以 (char[], offset, length) 切片回调给 {@link TokenSink}，除每段文本一次字符拷贝外不产生对象分配。
+ * 实例初始化后只读，线程安全。
+ */
+@Slf4j
+public class TextTokenizer {
+
+    private static final String DEFAULT_DICTIONARY = "dict/keyword-dict.txt";
+    private static final int MIN_DICTIONARY_WORD = 3;
+
+    private final TermDictionary dictionary;
+    private final int maxWordLength;
+
+    /**
+     * 分词回调，切片只在回调期间有效
+     */
+    public interface TokenSink {
+        void accept(char[] buffer, int offset, int length);
+    }
+
+    public TextTokenizer(List<String> words) {
+        this.dictionary = new TermDictionary();
+        int longest = 0;
+        for (String word : words) {
+            String trimmed = word.trim();
+            if (trimmed.length() >= MIN_DICTIONARY_WORD) {
+                dictionary.intern(trimmed);
+                longest = Math.max(longest, trimmed.length());
+            }
+        }
+        this.maxWordLength = longest;
+    }
+
+    /**
+     * 使用 classpath 中的默认领域词典
+     */
+    public static TextTokenizer withDefaultDictionary() {
+        List<String> words = new ArrayList<>();
+        InputStream in = TextTokenizer.class.getClassLoader().getResourceAsStream(DEFAULT_DICTIONARY);
+        if (in == null) {
+            log.warn("未找到关键词词典 {}，只使用二元组分词", DEFAULT_DICTIONARY);
+            return new TextTokenizer(words);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank() && !line.startsWith("#")) {
+                    words.add(line);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("读取关键词词典失败，只使用二元组分词", e);
+        }
+        return new TextTokenizer(words);
+    }
+
+    public void tokenize(String text, TokenSink sink) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        int length = text.length();
+        char[] chars = new char[length];
+        text.getChars(0, length, chars, 0);
+
+        int i = 0;
+        while (i < length) {
+            char c = chars[i];
+            if (isWordChar(c)) {
+                int start = i;
+                while (i < length && isWordChar(chars[i])) {
+                    if (chars[i] >= 'A' && chars[i] <= 'Z') {
+                        chars[i] = (char) (chars[i] + ('a' - 'A'));
+                    }
+                    i++;
+                }
+                emitWord(chars, start, i, sink);
+            } else if (isCjk(c)) {
+                int start = i;
+                while (i < length && isCjk(chars[i])) {
+                    i++;
+                }
+                emitCjk(chars, start, i, sink);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * 便于调试的 String 版本
+     */
+    public List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(text, (buffer, offset, length) -> tokens.add(new String(buffer, offset, length)));
+        return tokens;
+    }
+
+    public int dictionarySize() {
+        return dictionary.size();
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private void emitWord(char[] chars, int start, int end, TokenSink sink) {
+        sink.accept(chars, start, end - start);
+        int partStart = start;
+        boolean split = false;
+        for (int i = start; i <= end; i++) {
+            if (i == end || chars[i] == '_') {
+                if (i < end) {
+                    split = true;
+                }
+                if (split && i > partStart) {
+                    sink.accept(chars, partStart, i - partStart);
+                }
+                partStart = i + 1;
+            }
+        }
+    }
+
+    private void emitCjk(char[] chars, int start, int end, TokenSink sink) {
+        if (end - start == 1) {
+            sink.accept(chars, start, 1);
+            return;
+        }
+        for (int i = start; i + 1 < end; i++) {
+            sink.accept(chars, i, 2);
+        }
+        if (maxWordLength < MIN_DICTIONARY_WORD) {
+            return;
+        }
+        // 正向最大匹配，只输出三字及以上的词典词
+        int i = start;
+        while (i + MIN_DICTIONARY_WORD <= end) {
+            int matched = 0;
+            for (int length = Math.min(maxWordLength, end - i); length >= MIN_DICTIONARY_WORD; length--) {
+                if (dictionary.lookup(chars, i, length) >= 0) {
+                    matched = length;
+                    break;
+                }
+            }
+            if (matched > 0) {
+                sink.accept(chars, i, matched);
+                i += matched;
+            } else {
+                i++;
+            }
+        }
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean isCjk(char c) {
+        // CJK 统一表意文字及扩展 A 区
+        return (c >= '\u4E00' && c <= '\u9FFF') || (c >= '\u3400' && c <= '\u4DBF');
+    }
+}
@@ -0,0 +1,338 @@
+package com.mcp.robot.service.schema;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * DDL 脚本解析：按语句切分，每张表汇总为一个 {@link TableSchema}
+ * <p>
+ * CREATE TABLE 解析出列（类型、注释）、表注释和外键；之后针对该表的 ALTER TABLE、CREATE INDEX
+ * 语句原文并入同一张表，语句前紧邻的单行注释（如 "-- 创建成绩表"）作为表的说明保留。
+ * 只做检索所需的轻量解析：引号、反引号和注释中的分号、括号不会误切，但不校验语法；
+ * 无法识别的语句（INSERT、DROP 等）以及引用未定义表的语句直接忽略。
+ */
+public final class DdlSchemaParser {
+
+    private static final Pattern CREATE_TABLE = Pattern.compile(
+            "^CREATE\\s+(?:TEMPORARY\\s+)?TABLE\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?([`\"\\w.]+)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern ALTER_TABLE = Pattern.compile(
+            "^ALTER\\s+TABLE\\s+([`\"\\w.]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CREATE_INDEX = Pattern.compile(
+            "^CREATE\\s+(?:UNIQUE\\s+|FULLTEXT\\s+|SPATIAL\\s+)?INDEX\\s+[`\"\\w.]+\\s+ON\\s+([`\"\\w.]+)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern FOREIGN_KEY = Pattern.compile(
+            "FOREIGN\\s+KEY\\s*\\(([^)]*)\\)\\s*REFERENCES\\s+([`\"\\w.]+)\\s*\\(([^)]*)\\)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern INLINE_REFERENCES = Pattern.compile(
+            "\\bREFERENCES\\s+([`\"\\w.]+)\\s*\\(([^)]*)\\)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern COLUMN = Pattern.compile(
+            "^([`\"]?[\\w$]+[`\"]?)\\s+(\\w+(?:\\s*\\([^)]*\\))?)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern COMMENT = Pattern.compile(
+            "\\bCOMMENT\\s*=?\\s*'((?:[^'\\\\]|''|\\\\.)*)'", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CONSTRAINT_PREFIX = Pattern.compile(
+            "^(?:PRIMARY\\s+KEY|UNIQUE|KEY|INDEX|CONSTRAINT|FOREIGN\\s+KEY|CHECK|FULLTEXT|SPATIAL)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    private DdlSchemaParser() {
+    }
+
+    /**
+     * 解析 DDL 脚本，按 CREATE TABLE 出现的顺序返回各表
+     */
+    public static List<TableSchema> parse(String sql) {
+        Map<String, TableSchema> tables = new LinkedHashMap<>();
+        for (Statement statement : splitStatements(sql)) {
+            String text = statement.text;
+            Matcher create = CREATE_TABLE.matcher(text);
+            if (create.find()) {
+                TableSchema table = parseCreateTable(unquote(create.group(1)), statement);
+                tables.putIfAbsent(table.getName().toLowerCase(Locale.ROOT), table);
+                continue;
+            }
+            Matcher target = ALTER_TABLE.matcher(text);
+            if (!target.find()) {
+                target = CREATE_INDEX.matcher(text);
+                if (!target.find()) {
+                    continue;
+                }
+            }
+            TableSchema table = tables.get(unquote(target.group(1)).toLowerCase(Locale.ROOT));
+            if (table == null) {
+                continue;
+            }
+            table.getStatements().add(text);
+            Matcher foreignKey = FOREIGN_KEY.matcher(text);
+            while (foreignKey.find()) {
+                addForeignKeys(table, foreignKey.group(1), foreignKey.group(2), foreignKey.group(3));
+            }
+        }
+        return new ArrayList<>(tables.values());
+    }
+
+    private static TableSchema parseCreateTable(String name, Statement statement) {
+        TableSchema table = new TableSchema(name);
+        table.setDescription(statement.leadingComment);
+        table.getStatements().add(statement.text);
+
+        String text = statement.text;
+        int open = indexOutsideQuotes(text, '(', 0);
+        int close = open < 0 ? -1 : matchingParenthesis(text, open);
+        if (close < 0) {
+            return table;
+        }
+        Matcher tableComment = COMMENT.matcher(text.substring(close + 1));
+        if (tableComment.find()) {
+            table.setComment(unescape(tableComment.group(1)));
+        }
+        for (String definition : splitTopLevel(text.substring(open + 1, close))) {
+            if (CONSTRAINT_PREFIX.matcher(definition).find()) {
+                Matcher foreignKey = FOREIGN_KEY.matcher(definition);
+                if (foreignKey.find()) {
+                    addForeignKeys(table, foreignKey.group(1), foreignKey.group(2), foreignKey.group(3));
+                }
+                continue;
+            }
+            Matcher column = COLUMN.matcher(definition);
+            if (!column.find()) {
+                continue;
+            }
+            String columnName = unquote(column.group(1));
+            Matcher comment = COMMENT.matcher(definition);
+            table.getColumns().add(new TableSchema.Column(columnName, column.group(2).replaceAll("\\s+", " "),
+                    comment.find() ? unescape(comment.group(1)) : null));
+            Matcher references = INLINE_REFERENCES.matcher(definition);
+            if (references.find()) {
+                addForeignKeys(table, columnName, references.group(1), references.group(2));
+            }
+        }
+        return table;
+    }
+
+    private static void addForeignKeys(TableSchema table, String columns, String referencedTable, String referencedColumns) {
+        String[] from = columns.split(",");
+        String[] to = referencedColumns.split(",");
+        for (int i = 0; i < from.length; i++) {
+            table.getForeignKeys().add(new TableSchema.ForeignKey(unquote(from[i].trim()), unquote(referencedTable),
+                    unquote(to[Math.min(i, to.length - 1)].trim())));
+        }
+    }
+
+    // ==================== 词法 ====================
+
+    /**
+     * 按分号切分语句，跳过引号和注释中的分号；语句前紧邻的单行注释记为该语句的说明
+     */
+    static List<Statement> splitStatements(String sql) {
+        List<Statement> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        StringBuilder leadingComment = new StringBuilder();
+        int newlines = 0;
+        boolean blank = true;
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-' || c == '#') {
+                int end = sql.indexOf('\n', i);
+                end = end < 0 ? length : end;
+                if (blank) {
+                    String line = sql.substring(i + (c == '#' ? 1 : 2), end).trim();
+                    if (!line.isEmpty()) {
+                        leadingComment.setLength(0);
+                        leadingComment.append(line);
+                        newlines = 0;
+                    }
+                } else {
+                    current.append(sql, i, end);
+                }
+                i = end;
+            } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                end = end < 0 ? length : end + 2;
+                if (!blank) {
+                    current.append(sql, i, end);
+                }
+                i = end;
+            } else if (c == '\'' || c == '"' || c == '`') {
+                int end = closingQuote(sql, i);
+                current.append(sql, i, end);
+                blank = false;
+                i = end;
+            } else if (c == ';') {
+                addStatement(statements, current, leadingComment);
+                blank = true;
+                i++;
+            } else {
+                // 注释与语句之间隔了空行，不再视为该语句的说明
+                if (c == '\n' && blank && ++newlines > 1) {
+                    leadingComment.setLength(0);
+                }
+                current.append(c);
+                blank &= Character.isWhitespace(c);
+                i++;
+            }
+        }
+        addStatement(statements, current, leadingComment);
+        return statements;
+    }
+
+    private static void addStatement(List<Statement> statements, StringBuilder current, StringBuilder leadingComment) {
+        String text = current.toString().trim();
+        if (!text.isEmpty()) {
+            statements.add(new Statement(text, leadingComment.isEmpty() ? null : leadingComment.toString()));
+        }
+        current.setLength(0);
+        leadingComment.setLength(0);
+    }
+
+    /**
+     * 引号结束位置（不含）之后的下标；支持重复引号和反斜杠转义，未闭合时到文本末尾
+     */
+    private static int closingQuote(String text, int start) {
+        char quote = text.charAt(start);
+        int i = start + 1;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '\\' && quote != '`') {
+                i += 2;
+            } else if (c == quote) {
+                if (i + 1 < text.length() && text.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return text.length();
+    }
+
+    private static int indexOutsideQuotes(String text, char target, int from) {
+        int i = from;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                i = closingQuote(text, i);
+            } else if (c == target) {
+                return i;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    private static int matchingParenthesis(String text, int open) {
+        int depth = 0;
+        int i = open;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                i = closingQuote(text, i);
+                continue;
+            }
+            int commentEnd = commentEnd(text, i);
+            if (commentEnd >= 0) {
+                i = commentEnd;
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * start 处是注释（--、#、块注释）时返回注释结束位置（不含），否则返回 -1；未闭合时到文本末尾
+     */
+    private static int commentEnd(String text, int start) {
+        char c = text.charAt(start);
+        if (c == '-' && start + 1 < text.length() && text.charAt(start + 1) == '-' || c == '#') {
+            int end = text.indexOf('\n', start);
+            return end < 0 ? text.length() : end;
+        }
+        if (c == '/' && start + 1 < text.length() && text.charAt(start + 1) == '*') {
+            int end = text.indexOf("*/", start + 2);
+            return end < 0 ? text.length() : end + 2;
+        }
+        return -1;
+    }
+
+    /**
+     * 按顶层逗号切分表定义，括号和引号内的逗号（如 DECIMAL(5, 2)、ENUM 取值）不切；
+     * 定义之间的注释去掉，否则紧跟注释的列定义无法识别
+     */
+    private static List<String> splitTopLevel(String body) {
+        List<String> parts = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int depth = 0;
+        int i = 0;
+        while (i < body.length()) {
+            char c = body.charAt(i);
+            int commentEnd = commentEnd(body, i);
+            if (commentEnd >= 0) {
+                current.append(' ');
+                i = commentEnd;
+                continue;
+            }
+            if (c == '\'' || c == '"' || c == '`') {
+                int end = closingQuote(body, i);
+                current.append(body, i, end);
+                i = end;
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                parts.add(current.toString().trim());
+                current.setLength(0);
+                i++;
+                continue;
+            }
+            current.append(c);
+            i++;
+        }
+        parts.add(current.toString().trim());
+        parts.removeIf(String::isEmpty);
+        return parts;
+    }
+
+    /**
+     * 去掉标识符的引号和库名前缀：`db`.`t` -> t
+     */
+    private static String unquote(String identifier) {
+        String name = identifier.trim();
+        int dot = name.lastIndexOf('.');
+        if (dot >= 0) {
+            name = name.substring(dot + 1);
+        }
+        return name.replace("`", "").replace("\"", "");
+    }
+
+    private static String unescape(String literal) {
+        return literal.replace("''", "'").replace("\\'", "'");
+    }
+
+    static final class Statement {
+        final String text;
+        final String leadingComment;
+
+        Statement(String text, String leadingComment) {
+            this.text = text;
+            this.leadingComment = leadingComment;
+        }
+    }
+}
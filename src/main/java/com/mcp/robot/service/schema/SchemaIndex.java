@@ -0,0 +1,205 @@
+package com.mcp.robot.service.schema;
+
+import com.mcp.robot.service.vector.ScoredId;
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 表结构精确索引：表名、列名、表/列注释中的关键词 -> 表结构片段ID
+ * <p>
+ * 查询时英文标识符按词整体查表，中文按起始位置取词表中最长的匹配（词表很小，逐个长度查哈希表即可），
+ * 不需要向量化。命中表名或表说明的权重高于命中列，同一关键词出现在多张表时按表数摊薄
+ * （"创建时间"这类公共列几乎不起作用）。最高分不足 {@link #MIN_SCORE} 时视为未命中，交给向量检索。
+ * 直接命中的表之后补充它们外键引用的表，方便模型写出 JOIN。
+ * 实例不可变，表结构变化后整体重建。
+ */
+public class SchemaIndex {
+
+    private static final double TABLE_WEIGHT = 3.0;
+    private static final double COLUMN_WEIGHT = 1.0;
+    /**
+     * 最高分的下限：命中表名 / 表说明，或只属于一张表的列才算命中；
+     * 只命中多张表共有的列（"邮箱"、"创建时间"）时分数被摊薄到下限以下
+     */
+    private static final double MIN_SCORE = COLUMN_WEIGHT;
+    /**
+     * 外键关联表的分数占引用方分数的比例
+     */
+    private static final double REFERENCED_RATIO = 0.3;
+    private static final int MIN_KEYWORD_LENGTH = 2;
+    private static final Pattern IDENTIFIER = Pattern.compile("[a-z0-9_$]+");
+    private static final Pattern PHRASE_SEPARATOR = Pattern.compile("[，,。.;；:：、()（）\\s]+");
+    private static final String[] PHRASE_PREFIXES = {"创建", "新建", "添加"};
+    private static final String[] PHRASE_SUFFIXES = {"表", "信息"};
+    private static final String[] COLUMN_SUFFIXES = {"id", "编号"};
+
+    private final List<String> ids = new ArrayList<>();
+    private final Map<String, TextSegment> segments = new HashMap<>();
+    private final List<TableSchema> tables = new ArrayList<>();
+    private final Map<String, Integer> tableOrdinals = new HashMap<>();
+    private final Map<String, Map<Integer, Double>> postings = new HashMap<>();
+    private int maxKeywordLength;
+
+    /**
+     * 从已入库的片段建索引：只收录带表名元数据的表结构片段（{@link TableSchema#toSegment}），
+     * 片段文本重新解析出列和注释；同名表只保留第一个
+     *
+     * @param segments 片段ID -> 片段
+     */
+    public SchemaIndex(Map<String, TextSegment> segments) {
+        segments.forEach((id, segment) -> {
+            String name = segment.metadata().getString(TableSchema.TABLE_NAME_KEY);
+            if (name == null || tableOrdinals.containsKey(name.toLowerCase(Locale.ROOT))) {
+                return;
+            }
+            DdlSchemaParser.parse(segment.text()).stream()
+                    .filter(table -> table.getName().equalsIgnoreCase(name))
+                    .findFirst()
+                    .ifPresent(table -> {
+                        int ordinal = ids.size();
+                        tableOrdinals.put(name.toLowerCase(Locale.ROOT), ordinal);
+                        ids.add(id);
+                        this.segments.put(id, segment);
+                        tables.add(table);
+                        index(ordinal, table);
+                    });
+        });
+        // 关键词命中的表越多，区分度越低
+        postings.values().forEach(weights -> {
+            int size = weights.size();
+            weights.replaceAll((ordinal, weight) -> weight / size);
+        });
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    public int keywordCount() {
+        return postings.size();
+    }
+
+    public TextSegment segment(String id) {
+        return segments.get(id);
+    }
+
+    /**
+     * 按查询中出现的表、列关键词查找相关表，按分数降序返回片段ID；
+     * 没有关键词命中、或最高分低于 {@link #MIN_SCORE} 时返回空列表
+     */
+    public List<ScoredId> lookup(String query, int maxResults) {
+        String text = query.toLowerCase(Locale.ROOT);
+        Set<String> matched = new HashSet<>();
+        Matcher identifier = IDENTIFIER.matcher(text);
+        while (identifier.find()) {
+            if (postings.containsKey(identifier.group())) {
+                matched.add(identifier.group());
+            }
+        }
+        for (int start = 0; start < text.length(); start++) {
+            if (text.charAt(start) < 0x80) {
+                continue;
+            }
+            for (int length = Math.min(maxKeywordLength, text.length() - start); length >= MIN_KEYWORD_LENGTH; length--) {
+                String candidate = text.substring(start, start + length);
+                if (postings.containsKey(candidate)) {
+                    matched.add(candidate);
+                    break;
+                }
+            }
+        }
+        if (matched.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Integer, Double> scores = new HashMap<>();
+        for (String keyword : matched) {
+            postings.get(keyword).forEach((ordinal, weight) -> scores.merge(ordinal, weight, Double::sum));
+        }
+        List<Map.Entry<Integer, Double>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<Integer, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        if (ranked.get(0).getValue() < MIN_SCORE) {
+            return List.of();
+        }
+
+        Map<Integer, Double> result = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Double> entry : ranked) {
+            if (result.size() == maxResults) {
+                break;
+            }
+            result.put(entry.getKey(), entry.getValue());
+        }
+        // 补充外键引用的表
+        for (Map.Entry<Integer, Double> entry : List.copyOf(result.entrySet())) {
+            for (String referenced : tables.get(entry.getKey()).referencedTables()) {
+                Integer ordinal = tableOrdinals.get(referenced.toLowerCase(Locale.ROOT));
+                if (result.size() < maxResults && ordinal != null && !result.containsKey(ordinal)) {
+                    result.put(ordinal, entry.getValue() * REFERENCED_RATIO);
+                }
+            }
+        }
+
+        List<ScoredId> hits = new ArrayList<>(result.size());
+        result.forEach((ordinal, score) -> hits.add(new ScoredId(ids.get(ordinal), score)));
+        return hits;
+    }
+
+    // ==================== 建索引 ====================
+
+    private void index(int ordinal, TableSchema table) {
+        addKeyword(table.getName(), ordinal, TABLE_WEIGHT);
+        addPhrase(table.getComment(), ordinal, TABLE_WEIGHT, PHRASE_SUFFIXES);
+        addPhrase(table.getDescription(), ordinal, TABLE_WEIGHT, PHRASE_SUFFIXES);
+        for (TableSchema.Column column : table.getColumns()) {
+            addKeyword(column.getName(), ordinal, COLUMN_WEIGHT);
+            addPhrase(column.getComment(), ordinal, COLUMN_WEIGHT, COLUMN_SUFFIXES);
+        }
+    }
+
+    /**
+     * 注释取第一个分句作为关键词，另外登记去掉"创建"等前缀、"表"等后缀后的形式：
+     * "-- 创建学生信息表" 登记 "创建学生信息表"、"学生信息表"、"学生信息"、"学生"
+     */
+    private void addPhrase(String text, int ordinal, double weight, String[] suffixes) {
+        if (text == null || text.isBlank()) {
+            return;
+        }
+        String phrase = PHRASE_SEPARATOR.split(text.trim().toLowerCase(Locale.ROOT))[0];
+        addKeyword(phrase, ordinal, weight);
+        for (String prefix : PHRASE_PREFIXES) {
+            if (phrase.startsWith(prefix)) {
+                phrase = phrase.substring(prefix.length());
+                addKeyword(phrase, ordinal, weight);
+                break;
+            }
+        }
+        for (String suffix : suffixes) {
+            if (phrase.endsWith(suffix)) {
+                phrase = phrase.substring(0, phrase.length() - suffix.length());
+                addKeyword(phrase, ordinal, weight);
+            }
+        }
+    }
+
+    private void addKeyword(String keyword, int ordinal, double weight) {
+        if (keyword == null) {
+            return;
+        }
+        String key = keyword.trim().toLowerCase(Locale.ROOT);
+        if (key.length() < MIN_KEYWORD_LENGTH) {
+            return;
+        }
+        postings.computeIfAbsent(key, k -> new HashMap<>()).merge(ordinal, weight, Math::max);
+        maxKeywordLength = Math.max(maxKeywordLength, key.length());
+    }
+}
@@ -0,0 +1,95 @@
+package com.mcp.robot.service.schema;
+
+import com.mcp.robot.service.MysqlEmbeddingStore;
+import com.mcp.robot.service.vector.ScoredId;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.rag.content.Content;
+import dev.langchain4j.rag.content.ContentMetadata;
+import dev.langchain4j.rag.content.retriever.ContentRetriever;
+import dev.langchain4j.rag.query.Query;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 表结构优先的检索器：先用 {@link SchemaIndex} 按查询中的表名、列名、注释关键词精确查找表结构片段，
+ * 命中即返回，不做向量化和向量检索；没有关键词命中、或只命中多张表共有的列时交给 fallback（向量 / 混合检索）。
+ * <p>
+ * 索引由集合中带表名元数据的片段构建，集合版本号变化（写入、删除、同步）后下次检索时重建；
+ * 读库失败时本次直接走 fallback，不影响 SQL 生成。
+ */
+@Slf4j
+public class SchemaLookupContentRetriever implements ContentRetriever {
+
+    private final MysqlEmbeddingStore embeddingStore;
+    private final String collection;
+    private final ContentRetriever fallback;
+    private final int maxResults;
+
+    private volatile Snapshot snapshot;
+
+    public SchemaLookupContentRetriever(MysqlEmbeddingStore embeddingStore, String collection,
+                                        ContentRetriever fallback, int maxResults) {
+        this.embeddingStore = embeddingStore;
+        this.collection = collection;
+        this.fallback = fallback;
+        this.maxResults = maxResults;
+    }
+
+    @Override
+    public List<Content> retrieve(Query query) {
+        SchemaIndex index;
+        try {
+            index = index();
+        } catch (Exception e) {
+            log.warn("表结构索引构建失败，改用向量检索: collection={}, {}", collection, e.getMessage());
+            return fallback.retrieve(query);
+        }
+        List<ScoredId> hits = index.lookup(query.text(), maxResults);
+        if (hits.isEmpty()) {
+            return fallback.retrieve(query);
+        }
+        List<Content> contents = new ArrayList<>(hits.size());
+        for (ScoredId hit : hits) {
+            contents.add(Content.from(index.segment(hit.getId()), Map.of(
+                    ContentMetadata.SCORE, hit.getScore(),
+                    ContentMetadata.EMBEDDING_ID, hit.getId())));
+        }
+        log.info("表结构精确命中: collection={}, 返回 {} 张表", collection, contents.size());
+        return contents;
+    }
+
+    /**
+     * 当前版本的索引。版本号为 0 时（集合为空，或内存索引尚未加载、写入不计版本）不复用快照
+     */
+    private SchemaIndex index() {
+        long version = embeddingStore.version(collection);
+        Snapshot current = snapshot;
+        if (current != null && current.version == version && version != 0) {
+            return current.index;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current == null || current.version != version || version == 0) {
+                Map<String, TextSegment> segments = embeddingStore.collectionSegments(collection);
+                current = new Snapshot(version, new SchemaIndex(segments));
+                snapshot = current;
+                log.debug("表结构索引已重建: collection={}, tables={}, keywords={}",
+                        collection, current.index.size(), current.index.keywordCount());
+            }
+            return current.index;
+        }
+    }
+
+    private static final class Snapshot {
+        final long version;
+        final SchemaIndex index;
+
+        Snapshot(long version, SchemaIndex index) {
+            this.version = version;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.mcp.robot.service.schema;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 一张表的结构：列、注释、外键，以及建表和针对该表的 ALTER / CREATE INDEX 语句原文
+ * <p>
+ * 入库时整张表作为一个片段（{@link #toSegment}），不会被通用切分器从中间截断。
+ */
+@Getter
+@Setter
+@ToString(of = {"name", "comment", "description"})
+public class TableSchema {
+
+    /**
+     * 表结构片段元数据中的表名
+     */
+    public static final String TABLE_NAME_KEY = "table_name";
+
+    private final String name;
+    /**
+     * 表注释（COMMENT = '...'）
+     */
+    private String comment;
+    /**
+     * 建表语句前紧邻的单行注释
+     */
+    private String description;
+    private final List<Column> columns = new ArrayList<>();
+    private final List<ForeignKey> foreignKeys = new ArrayList<>();
+    private final List<String> statements = new ArrayList<>();
+
+    public TableSchema(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 外键引用的其他表
+     */
+    public Set<String> referencedTables() {
+        Set<String> tables = new LinkedHashSet<>();
+        for (ForeignKey foreignKey : foreignKeys) {
+            if (!foreignKey.getReferencedTable().equalsIgnoreCase(name)) {
+                tables.add(foreignKey.getReferencedTable());
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * 片段文本：说明注释 + 建表语句 + 该表的其他 DDL 语句，保留原文，模型看到的就是真实的 DDL
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        if (description != null) {
+            text.append("-- ").append(description).append('\n');
+        }
+        for (String statement : statements) {
+            text.append(statement).append(";\n");
+        }
+        return text.toString();
+    }
+
+    /**
+     * 以整张表为一个片段，元数据在给定元数据的基础上附带表名
+     */
+    public TextSegment toSegment(Metadata metadata) {
+        Metadata copy = metadata.copy();
+        copy.put(TABLE_NAME_KEY, name);
+        return TextSegment.from(toText(), copy);
+    }
+
+    @Getter
+    @ToString
+    @RequiredArgsConstructor
+    public static class Column {
+
+        private final String name;
+        private final String type;
+        private final String comment;
+    }
+
+    @Getter
+    @ToString
+    @RequiredArgsConstructor
+    public static class ForeignKey {
+
+        private final String column;
+        private final String referencedTable;
+        private final String referencedColumn;
+    }
+}
@@ -0,0 +1,368 @@
+package com.mcp.robot.service.vector;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 为常驻内存的向量索引提供“快照 + WAL”持久化
+ * <p>
+ * 每次 add/remove/clear 先作用于被包装的索引，再追加到 WAL；WAL 记录数超过阈值或定时触发 checkpoint：
+ * 先把当前 WAL 轮换为 wal.prev，再在后台把旧快照与 wal.prev 合并成新快照（流式合并，不读取内存索引，
+ * 内存占用只与 WAL 中的 ID 数有关），原子替换后删除 wal.prev。
+ * <p>
+ * 启动时依次回放快照、wal.prev、wal 恢复索引，随后由 MysqlEmbeddingStore 按 ID 与 MySQL 对账，
+ * 只补齐缺失或清理多余的向量，无需重新读取和解析全表。快照或 WAL 损坏时丢弃本地文件，退化为全量加载。
+ */
+@Slf4j
+public class DurableVectorIndex implements VectorIndex, AutoCloseable {
+
+    private static final String SNAPSHOT_FILE = "snapshot.vec";
+    private static final String SNAPSHOT_TEMP_FILE = "snapshot.vec.tmp";
+    private static final String WAL_FILE = "wal.log";
+    private static final String ROTATED_WAL_FILE = "wal.prev.log";
+
+    private final VectorIndex delegate;
+    private final Path directory;
+    private final long checkpointRecords;
+
+    /**
+     * 串行化写操作，保证 WAL 顺序与索引的变更顺序一致
+     */
+    private final Object writeLock = new Object();
+    private final Set<String> ids = new HashSet<>();
+    private final AtomicBoolean checkpointRunning = new AtomicBoolean(false);
+    private final ScheduledExecutorService checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "vector-index-checkpointer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private VectorLogFile.Writer wal;
+    private long restoredRecords;
+    private long restoreMillis;
+    private long checkpoints;
+
+    public DurableVectorIndex(VectorIndex delegate, Path directory, long checkpointRecords, long checkpointIntervalSeconds) {
+        this.delegate = delegate;
+        this.directory = directory;
+        this.checkpointRecords = checkpointRecords;
+        restore();
+        checkpointer.scheduleWithFixedDelay(this::checkpoint,
+                checkpointIntervalSeconds, checkpointIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void add(String id, float[] vector) {
+        boolean checkpointDue;
+        synchronized (writeLock) {
+            delegate.add(id, vector);
+            ids.add(id);
+            checkpointDue = appendWal(VectorLogFile.ADD, id, vector);
+        }
+        if (checkpointDue) {
+            checkpointer.execute(this::checkpoint);
+        }
+    }
+
+    @Override
+    public boolean remove(String id) {
+        boolean removed;
+        boolean checkpointDue;
+        synchronized (writeLock) {
+            removed = delegate.remove(id);
+            ids.remove(id);
+            checkpointDue = removed && appendWal(VectorLogFile.REMOVE, id, null);
+        }
+        if (checkpointDue) {
+            checkpointer.execute(this::checkpoint);
+        }
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        synchronized (writeLock) {
+            delegate.clear();
+            ids.clear();
+            appendWal(VectorLogFile.CLEAR, null, null);
+        }
+    }
+
+    @Override
+    public List<ScoredId> search(float[] query, int maxResults, double minScore, Set<String> candidateIds) {
+        return delegate.search(query, maxResults, minScore, candidateIds);
+    }
+
+    @Override
+    public List<List<ScoredId>> searchBatch(float[][] queries, int maxResults, double minScore,
+                                            Set<String> candidateIds) {
+        return delegate.searchBatch(queries, maxResults, minScore, candidateIds);
+    }
+
+    @Override
+    public float[] get(String id) {
+        return delegate.get(id);
+    }
+
+    @Override
+    public Map<String, float[]> getAll(Collection<String> ids) {
+        return delegate.getAll(ids);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public boolean persistent() {
+        return true;
+    }
+
+    @Override
+    public Set<String> persistedIds() {
+        synchronized (writeLock) {
+            return new HashSet<>(ids);
+        }
+    }
+
+    /**
+     * 维护只改变被包装索引的内部结构（图、量化码），向量本身不变，无需写 WAL
+     */
+    @Override
+    public boolean needsMaintenance() {
+        return delegate.needsMaintenance();
+    }
+
+    @Override
+    public boolean maintenanceStep() {
+        return delegate.maintenanceStep();
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>(delegate.stats());
+        Map<String, Object> persistence = new LinkedHashMap<>();
+        persistence.put("directory", directory.toAbsolutePath().toString());
+        persistence.put("snapshot_bytes", fileSize(directory.resolve(SNAPSHOT_FILE)));
+        synchronized (writeLock) {
+            persistence.put("wal_records", wal == null ? 0 : wal.records());
+            persistence.put("wal_bytes", wal == null ? 0 : wal.bytes());
+            persistence.put("checkpoints", checkpoints);
+        }
+        persistence.put("restored_records", restoredRecords);
+        persistence.put("restore_ms", restoreMillis);
+        stats.put("persistence", persistence);
+        return stats;
+    }
+
+    /**
+     * 合并快照与 WAL 生成新快照。轮换 WAL 时短暂持有写锁，合并过程不阻塞读写。
+     */
+    public void checkpoint() {
+        if (!checkpointRunning.compareAndSet(false, true)) {
+            return;
+        }
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        Path rotated = directory.resolve(ROTATED_WAL_FILE);
+        Path temp = directory.resolve(SNAPSHOT_TEMP_FILE);
+        try {
+            synchronized (writeLock) {
+                // 上次合并失败时 wal.prev 仍在，先完成它，当前 WAL 留到下一次
+                if (!Files.exists(rotated)) {
+                    if (wal.records() == 0) {
+                        return;
+                    }
+                    wal.close();
+                    Files.move(directory.resolve(WAL_FILE), rotated);
+                    wal = VectorLogFile.openWriter(directory.resolve(WAL_FILE), VectorLogFile.WAL_MAGIC);
+                }
+            }
+
+            long start = System.currentTimeMillis();
+            // 第一遍：只记录每个ID在 WAL 中最后一次 ADD 的序号（-1 表示最终被删除）
+            Map<String, Long> lastAdd = new HashMap<>();
+            boolean[] cleared = {false};
+            long[] sequence = {0};
+            VectorLogFile.replay(rotated, VectorLogFile.WAL_MAGIC, (op, id, vector) -> {
+                long current = sequence[0]++;
+                switch (op) {
+                    case VectorLogFile.ADD -> lastAdd.put(id, current);
+                    case VectorLogFile.REMOVE -> lastAdd.put(id, -1L);
+                    case VectorLogFile.CLEAR -> {
+                        lastAdd.clear();
+                        cleared[0] = true;
+                    }
+                    default -> {
+                    }
+                }
+            });
+
+            Files.deleteIfExists(temp);
+            long[] written = {0};
+            try (VectorLogFile.Writer out = VectorLogFile.openWriter(temp, VectorLogFile.SNAPSHOT_MAGIC)) {
+                // 第二遍：旧快照中未被 WAL 改动的记录原样保留
+                if (!cleared[0]) {
+                    VectorLogFile.replay(snapshot, VectorLogFile.SNAPSHOT_MAGIC, (op, id, vector) -> {
+                        if (!lastAdd.containsKey(id)) {
+                            appendUnchecked(out, id, vector);
+                            written[0]++;
+                        }
+                    });
+                }
+                // 第三遍：WAL 中每个ID的最终版本
+                sequence[0] = 0;
+                VectorLogFile.replay(rotated, VectorLogFile.WAL_MAGIC, (op, id, vector) -> {
+                    long current = sequence[0]++;
+                    Long last = lastAdd.get(id);
+                    if (op == VectorLogFile.ADD && last != null && last == current) {
+                        appendUnchecked(out, id, vector);
+                        written[0]++;
+                    }
+                });
+            }
+            Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(rotated);
+
+            synchronized (writeLock) {
+                checkpoints++;
+            }
+            log.info("向量索引 checkpoint 完成: 快照 {} 条, 合并 WAL {} 条, 耗时 {} ms",
+                    written[0], sequence[0], System.currentTimeMillis() - start);
+        } catch (IOException | UncheckedIOException e) {
+            log.error("向量索引 checkpoint 失败，将在下次重试", e);
+        } finally {
+            checkpointRunning.set(false);
+        }
+    }
+
+    /**
+     * 刷盘并停止后台 checkpoint，由 Spring 在容器关闭时调用
+     */
+    @Override
+    public void close() {
+        checkpointer.shutdownNow();
+        synchronized (writeLock) {
+            try {
+                wal.close();
+            } catch (IOException e) {
+                log.warn("关闭向量索引 WAL 失败", e);
+            }
+        }
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 依次回放快照、轮换中的 WAL 和当前 WAL
+     */
+    private void restore() {
+        long start = System.currentTimeMillis();
+        Path walPath = directory.resolve(WAL_FILE);
+        long walRecords = 0;
+        VectorLogFile.Visitor apply = (op, id, vector) -> {
+            switch (op) {
+                case VectorLogFile.ADD -> {
+                    delegate.add(id, vector);
+                    ids.add(id);
+                }
+                case VectorLogFile.REMOVE -> {
+                    delegate.remove(id);
+                    ids.remove(id);
+                }
+                case VectorLogFile.CLEAR -> {
+                    delegate.clear();
+                    ids.clear();
+                }
+                default -> {
+                }
+            }
+            restoredRecords++;
+        };
+        try {
+            Files.createDirectories(directory);
+            Files.deleteIfExists(directory.resolve(SNAPSHOT_TEMP_FILE));
+            VectorLogFile.replay(directory.resolve(SNAPSHOT_FILE), VectorLogFile.SNAPSHOT_MAGIC, apply);
+            VectorLogFile.replay(directory.resolve(ROTATED_WAL_FILE), VectorLogFile.WAL_MAGIC, apply);
+            long beforeWal = restoredRecords;
+            long validBytes = VectorLogFile.replay(walPath, VectorLogFile.WAL_MAGIC, apply);
+            walRecords = restoredRecords - beforeWal;
+            if (Files.exists(walPath)) {
+                VectorLogFile.truncate(walPath, validBytes);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("向量索引快照恢复失败，丢弃本地文件并从 MySQL 全量加载", e);
+            delegate.clear();
+            ids.clear();
+            restoredRecords = 0;
+            walRecords = 0;
+            deleteQuietly(SNAPSHOT_FILE, ROTATED_WAL_FILE, WAL_FILE);
+        }
+        try {
+            // 回放过的 WAL 记录计入阈值，重启不会推迟 checkpoint
+            wal = VectorLogFile.openWriter(walPath, VectorLogFile.WAL_MAGIC, walRecords);
+        } catch (IOException e) {
+            throw new UncheckedIOException("打开向量索引 WAL 失败: " + walPath, e);
+        }
+        restoreMillis = System.currentTimeMillis() - start;
+        log.info("向量索引从快照恢复: directory={}, 回放 {} 条记录, size={}, 耗时 {} ms",
+                directory.toAbsolutePath(), restoredRecords, delegate.size(), restoreMillis);
+    }
+
+    /**
+     * 追加 WAL 并刷到页缓存，返回是否已达到 checkpoint 阈值且没有 checkpoint 在进行。
+     * 用 >= 而不是 ==：重启回放或 checkpoint 失败后记录数可能已越过阈值，之后每次写入都会再次触发。
+     * 写失败只记录日志：索引本身已更新，重启时的 MySQL 对账会补齐丢失的记录。
+     */
+    private boolean appendWal(byte op, String id, float[] vector) {
+        try {
+            wal.append(op, id, vector);
+            wal.flush();
+        } catch (IOException e) {
+            log.error("写入向量索引 WAL 失败: op={}, id={}", op, id, e);
+        }
+        return wal.records() >= checkpointRecords && !checkpointRunning.get();
+    }
+
+    private static void appendUnchecked(VectorLogFile.Writer out, String id, float[] vector) {
+        try {
+            out.append(VectorLogFile.ADD, id, vector);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void deleteQuietly(String... fileNames) {
+        for (String fileName : fileNames) {
+            try {
+                Files.deleteIfExists(directory.resolve(fileName));
+            } catch (IOException e) {
+                log.warn("删除向量索引文件失败: {}", fileName, e);
+            }
+        }
+    }
+
+    private static long fileSize(Path path) {
+        try {
+            return Files.exists(path) ? Files.size(path) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
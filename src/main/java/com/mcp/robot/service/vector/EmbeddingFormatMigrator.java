@@ -0,0 +1,120 @@
+package com.mcp.robot.service.vector;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.mcp.robot.mapper.KnowledgeEmbeddingMapper;
+import com.mcp.robot.model.KnowledgeEmbeddingEntity;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 向量存储格式在线迁移
+ * <p>
+ * 启动后在后台线程中按主键分批扫描 embedding_blob 为空的旧行，
+ * 将 JSON 向量转换为二进制格式写回，并清空旧的 JSON 列。
+ * 迁移期间读路径同时兼容两种格式，服务无需停机。
+ * 表结构变更见 resources/migration/knowledge_embedding_blob.sql。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EmbeddingFormatMigrator {
+
+    private final KnowledgeEmbeddingMapper knowledgeEmbeddingMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${vector-store.migration.enabled:true}")
+    private boolean enabled;
+
+    @Value("${vector-store.migration.batch-size:200}")
+    private int batchSize;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong migrated = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (!enabled) {
+            log.info("向量格式迁移已关闭");
+            return;
+        }
+        Thread worker = new Thread(this::migrate, "embedding-format-migrator");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 执行迁移（幂等，可重复调用）
+     */
+    public void migrate() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("向量格式迁移正在进行中，忽略本次调用");
+            return;
+        }
+        try {
+            long lastId = 0;
+            while (true) {
+                LambdaQueryWrapper<KnowledgeEmbeddingEntity> wrapper = Wrappers.lambdaQuery();
+                wrapper.select(KnowledgeEmbeddingEntity::getId, KnowledgeEmbeddingEntity::getEmbeddingVector)
+                        .isNull(KnowledgeEmbeddingEntity::getEmbeddingBlob)
+                        .gt(KnowledgeEmbeddingEntity::getId, lastId)
+                        .orderByAsc(KnowledgeEmbeddingEntity::getId)
+                        .last("LIMIT " + batchSize);
+
+                List<KnowledgeEmbeddingEntity> batch = knowledgeEmbeddingMapper.selectList(wrapper);
+                if (batch.isEmpty()) {
+                    break;
+                }
+
+                transactionTemplate.executeWithoutResult(status -> batch.forEach(this::migrateRow));
+                lastId = batch.get(batch.size() - 1).getId();
+                log.info("向量格式迁移进度: migrated={}, failed={}, lastId={}", migrated.get(), failed.get(), lastId);
+            }
+            log.info("向量格式迁移完成: migrated={}, failed={}", migrated.get(), failed.get());
+        } catch (Exception e) {
+            log.warn("向量格式迁移中断，将在下次启动时继续: {}", e.getMessage());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 迁移状态
+     */
+    public Map<String, Object> status() {
+        return Map.of(
+                "running", running.get(),
+                "migrated", migrated.get(),
+                "failed", failed.get()
+        );
+    }
+
+    private void migrateRow(KnowledgeEmbeddingEntity entity) {
+        try {
+            byte[] blob = VectorCodec.encode(VectorCodec.parseJson(entity.getEmbeddingVector()));
+
+            LambdaUpdateWrapper<KnowledgeEmbeddingEntity> update = Wrappers.lambdaUpdate();
+            update.set(KnowledgeEmbeddingEntity::getEmbeddingBlob, blob)
+                    .set(KnowledgeEmbeddingEntity::getEmbeddingVector, null)
+                    .eq(KnowledgeEmbeddingEntity::getId, entity.getId())
+                    .isNull(KnowledgeEmbeddingEntity::getEmbeddingBlob);
+            knowledgeEmbeddingMapper.update(null, update);
+            migrated.incrementAndGet();
+        } catch (IllegalArgumentException e) {
+            failed.incrementAndGet();
+            log.error("向量格式迁移失败: id={}", entity.getId(), e);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.mcp.robot.service.vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * 暴力检索的扁平索引
+ * <p>
+ * 所有向量归一化后按行连续存放在一个 float[] 矩阵中（row * dimension），并维护平行的 ID 数组和原始范数。
+ * 删除时用最后一行填补空位，保证矩阵始终紧凑。检索即查询向量与矩阵的逐行点积，
+ * 扫描过程只维护定长的 top-K 堆，分配量与 K 相关而与数据量无关。
+ * <p>
+ * 多个查询批量检索时按行分块：一块矩阵行读入缓存后依次与所有查询做点积，
+ * 整个矩阵只从内存读一遍，N 个查询的耗时接近单个查询。
+ */
+public class FlatVectorIndex implements VectorIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    /**
+     * 单个 float[] 的长度上限（部分 JVM 保留若干数组头字）。矩阵长度不超过它，
+     * 行偏移 row * dimension 始终在 int 范围内
+     */
+    private static final int MAX_MATRIX_FLOATS = Integer.MAX_VALUE - 8;
+    /**
+     * 每个并行任务至少处理的浮点数个数，低于此规模时并行调度的开销大于收益
+     */
+    private static final int PARALLEL_GRAIN = 1 << 18;
+    /**
+     * 批量检索时每个行块包含的浮点数个数（64KB），保证行块在 L2 缓存内被所有查询复用
+     */
+    private static final int BLOCK_FLOATS = 1 << 14;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> rowById = new HashMap<>();
+
+    private int dimension = -1;
+    private int size;
+    private float[] matrix = new float[0];
+    private float[] norms = new float[0];
+    private String[] ids = new String[0];
+
+    @Override
+    public void add(String id, float[] vector) {
+        lock.writeLock().lock();
+        try {
+            checkDimension(vector);
+            Integer row = rowById.get(id);
+            if (row == null) {
+                ensureCapacity(size + 1);
+                row = size++;
+                ids[row] = id;
+                rowById.put(id, row);
+            }
+            System.arraycopy(VectorKernels.normalize(vector), 0, matrix, row * dimension, dimension);
+            norms[row] = VectorKernels.norm(vector);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rowById.remove(id);
+            if (row == null) {
+                return false;
+            }
+            int last = --size;
+            if (row != last) {
+                System.arraycopy(matrix, last * dimension, matrix, row * dimension, dimension);
+                norms[row] = norms[last];
+                ids[row] = ids[last];
+                rowById.put(ids[row], row);
+            }
+            ids[last] = null;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            rowById.clear();
+            size = 0;
+            dimension = -1;
+            matrix = new float[0];
+            norms = new float[0];
+            ids = new String[0];
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ScoredId> search(float[] query, int maxResults, double minScore, Set<String> candidateIds) {
+        return searchBatch(new float[][]{query}, maxResults, minScore, candidateIds).get(0);
+    }
+
+    @Override
+    public List<List<ScoredId>> searchBatch(float[][] queries, int maxResults, double minScore,
+                                            Set<String> candidateIds) {
+        lock.readLock().lock();
+        try {
+            if (size == 0) {
+                return Collections.nCopies(queries.length, List.of());
+            }
+            float[][] normalized = new float[queries.length][];
+            for (int q = 0; q < queries.length; q++) {
+                checkDimension(queries[q]);
+                normalized[q] = VectorKernels.normalize(queries[q]);
+            }
+            TopKCollector[] topK = candidateIds == null
+                    ? scan(normalized, maxResults, minScore)
+                    : scanCandidates(normalized, candidateIds, maxResults, minScore);
+
+            List<List<ScoredId>> results = new ArrayList<>(topK.length);
+            for (TopKCollector collector : topK) {
+                int[] rows = new int[collector.size()];
+                float[] scores = collector.drain(rows);
+                List<ScoredId> result = new ArrayList<>(rows.length);
+                for (int i = 0; i < rows.length; i++) {
+                    result.add(new ScoredId(ids[rows[i]], scores[i]));
+                }
+                results.add(result);
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public float[] get(String id) {
+        lock.readLock().lock();
+        try {
+            Integer row = rowById.get(id);
+            if (row == null) {
+                return null;
+            }
+            int offset = row * dimension;
+            float[] vector = Arrays.copyOfRange(matrix, offset, offset + dimension);
+            for (int i = 0; i < dimension; i++) {
+                vector[i] *= norms[row];
+            }
+            return vector;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        lock.readLock().lock();
+        try {
+            return Map.of(
+                    "type", "flat",
+                    "size", size,
+                    "dimension", Math.max(dimension, 0),
+                    "capacity", ids.length,
+                    "matrix_bytes", (long) matrix.length * Float.BYTES,
+                    "kernel", VectorKernels.implementation()
+            );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    /**
+     * 流式扫描矩阵，只保留 top-K 的行号。规模较大时按行分块用 fork-join 并行，每块各自收集后合并。
+     */
+    private TopKCollector[] scan(float[][] normalizedQueries, int maxResults, double minScore) {
+        int rowsPerTask = Math.max(1, PARALLEL_GRAIN / (dimension * normalizedQueries.length));
+        if (size <= rowsPerTask) {
+            return scanRange(normalizedQueries, 0, size, maxResults, minScore);
+        }
+        int tasks = (size + rowsPerTask - 1) / rowsPerTask;
+        return IntStream.range(0, tasks).parallel()
+                .mapToObj(task -> scanRange(normalizedQueries, task * rowsPerTask,
+                        Math.min(size, (task + 1) * rowsPerTask), maxResults, minScore))
+                .reduce((a, b) -> {
+                    for (int q = 0; q < a.length; q++) {
+                        a[q].merge(b[q]);
+                    }
+                    return a;
+                })
+                .orElseGet(() -> collectors(normalizedQueries.length, maxResults, minScore));
+    }
+
+    /**
+     * 只扫描候选ID对应的行
+     */
+    private TopKCollector[] scanCandidates(float[][] normalizedQueries, Set<String> candidateIds,
+                                           int maxResults, double minScore) {
+        TopKCollector[] topK = collectors(normalizedQueries.length, maxResults, minScore);
+        for (String id : candidateIds) {
+            Integer row = rowById.get(id);
+            if (row != null) {
+                for (int q = 0; q < normalizedQueries.length; q++) {
+                    topK[q].offer(VectorKernels.dot(normalizedQueries[q], matrix, row * dimension), row);
+                }
+            }
+        }
+        return topK;
+    }
+
+    /**
+     * 分块的矩阵 × 多向量：外层按行块推进，内层每个查询扫一遍当前行块
+     */
+    private TopKCollector[] scanRange(float[][] normalizedQueries, int from, int to, int maxResults, double minScore) {
+        TopKCollector[] topK = collectors(normalizedQueries.length, maxResults, minScore);
+        int blockRows = Math.max(1, BLOCK_FLOATS / dimension);
+        for (int blockStart = from; blockStart < to; blockStart += blockRows) {
+            int blockEnd = Math.min(to, blockStart + blockRows);
+            for (int q = 0; q < normalizedQueries.length; q++) {
+                float[] query = normalizedQueries[q];
+                TopKCollector collector = topK[q];
+                for (int row = blockStart; row < blockEnd; row++) {
+                    collector.offer(VectorKernels.dot(query, matrix, row * dimension), row);
+                }
+            }
+        }
+        return topK;
+    }
+
+    private static TopKCollector[] collectors(int count, int maxResults, double minScore) {
+        TopKCollector[] topK = new TopKCollector[count];
+        for (int q = 0; q < count; q++) {
+            topK[q] = new TopKCollector(maxResults, minScore);
+        }
+        return topK;
+    }
+
+    private void checkDimension(float[] vector) {
+        if (dimension < 0) {
+            dimension = vector.length;
+        } else if (vector.length != dimension) {
+            throw new IllegalArgumentException(
+                    String.format("向量维度不匹配: %d vs %d", vector.length, dimension));
+        }
+    }
+
+    /**
+     * 按 1.5 倍扩容，容量以矩阵能容纳的最大行数封顶，超过时明确报错而不是 int 溢出
+     */
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int maxRows = MAX_MATRIX_FLOATS / dimension;
+        if (required > maxRows) {
+            throw new IllegalStateException(String.format(
+                    "扁平索引已达容量上限: %d 维向量最多 %d 条，请改用 hnsw、int8 或 mmap 索引", dimension, maxRows));
+        }
+        long grown = Math.max((long) INITIAL_CAPACITY, Math.max(required, ids.length + (ids.length >> 1)));
+        int capacity = (int) Math.min(grown, maxRows);
+        matrix = Arrays.copyOf(matrix, capacity * dimension);
+        norms = Arrays.copyOf(norms, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+    }
+}
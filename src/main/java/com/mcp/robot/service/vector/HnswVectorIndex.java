@@ -0,0 +1,583 @@
+package com.mcp.robot.service.vector;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * HNSW（Hierarchical Navigable Small World）近似最近邻索引
+ * <p>
+ * 参数：
+ * <ul>
+ *     <li>m：每层的邻居数（第 0 层为 2m），越大召回越高、内存越大</li>
+ *     <li>efConstruction：建图时的候选集大小，影响图质量和插入耗时</li>
+ *     <li>efSearch：检索时的候选集大小，影响召回和检索耗时</li>
+ * </ul>
+ * 删除采用墓碑标记：节点保留在图中继续参与导航，但不再出现在结果中。
+ * 墓碑比例超过 rebuildThreshold 后由后台维护分步重建：存活节点分批插入一张新图，
+ * 重建期间的写操作同时应用到新旧两张图，全部插入后一次性替换，检索始终使用旧图。
+ */
+@Slf4j
+public class HnswVectorIndex implements VectorIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int BRUTE_FORCE_CANDIDATES = 2000;
+    private static final double BRUTE_FORCE_RATIO = 0.1;
+    /**
+     * 每个维护步骤插入新图的节点数，期间阻塞写操作、不阻塞检索
+     */
+    private static final int REBUILD_STEP_NODES = 256;
+
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double levelMultiplier;
+    private final double rebuildThreshold;
+    private final Random random = new Random(42);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> nodeById = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+
+    private String[] ids = new String[0];
+    /**
+     * 归一化后的向量，相似度即点积
+     */
+    private float[][] vectors = new float[0][];
+    private float[] norms = new float[0];
+    /**
+     * links[node][level] = [count, neighbor1, neighbor2, ...]
+     */
+    private int[][][] links = new int[0][][];
+
+    private int nodeCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private int dimension = -1;
+
+    /**
+     * 重建中的新图及旧图的扫描位置，只在持有写锁或读锁 + maintenanceLock 时访问
+     */
+    private final Object maintenanceLock = new Object();
+    private HnswVectorIndex rebuilding;
+    private int rebuildCursor;
+    private long rebuilds;
+
+    /**
+     * @param rebuildThreshold 墓碑占全部节点的比例达到该值时需要重建
+     */
+    public HnswVectorIndex(int m, int efConstruction, int efSearch, double rebuildThreshold) {
+        if (m < 2 || efConstruction < 1 || efSearch < 1) {
+            throw new IllegalArgumentException(
+                    String.format("HNSW 参数非法: m=%d, efConstruction=%d, efSearch=%d", m, efConstruction, efSearch));
+        }
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.rebuildThreshold = rebuildThreshold;
+    }
+
+    @Override
+    public void add(String id, float[] vector) {
+        lock.writeLock().lock();
+        try {
+            checkDimension(vector);
+            Integer existing = nodeById.remove(id);
+            if (existing != null) {
+                deleted.set(existing);
+            }
+            insert(id, VectorKernels.normalize(vector), VectorKernels.norm(vector));
+            if (rebuilding != null) {
+                rebuilding.add(id, vector);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodeById.remove(id);
+            if (node == null) {
+                return false;
+            }
+            deleted.set(node);
+            if (rebuilding != null) {
+                rebuilding.remove(id);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            nodeById.clear();
+            deleted.clear();
+            ids = new String[0];
+            vectors = new float[0][];
+            norms = new float[0];
+            links = new int[0][][];
+            nodeCount = 0;
+            entryPoint = -1;
+            maxLevel = -1;
+            dimension = -1;
+            rebuilding = null;
+            rebuildCursor = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ScoredId> search(float[] query, int maxResults, double minScore, Set<String> candidateIds) {
+        lock.readLock().lock();
+        try {
+            if (nodeById.isEmpty()) {
+                return List.of();
+            }
+            checkDimension(query);
+            float[] normalized = VectorKernels.normalize(query);
+
+            if (candidateIds != null && isSelective(candidateIds.size())) {
+                return bruteForce(normalized, candidateIds, maxResults, minScore);
+            }
+
+            // 过滤条件较宽时仍走图检索，按候选占比放大 ef 以弥补被过滤掉的结果
+            int ef = Math.max(efSearch, maxResults);
+            if (candidateIds != null) {
+                double selectivity = (double) candidateIds.size() / nodeById.size();
+                ef = (int) Math.min(nodeCount, Math.ceil(ef / selectivity));
+            }
+            int current = greedyDescend(normalized, entryPoint, maxLevel, 0);
+            PriorityQueue<Candidate> found = searchLayer(normalized, current, ef, 0);
+
+            TopKCollector topK = new TopKCollector(maxResults, minScore);
+            for (Candidate candidate : found) {
+                if (!deleted.get(candidate.node)
+                        && (candidateIds == null || candidateIds.contains(ids[candidate.node]))) {
+                    topK.offer((float) candidate.score, candidate.node);
+                }
+            }
+            return toResult(topK);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public float[] get(String id) {
+        lock.readLock().lock();
+        try {
+            Integer node = nodeById.get(id);
+            if (node == null) {
+                return null;
+            }
+            float[] vector = vectors[node].clone();
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= norms[node];
+            }
+            return vector;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodeById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("type", "hnsw");
+            stats.put("size", nodeById.size());
+            stats.put("nodes", nodeCount);
+            stats.put("tombstones", deleted.cardinality());
+            stats.put("dimension", Math.max(dimension, 0));
+            stats.put("max_level", maxLevel);
+            stats.put("m", m);
+            stats.put("ef_construction", efConstruction);
+            stats.put("ef_search", efSearch);
+            stats.put("rebuilds", rebuilds);
+            stats.put("rebuild_progress", rebuilding == null ? -1.0 : (double) rebuildCursor / Math.max(1, nodeCount));
+            stats.put("kernel", VectorKernels.implementation());
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean needsMaintenance() {
+        lock.readLock().lock();
+        try {
+            return rebuilding != null
+                    || (nodeCount > 0 && deleted.cardinality() >= rebuildThreshold * nodeCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 重建一步：把旧图中下一批存活节点插入新图；旧图全部扫描完后替换为新图
+     */
+    @Override
+    public boolean maintenanceStep() {
+        synchronized (maintenanceLock) {
+            // 读锁下扫描旧图并写入新图：写操作被排斥（它们同样要写新图），检索不受影响
+            lock.readLock().lock();
+            try {
+                if (rebuilding == null) {
+                    if (nodeCount == 0 || deleted.cardinality() < rebuildThreshold * nodeCount) {
+                        return false;
+                    }
+                    rebuilding = new HnswVectorIndex(m, efConstruction, efSearch, rebuildThreshold);
+                    rebuildCursor = 0;
+                    log.info("HNSW 开始重建: nodes={}, tombstones={}", nodeCount, deleted.cardinality());
+                }
+                int end = Math.min(nodeCount, rebuildCursor + REBUILD_STEP_NODES);
+                for (int node = rebuildCursor; node < end; node++) {
+                    // 重建开始后写入的节点已由写操作同步到新图
+                    if (!deleted.get(node) && !rebuilding.contains(ids[node])) {
+                        rebuilding.insertNormalized(ids[node], vectors[node], norms[node]);
+                    }
+                }
+                rebuildCursor = end;
+                if (rebuildCursor < nodeCount) {
+                    return true;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            return !swapRebuilt();
+        }
+    }
+
+    // ==================== 建图 ====================
+
+    /**
+     * 旧图已全部扫描时用新图替换当前图，返回是否替换成功（期间有新节点写入时继续扫描）
+     */
+    private boolean swapRebuilt() {
+        lock.writeLock().lock();
+        try {
+            if (rebuilding == null || rebuildCursor < nodeCount) {
+                return rebuilding == null;
+            }
+            HnswVectorIndex rebuilt = rebuilding;
+            int tombstones = deleted.cardinality();
+            ids = rebuilt.ids;
+            vectors = rebuilt.vectors;
+            norms = rebuilt.norms;
+            links = rebuilt.links;
+            nodeCount = rebuilt.nodeCount;
+            entryPoint = rebuilt.entryPoint;
+            maxLevel = rebuilt.maxLevel;
+            dimension = rebuilt.dimension;
+            nodeById.clear();
+            nodeById.putAll(rebuilt.nodeById);
+            deleted.clear();
+            deleted.or(rebuilt.deleted);
+            rebuilding = null;
+            rebuildCursor = 0;
+            rebuilds++;
+            log.info("HNSW 重建完成: nodes={}, 清理墓碑 {} 个", nodeCount, tombstones - deleted.cardinality());
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean contains(String id) {
+        lock.readLock().lock();
+        try {
+            return nodeById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 插入已归一化的向量（重建时直接复用旧图中的数据）
+     */
+    private void insertNormalized(String id, float[] normalized, float norm) {
+        lock.writeLock().lock();
+        try {
+            checkDimension(normalized);
+            insert(id, normalized, norm);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void insert(String id, float[] normalized, float norm) {
+        ensureCapacity(nodeCount + 1);
+        int node = nodeCount++;
+        int level = randomLevel();
+
+        ids[node] = id;
+        vectors[node] = normalized;
+        norms[node] = norm;
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[1 + maxConnections(l)];
+        }
+        nodeById.put(id, node);
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        float[] query = vectors[node];
+        int current = greedyDescend(query, entryPoint, maxLevel, level + 1);
+
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            PriorityQueue<Candidate> found = searchLayer(query, current, efConstruction, l);
+            List<Candidate> sorted = new ArrayList<>(found);
+            sorted.sort(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+
+            for (Candidate neighbor : selectNeighbors(sorted, m)) {
+                connect(node, neighbor.node, l);
+                connect(neighbor.node, node, l);
+            }
+            current = sorted.get(0).node;
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * 添加一条有向边，邻居数超限时用启发式裁剪
+     */
+    private void connect(int from, int to, int level) {
+        int[] neighbors = links[from][level];
+        int count = neighbors[0];
+        if (count < neighbors.length - 1) {
+            neighbors[count + 1] = to;
+            neighbors[0] = count + 1;
+            return;
+        }
+
+        List<Candidate> candidates = new ArrayList<>(count + 1);
+        for (int i = 1; i <= count; i++) {
+            candidates.add(new Candidate(neighbors[i], similarity(from, neighbors[i])));
+        }
+        candidates.add(new Candidate(to, similarity(from, to)));
+        candidates.sort(Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+
+        List<Candidate> kept = selectNeighbors(candidates, neighbors.length - 1);
+        neighbors[0] = kept.size();
+        for (int i = 0; i < kept.size(); i++) {
+            neighbors[i + 1] = kept.get(i).node;
+        }
+    }
+
+    /**
+     * 启发式邻居选择：优先保留彼此方向差异大的邻居，不足时再用被裁掉的候选补齐
+     *
+     * @param candidates 按相似度降序排列的候选
+     */
+    private List<Candidate> selectNeighbors(List<Candidate> candidates, int limit) {
+        List<Candidate> selected = new ArrayList<>(limit);
+        List<Candidate> pruned = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (selected.size() >= limit) {
+                break;
+            }
+            boolean diverse = true;
+            for (Candidate chosen : selected) {
+                if (similarity(candidate.node, chosen.node) > candidate.score) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            } else {
+                pruned.add(candidate);
+            }
+        }
+        for (int i = 0; i < pruned.size() && selected.size() < limit; i++) {
+            selected.add(pruned.get(i));
+        }
+        return selected;
+    }
+
+    // ==================== 检索 ====================
+
+    /**
+     * 从 fromLevel 逐层贪心下降到 toLevel，返回 toLevel 上的入口节点
+     */
+    private int greedyDescend(float[] query, int start, int fromLevel, int toLevel) {
+        int current = start;
+        double currentScore = similarity(query, current);
+        for (int l = fromLevel; l >= toLevel; l--) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                int[] neighbors = links[current][l];
+                for (int i = 1; i <= neighbors[0]; i++) {
+                    double score = similarity(query, neighbors[i]);
+                    if (score > currentScore) {
+                        currentScore = score;
+                        current = neighbors[i];
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 在单层上做 ef 宽度的最佳优先搜索，返回以最差结果为堆顶的小顶堆
+     */
+    private PriorityQueue<Candidate> searchLayer(float[] query, int entry, int ef, int level) {
+        BitSet visited = new BitSet(nodeCount);
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(
+                Comparator.comparingDouble((Candidate c) -> c.score).reversed());
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Comparator.comparingDouble(c -> c.score));
+
+        Candidate start = new Candidate(entry, similarity(query, entry));
+        visited.set(entry);
+        candidates.add(start);
+        results.add(start);
+
+        while (!candidates.isEmpty()) {
+            Candidate current = candidates.poll();
+            if (results.size() >= ef && current.score < results.peek().score) {
+                break;
+            }
+            int[][] nodeLinks = links[current.node];
+            if (level >= nodeLinks.length) {
+                continue;
+            }
+            int[] neighbors = nodeLinks[level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                double score = similarity(query, neighbor);
+                if (results.size() < ef || score > results.peek().score) {
+                    Candidate candidate = new Candidate(neighbor, score);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 候选集足够小时直接暴力计算更快，也不会因图检索的截断而丢失结果
+     */
+    private boolean isSelective(int candidates) {
+        return candidates <= BRUTE_FORCE_CANDIDATES || candidates < nodeById.size() * BRUTE_FORCE_RATIO;
+    }
+
+    private List<ScoredId> bruteForce(float[] normalizedQuery, Set<String> candidateIds, int maxResults, double minScore) {
+        TopKCollector topK = new TopKCollector(maxResults, minScore);
+        for (String id : candidateIds) {
+            Integer node = nodeById.get(id);
+            if (node != null) {
+                topK.offer((float) similarity(normalizedQuery, node), node);
+            }
+        }
+        return toResult(topK);
+    }
+
+    private List<ScoredId> toResult(TopKCollector topK) {
+        int[] nodes = new int[topK.size()];
+        float[] scores = topK.drain(nodes);
+        List<ScoredId> result = new ArrayList<>(nodes.length);
+        for (int i = 0; i < nodes.length; i++) {
+            result.add(new ScoredId(ids[nodes[i]], scores[i]));
+        }
+        return result;
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private int randomLevel() {
+        return (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+    }
+
+    private int maxConnections(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private double similarity(int a, int b) {
+        return VectorKernels.dot(vectors[a], vectors[b]);
+    }
+
+    private double similarity(float[] normalizedQuery, int node) {
+        return VectorKernels.dot(normalizedQuery, vectors[node]);
+    }
+
+    private void checkDimension(float[] vector) {
+        if (dimension < 0) {
+            dimension = vector.length;
+        } else if (vector.length != dimension) {
+            throw new IllegalArgumentException(
+                    String.format("向量维度不匹配: %d vs %d", vector.length, dimension));
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(INITIAL_CAPACITY, Math.max(required, ids.length + (ids.length >> 1)));
+        ids = Arrays.copyOf(ids, capacity);
+        vectors = Arrays.copyOf(vectors, capacity);
+        norms = Arrays.copyOf(norms, capacity);
+        links = Arrays.copyOf(links, capacity);
+    }
+
+    private static final class Candidate {
+        private final int node;
+        private final double score;
+
+        private Candidate(int node, double score) {
+            this.node = node;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,481 @@
+package com.mcp.robot.service.vector;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * 基于内存映射段文件的向量索引
+ * <p>
+ * 向量按定长记录追加写入 {@link VectorSegment} 段文件，检索直接扫描映射区，
+ * 向量数据不占用堆内存，堆上只保留 ID → (段号, 槽位) 的定位表。
+ * 覆盖和删除只打墓碑，墓碑比例超过阈值的已写满段由后台维护逐段合并：存活记录搬到当前活动段后删除旧文件。
+ * <p>
+ * 段文件在重启后直接重新映射，MysqlEmbeddingStore 只需与 MySQL 对账增量差异，无需重新读取和解析全部向量。
+ */
+@Slf4j
+public class MappedVectorIndex implements VectorIndex, AutoCloseable {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".vec";
+    /**
+     * 活跃向量数低于此规模时串行扫描
+     */
+    private static final int PARALLEL_THRESHOLD = 8192;
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final double compactionThreshold;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Integer, VectorSegment> segments = new TreeMap<>();
+    private final Map<String, Long> locationById = new HashMap<>();
+
+    private int dimension = -1;
+    private long compactedSegments;
+
+    public MappedVectorIndex(Path directory, int recordsPerSegment, double compactionThreshold) {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.compactionThreshold = compactionThreshold;
+        openSegments();
+    }
+
+    @Override
+    public void add(String id, float[] vector) {
+        if (id.getBytes(StandardCharsets.UTF_8).length > VectorSegment.MAX_ID_BYTES) {
+            throw new IllegalArgumentException("向量ID超过 " + VectorSegment.MAX_ID_BYTES + " 字节: " + id);
+        }
+        lock.writeLock().lock();
+        try {
+            checkDimension(vector);
+            Long previous = locationById.remove(id);
+            if (previous != null) {
+                segmentOf(previous).markDeleted(slotOf(previous));
+            }
+            locationById.put(id, append(id, VectorKernels.normalize(vector), VectorKernels.norm(vector)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Long location = locationById.remove(id);
+            if (location == null) {
+                return false;
+            }
+            segmentOf(location).markDeleted(slotOf(location));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            segments.values().forEach(VectorSegment::delete);
+            segments.clear();
+            locationById.clear();
+            dimension = -1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ScoredId> search(float[] query, int maxResults, double minScore, Set<String> candidateIds) {
+        return searchBatch(new float[][]{query}, maxResults, minScore, candidateIds).get(0);
+    }
+
+    /**
+     * 每条记录只从映射区复制一次，随后与所有查询向量做点积
+     */
+    @Override
+    public List<List<ScoredId>> searchBatch(float[][] queries, int maxResults, double minScore,
+                                            Set<String> candidateIds) {
+        lock.readLock().lock();
+        try {
+            if (locationById.isEmpty()) {
+                return Collections.nCopies(queries.length, List.of());
+            }
+            float[][] normalized = new float[queries.length][];
+            for (int q = 0; q < queries.length; q++) {
+                checkDimension(queries[q]);
+                normalized[q] = VectorKernels.normalize(queries[q]);
+            }
+            return candidateIds == null
+                    ? scanSegments(normalized, maxResults, minScore)
+                    : scanCandidates(normalized, candidateIds, maxResults, minScore);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public float[] get(String id) {
+        lock.readLock().lock();
+        try {
+            Long location = locationById.get(id);
+            if (location == null) {
+                return null;
+            }
+            VectorSegment segment = segmentOf(location);
+            int slot = slotOf(location);
+            float[] vector = new float[dimension];
+            segment.read(slot, vector);
+            float norm = segment.norm(slot);
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= norm;
+            }
+            return vector;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return locationById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean persistent() {
+        return true;
+    }
+
+    @Override
+    public Set<String> persistedIds() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(locationById.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        lock.readLock().lock();
+        try {
+            int deleted = 0;
+            long mappedBytes = 0;
+            for (VectorSegment segment : segments.values()) {
+                deleted += segment.deletedCount();
+                mappedBytes += segment.mappedBytes();
+            }
+            return Map.of(
+                    "type", "mmap",
+                    "size", locationById.size(),
+                    "dimension", Math.max(dimension, 0),
+                    "segments", segments.size(),
+                    "tombstones", deleted,
+                    "mapped_bytes", mappedBytes,
+                    "compacted_segments", compactedSegments,
+                    "directory", directory.toAbsolutePath().toString(),
+                    "kernel", VectorKernels.implementation()
+            );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean needsMaintenance() {
+        lock.readLock().lock();
+        try {
+            return compactionCandidate() != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 合并一个墓碑比例最高的待合并段
+     */
+    @Override
+    public boolean maintenanceStep() {
+        lock.writeLock().lock();
+        try {
+            VectorSegment segment = compactionCandidate();
+            if (segment != null) {
+                compactSegment(segment);
+            }
+            return compactionCandidate() != null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 合并全部墓碑比例超过阈值的已写满段。每合并一个段加一次写锁，段与段之间检索可以穿插进行。
+     */
+    public void compact() {
+        while (maintenanceStep()) {
+            // 逐段合并直到没有待合并段
+        }
+    }
+
+    /**
+     * 刷盘，由 Spring 在容器关闭时调用
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            segments.values().forEach(VectorSegment::force);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ==================== 扫描 ====================
+
+    /**
+     * 逐段扫描映射区，段间并行。行号编码为 段序号 * stride + 槽位，只在输出 top-K 时解码ID。
+     */
+    private List<List<ScoredId>> scanSegments(float[][] normalizedQueries, int maxResults, double minScore) {
+        VectorSegment[] snapshot = segments.values().toArray(new VectorSegment[0]);
+        int stride = 0;
+        for (VectorSegment segment : snapshot) {
+            stride = Math.max(stride, segment.capacity());
+        }
+        int rowStride = stride;
+
+        IntStream positions = IntStream.range(0, snapshot.length);
+        if (locationById.size() > PARALLEL_THRESHOLD) {
+            positions = positions.parallel();
+        }
+        TopKCollector[] topK = positions
+                .mapToObj(position -> scanSegment(snapshot[position], position * rowStride,
+                        normalizedQueries, maxResults, minScore))
+                .reduce((a, b) -> {
+                    for (int q = 0; q < a.length; q++) {
+                        a[q].merge(b[q]);
+                    }
+                    return a;
+                })
+                .orElseGet(() -> collectors(normalizedQueries.length, maxResults, minScore));
+
+        List<List<ScoredId>> results = new ArrayList<>(topK.length);
+        for (TopKCollector collector : topK) {
+            int[] rows = new int[collector.size()];
+            float[] scores = collector.drain(rows);
+            List<ScoredId> result = new ArrayList<>(rows.length);
+            for (int i = 0; i < rows.length; i++) {
+                VectorSegment segment = snapshot[rows[i] / rowStride];
+                result.add(new ScoredId(segment.id(rows[i] % rowStride), scores[i]));
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    private TopKCollector[] scanSegment(VectorSegment segment, int rowBase, float[][] normalizedQueries,
+                                        int maxResults, double minScore) {
+        TopKCollector[] topK = collectors(normalizedQueries.length, maxResults, minScore);
+        for (int slot = 0; slot < segment.count(); slot++) {
+            if (segment.isLive(slot)) {
+                for (int q = 0; q < normalizedQueries.length; q++) {
+                    topK[q].offer(segment.dot(slot, normalizedQueries[q]), rowBase + slot);
+                }
+            }
+        }
+        return topK;
+    }
+
+    /**
+     * 只读取候选ID对应的记录，行号为候选在本地列表中的下标
+     */
+    private List<List<ScoredId>> scanCandidates(float[][] normalizedQueries, Set<String> candidateIds,
+                                                int maxResults, double minScore) {
+        TopKCollector[] topK = collectors(normalizedQueries.length, maxResults, minScore);
+        List<String> found = new ArrayList<>();
+        for (String id : candidateIds) {
+            Long location = locationById.get(id);
+            if (location != null) {
+                VectorSegment segment = segmentOf(location);
+                int slot = slotOf(location);
+                for (int q = 0; q < normalizedQueries.length; q++) {
+                    topK[q].offer(segment.dot(slot, normalizedQueries[q]), found.size());
+                }
+                found.add(id);
+            }
+        }
+        List<List<ScoredId>> results = new ArrayList<>(topK.length);
+        for (TopKCollector collector : topK) {
+            int[] rows = new int[collector.size()];
+            float[] scores = collector.drain(rows);
+            List<ScoredId> result = new ArrayList<>(rows.length);
+            for (int i = 0; i < rows.length; i++) {
+                result.add(new ScoredId(found.get(rows[i]), scores[i]));
+            }
+            results.add(result);
+        }
+        return results;
+    }
+
+    private static TopKCollector[] collectors(int count, int maxResults, double minScore) {
+        TopKCollector[] topK = new TopKCollector[count];
+        for (int q = 0; q < count; q++) {
+            topK[q] = new TopKCollector(maxResults, minScore);
+        }
+        return topK;
+    }
+
+    // ==================== 段管理 ====================
+
+    /**
+     * 启动时映射目录中已有的段文件并重建定位表
+     */
+    private void openSegments() {
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(path -> parseSegmentNumber(path) >= 0)
+                        .forEach(path -> {
+                            VectorSegment segment = VectorSegment.open(path, parseSegmentNumber(path));
+                            segments.put(segment.number(), segment);
+                        });
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("打开向量段目录失败: " + directory, e);
+        }
+
+        for (VectorSegment segment : segments.values()) {
+            checkDimension(new float[segment.dimension()]);
+            for (int slot = 0; slot < segment.count(); slot++) {
+                if (!segment.isLive(slot)) {
+                    continue;
+                }
+                // 覆盖写入在崩溃时可能留下两条存活记录，以段号、槽位更大的为准
+                Long previous = locationById.put(segment.id(slot), location(segment.number(), slot));
+                if (previous != null) {
+                    segmentOf(previous).markDeleted(slotOf(previous));
+                }
+            }
+        }
+        log.info("向量段加载完成: directory={}, segments={}, vectors={}",
+                directory.toAbsolutePath(), segments.size(), locationById.size());
+    }
+
+    private long append(String id, float[] normalized, float norm) {
+        VectorSegment active = activeSegment();
+        int slot = active == null ? -1 : active.append(id, normalized, norm);
+        if (slot < 0) {
+            int number = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+            active = VectorSegment.create(segmentPath(number), number, dimension, recordsPerSegment);
+            segments.put(number, active);
+            slot = active.append(id, normalized, norm);
+        }
+        return location(active.number(), slot);
+    }
+
+    private VectorSegment activeSegment() {
+        return segments.isEmpty() ? null : segments.lastEntry().getValue();
+    }
+
+    /**
+     * 墓碑比例最高且超过阈值的已写满段，没有时返回 null（活动段不参与合并）
+     */
+    private VectorSegment compactionCandidate() {
+        VectorSegment active = activeSegment();
+        VectorSegment candidate = null;
+        double worst = compactionThreshold;
+        for (VectorSegment segment : segments.values()) {
+            if (segment == active || !segment.isFull() || segment.count() == 0) {
+                continue;
+            }
+            double ratio = (double) segment.deletedCount() / segment.count();
+            if (ratio >= worst) {
+                candidate = segment;
+                worst = ratio;
+            }
+        }
+        return candidate;
+    }
+
+    /**
+     * 存活记录搬到活动段后删除旧段文件，调用方持有写锁
+     */
+    private void compactSegment(VectorSegment segment) {
+        int moved = 0;
+        float[] vector = new float[segment.dimension()];
+        for (int slot = 0; slot < segment.count(); slot++) {
+            if (!segment.isLive(slot)) {
+                continue;
+            }
+            String id = segment.id(slot);
+            segment.read(slot, vector);
+            locationById.put(id, append(id, vector, segment.norm(slot)));
+            moved++;
+        }
+        segments.remove(segment.number());
+        segment.delete();
+        compactedSegments++;
+        log.info("向量段合并完成: segment={}, 搬移存活记录 {} 条", segment.number(), moved);
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private VectorSegment segmentOf(long location) {
+        return segments.get((int) (location >>> 32));
+    }
+
+    private static int slotOf(long location) {
+        return (int) location;
+    }
+
+    private static long location(int segmentNumber, int slot) {
+        return ((long) segmentNumber << 32) | (slot & 0xFFFFFFFFL);
+    }
+
+    private Path segmentPath(int number) {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private static int parseSegmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void checkDimension(float[] vector) {
+        if (dimension < 0) {
+            dimension = vector.length;
+        } else if (vector.length != dimension) {
+            throw new IllegalArgumentException(
+                    String.format("向量维度不匹配: %d vs %d", vector.length, dimension));
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.mcp.robot.service.vector;
+
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.comparison.ContainsString;
+import dev.langchain4j.store.embedding.filter.comparison.IsEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsGreaterThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsIn;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThan;
+import dev.langchain4j.store.embedding.filter.comparison.IsLessThanOrEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotEqualTo;
+import dev.langchain4j.store.embedding.filter.comparison.IsNotIn;
+import dev.langchain4j.store.embedding.filter.logical.And;
+import dev.langchain4j.store.embedding.filter.logical.Not;
+import dev.langchain4j.store.embedding.filter.logical.Or;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 元数据倒排索引：key → 有序的 value → 向量ID集合
+ * <p>
+ * 把 langchain4j 的 {@link Filter} 解析为候选ID集合，向量扫描只需覆盖这些候选。
+ * 等值、IN 走哈希查找，范围比较走有序 value 的区间查询，逻辑组合做集合运算；
+ * 无法识别的 Filter 类型回退到逐条 {@link Filter#test} 判断。
+ */
+public class MetadataIndex {
+
+    /**
+     * 数值统一按 double 比较并排在字符串之前，保证同一个 key 下混合类型也能有序存放
+     */
+    private static final Comparator<Object> VALUE_ORDER = (a, b) -> {
+        boolean aNumber = a instanceof Double;
+        boolean bNumber = b instanceof Double;
+        if (aNumber && bNumber) {
+            return Double.compare((Double) a, (Double) b);
+        }
+        if (aNumber != bNumber) {
+            return aNumber ? -1 : 1;
+        }
+        return a.toString().compareTo(b.toString());
+    };
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, NavigableMap<Object, Set<String>>> postings = new HashMap<>();
+    private final Map<String, Map<String, Object>> metadataById = new HashMap<>();
+
+    public void add(String id, Map<String, Object> metadata) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+            Map<String, Object> normalized = new HashMap<>();
+            metadata.forEach((key, value) -> {
+                Object normalizedValue = normalize(value);
+                if (normalizedValue != null) {
+                    normalized.put(key, normalizedValue);
+                    postings.computeIfAbsent(key, k -> new TreeMap<>(VALUE_ORDER))
+                            .computeIfAbsent(normalizedValue, v -> new HashSet<>())
+                            .add(id);
+                }
+            });
+            metadataById.put(id, normalized);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            metadataById.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 解析过滤条件，返回满足条件的向量ID（新集合，调用方可修改）
+     */
+    public Set<String> resolve(Filter filter) {
+        lock.readLock().lock();
+        try {
+            return evaluate(filter);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        lock.readLock().lock();
+        try {
+            int values = 0;
+            for (NavigableMap<Object, Set<String>> byValue : postings.values()) {
+                values += byValue.size();
+            }
+            return Map.of(
+                    "documents", metadataById.size(),
+                    "keys", postings.size(),
+                    "values", values
+            );
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ==================== 条件求值 ====================
+
+    private Set<String> evaluate(Filter filter) {
+        if (filter instanceof And and) {
+            Set<String> left = evaluate(and.left());
+            if (!left.isEmpty()) {
+                left.retainAll(evaluate(and.right()));
+            }
+            return left;
+        }
+        if (filter instanceof Or or) {
+            Set<String> left = evaluate(or.left());
+            left.addAll(evaluate(or.right()));
+            return left;
+        }
+        if (filter instanceof Not not) {
+            return complement(evaluate(not.expression()));
+        }
+        if (filter instanceof IsEqualTo eq) {
+            return lookup(eq.key(), eq.comparisonValue());
+        }
+        if (filter instanceof IsNotEqualTo ne) {
+            return complement(lookup(ne.key(), ne.comparisonValue()));
+        }
+        if (filter instanceof IsIn in) {
+            return lookupAll(in.key(), in.comparisonValues());
+        }
+        if (filter instanceof IsNotIn notIn) {
+            return complement(lookupAll(notIn.key(), notIn.comparisonValues()));
+        }
+        if (filter instanceof IsGreaterThan gt) {
+            return range(gt.key(), gt.comparisonValue(), false, null, false);
+        }
+        if (filter instanceof IsGreaterThanOrEqualTo gte) {
+            return range(gte.key(), gte.comparisonValue(), true, null, false);
+        }
+        if (filter instanceof IsLessThan lt) {
+            return range(lt.key(), null, false, lt.comparisonValue(), false);
+        }
+        if (filter instanceof IsLessThanOrEqualTo lte) {
+            return range(lte.key(), null, false, lte.comparisonValue(), true);
+        }
+        if (filter instanceof ContainsString contains) {
+            return containsString(contains.key(), contains.comparisonValue());
+        }
+        return scan(filter);
+    }
+
+    private Set<String> lookup(String key, Object value) {
+        NavigableMap<Object, Set<String>> byValue = postings.get(key);
+        Object normalized = normalize(value);
+        if (byValue == null || normalized == null) {
+            return new HashSet<>();
+        }
+        Set<String> ids = byValue.get(normalized);
+        return ids == null ? new HashSet<>() : new HashSet<>(ids);
+    }
+
+    private Set<String> lookupAll(String key, Collection<?> values) {
+        Set<String> result = new HashSet<>();
+        for (Object value : values) {
+            result.addAll(lookup(key, value));
+        }
+        return result;
+    }
+
+    /**
+     * 区间查询，只匹配与比较值同类（数值或字符串）的 value
+     */
+    private Set<String> range(String key, Object lower, boolean lowerInclusive, Object upper, boolean upperInclusive) {
+        NavigableMap<Object, Set<String>> byValue = postings.get(key);
+        Set<String> result = new HashSet<>();
+        if (byValue == null) {
+            return result;
+        }
+        Object from = normalize(lower);
+        Object to = normalize(upper);
+        boolean numeric = (from != null ? from : to) instanceof Double;
+
+        NavigableMap<Object, Set<String>> view = byValue;
+        if (from != null) {
+            view = view.tailMap(from, lowerInclusive);
+        }
+        if (to != null) {
+            view = view.headMap(to, upperInclusive);
+        }
+        view.forEach((value, ids) -> {
+            if ((value instanceof Double) == numeric) {
+                result.addAll(ids);
+            }
+        });
+        return result;
+    }
+
+    private Set<String> containsString(String key, String fragment) {
+        NavigableMap<Object, Set<String>> byValue = postings.get(key);
+        Set<String> result = new HashSet<>();
+        if (byValue != null) {
+            byValue.forEach((value, ids) -> {
+                if (value instanceof String text && text.contains(fragment)) {
+                    result.addAll(ids);
+                }
+            });
+        }
+        return result;
+    }
+
+    private Set<String> complement(Set<String> ids) {
+        Set<String> result = new HashSet<>(metadataById.keySet());
+        result.removeAll(ids);
+        return result;
+    }
+
+    private Set<String> scan(Filter filter) {
+        Set<String> result = new HashSet<>();
+        metadataById.forEach((id, metadata) -> {
+            if (filter.test(Metadata.from(metadata))) {
+                result.add(id);
+            }
+        });
+        return result;
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private void removeInternal(String id) {
+        Map<String, Object> previous = metadataById.remove(id);
+        if (previous == null) {
+            return;
+        }
+        previous.forEach((key, value) -> {
+            NavigableMap<Object, Set<String>> byValue = postings.get(key);
+            if (byValue == null) {
+                return;
+            }
+            Set<String> ids = byValue.get(value);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    byValue.remove(value);
+                }
+            }
+            if (byValue.isEmpty()) {
+                postings.remove(key);
+            }
+        });
+    }
+
+    private static Object normalize(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        if (value instanceof String || value instanceof UUID || value instanceof Boolean) {
+            return value.toString();
+        }
+        return null;
+    }
+}
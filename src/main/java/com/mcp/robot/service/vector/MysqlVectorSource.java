@@ -0,0 +1,58 @@
+package com.mcp.robot.service.vector;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.mcp.robot.mapper.KnowledgeEmbeddingMapper;
+import com.mcp.robot.model.KnowledgeEmbeddingEntity;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 从 knowledge_embedding 表读取全精度向量
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MysqlVectorSource implements VectorSource {
+
+    private final KnowledgeEmbeddingMapper knowledgeEmbeddingMapper;
+
+    @Override
+    public Map<String, float[]> fetch(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        LambdaQueryWrapper<KnowledgeEmbeddingEntity> wrapper = Wrappers.lambdaQuery();
+        wrapper.select(KnowledgeEmbeddingEntity::getEmbeddingId,
+                        KnowledgeEmbeddingEntity::getEmbeddingBlob,
+                        KnowledgeEmbeddingEntity::getEmbeddingVector)
+                .in(KnowledgeEmbeddingEntity::getEmbeddingId, ids);
+        List<KnowledgeEmbeddingEntity> entities = knowledgeEmbeddingMapper.selectList(wrapper);
+
+        Map<String, float[]> vectors = new HashMap<>(entities.size() * 2);
+        for (KnowledgeEmbeddingEntity entity : entities) {
+            try {
+                vectors.put(entity.getEmbeddingId(), decodeVector(entity));
+            } catch (Exception e) {
+                log.error("读取向量失败: id={}", entity.getEmbeddingId(), e);
+            }
+        }
+        return vectors;
+    }
+
+    /**
+     * 读取实体中的向量：优先二进制列，未迁移的行回退到旧版 JSON 列
+     */
+    public static float[] decodeVector(KnowledgeEmbeddingEntity entity) {
+        if (entity.getEmbeddingBlob() != null) {
+            return VectorCodec.decode(entity.getEmbeddingBlob());
+        }
+        return VectorCodec.parseJson(entity.getEmbeddingVector());
+    }
+}
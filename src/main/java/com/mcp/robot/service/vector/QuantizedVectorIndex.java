@@ -0,0 +1,571 @@
+package com.mcp.robot.service.vector;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * int8 标量量化索引（粗排 + 精排）
+ * <p>
+ * 内存中只保存每个向量的 int8 码（每维 1 字节）和范数，约为 float 矩阵的 1/4。
+ * 检索时先在码上做近似打分，取 maxResults * rescoreFactor 个候选，
+ * 再从 {@link VectorSource} 读取候选的全精度向量重新计算精确相似度。
+ * <p>
+ * 量化参数由前 calibrationSize 个向量校准，校准前的向量以全精度暂存并精确打分。
+ * 校准后写入的向量超出校准范围（被截断）的分量比例达到 recalibrateClampedRatio 时，
+ * 由后台维护重新校准：从全部向量中均匀抽样得到新的量化参数，分批回表读取全精度向量重新编码到新的码表，
+ * 重建期间的写操作同时应用到新旧码表，完成后一次性替换。
+ */
+@Slf4j
+public class QuantizedVectorIndex implements VectorIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    /**
+     * 单个 byte[] 的长度上限。码表长度不超过它，行偏移 row * dimension 始终在 int 范围内
+     */
+    private static final int MAX_CODE_BYTES = Integer.MAX_VALUE - 8;
+    private static final int RECALL_SAMPLE_QUERIES = 20;
+    private static final int RECALL_K = 10;
+    /**
+     * 每个维护步骤重新编码的向量数
+     */
+    private static final int RECALIBRATE_STEP_ROWS = 1000;
+
+    private final VectorSource vectorSource;
+    private final int rescoreFactor;
+    private final int calibrationSize;
+    private final double recalibrateClampedRatio;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> rowById = new HashMap<>();
+    private final Map<String, float[]> pending = new LinkedHashMap<>();
+
+    private ScalarQuantizer quantizer;
+    private int dimension = -1;
+    private int size;
+    private byte[] codes = new byte[0];
+    private float[] norms = new float[0];
+    private String[] ids = new String[0];
+
+    private long encodedComponents;
+    private long clampedComponents;
+    private double calibrationRecall = -1;
+    private final AtomicLong rescoredSearches = new AtomicLong();
+    private final AtomicLong firstPassHits = new AtomicLong();
+    private final AtomicLong firstPassTotal = new AtomicLong();
+
+    /**
+     * 重新校准中的新码表及待重新编码的ID
+     */
+    private final Object maintenanceLock = new Object();
+    private QuantizedVectorIndex recalibrating;
+    private List<String> recalibrateRemaining;
+    private int recalibrateTotal;
+    private long recalibrations;
+
+    /**
+     * @param recalibrateClampedRatio 校准后写入向量的截断分量比例达到该值时重新校准
+     */
+    public QuantizedVectorIndex(VectorSource vectorSource, int rescoreFactor, int calibrationSize,
+                                double recalibrateClampedRatio) {
+        if (rescoreFactor < 1 || calibrationSize < 1) {
+            throw new IllegalArgumentException(
+                    String.format("量化索引参数非法: rescoreFactor=%d, calibrationSize=%d", rescoreFactor, calibrationSize));
+        }
+        this.vectorSource = vectorSource;
+        this.rescoreFactor = rescoreFactor;
+        this.calibrationSize = calibrationSize;
+        this.recalibrateClampedRatio = recalibrateClampedRatio;
+    }
+
+    @Override
+    public void add(String id, float[] vector) {
+        lock.writeLock().lock();
+        try {
+            checkDimension(vector);
+            if (quantizer == null) {
+                pending.put(id, vector.clone());
+                if (pending.size() >= calibrationSize) {
+                    calibrate();
+                }
+                return;
+            }
+            encodeRow(id, vector);
+            if (recalibrating != null) {
+                recalibrating.add(id, vector);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            if (pending.remove(id) != null) {
+                return true;
+            }
+            Integer row = rowById.remove(id);
+            if (row == null) {
+                return false;
+            }
+            if (recalibrating != null) {
+                recalibrating.remove(id);
+            }
+            int last = --size;
+            if (row != last) {
+                System.arraycopy(codes, last * dimension, codes, row * dimension, dimension);
+                norms[row] = norms[last];
+                ids[row] = ids[last];
+                rowById.put(ids[row], row);
+            }
+            ids[last] = null;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            rowById.clear();
+            pending.clear();
+            quantizer = null;
+            dimension = -1;
+            size = 0;
+            codes = new byte[0];
+            norms = new float[0];
+            ids = new String[0];
+            encodedComponents = 0;
+            clampedComponents = 0;
+            calibrationRecall = -1;
+            recalibrating = null;
+            recalibrateRemaining = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ScoredId> search(float[] query, int maxResults, double minScore, Set<String> candidateIds) {
+        float[] normalizedQuery = VectorKernels.normalize(query);
+        List<ScoredId> exact = new ArrayList<>();
+        List<String> firstPass;
+
+        // 1. 粗排：在量化码上近似打分（持锁时间只覆盖内存扫描）
+        lock.readLock().lock();
+        try {
+            if (size == 0 && pending.isEmpty()) {
+                return List.of();
+            }
+            checkDimension(query);
+            for (Map.Entry<String, float[]> entry : pending.entrySet()) {
+                if (candidateIds == null || candidateIds.contains(entry.getKey())) {
+                    exact.add(new ScoredId(entry.getKey(), cosine(normalizedQuery, entry.getValue())));
+                }
+            }
+            firstPass = size == 0 ? List.of() : firstPass(normalizedQuery, maxResults * rescoreFactor, candidateIds);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // 2. 精排：读取候选的全精度向量重新打分，向量随结果带回，调用方组装结果时不再回源读取
+        if (!firstPass.isEmpty()) {
+            Map<String, float[]> fullVectors = vectorSource.fetch(firstPass);
+            for (String id : firstPass) {
+                float[] vector = fullVectors.get(id);
+                if (vector != null) {
+                    exact.add(new ScoredId(id, cosine(normalizedQuery, vector), vector));
+                }
+            }
+        }
+
+        List<ScoredId> result = new ArrayList<>(exact.size());
+        for (ScoredId candidate : exact) {
+            if (candidate.getScore() >= minScore) {
+                result.add(candidate);
+            }
+        }
+        result.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
+        if (result.size() > maxResults) {
+            result = new ArrayList<>(result.subList(0, maxResults));
+        }
+        recordFirstPassRecall(firstPass, maxResults, result);
+        return result;
+    }
+
+    @Override
+    public float[] get(String id) {
+        return getAll(List.of(id)).get(id);
+    }
+
+    @Override
+    public Map<String, float[]> getAll(Collection<String> ids) {
+        Map<String, float[]> vectors = new HashMap<>(ids.size() * 2);
+        List<String> indexed = new ArrayList<>(ids.size());
+        lock.readLock().lock();
+        try {
+            for (String id : ids) {
+                float[] vector = pending.get(id);
+                if (vector != null) {
+                    vectors.put(id, vector.clone());
+                } else if (rowById.containsKey(id)) {
+                    indexed.add(id);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!indexed.isEmpty()) {
+            vectors.putAll(vectorSource.fetch(indexed));
+        }
+        return vectors;
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size + pending.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("type", "int8");
+            stats.put("size", size + pending.size());
+            stats.put("quantized", size);
+            stats.put("pending_calibration", pending.size());
+            stats.put("calibrated", quantizer != null);
+            stats.put("dimension", Math.max(dimension, 0));
+            stats.put("rescore_factor", rescoreFactor);
+            stats.put("code_bytes", (long) size * Math.max(dimension, 0));
+            stats.put("float_bytes_equivalent", (long) size * Math.max(dimension, 0) * Float.BYTES);
+            stats.put("clamped_ratio", encodedComponents == 0 ? 0.0 : (double) clampedComponents / encodedComponents);
+            stats.put("calibration_recall_at_10", calibrationRecall);
+            long total = firstPassTotal.get();
+            stats.put("first_pass_recall", total == 0 ? -1 : (double) firstPassHits.get() / total);
+            stats.put("rescored_searches", rescoredSearches.get());
+            stats.put("recalibrations", recalibrations);
+            stats.put("recalibration_progress", recalibrating == null ? -1.0
+                    : 1 - (double) recalibrateRemaining.size() / Math.max(1, recalibrateTotal));
+            stats.put("kernel", VectorKernels.implementation());
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean needsMaintenance() {
+        lock.readLock().lock();
+        try {
+            return recalibrating != null || driftDetected();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 重新校准一步：首步抽样并生成新的量化参数，之后每步回表读取一批全精度向量重新编码，
+     * 读库时不持锁，写入新码表时持写锁。全部完成后替换码表
+     */
+    @Override
+    public boolean maintenanceStep() {
+        synchronized (maintenanceLock) {
+            if (recalibrating == null) {
+                return startRecalibration();
+            }
+            List<String> batch;
+            lock.readLock().lock();
+            try {
+                if (recalibrating == null) {
+                    return false;
+                }
+                int from = Math.max(0, recalibrateRemaining.size() - RECALIBRATE_STEP_ROWS);
+                batch = new ArrayList<>(recalibrateRemaining.subList(from, recalibrateRemaining.size()));
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            Map<String, float[]> vectors = vectorSource.fetch(batch);
+            lock.writeLock().lock();
+            try {
+                if (recalibrating == null) {
+                    return false;
+                }
+                for (String id : batch) {
+                    float[] vector = vectors.get(id);
+                    // 已删除的跳过；重建期间重新写入过的已由写操作编码到新码表
+                    if (vector != null && rowById.containsKey(id) && !recalibrating.rowById.containsKey(id)) {
+                        recalibrating.add(id, vector);
+                    }
+                }
+                recalibrateRemaining.subList(recalibrateRemaining.size() - batch.size(), recalibrateRemaining.size()).clear();
+                if (!recalibrateRemaining.isEmpty()) {
+                    return true;
+                }
+                swapRecalibrated();
+                return false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // ==================== 量化 ====================
+
+    /**
+     * 校准后写入的向量有足够比例的分量被截断，说明数据分布已偏离校准样本
+     */
+    private boolean driftDetected() {
+        return quantizer != null && encodedComponents >= (long) calibrationSize * dimension
+                && (double) clampedComponents / encodedComponents >= recalibrateClampedRatio;
+    }
+
+    /**
+     * 从现有向量中均匀抽样校准新的量化参数，记录待重新编码的ID
+     */
+    private boolean startRecalibration() {
+        List<String> allIds;
+        List<String> sampleIds = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (!driftDetected()) {
+                return false;
+            }
+            allIds = new ArrayList<>(Arrays.asList(ids).subList(0, size));
+        } finally {
+            lock.readLock().unlock();
+        }
+        int stride = Math.max(1, allIds.size() / calibrationSize);
+        for (int i = 0; i < allIds.size(); i += stride) {
+            sampleIds.add(allIds.get(i));
+        }
+        List<float[]> samples = new ArrayList<>(vectorSource.fetch(sampleIds).values());
+        if (samples.isEmpty()) {
+            return false;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (quantizer == null || samples.get(0).length != dimension) {
+                return false;
+            }
+            QuantizedVectorIndex rebuilt = new QuantizedVectorIndex(vectorSource, rescoreFactor, calibrationSize,
+                    recalibrateClampedRatio);
+            rebuilt.dimension = dimension;
+            rebuilt.quantizer = ScalarQuantizer.calibrate(samples, dimension);
+            rebuilt.calibrationRecall = rebuilt.estimateRecall(samples);
+            recalibrating = rebuilt;
+            recalibrateRemaining = allIds;
+            recalibrateTotal = allIds.size();
+            log.info("int8 量化开始重新校准: size={}, 样本 {} 个, 截断比例 {}",
+                    size, samples.size(), (double) clampedComponents / encodedComponents);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 用新码表替换当前码表，调用方持有写锁。截断统计从新的校准开始重新累计
+     */
+    private void swapRecalibrated() {
+        QuantizedVectorIndex rebuilt = recalibrating;
+        quantizer = rebuilt.quantizer;
+        size = rebuilt.size;
+        codes = rebuilt.codes;
+        norms = rebuilt.norms;
+        ids = rebuilt.ids;
+        rowById.clear();
+        rowById.putAll(rebuilt.rowById);
+        calibrationRecall = rebuilt.calibrationRecall;
+        encodedComponents = 0;
+        clampedComponents = 0;
+        recalibrating = null;
+        recalibrateRemaining = null;
+        recalibrations++;
+        log.info("int8 量化重新校准完成: size={}, recall@10 估计 {}", size, calibrationRecall);
+    }
+
+    /**
+     * 用暂存的全精度向量校准量化参数，并估算仅用量化码粗排时的 recall@10
+     */
+    private void calibrate() {
+        List<float[]> samples = new ArrayList<>(pending.values());
+        quantizer = ScalarQuantizer.calibrate(samples, dimension);
+        calibrationRecall = estimateRecall(samples);
+        for (Map.Entry<String, float[]> entry : pending.entrySet()) {
+            encodeRow(entry.getKey(), entry.getValue());
+        }
+        pending.clear();
+    }
+
+    private void encodeRow(String id, float[] vector) {
+        Integer row = rowById.get(id);
+        if (row == null) {
+            ensureCapacity(size + 1);
+            row = size++;
+            ids[row] = id;
+            rowById.put(id, row);
+        }
+        clampedComponents += quantizer.encode(vector, codes, row * dimension);
+        encodedComponents += dimension;
+        norms[row] = VectorKernels.norm(vector);
+    }
+
+    /**
+     * 在校准样本上对比量化粗排与精确检索的 top-10 重合率
+     */
+    private double estimateRecall(List<float[]> samples) {
+        int queries = Math.min(RECALL_SAMPLE_QUERIES, samples.size());
+        int k = Math.min(RECALL_K, samples.size() - 1);
+        if (queries == 0 || k <= 0) {
+            return -1;
+        }
+        byte[] sampleCodes = new byte[samples.size() * dimension];
+        double[] sampleNorms = new double[samples.size()];
+        for (int i = 0; i < samples.size(); i++) {
+            quantizer.encode(samples.get(i), sampleCodes, i * dimension);
+            sampleNorms[i] = VectorKernels.norm(samples.get(i));
+        }
+
+        int hits = 0;
+        for (int q = 0; q < queries; q++) {
+            float[] query = VectorKernels.normalize(samples.get(q));
+            ScalarQuantizer.PreparedQuery prepared = quantizer.prepare(query);
+            double[] exactScores = new double[samples.size()];
+            double[] approxScores = new double[samples.size()];
+            for (int i = 0; i < samples.size(); i++) {
+                boolean self = i == q;
+                exactScores[i] = self ? Double.NEGATIVE_INFINITY : cosine(query, samples.get(i));
+                approxScores[i] = self || sampleNorms[i] == 0 ? Double.NEGATIVE_INFINITY
+                        : prepared.dot(sampleCodes, i * dimension) / sampleNorms[i];
+            }
+            Set<Integer> truth = topIndices(exactScores, k);
+            for (int index : topIndices(approxScores, k)) {
+                if (truth.contains(index)) {
+                    hits++;
+                }
+            }
+        }
+        return (double) hits / (queries * k);
+    }
+
+    /**
+     * 粗排：返回近似相似度最高的 limit 个ID（降序），candidateIds 非空时只扫描候选行
+     */
+    private List<String> firstPass(float[] normalizedQuery, int limit, Set<String> candidateIds) {
+        ScalarQuantizer.PreparedQuery prepared = quantizer.prepare(normalizedQuery);
+        TopKCollector topK = new TopKCollector(limit, Double.NEGATIVE_INFINITY);
+        if (candidateIds == null) {
+            for (int row = 0; row < size; row++) {
+                offerApproximate(prepared, row, topK);
+            }
+        } else {
+            for (String id : candidateIds) {
+                Integer row = rowById.get(id);
+                if (row != null) {
+                    offerApproximate(prepared, row, topK);
+                }
+            }
+        }
+        int[] rows = new int[topK.size()];
+        topK.drain(rows);
+        List<String> result = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            result.add(ids[row]);
+        }
+        return result;
+    }
+
+    private void offerApproximate(ScalarQuantizer.PreparedQuery prepared, int row, TopKCollector topK) {
+        if (norms[row] != 0f) {
+            topK.offer((float) (prepared.dot(codes, row * dimension) / norms[row]), row);
+        }
+    }
+
+    /**
+     * 统计最终结果中有多少落在粗排前 maxResults 名内，衡量不做精排时的召回
+     */
+    private void recordFirstPassRecall(List<String> firstPass, int maxResults, List<ScoredId> result) {
+        if (firstPass.isEmpty() || result.isEmpty()) {
+            return;
+        }
+        Set<String> rescored = new HashSet<>(firstPass);
+        Set<String> head = new HashSet<>(firstPass.subList(0, Math.min(maxResults, firstPass.size())));
+        int hits = 0;
+        int total = 0;
+        for (ScoredId scored : result) {
+            if (rescored.contains(scored.getId())) {
+                total++;
+                if (head.contains(scored.getId())) {
+                    hits++;
+                }
+            }
+        }
+        rescoredSearches.incrementAndGet();
+        firstPassHits.addAndGet(hits);
+        firstPassTotal.addAndGet(total);
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private static Set<Integer> topIndices(double[] scores, int k) {
+        Integer[] order = new Integer[scores.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(scores[b], scores[a]));
+        return new HashSet<>(Arrays.asList(order).subList(0, k));
+    }
+
+    private static double cosine(float[] normalizedQuery, float[] vector) {
+        float norm = VectorKernels.norm(vector);
+        return norm == 0f ? 0.0 : VectorKernels.dot(normalizedQuery, vector) / norm;
+    }
+
+    private void checkDimension(float[] vector) {
+        if (dimension < 0) {
+            dimension = vector.length;
+        } else if (vector.length != dimension) {
+            throw new IllegalArgumentException(
+                    String.format("向量维度不匹配: %d vs %d", vector.length, dimension));
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int maxRows = MAX_CODE_BYTES / dimension;
+        if (required > maxRows) {
+            throw new IllegalStateException(String.format(
+                    "量化索引已达容量上限: %d 维向量最多 %d 条，请改用 hnsw 或 mmap 索引", dimension, maxRows));
+        }
+        long grown = Math.max((long) INITIAL_CAPACITY, Math.max(required, ids.length + (ids.length >> 1)));
+        int capacity = (int) Math.min(grown, maxRows);
+        codes = Arrays.copyOf(codes, capacity * dimension);
+        norms = Arrays.copyOf(norms, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+    }
+}
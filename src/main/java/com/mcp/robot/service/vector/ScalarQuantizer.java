@@ -0,0 +1,111 @@
+package com.mcp.robot.service.vector;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * 按维度的 int8 标量量化器
+ * <p>
+ * 每个维度用校准样本的 min/max 线性映射到 [0, 255]，码值以 byte 存储（减去 128）。
+ * 超出校准范围的值会被截断，并计入截断计数，用于判断是否需要重新校准。
+ */
+public class ScalarQuantizer {
+
+    private static final int LEVELS = 255;
+
+    private final float[] min;
+    private final float[] scale;
+
+    private ScalarQuantizer(float[] min, float[] scale) {
+        this.min = min;
+        this.scale = scale;
+    }
+
+    /**
+     * 用样本向量校准每个维度的取值范围
+     */
+    public static ScalarQuantizer calibrate(Collection<float[]> samples, int dimension) {
+        if (samples.isEmpty()) {
+            throw new IllegalArgumentException("量化校准样本为空");
+        }
+        float[] min = new float[dimension];
+        float[] max = new float[dimension];
+        Arrays.fill(min, Float.POSITIVE_INFINITY);
+        Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        for (float[] sample : samples) {
+            for (int i = 0; i < dimension; i++) {
+                min[i] = Math.min(min[i], sample[i]);
+                max[i] = Math.max(max[i], sample[i]);
+            }
+        }
+        float[] scale = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            float range = max[i] - min[i];
+            scale[i] = range > 0 ? range / LEVELS : 0f;
+        }
+        return new ScalarQuantizer(min, scale);
+    }
+
+    public int dimension() {
+        return min.length;
+    }
+
+    /**
+     * 量化到 codes[offset, offset + dimension)，返回被截断的分量个数
+     */
+    public int encode(float[] vector, byte[] codes, int offset) {
+        int clamped = 0;
+        for (int i = 0; i < min.length; i++) {
+            int level = scale[i] == 0f ? 0 : Math.round((vector[i] - min[i]) / scale[i]);
+            if (level < 0) {
+                level = 0;
+                clamped++;
+            } else if (level > LEVELS) {
+                level = LEVELS;
+                clamped++;
+            }
+            codes[offset + i] = (byte) (level - 128);
+        }
+        return clamped;
+    }
+
+    /**
+     * 为查询向量预计算打分参数，之后对每个码向量的点积只需一次乘加循环：
+     * dot(q, x) ≈ offset + Σ weights[i] * (code[i] + 128)
+     */
+    public PreparedQuery prepare(float[] query) {
+        float[] weights = new float[min.length];
+        double offset = 0.0;
+        for (int i = 0; i < min.length; i++) {
+            weights[i] = query[i] * scale[i];
+            offset += query[i] * min[i];
+        }
+        return new PreparedQuery(weights, offset);
+    }
+
+    /**
+     * 预处理后的查询
+     */
+    public static final class PreparedQuery {
+        private final float[] weights;
+        private final double offset;
+        private final double codeBias;
+
+        private PreparedQuery(float[] weights, double offset) {
+            this.weights = weights;
+            this.offset = offset;
+            double sum = 0.0;
+            for (float weight : weights) {
+                sum += weight;
+            }
+            this.codeBias = sum * 128;
+        }
+
+        /**
+         * 查询与码向量的近似点积
+         */
+        public double dot(byte[] codes, int offset) {
+            return this.offset + codeBias + VectorKernels.dot(weights, codes, offset);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.mcp.robot.service.vector;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 索引检索结果：向量ID + 相似度。
+ * <p>
+ * 检索过程中已经读到全精度向量的索引（如量化索引精排）会把向量一并带回，
+ * 调用方据此组装结果，不必再按ID回源读取；其余情况向量为 null
+ */
+@Getter
+@ToString(exclude = "vector")
+public class ScoredId {
+
+    private final String id;
+    private final double score;
+    private final float[] vector;
+
+    public ScoredId(String id, double score) {
+        this(id, score, null);
+    }
+
+    public ScoredId(String id, double score, float[] vector) {
+        this.id = id;
+        this.score = score;
+        this.vector = vector;
+    }
+}
@@ -0,0 +1,66 @@
+package com.mcp.robot.service.vector;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 基于 JDK Vector API 的 SIMD 打分内核
+ * <p>
+ * 只能通过 {@link VectorKernels} 反射加载：运行时缺少 jdk.incubator.vector 模块时，
+ * 加载本类会失败并回退到标量实现。
+ */
+final class SimdKernel implements VectorKernels.Kernel {
+
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+    /**
+     * 与浮点同宽的字节向量：一次装载的码是浮点通道数的 4 倍，分 {@link #BYTE_PARTS} 段扩展为浮点
+     */
+    private static final VectorSpecies<Byte> BYTE_SPECIES = FLOAT_SPECIES.withLanes(byte.class);
+    private static final int BYTE_PARTS = BYTE_SPECIES.length() / FLOAT_SPECIES.length();
+
+    @Override
+    public String name() {
+        return "simd-" + FLOAT_SPECIES.vectorBitSize();
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector acc = FloatVector.zero(FLOAT_SPECIES);
+        int lanes = FLOAT_SPECIES.length();
+        int bound = FLOAT_SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += lanes) {
+            FloatVector va = FloatVector.fromArray(FLOAT_SPECIES, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(FLOAT_SPECIES, b, bOffset + i);
+            acc = va.fma(vb, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float dotInt8(float[] weights, byte[] codes, int offset, int length) {
+        FloatVector acc = FloatVector.zero(FLOAT_SPECIES);
+        int floatLanes = FLOAT_SPECIES.length();
+        int byteLanes = BYTE_SPECIES.length();
+        int bound = BYTE_SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += byteLanes) {
+            ByteVector bytes = ByteVector.fromArray(BYTE_SPECIES, codes, offset + i);
+            for (int part = 0; part < BYTE_PARTS; part++) {
+                FloatVector code = (FloatVector) bytes.convertShape(VectorOperators.B2F, FLOAT_SPECIES, part);
+                acc = FloatVector.fromArray(FLOAT_SPECIES, weights, i + part * floatLanes).fma(code, acc);
+            }
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += weights[i] * codes[offset + i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,121 @@
+package com.mcp.robot.service.vector;
+
+/**
+ * 定长的 top-K 收集器
+ * <p>
+ * 用两个平行的基本类型数组实现小顶堆（堆顶为当前第 K 名），扫描过程中不产生对象分配。
+ * 非线程安全，并行扫描时每个分块各用一个收集器，最后 {@link #merge} 合并。
+ */
+public class TopKCollector {
+
+    private final int capacity;
+    private final float minScore;
+    private final float[] scores;
+    private final int[] rows;
+    private int size;
+
+    public TopKCollector(int capacity, double minScore) {
+        this.capacity = Math.max(0, capacity);
+        this.minScore = (float) minScore;
+        this.scores = new float[this.capacity];
+        this.rows = new int[this.capacity];
+    }
+
+    /**
+     * 提交一个候选，低于阈值或不优于当前第 K 名时直接丢弃
+     */
+    public void offer(float score, int row) {
+        if (score < minScore || capacity == 0) {
+            return;
+        }
+        if (size < capacity) {
+            scores[size] = score;
+            rows[size] = row;
+            siftUp(size++);
+        } else if (score > scores[0]) {
+            scores[0] = score;
+            rows[0] = row;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * 当前能进入结果的最低分数，可用于提前剪枝
+     */
+    public float threshold() {
+        return size < capacity ? minScore : scores[0];
+    }
+
+    public void merge(TopKCollector other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.scores[i], other.rows[i]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 按分数降序输出 (行号, 分数)，调用后收集器被清空
+     */
+    public float[] drain(int[] rowsOut) {
+        float[] result = new float[size];
+        for (int i = size - 1; i >= 0; i--) {
+            result[i] = scores[0];
+            rowsOut[i] = rows[0];
+            pop();
+        }
+        return result;
+    }
+
+    // ==================== 堆操作 ====================
+
+    private void pop() {
+        size--;
+        scores[0] = scores[size];
+        rows[0] = rows[size];
+        if (size > 0) {
+            siftDown(0);
+        }
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[parent] <= scores[index]) {
+                break;
+            }
+            swap(parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int left = 2 * index + 1;
+            if (left >= size) {
+                break;
+            }
+            int smallest = left;
+            int right = left + 1;
+            if (right < size && scores[right] < scores[left]) {
+                smallest = right;
+            }
+            if (scores[index] <= scores[smallest]) {
+                break;
+            }
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+        int row = rows[a];
+        rows[a] = rows[b];
+        rows[b] = row;
+    }
+}
@@ -0,0 +1,104 @@
+package com.mcp.robot.service.vector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * 向量二进制编解码
+ * <p>
+ * 格式（小端序）：
+ * <pre>
+ * | magic 'V''F' (2B) | version (1B) | reserved (1B) | dimension int32 (4B) | float32 * dimension |
+ * </pre>
+ * 1536 维向量编码后为 8 + 6144 字节，约为 JSON 文本的 1/4，且解码无需经过 Jackson 和装箱。
+ */
+public final class VectorCodec {
+
+    public static final byte MAGIC_0 = 'V';
+    public static final byte MAGIC_1 = 'F';
+    public static final byte VERSION_1 = 1;
+    public static final int HEADER_BYTES = 8;
+
+    private VectorCodec() {
+    }
+
+    /**
+     * float[] 编码为带格式头的二进制
+     */
+    public static byte[] encode(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + vector.length * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC_0).put(MAGIC_1).put(VERSION_1).put((byte) 0);
+        buffer.putInt(vector.length);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    /**
+     * 二进制直接解码为 float[]
+     */
+    public static float[] decode(byte[] bytes) {
+        if (!isBinary(bytes)) {
+            throw new IllegalArgumentException("不是有效的二进制向量格式");
+        }
+        byte version = bytes[2];
+        if (version != VERSION_1) {
+            throw new IllegalArgumentException("不支持的向量格式版本: " + version);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int dimension = buffer.getInt(4);
+        if (dimension < 0 || HEADER_BYTES + (long) dimension * Float.BYTES != bytes.length) {
+            throw new IllegalArgumentException(
+                    String.format("向量长度不匹配: dimension=%d, bytes=%d", dimension, bytes.length));
+        }
+        float[] vector = new float[dimension];
+        buffer.position(HEADER_BYTES);
+        buffer.asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    /**
+     * 是否为带格式头的二进制向量
+     */
+    public static boolean isBinary(byte[] bytes) {
+        return bytes != null && bytes.length >= HEADER_BYTES
+                && bytes[0] == MAGIC_0 && bytes[1] == MAGIC_1;
+    }
+
+    /**
+     * 解析旧版 JSON 数组格式（如 [0.1,-0.2,...]），直接输出 float[]，仅用于迁移前的兼容读取
+     */
+    public static float[] parseJson(String json) {
+        if (json == null) {
+            throw new IllegalArgumentException("向量 JSON 为空");
+        }
+        int start = json.indexOf('[');
+        int end = json.lastIndexOf(']');
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("向量 JSON 格式错误");
+        }
+
+        float[] vector = new float[64];
+        int size = 0;
+        int tokenStart = -1;
+        for (int i = start + 1; i <= end; i++) {
+            char c = json.charAt(i);
+            boolean separator = c == ',' || c == ']' || Character.isWhitespace(c);
+            if (!separator) {
+                if (tokenStart < 0) {
+                    tokenStart = i;
+                }
+                continue;
+            }
+            if (tokenStart >= 0) {
+                if (size == vector.length) {
+                    vector = Arrays.copyOf(vector, size * 2);
+                }
+                vector[size++] = Float.parseFloat(json.substring(tokenStart, i));
+                tokenStart = -1;
+            }
+        }
+        return size == vector.length ? vector : Arrays.copyOf(vector, size);
+    }
+}
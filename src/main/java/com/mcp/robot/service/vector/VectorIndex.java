@@ -0,0 +1,117 @@
+package com.mcp.robot.service.vector;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 常驻内存的向量索引
+ * <p>
+ * MySQL 仍是持久化的唯一数据源，索引只负责加速检索，
+ * 由 MysqlEmbeddingStore 在启动时加载（持久化索引为增量对账）并随 add/remove 同步更新。
+ * 实现类需自行保证线程安全。
+ */
+public interface VectorIndex {
+
+    /**
+     * 添加或覆盖向量
+     */
+    void add(String id, float[] vector);
+
+    /**
+     * 删除向量，返回是否存在
+     */
+    boolean remove(String id);
+
+    /**
+     * 清空索引
+     */
+    void clear();
+
+    /**
+     * 检索最相似的向量，结果按相似度降序
+     */
+    default List<ScoredId> search(float[] query, int maxResults, double minScore) {
+        return search(query, maxResults, minScore, null);
+    }
+
+    /**
+     * 只在候选ID范围内检索（元数据过滤下推），candidateIds 为 null 表示不限制
+     */
+    List<ScoredId> search(float[] query, int maxResults, double minScore, Set<String> candidateIds);
+
+    /**
+     * 多个查询向量批量检索，返回与 queries 一一对应的 top-K 列表。
+     * 默认逐个检索；扫描型索引应覆盖为一次遍历同时给所有查询打分
+     */
+    default List<List<ScoredId>> searchBatch(float[][] queries, int maxResults, double minScore,
+                                             Set<String> candidateIds) {
+        List<List<ScoredId>> results = new ArrayList<>(queries.length);
+        for (float[] query : queries) {
+            results.add(search(query, maxResults, minScore, candidateIds));
+        }
+        return results;
+    }
+
+    /**
+     * 获取向量副本，不存在时返回 null
+     */
+    float[] get(String id);
+
+    /**
+     * 批量获取向量副本，不存在的ID不出现在结果中
+     */
+    default Map<String, float[]> getAll(Collection<String> ids) {
+        Map<String, float[]> vectors = new HashMap<>(ids.size() * 2);
+        for (String id : ids) {
+            float[] vector = get(id);
+            if (vector != null) {
+                vectors.put(id, vector);
+            }
+        }
+        return vectors;
+    }
+
+    /**
+     * 索引中的向量数
+     */
+    int size();
+
+    /**
+     * 向量是否持久化在索引自己的存储中。持久化索引重启后保留已有数据，
+     * 加载时只需与 MySQL 对账差异，而不是清空后全量重建。
+     */
+    default boolean persistent() {
+        return false;
+    }
+
+    /**
+     * 持久化存储中已有的向量ID，非持久化索引返回空集合
+     */
+    default Set<String> persistedIds() {
+        return Set.of();
+    }
+
+    /**
+     * 是否积累了需要后台维护的退化（墓碑过多、图质量下降、量化参数与数据分布不符等）
+     */
+    default boolean needsMaintenance() {
+        return false;
+    }
+
+    /**
+     * 执行一步维护。每步的工作量有界，步与步之间检索照常进行，
+     * 由调度方控制节奏（CPU 预算、查询负载），返回是否还有剩余工作
+     */
+    default boolean maintenanceStep() {
+        return false;
+    }
+
+    /**
+     * 索引统计信息
+     */
+    Map<String, Object> stats();
+}
@@ -0,0 +1,13 @@
+package com.mcp.robot.service.vector;
+
+/**
+ * 按知识集合创建向量索引
+ * <p>
+ * 每个集合持有独立的索引实例，检索只扫描目标集合；
+ * 本地持久化的索引（mmap / 快照 + WAL）按集合名分目录存放。
+ */
+@FunctionalInterface
+public interface VectorIndexFactory {
+
+    VectorIndex create(String collection);
+}
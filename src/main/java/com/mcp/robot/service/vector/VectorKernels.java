@@ -0,0 +1,148 @@
+package com.mcp.robot.service.vector;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.FloatBuffer;
+
+/**
+ * 向量打分内核
+ * <p>
+ * 运行时带 --add-modules jdk.incubator.vector 时使用 SIMD 实现，否则回退到标量循环。
+ * 索引中的向量统一预先归一化，余弦相似度即为一次点积。
+ */
+@Slf4j
+public final class VectorKernels {
+
+    private static final Kernel KERNEL = loadKernel();
+
+    private VectorKernels() {
+    }
+
+    /**
+     * 当前使用的内核实现
+     */
+    public static String implementation() {
+        return KERNEL.name();
+    }
+
+    public static float dot(float[] a, float[] b) {
+        return KERNEL.dot(a, 0, b, 0, a.length);
+    }
+
+    /**
+     * query 与矩阵中从 offset 开始、长度为 query.length 的一行做点积
+     */
+    public static float dot(float[] query, float[] matrix, int offset) {
+        return KERNEL.dot(query, 0, matrix, offset, query.length);
+    }
+
+    /**
+     * query 与映射区中从 offset（按 float 计）开始的一行做点积，直接读取映射区，不复制到堆内数组
+     */
+    public static float dot(float[] query, FloatBuffer vectors, int offset) {
+        return KERNEL.dot(query, vectors, offset, query.length);
+    }
+
+    /**
+     * 权重向量与 int8 码向量的点积：Σ weights[i] * codes[offset + i]
+     */
+    public static float dot(float[] weights, byte[] codes, int offset) {
+        return KERNEL.dotInt8(weights, codes, offset, weights.length);
+    }
+
+    public static float norm(float[] vector) {
+        return (float) Math.sqrt(KERNEL.dot(vector, 0, vector, 0, vector.length));
+    }
+
+    /**
+     * 返回归一化后的副本，零向量原样返回全零
+     */
+    public static float[] normalize(float[] vector) {
+        float norm = norm(vector);
+        float[] normalized = new float[vector.length];
+        if (norm > 0f) {
+            float inverse = 1f / norm;
+            for (int i = 0; i < vector.length; i++) {
+                normalized[i] = vector[i] * inverse;
+            }
+        }
+        return normalized;
+    }
+
+    private static Kernel loadKernel() {
+        try {
+            Kernel kernel = (Kernel) Class.forName("com.mcp.robot.service.vector.SimdKernel")
+                    .getDeclaredConstructor()
+                    .newInstance();
+            log.info("向量打分内核: {}", kernel.name());
+            return kernel;
+        } catch (Exception | LinkageError e) {
+            log.info("未启用 jdk.incubator.vector，向量打分使用标量实现");
+            return new ScalarKernel();
+        }
+    }
+
+    /**
+     * 打分内核实现
+     */
+    interface Kernel {
+
+        String name();
+
+        float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+        float dotInt8(float[] weights, byte[] codes, int offset, int length);
+
+        /**
+         * 与映射区中一行的点积。JDK 21 中从映射区装载 FloatVector 需要预览特性 MemorySegment，
+         * 两种实现共用按绝对下标读取的标量循环，四路累加减少依赖链
+         */
+        default float dot(float[] query, FloatBuffer vectors, int offset, int length) {
+            float s0 = 0f;
+            float s1 = 0f;
+            float s2 = 0f;
+            float s3 = 0f;
+            int bound = length & ~3;
+            int i = 0;
+            for (; i < bound; i += 4) {
+                s0 += query[i] * vectors.get(offset + i);
+                s1 += query[i + 1] * vectors.get(offset + i + 1);
+                s2 += query[i + 2] * vectors.get(offset + i + 2);
+                s3 += query[i + 3] * vectors.get(offset + i + 3);
+            }
+            for (; i < length; i++) {
+                s0 += query[i] * vectors.get(offset + i);
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+    }
+
+    /**
+     * 标量实现
+     */
+    static final class ScalarKernel implements Kernel {
+
+        @Override
+        public String name() {
+            return "scalar";
+        }
+
+        @Override
+        public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+            float sum = 0f;
+            for (int i = 0; i < length; i++) {
+                sum += a[aOffset + i] * b[bOffset + i];
+            }
+            return sum;
+        }
+
+        @Override
+        public float dotInt8(float[] weights, byte[] codes, int offset, int length) {
+            float sum = 0f;
+            for (int i = 0; i < length; i++) {
+                sum += weights[i] * codes[offset + i];
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.mcp.robot.service.vector;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * 向量快照与 WAL 共用的二进制记录文件
+ * <p>
+ * 文件头为 4 字节 magic + 4 字节版本，之后是连续的记录：
+ * <pre>
+ * op(1) | idLength(4) | id(UTF-8) | vectorLength(4) | 向量（{@link VectorCodec} 格式） | crc32(4)
+ * </pre>
+ * REMOVE / CLEAR 记录的 vectorLength 为 0。读取时遇到不完整或校验失败的记录即停止，
+ * 进程崩溃最多丢失未刷出的最后几条记录，由启动时与 MySQL 的对账补齐。
+ */
+@Slf4j
+final class VectorLogFile {
+
+    static final int SNAPSHOT_MAGIC = 0x504E5356;
+    static final int WAL_MAGIC = 0x4C415756;
+
+    static final byte ADD = 1;
+    static final byte REMOVE = 2;
+    static final byte CLEAR = 3;
+
+    private static final int VERSION = 1;
+
+    private VectorLogFile() {
+    }
+
+    /**
+     * 记录回调
+     */
+    interface Visitor {
+        void accept(byte op, String id, float[] vector);
+    }
+
+    /**
+     * 顺序读取文件中的所有完整记录，返回完整记录（含文件头）占用的字节数；文件不存在时返回 0。
+     * 返回值小于文件长度说明末尾有残缺记录，继续追加前需先 {@link #truncate} 截掉。
+     */
+    static long replay(Path path, int magic, Visitor visitor) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        long records = 0;
+        long validBytes = 8;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != magic || in.readInt() != VERSION) {
+                throw new IOException("无法识别的向量日志文件: " + path);
+            }
+            CRC32 crc = new CRC32();
+            while (true) {
+                int op = in.read();
+                if (op < 0) {
+                    break;
+                }
+                try {
+                    crc.reset();
+                    crc.update(op);
+                    byte[] idBytes = readBytes(in, in.readInt(), crc);
+                    byte[] vectorBytes = readBytes(in, in.readInt(), crc);
+                    if ((int) crc.getValue() != in.readInt()) {
+                        log.warn("向量日志记录校验失败，忽略其后内容: {}, 已读取 {} 条", path, records);
+                        break;
+                    }
+                    visitor.accept((byte) op, new String(idBytes, StandardCharsets.UTF_8),
+                            vectorBytes.length == 0 ? null : VectorCodec.decode(vectorBytes));
+                    records++;
+                    validBytes += 1 + 4 + idBytes.length + 4 + vectorBytes.length + 4;
+                } catch (EOFException e) {
+                    log.warn("向量日志末尾记录不完整，已忽略: {}, 已读取 {} 条", path, records);
+                    break;
+                }
+            }
+        }
+        return validBytes;
+    }
+
+    /**
+     * 截断到指定长度，丢弃末尾的残缺记录
+     */
+    static void truncate(Path path, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            if (channel.size() > length) {
+                log.warn("截断向量日志末尾残缺记录: {}, {} -> {} 字节", path, channel.size(), length);
+                channel.truncate(length);
+            }
+        }
+    }
+
+    /**
+     * 以追加方式打开新的记录文件（或已知为空的文件），新文件先写入文件头
+     */
+    static Writer openWriter(Path path, int magic) throws IOException {
+        return openWriter(path, magic, 0);
+    }
+
+    /**
+     * 以追加方式打开记录文件，新文件先写入文件头。
+     * existingRecords 为文件中已有的完整记录数（通常是刚 {@link #replay} 出的条数），记录数从它开始累计
+     */
+    static Writer openWriter(Path path, int magic, long existingRecords) throws IOException {
+        boolean exists = Files.exists(path) && Files.size(path) > 0;
+        FileOutputStream file = new FileOutputStream(path.toFile(), true);
+        Writer writer = new Writer(file, exists ? Files.size(path) : 0, exists ? existingRecords : 0);
+        if (!exists) {
+            writer.out.writeInt(magic);
+            writer.out.writeInt(VERSION);
+            writer.bytes += 8;
+        }
+        return writer;
+    }
+
+    /**
+     * 记录写入器，非线程安全
+     */
+    static final class Writer implements AutoCloseable {
+
+        private final FileOutputStream file;
+        private final DataOutputStream out;
+        private final CRC32 crc = new CRC32();
+        private long bytes;
+        private long records;
+
+        private Writer(FileOutputStream file, long bytes, long records) {
+            this.file = file;
+            this.out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+            this.bytes = bytes;
+            this.records = records;
+        }
+
+        void append(byte op, String id, float[] vector) throws IOException {
+            byte[] idBytes = id == null ? new byte[0] : id.getBytes(StandardCharsets.UTF_8);
+            byte[] vectorBytes = vector == null ? new byte[0] : VectorCodec.encode(vector);
+            crc.reset();
+            crc.update(op);
+            crc.update(idBytes);
+            crc.update(vectorBytes);
+
+            out.writeByte(op);
+            out.writeInt(idBytes.length);
+            out.write(idBytes);
+            out.writeInt(vectorBytes.length);
+            out.write(vectorBytes);
+            out.writeInt((int) crc.getValue());
+            bytes += 1 + 4 + idBytes.length + 4 + vectorBytes.length + 4;
+            records++;
+        }
+
+        /**
+         * 刷到操作系统页缓存（进程崩溃不丢失）
+         */
+        void flush() throws IOException {
+            out.flush();
+        }
+
+        /**
+         * 刷盘（机器宕机不丢失）
+         */
+        void sync() throws IOException {
+            out.flush();
+            file.getFD().sync();
+        }
+
+        long bytes() {
+            return bytes;
+        }
+
+        long records() {
+            return records;
+        }
+
+        @Override
+        public void close() throws IOException {
+            sync();
+            out.close();
+        }
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private static byte[] readBytes(InputStream in, int length, CRC32 crc) throws IOException {
+        if (length < 0 || length > (1 << 26)) {
+            throw new EOFException("记录长度非法: " + length);
+        }
+        byte[] bytes = new byte[length];
+        int read = in.readNBytes(bytes, 0, length);
+        if (read < length) {
+            throw new EOFException();
+        }
+        crc.update(bytes);
+        return bytes;
+    }
+}
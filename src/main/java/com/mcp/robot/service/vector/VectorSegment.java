@@ -0,0 +1,238 @@
+package com.mcp.robot.service.vector;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 定长记录的向量段文件，整个文件通过 {@link MappedByteBuffer} 映射
+ * <p>
+ * 文件布局（小端）：
+ * <pre>
+ * 文件头 64 字节：magic "VSEG" | version | dimension | capacity | count | 保留
+ * 记录 capacity 条，每条 64 + 4 * dimension 字节：
+ *   status | idLength | norm | 保留 | id（UTF-8，最多 48 字节） | 归一化后的 float[dimension]
+ * </pre>
+ * 记录只追加不改写，删除只把 status 置为墓碑。写入顺序为“记录内容 → status → 文件头 count”，
+ * 进程崩溃时最多丢失最后一条尚未计入 count 的记录。非线程安全，由 {@link MappedVectorIndex} 加锁访问。
+ */
+final class VectorSegment {
+
+    static final int MAX_ID_BYTES = 48;
+
+    private static final int MAGIC = 0x47455356;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int RECORD_HEADER_BYTES = 64;
+    private static final int COUNT_OFFSET = 16;
+
+    private static final int STATUS_LIVE = 1;
+    private static final int STATUS_DELETED = 2;
+
+    private final int number;
+    private final Path path;
+    private final int dimension;
+    private final int capacity;
+    private final int recordBytes;
+    private final MappedByteBuffer buffer;
+    private final FloatBuffer floats;
+
+    private int count;
+    private int deleted;
+
+    private VectorSegment(int number, Path path, int dimension, int capacity, MappedByteBuffer buffer) {
+        this.number = number;
+        this.path = path;
+        this.dimension = dimension;
+        this.capacity = capacity;
+        this.recordBytes = RECORD_HEADER_BYTES + dimension * Float.BYTES;
+        this.buffer = buffer;
+        this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.floats = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+    }
+
+    /**
+     * 创建新的段文件并预分配全部容量
+     */
+    static VectorSegment create(Path path, int number, int dimension, int capacity) {
+        long size = HEADER_BYTES + (long) capacity * (RECORD_HEADER_BYTES + dimension * Float.BYTES);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("单个向量段不能超过 2GB，请调小 records-per-segment");
+        }
+        VectorSegment segment = new VectorSegment(number, path, dimension, capacity,
+                map(path, size, StandardOpenOption.CREATE_NEW));
+        segment.buffer.putInt(0, MAGIC);
+        segment.buffer.putInt(4, VERSION);
+        segment.buffer.putInt(8, dimension);
+        segment.buffer.putInt(12, capacity);
+        segment.buffer.putInt(COUNT_OFFSET, 0);
+        return segment;
+    }
+
+    /**
+     * 打开已有的段文件，统计墓碑数
+     */
+    static VectorSegment open(Path path, int number) {
+        long size = fileSize(path);
+        if (size < HEADER_BYTES) {
+            throw new IllegalStateException("向量段文件损坏: " + path);
+        }
+        MappedByteBuffer buffer = map(path, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IllegalStateException("无法识别的向量段文件: " + path);
+        }
+        int dimension = buffer.getInt(8);
+        int capacity = buffer.getInt(12);
+        VectorSegment segment = new VectorSegment(number, path, dimension, capacity, buffer);
+        if (size < HEADER_BYTES + (long) capacity * segment.recordBytes) {
+            throw new IllegalStateException("向量段文件长度不足: " + path);
+        }
+        segment.count = Math.min(buffer.getInt(COUNT_OFFSET), capacity);
+        for (int slot = 0; slot < segment.count; slot++) {
+            if (!segment.isLive(slot)) {
+                segment.deleted++;
+            }
+        }
+        return segment;
+    }
+
+    /**
+     * 追加一条记录，段已满时返回 -1
+     */
+    int append(String id, float[] normalized, float norm) {
+        if (count >= capacity) {
+            return -1;
+        }
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        int slot = count;
+        int offset = recordOffset(slot);
+        buffer.putInt(offset + 4, idBytes.length);
+        buffer.putFloat(offset + 8, norm);
+        buffer.put(offset + 16, idBytes);
+        floats.put(vectorOffset(slot), normalized);
+        buffer.putInt(offset, STATUS_LIVE);
+        buffer.putInt(COUNT_OFFSET, ++count);
+        return slot;
+    }
+
+    void markDeleted(int slot) {
+        if (isLive(slot)) {
+            buffer.putInt(recordOffset(slot), STATUS_DELETED);
+            deleted++;
+        }
+    }
+
+    boolean isLive(int slot) {
+        return buffer.getInt(recordOffset(slot)) == STATUS_LIVE;
+    }
+
+    String id(int slot) {
+        int offset = recordOffset(slot);
+        byte[] idBytes = new byte[buffer.getInt(offset + 4)];
+        buffer.get(offset + 16, idBytes);
+        return new String(idBytes, StandardCharsets.UTF_8);
+    }
+
+    float norm(int slot) {
+        return buffer.getFloat(recordOffset(slot) + 8);
+    }
+
+    /**
+     * 查询向量（已归一化）与记录的点积，直接在映射区上计算，扫描时不复制记录
+     */
+    float dot(int slot, float[] query) {
+        return VectorKernels.dot(query, floats, vectorOffset(slot));
+    }
+
+    /**
+     * 把归一化后的向量整段复制到 target（与映射区之间是一次内存拷贝），用于读取和搬迁记录
+     */
+    void read(int slot, float[] target) {
+        floats.get(vectorOffset(slot), target, 0, dimension);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * 删除段文件。映射区在缓冲对象被回收时才真正释放，删除后不得再访问本段。
+     */
+    void delete() {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("删除向量段失败: " + path, e);
+        }
+    }
+
+    int number() {
+        return number;
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int count() {
+        return count;
+    }
+
+    int liveCount() {
+        return count - deleted;
+    }
+
+    int deletedCount() {
+        return deleted;
+    }
+
+    boolean isFull() {
+        return count >= capacity;
+    }
+
+    long mappedBytes() {
+        return buffer.capacity();
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    private int recordOffset(int slot) {
+        return HEADER_BYTES + slot * recordBytes;
+    }
+
+    private int vectorOffset(int slot) {
+        return (recordOffset(slot) + RECORD_HEADER_BYTES) / Float.BYTES;
+    }
+
+    private static MappedByteBuffer map(Path path, long size, StandardOpenOption... extraOptions) {
+        StandardOpenOption[] options = new StandardOpenOption[extraOptions.length + 2];
+        options[0] = StandardOpenOption.READ;
+        options[1] = StandardOpenOption.WRITE;
+        System.arraycopy(extraOptions, 0, options, 2, extraOptions.length);
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("映射向量段失败: " + path, e);
+        }
+    }
+
+    private static long fileSize(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取向量段失败: " + path, e);
+        }
+    }
+}
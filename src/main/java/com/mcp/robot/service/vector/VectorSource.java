@@ -0,0 +1,15 @@
+package com.mcp.robot.service.vector;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 全精度向量来源，供量化索引做精排重打分
+ */
+public interface VectorSource {
+
+    /**
+     * 批量读取全精度向量，不存在的ID不出现在结果中
+     */
+    Map<String, float[]> fetch(Collection<String> ids);
+}
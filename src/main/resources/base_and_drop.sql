@@ -3,6 +3,7 @@ SET FOREIGN_KEY_CHECKS = 0;
 DROP TABLE IF EXISTS classes;
 DROP TABLE IF EXISTS courses;
 DROP TABLE IF EXISTS departments;
+DROP TABLE IF EXISTS embedding_cache;
 DROP TABLE IF EXISTS exam_arrangements;
 DROP TABLE IF EXISTS knowledge_embedding;
 DROP TABLE IF EXISTS majors;
@@ -31,10 +32,32 @@ CREATE TABLE IF NOT EXISTS knowledge_embedding
 (
     id               BIGINT AUTO_INCREMENT PRIMARY KEY,
     embedding_id     VARCHAR(64) NOT NULL UNIQUE COMMENT '向量唯一ID',
+    collection       VARCHAR(64) NOT NULL DEFAULT 'default' COMMENT '知识集合',
     content          TEXT        NOT NULL COMMENT '原始文本',
-    embedding_vector LONGTEXT    NOT NULL COMMENT '向量数据（JSON数组，1536维）',
+    content_hash     CHAR(64)    NULL COMMENT '规范化文本的SHA-256，用于写入去重',
+    source_id        VARCHAR(128) NULL COMMENT '来源文档ID，按来源增量同步',
+    source_version   VARCHAR(64) NULL COMMENT '来源文档版本',
+    plain_content_hash CHAR(64) AS (IF(source_id IS NULL, content_hash, NULL)) VIRTUAL COMMENT '普通写入片段的内容哈希，来源文档片段为空',
+    embedding_vector LONGTEXT    NULL COMMENT '向量数据（旧版JSON数组，迁移后为空）',
+    embedding_blob   BLOB        NULL COMMENT '向量数据（float32小端二进制，带格式头）',
     metadata_json    TEXT COMMENT '元数据（JSON）',
     created_time     DATETIME DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_collection_hash (collection, content_hash),
+    UNIQUE INDEX uk_collection_plain_hash (collection, plain_content_hash),
+    INDEX idx_collection_source (collection, source_id),
     INDEX idx_created_time (created_time)
 ) ENGINE = InnoDB
   DEFAULT CHARSET = utf8mb4 COMMENT ='知识库向量存储表';
+
+-- 创建文本向量缓存表
+CREATE TABLE IF NOT EXISTS embedding_cache
+(
+    id             BIGINT AUTO_INCREMENT PRIMARY KEY,
+    model_name     VARCHAR(128) NOT NULL COMMENT '向量模型（指定输出维度时附带维度）',
+    text_hash      CHAR(64)     NOT NULL COMMENT '规范化文本的SHA-256',
+    embedding_blob BLOB         NOT NULL COMMENT '向量数据（float32小端二进制，带格式头）',
+    created_time   DATETIME DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE KEY uk_model_hash (model_name, text_hash),
+    INDEX idx_created_time (created_time)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4 COMMENT ='文本向量缓存表';
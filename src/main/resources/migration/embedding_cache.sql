@@ -0,0 +1,17 @@
+-- ============================================
+-- 新增文本向量缓存表：按 (模型, 规范化文本哈希) 缓存向量化结果，重复文本不再调用远端向量化接口
+-- 表内容可随时清空，只影响命中率；需要控制体积时按 created_time 清理过旧的条目，例如：
+-- DELETE FROM embedding_cache WHERE created_time < NOW() - INTERVAL 90 DAY;
+-- ============================================
+
+CREATE TABLE IF NOT EXISTS embedding_cache
+(
+    id             BIGINT AUTO_INCREMENT PRIMARY KEY,
+    model_name     VARCHAR(128) NOT NULL COMMENT '向量模型（指定输出维度时附带维度）',
+    text_hash      CHAR(64)     NOT NULL COMMENT '规范化文本的SHA-256',
+    embedding_blob BLOB         NOT NULL COMMENT '向量数据（float32小端二进制，带格式头）',
+    created_time   DATETIME DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE KEY uk_model_hash (model_name, text_hash),
+    INDEX idx_created_time (created_time)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4 COMMENT ='文本向量缓存表';
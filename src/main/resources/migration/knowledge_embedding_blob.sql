@@ -0,0 +1,20 @@
+-- ============================================
+-- knowledge_embedding 向量列迁移：JSON -> float32 二进制
+-- 1. 在线增加二进制列，并放开旧 JSON 列的 NOT NULL 约束
+-- 2. 应用启动后由 EmbeddingFormatMigrator 在后台分批转换存量数据
+-- 3. 确认 embedding_blob 全部非空后，可执行第 3 步回收旧列空间
+-- ============================================
+
+ALTER TABLE knowledge_embedding
+    ADD COLUMN embedding_blob BLOB NULL COMMENT '向量数据（float32小端二进制，带格式头）' AFTER embedding_vector,
+    ALGORITHM = INSTANT;
+
+ALTER TABLE knowledge_embedding
+    MODIFY COLUMN embedding_vector LONGTEXT NULL COMMENT '向量数据（旧版JSON数组，迁移后为空）',
+    ALGORITHM = INPLACE, LOCK = NONE;
+
+-- 迁移进度检查
+-- SELECT COUNT(*) FROM knowledge_embedding WHERE embedding_blob IS NULL;
+
+-- 3. 可选：迁移完成后回收空间
+-- OPTIMIZE TABLE knowledge_embedding;
@@ -0,0 +1,19 @@
+-- ============================================
+-- knowledge_embedding 增加知识集合列
+-- 1. 在线增加 collection 列及索引，存量数据归入 default 集合
+-- 2. 可选：按写入时的 source 元数据回填集合（knowledge / ddl / business）
+-- ============================================
+
+ALTER TABLE knowledge_embedding
+    ADD COLUMN collection VARCHAR(64) NOT NULL DEFAULT 'default' COMMENT '知识集合' AFTER embedding_id,
+    ALGORITHM = INSTANT;
+
+ALTER TABLE knowledge_embedding
+    ADD INDEX idx_collection (collection),
+    ALGORITHM = INPLACE, LOCK = NONE;
+
+-- 2. 可选：按 source 元数据回填
+-- UPDATE knowledge_embedding
+-- SET collection = JSON_UNQUOTE(JSON_EXTRACT(metadata_json, '$.source'))
+-- WHERE collection = 'default'
+--   AND JSON_UNQUOTE(JSON_EXTRACT(metadata_json, '$.source')) IN ('knowledge', 'ddl', 'business');
@@ -0,0 +1,21 @@
+-- ============================================
+-- knowledge_embedding 增加内容哈希列，写入时按 (collection, content_hash) 去重
+-- 1. 在线增加 content_hash 列，(collection, content_hash) 联合索引替代单列 collection 索引
+-- 2. 回填存量数据的哈希：规范化规则与应用一致（连续空白折叠为一个空格并去掉首尾空白）
+-- ============================================
+
+ALTER TABLE knowledge_embedding
+    ADD COLUMN content_hash CHAR(64) NULL COMMENT '规范化文本的SHA-256，用于写入去重' AFTER content,
+    ALGORITHM = INSTANT;
+
+ALTER TABLE knowledge_embedding
+    ADD INDEX idx_collection_hash (collection, content_hash),
+    DROP INDEX idx_collection,
+    ALGORITHM = INPLACE, LOCK = NONE;
+
+-- 2. 回填（数据量大时可按 id 范围分批执行）
+-- 空白字符与应用中的 [ \t\n\r\f\u000B] 一一对应：MySQL 字符串不识别 \f、\v 转义（会当作字母 f、v），
+-- [[:space:]] 又额外包含全角空格等字符，因此用 CHAR 显式拼出 TAB、LF、VT、FF、CR
+UPDATE knowledge_embedding
+SET content_hash = SHA2(TRIM(REGEXP_REPLACE(content, CONCAT('[ ', CHAR(9, 10, 11, 12, 13 USING utf8mb4), ']+'), ' ')), 256)
+WHERE content_hash IS NULL;
@@ -0,0 +1,26 @@
+-- ============================================
+-- knowledge_embedding 普通写入片段按 (collection, 内容哈希) 唯一，防止并发写入相同内容时都通过去重检查
+-- 需在 knowledge_embedding_content_hash.sql、knowledge_embedding_source.sql 之后执行
+-- 1. 清理已存在的重复普通片段，每组保留 id 最小的一条
+-- 2. 虚拟列 plain_content_hash：普通片段取 content_hash，来源文档片段为 NULL（来源片段允许与其他内容重复）
+-- 3. 在线增加 (collection, plain_content_hash) 唯一索引，NULL 不参与唯一性比较
+-- ============================================
+
+-- 1. 清理（删除的向量在应用下次加载索引时与 MySQL 对齐）
+DELETE duplicate
+FROM knowledge_embedding duplicate
+         JOIN knowledge_embedding kept
+              ON kept.collection = duplicate.collection
+                  AND kept.content_hash = duplicate.content_hash
+                  AND kept.id < duplicate.id
+WHERE duplicate.source_id IS NULL
+  AND kept.source_id IS NULL;
+
+ALTER TABLE knowledge_embedding
+    ADD COLUMN plain_content_hash CHAR(64) AS (IF(source_id IS NULL, content_hash, NULL)) VIRTUAL
+        COMMENT '普通写入片段的内容哈希，来源文档片段为空' AFTER source_version,
+    ALGORITHM = INSTANT;
+
+ALTER TABLE knowledge_embedding
+    ADD UNIQUE INDEX uk_collection_plain_hash (collection, plain_content_hash),
+    ALGORITHM = INPLACE, LOCK = NONE;
@@ -0,0 +1,14 @@
+-- ============================================
+-- knowledge_embedding 增加来源文档列，支持按来源文档增量同步
+-- 1. 在线增加 source_id / source_version 列，存量数据为空（不属于任何来源，不参与同步比对）
+-- 2. (collection, source_id) 联合索引，同步时按来源读取已入库片段
+-- ============================================
+
+ALTER TABLE knowledge_embedding
+    ADD COLUMN source_id      VARCHAR(128) NULL COMMENT '来源文档ID，按来源增量同步' AFTER content_hash,
+    ADD COLUMN source_version VARCHAR(64)  NULL COMMENT '来源文档版本' AFTER source_id,
+    ALGORITHM = INSTANT;
+
+ALTER TABLE knowledge_embedding
+    ADD INDEX idx_collection_source (collection, source_id),
+    ALGORITHM = INPLACE, LOCK = NONE;
@@ -0,0 +1,140 @@
+package com.mcp.robot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 迁移脚本回填的 content_hash 必须与 {@link MysqlEmbeddingStore#contentHash} 一致，否则存量数据无法参与去重。
+ * 按 MySQL 字符串字面量的转义规则求值脚本中的空白正则，再在 Java 中复现 SHA2(TRIM(REGEXP_REPLACE(...)))
+ */
+class ContentHashMigrationTest {
+
+    private static final Pattern BACKFILL = Pattern.compile(
+            "SHA2\\(TRIM\\(REGEXP_REPLACE\\(content, (.+), ' '\\)\\), 256\\)");
+    private static final Pattern CHAR_FUNCTION = Pattern.compile("CHAR\\(([\\d,\\s]+) USING \\w+\\)");
+
+    @Test
+    void backfillMatchesApplicationHash() throws IOException {
+        Pattern whitespace = Pattern.compile(backfillPattern());
+
+        for (String text : List.of(
+                "CREATE TABLE t (name varchar(20) DEFAULT 'v', FOREIGN KEY (f) REFERENCES r (f))",
+                "  多个\t空白\n\n折叠\r\n为一个 ",
+                "换页\f与垂直制表\u000B也是空白",
+                "全角空格　和不换行空格 不是空白")) {
+            assertThat(sqlHash(whitespace, text)).as(text).isEqualTo(MysqlEmbeddingStore.contentHash(text));
+        }
+    }
+
+    /**
+     * 迁移脚本中 REGEXP_REPLACE 的第二个参数求值后的正则
+     */
+    private static String backfillPattern() throws IOException {
+        String sql;
+        try (InputStream in = ContentHashMigrationTest.class
+                .getResourceAsStream("/migration/knowledge_embedding_content_hash.sql")) {
+            sql = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        Matcher backfill = BACKFILL.matcher(sql);
+        assertThat(backfill.find()).as("迁移脚本中的回填语句").isTrue();
+        return evaluate(backfill.group(1).trim());
+    }
+
+    /**
+     * 只支持脚本用到的表达式：字符串字面量、CHAR(n, ... USING charset)、CONCAT(...)
+     */
+    private static String evaluate(String expression) {
+        if (expression.startsWith("'")) {
+            return literal(expression);
+        }
+        Matcher charFunction = CHAR_FUNCTION.matcher(expression);
+        if (charFunction.matches()) {
+            StringBuilder chars = new StringBuilder();
+            for (String code : charFunction.group(1).split(",")) {
+                chars.append((char) Integer.parseInt(code.trim()));
+            }
+            return chars.toString();
+        }
+        if (expression.startsWith("CONCAT(") && expression.endsWith(")")) {
+            StringBuilder result = new StringBuilder();
+            for (String argument : arguments(expression.substring("CONCAT(".length(), expression.length() - 1))) {
+                result.append(evaluate(argument));
+            }
+            return result.toString();
+        }
+        throw new IllegalArgumentException("不支持的表达式: " + expression);
+    }
+
+    /**
+     * MySQL 字符串字面量：只有 \0 \b \n \r \t \Z 及引号、反斜杠是转义，其余 \x 就是字母 x
+     */
+    private static String literal(String quoted) {
+        StringBuilder value = new StringBuilder();
+        for (int i = 1; i < quoted.length() - 1; i++) {
+            char c = quoted.charAt(i);
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            char next = quoted.charAt(++i);
+            value.append(switch (next) {
+                case '0' -> '\0';
+                case 'b' -> '\b';
+                case 'n' -> '\n';
+                case 'r' -> '\r';
+                case 't' -> '\t';
+                case 'Z' -> '\u001A';
+                default -> next;
+            });
+        }
+        return value.toString();
+    }
+
+    private static List<String> arguments(String text) {
+        List<String> arguments = new ArrayList<>();
+        int depth = 0;
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && quoted) {
+                i++;
+            } else if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && c == '(') {
+                depth++;
+            } else if (!quoted && c == ')') {
+                depth--;
+            } else if (!quoted && c == ',' && depth == 0) {
+                arguments.add(text.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        arguments.add(text.substring(start).trim());
+        return arguments;
+    }
+
+    private static String sqlHash(Pattern whitespace, String content) {
+        String replaced = whitespace.matcher(content).replaceAll(" ");
+        // MySQL TRIM 默认只去掉首尾空格
+        String trimmed = replaced.replaceAll("^ +| +$", "");
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(trimmed.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.mcp.robot.service;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.AbstractWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.mcp.robot.mapper.KnowledgeEmbeddingMapper;
+import com.mcp.robot.model.KnowledgeEmbeddingEntity;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * knowledge_embedding 表的内存替身：按 MyBatis-Plus 条件构造器生成的 SQL 片段过滤行。
+ * 只支持存储层用到的 = / > / IS NULL / IN 条件以 AND 连接，ORDER BY、LIMIT 忽略。
+ * 写入时与真实表一样检查 (collection, plain_content_hash) 唯一键，冲突时整批不写入
+ */
+final class InMemoryEmbeddingTable {
+
+    private static final Pattern PARAM = Pattern.compile("#\\{ew\\.paramNameValuePairs\\.(\\w+)}");
+    private static final Pattern CONDITION = Pattern.compile("(\\w+) (=|>|IS NULL|IN)\\s*(.*)");
+
+    private final List<KnowledgeEmbeddingEntity> rows = new ArrayList<>();
+    private final KnowledgeEmbeddingMapper mapper = mock(KnowledgeEmbeddingMapper.class, this::answer);
+    private long nextId = 1;
+
+    InMemoryEmbeddingTable() {
+        // Lambda 条件构造器依赖实体的列映射缓存，单元测试中没有 MyBatis 启动流程，手动注册
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""),
+                KnowledgeEmbeddingEntity.class);
+    }
+
+    KnowledgeEmbeddingMapper mapper() {
+        return mapper;
+    }
+
+    synchronized List<KnowledgeEmbeddingEntity> rows() {
+        return new ArrayList<>(rows);
+    }
+
+    // ==================== 私有辅助方法 ====================
+
+    @SuppressWarnings("unchecked")
+    private synchronized Object answer(InvocationOnMock invocation) throws Throwable {
+        Object[] args = invocation.getArguments();
+        switch (invocation.getMethod().getName()) {
+            case "insertBatch" -> {
+                List<KnowledgeEmbeddingEntity> entities = (List<KnowledgeEmbeddingEntity>) args[0];
+                Set<String> plainKeys = new HashSet<>();
+                rows.forEach(row -> plainKey(row).ifPresent(plainKeys::add));
+                for (KnowledgeEmbeddingEntity entity : entities) {
+                    if (plainKey(entity).filter(key -> !plainKeys.add(key)).isPresent()) {
+                        throw new DuplicateKeyException("Duplicate entry for key 'uk_collection_plain_hash'");
+                    }
+                }
+                entities.forEach(entity -> {
+                    entity.setId(nextId++);
+                    rows.add(entity);
+                });
+                return entities.size();
+            }
+            case "selectCollections" -> {
+                return rows.stream().map(KnowledgeEmbeddingEntity::getCollection).distinct().toList();
+            }
+            case "selectList" -> {
+                return rows.stream().filter(matcher(args[0])).toList();
+            }
+            case "selectOne" -> {
+                return rows.stream().filter(matcher(args[0])).findFirst().orElse(null);
+            }
+            case "selectCount" -> {
+                return rows.stream().filter(matcher(args[0])).count();
+            }
+            case "delete" -> {
+                int before = rows.size();
+                rows.removeIf(matcher(args[0]));
+                return before - rows.size();
+            }
+            case "update" -> {
+                LambdaUpdateWrapper<KnowledgeEmbeddingEntity> wrapper = (LambdaUpdateWrapper<KnowledgeEmbeddingEntity>) args[1];
+                List<KnowledgeEmbeddingEntity> matched = rows.stream().filter(matcher(wrapper)).toList();
+                for (String assignment : wrapper.getSqlSet().split(",")) {
+                    String[] parts = assignment.split("=", 2);
+                    Object value = value(parts[1], wrapper.getParamNameValuePairs());
+                    matched.forEach(row -> set(row, parts[0].trim(), value));
+                }
+                return matched.size();
+            }
+            default -> {
+                if (invocation.getMethod().isDefault()) {
+                    return invocation.callRealMethod();
+                }
+                throw new UnsupportedOperationException(invocation.getMethod().getName());
+            }
+        }
+    }
+
+    private static Optional<String> plainKey(KnowledgeEmbeddingEntity row) {
+        return row.getSourceId() == null && row.getContentHash() != null
+                ? Optional.of(row.getCollection() + '|' + row.getContentHash())
+                : Optional.empty();
+    }
+
+    private static Predicate<KnowledgeEmbeddingEntity> matcher(Object argument) {
+        if (argument == null) {
+            return row -> true;
+        }
+        AbstractWrapper<?, ?, ?> wrapper = (AbstractWrapper<?, ?, ?>) argument;
+        String sql = wrapper.getSqlSegment();
+        if (!sql.startsWith("(")) {
+            return row -> true;
+        }
+        String where = sql.substring(1, sql.lastIndexOf(')', endOfWhere(sql)));
+        Map<String, Object> params = wrapper.getParamNameValuePairs();
+        Predicate<KnowledgeEmbeddingEntity> predicate = row -> true;
+        for (String condition : where.split(" AND ")) {
+            predicate = predicate.and(condition(condition.trim(), params));
+        }
+        return predicate;
+    }
+
+    private static int endOfWhere(String sql) {
+        for (String clause : new String[]{" ORDER BY", " LIMIT", " GROUP BY"}) {
+            int index = sql.indexOf(clause);
+            if (index >= 0) {
+                return index;
+            }
+        }
+        return sql.length();
+    }
+
+    private static Predicate<KnowledgeEmbeddingEntity> condition(String condition, Map<String, Object> params) {
+        Matcher matcher = CONDITION.matcher(condition);
+        if (!matcher.matches()) {
+            throw new UnsupportedOperationException("不支持的条件: " + condition);
+        }
+        String column = matcher.group(1);
+        String operand = matcher.group(3);
+        return switch (matcher.group(2)) {
+            case "IS NULL" -> row -> get(row, column) == null;
+            case "=" -> {
+                Object value = value(operand, params);
+                yield row -> Objects.equals(get(row, column), value);
+            }
+            case ">" -> {
+                long value = ((Number) value(operand, params)).longValue();
+                yield row -> ((Number) get(row, column)).longValue() > value;
+            }
+            default -> {
+                List<Object> values = new ArrayList<>();
+                Matcher param = PARAM.matcher(operand);
+                while (param.find()) {
+                    values.add(params.get(param.group(1)));
+                }
+                yield row -> values.contains(get(row, column));
+            }
+        };
+    }
+
+    private static Object value(String placeholder, Map<String, Object> params) {
+        Matcher matcher = PARAM.matcher(placeholder);
+        if (!matcher.find()) {
+            throw new UnsupportedOperationException("不支持的取值: " + placeholder);
+        }
+        return params.get(matcher.group(1));
+    }
+
+    private static Object get(KnowledgeEmbeddingEntity row, String column) {
+        return switch (column) {
+            case "id" -> row.getId();
+            case "embedding_id" -> row.getEmbeddingId();
+            case "collection" -> row.getCollection();
+            case "content_hash" -> row.getContentHash();
+            case "source_id" -> row.getSourceId();
+            case "source_version" -> row.getSourceVersion();
+            default -> throw new UnsupportedOperationException("不支持的列: " + column);
+        };
+    }
+
+    private static void set(KnowledgeEmbeddingEntity row, String column, Object value) {
+        if (!"source_version".equals(column)) {
+            throw new UnsupportedOperationException("不支持更新的列: " + column);
+        }
+        row.setSourceVersion((String) value);
+    }
+}
@@ -0,0 +1,145 @@
+package com.mcp.robot.service;
+
+import com.mcp.robot.model.KnowledgeEmbeddingEntity;
+import com.mcp.robot.service.retrieval.QueryResultCache;
+import com.mcp.robot.service.vector.FlatVectorIndex;
+import com.mcp.robot.service.vector.MysqlVectorSource;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 普通写入与来源同步共用一个集合时，删除或同步来源不能带走普通写入的内容
+ */
+class KnowledgeIngestionServiceTest {
+
+    private static final String COLLECTION = "kb";
+    private static final String SOURCE = "doc-1";
+    private static final String SHARED = "退款申请需在签收后七天内提交，超过期限的订单只能联系人工客服处理";
+    private static final String VARIANT_BASE = "会员积分每月一日清零，未使用的优惠券在到期前三天会收到短信提醒，"
+            + "积分可以在商城兑换礼品或者抵扣运费，每笔订单最多抵扣一半金额";
+    private static final String VARIANT = VARIANT_BASE + "。";
+
+    private final InMemoryEmbeddingTable table = new InMemoryEmbeddingTable();
+    private final EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+    private MysqlEmbeddingStore store;
+    private KnowledgeIngestionService service;
+
+    @BeforeEach
+    void setUp() {
+        when(embeddingModel.embedAll(anyList())).thenAnswer(invocation -> {
+            List<TextSegment> segments = invocation.getArgument(0);
+            return Response.from(segments.stream().map(segment -> embedding(segment.text())).toList());
+        });
+        store = new MysqlEmbeddingStore(table.mapper(),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                collection -> new FlatVectorIndex(), new MysqlVectorSource(table.mapper()),
+                new QueryResultCache(false, 0, 0, 1));
+        ReflectionTestUtils.setField(store, "insertBatchSize", 200);
+        ReflectionTestUtils.setField(store, "nearDuplicateDistance", 6);
+        ReflectionTestUtils.setField(store, "collapseNearDuplicates", true);
+        service = new KnowledgeIngestionService(embeddingModel, store);
+        ReflectionTestUtils.setField(service, "embedBatchSize", 10);
+        ReflectionTestUtils.setField(service, "nearDuplicatePolicy", "link");
+        store.collectionSizes();
+    }
+
+    @Test
+    void plainIngestDoesNotReuseSourceChunk() {
+        service.syncSource(COLLECTION, SOURCE, "v1", List.of(TextSegment.from(SHARED)));
+
+        KnowledgeIngestionService.IngestionResult result = service.ingest(COLLECTION, List.of(TextSegment.from(SHARED)));
+        assertThat(result.getAdded()).isEqualTo(1);
+        assertThat(result.getReused()).isZero();
+
+        service.removeSource(COLLECTION, SOURCE);
+        assertPlainContentSurvives(SHARED);
+    }
+
+    @Test
+    void removingSourceKeepsEarlierPlainIngest() {
+        service.ingest(COLLECTION, List.of(TextSegment.from(SHARED)));
+        service.syncSource(COLLECTION, SOURCE, "v1", List.of(TextSegment.from(SHARED)));
+        service.removeSource(COLLECTION, SOURCE);
+
+        assertPlainContentSurvives(SHARED);
+    }
+
+    @Test
+    void syncingSourceAwayKeepsPlainIngest() {
+        service.syncSource(COLLECTION, SOURCE, "v1", List.of(TextSegment.from(SHARED)));
+        service.ingest(COLLECTION, List.of(TextSegment.from(SHARED)));
+        service.syncSource(COLLECTION, SOURCE, "v2", List.of(TextSegment.from("新版本文档只剩这一段内容")));
+
+        assertPlainContentSurvives(SHARED);
+    }
+
+    @Test
+    void nearDuplicateIsNotLinkedToSourceChunk() {
+        assertThat(store.isNearDuplicate(store.fingerprint(VARIANT_BASE), store.fingerprint(VARIANT))).isTrue();
+        service.syncSource(COLLECTION, SOURCE, "v1", List.of(TextSegment.from(VARIANT_BASE)));
+
+        KnowledgeIngestionService.IngestionResult result = service.ingest(COLLECTION, List.of(TextSegment.from(VARIANT)));
+        assertThat(result.getAdded()).isEqualTo(1);
+        assertThat(result.getNearDuplicates()).isZero();
+        assertThat(plainRow(VARIANT).getMetadataJson()).doesNotContain(KnowledgeIngestionService.VARIANT_OF_KEY);
+
+        // 普通写入的片段仍可作为后续近似重复的指向目标
+        assertThat(store.findNearDuplicate(COLLECTION, store.fingerprint(VARIANT_BASE)))
+                .isEqualTo(plainRow(VARIANT).getEmbeddingId());
+    }
+
+    @Test
+    void concurrentIngestOfSameContentKeepsOneRow() {
+        // 两次写入都先通过了去重检查，其中一次抢先入库
+        KnowledgeIngestionService.PreparedSegments late = service.prepare(COLLECTION,
+                List.of(TextSegment.from(SHARED), TextSegment.from("另一段新内容")));
+        KnowledgeIngestionService.IngestionResult early = service.ingest(COLLECTION, List.of(TextSegment.from(SHARED)));
+
+        store.addAll(COLLECTION, late.getIds(),
+                late.getSegments().stream().map(segment -> embedding(segment.text())).toList(), late.getSegments());
+
+        assertThat(table.rows()).filteredOn(row -> row.getContent().equals(SHARED)).singleElement()
+                .extracting(KnowledgeEmbeddingEntity::getEmbeddingId)
+                .isEqualTo(early.getIds().get(0));
+        assertThat(table.rows()).extracting(KnowledgeEmbeddingEntity::getContent).contains("另一段新内容");
+        assertPlainContentSurvives(SHARED);
+        assertThat(store.collectionSizes()).containsEntry(COLLECTION, 2);
+    }
+
+    private void assertPlainContentSurvives(String text) {
+        KnowledgeEmbeddingEntity row = plainRow(text);
+        assertThat(table.rows()).filteredOn(stored -> stored.getContent().equals(text)).containsExactly(row);
+        assertThat(store.keywordSearch(COLLECTION, "退款申请", 5, null))
+                .extracting(hit -> hit.getId())
+                .containsExactly(row.getEmbeddingId());
+    }
+
+    private KnowledgeEmbeddingEntity plainRow(String text) {
+        return table.rows().stream()
+                .filter(row -> row.getSourceId() == null && row.getContent().equals(text))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("普通写入的片段丢失: " + text));
+    }
+
+    private static Embedding embedding(String text) {
+        float[] vector = new float[8];
+        for (int i = 0; i < text.length(); i++) {
+            vector[i % vector.length] += text.charAt(i) % 17;
+        }
+        return Embedding.from(vector);
+    }
+}
@@ -0,0 +1,136 @@
+package com.mcp.robot.service;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.mcp.robot.mapper.KnowledgeEmbeddingMapper;
+import com.mcp.robot.model.KnowledgeEmbeddingEntity;
+import com.mcp.robot.service.retrieval.QueryResultCache;
+import com.mcp.robot.service.vector.DurableVectorIndex;
+import com.mcp.robot.service.vector.FlatVectorIndex;
+import com.mcp.robot.service.vector.MysqlVectorSource;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MysqlEmbeddingStoreTest {
+
+    private static final String COLLECTION = "kb";
+
+    private final KnowledgeEmbeddingMapper mapper = mock(KnowledgeEmbeddingMapper.class);
+    private final MysqlVectorSource vectorSource = mock(MysqlVectorSource.class);
+    private final List<DurableVectorIndex> opened = new ArrayList<>();
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // Lambda 条件构造器依赖实体的列映射缓存，单元测试中没有 MyBatis 启动流程，手动注册
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""),
+                KnowledgeEmbeddingEntity.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(DurableVectorIndex::close);
+    }
+
+    @Test
+    void persistedIndexIsReconciledWithMysqlOnLoad() {
+        // 本地快照中有 a、b、c，MySQL 中 a 已被删除、新增了 d
+        DurableVectorIndex previous = durableIndex(COLLECTION);
+        previous.add("a", new float[]{1, 0, 0});
+        previous.add("b", new float[]{0, 1, 0});
+        previous.add("c", new float[]{0, 0, 1});
+        close(previous);
+
+        when(mapper.selectCollections()).thenReturn(List.of(COLLECTION));
+        when(mapper.selectList(any())).thenReturn(List.of(row(1, "b"), row(2, "c"), row(3, "d")), List.of());
+        when(vectorSource.fetch(anyCollection())).thenReturn(Map.of("d", new float[]{1, 1, 0}));
+
+        MysqlEmbeddingStore store = new MysqlEmbeddingStore(mapper, null, this::durableIndex, vectorSource,
+                new QueryResultCache(false, 0, 0, 1));
+        assertThat(store.collectionSizes()).containsEntry(COLLECTION, 3);
+
+        // 只补齐缺失的 d，已持久化的 b、c 不回库读取；多余的 a 被清理
+        verify(vectorSource).fetch(List.of("d"));
+        DurableVectorIndex index = opened.get(opened.size() - 1);
+        assertThat(index.persistedIds()).containsExactlyInAnyOrder("b", "c", "d");
+        assertThat(index.get("a")).isNull();
+        assertThat(index.get("d")).isNotNull();
+    }
+
+    @Test
+    void singleQuerySearchCollapsesNearDuplicates() {
+        InMemoryEmbeddingTable table = new InMemoryEmbeddingTable();
+        MysqlEmbeddingStore store = new MysqlEmbeddingStore(table.mapper(),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                collection -> new FlatVectorIndex(), new MysqlVectorSource(table.mapper()),
+                new QueryResultCache(true, 100, 60, 16));
+        ReflectionTestUtils.setField(store, "insertBatchSize", 200);
+        ReflectionTestUtils.setField(store, "nearDuplicateDistance", 6);
+        ReflectionTestUtils.setField(store, "collapseNearDuplicates", true);
+        store.collectionSizes();
+
+        String text = "会员积分每月一日清零，未使用的优惠券在到期前三天会收到短信提醒，"
+                + "积分可以在商城兑换礼品或者抵扣运费，每笔订单最多抵扣一半金额";
+        // 两个近似重复的片段与查询最相似，排名第三的是不同内容
+        store.addAll(COLLECTION, List.of("copy-1", "copy-2", "other"),
+                List.of(Embedding.from(new float[]{1, 0, 0}), Embedding.from(new float[]{0.99f, 0.1f, 0}),
+                        Embedding.from(new float[]{0.7f, 0.7f, 0})),
+                List.of(TextSegment.from(text), TextSegment.from(text + "。"), TextSegment.from("退款申请需在签收后七天内提交")));
+        EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                .queryEmbedding(Embedding.from(new float[]{1, 0, 0}))
+                .maxResults(2)
+                .build();
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            assertThat(store.search(COLLECTION, request).matches())
+                    .extracting(match -> match.embeddingId())
+                    .as("第 %d 次检索", attempt + 1)
+                    .containsExactly("copy-1", "other");
+        }
+    }
+
+    private void close(DurableVectorIndex index) {
+        index.close();
+        opened.remove(index);
+    }
+
+    private DurableVectorIndex durableIndex(String collection) {
+        DurableVectorIndex index = new DurableVectorIndex(new FlatVectorIndex(), directory.resolve(collection),
+                1000, 3600);
+        opened.add(index);
+        return index;
+    }
+
+    private static KnowledgeEmbeddingEntity row(long id, String embeddingId) {
+        KnowledgeEmbeddingEntity entity = new KnowledgeEmbeddingEntity();
+        entity.setId(id);
+        entity.setEmbeddingId(embeddingId);
+        entity.setCollection(COLLECTION);
+        entity.setContent("内容 " + embeddingId);
+        entity.setMetadataJson("{}");
+        return entity;
+    }
+}
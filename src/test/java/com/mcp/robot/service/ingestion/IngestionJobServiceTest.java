@@ -0,0 +1,134 @@
+package com.mcp.robot.service.ingestion;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.Metadata;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 不启动切分线程，文档停留在队列中，用来验证入队的容量控制
+ */
+class IngestionJobServiceTest {
+
+    private static final int QUEUE_CAPACITY = 3;
+
+    private final IngestionJobService service = new IngestionJobService(null, null, null);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "queueCapacity", QUEUE_CAPACITY);
+        ReflectionTestUtils.setField(service, "segmentQueueCapacity", 10);
+        ReflectionTestUtils.setField(service, "splitWorkers", 0);
+        ReflectionTestUtils.setField(service, "embedWorkers", 0);
+        ReflectionTestUtils.setField(service, "storeWorkers", 0);
+        ReflectionTestUtils.setField(service, "retention", 100);
+        ReflectionTestUtils.setField(service, "streamWindowChars", 16);
+        ReflectionTestUtils.setField(service, "streamWindowsInFlight", 10);
+        service.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    void submitEnqueuesAllDocumentsOrNone() {
+        service.submit("kb", documents(2));
+
+        assertThatThrownBy(() -> service.submit("kb", documents(2)))
+                .isInstanceOf(RejectedExecutionException.class);
+        assertThat(service.recentJobs(10)).hasSize(1);
+        assertThat(service.status()).containsEntry("queued_documents", 2);
+
+        service.submit("kb", documents(1));
+        assertThat(service.status()).containsEntry("queued_documents", QUEUE_CAPACITY);
+    }
+
+    @Test
+    void interruptedStreamCountsOnlyQueuedWindowsAndFinishes() throws Exception {
+        IngestionJob submitted = service.submit("kb", documents(1));
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        // 每 16 个字符一个窗口，队列只剩 2 个空位，第三个窗口阻塞等待
+        String upload = "a".repeat(16) + "b".repeat(16) + "c".repeat(16) + "d".repeat(16);
+        Thread uploader = new Thread(() -> {
+            try {
+                service.ingestStream("kb", new StringReader(upload), new Metadata());
+            } catch (Throwable e) {
+                thrown.set(e);
+            }
+        });
+        uploader.start();
+        awaitBlocked(uploader);
+
+        // 队列已被流式上传占满，批量提交被拒绝而不是入队一半
+        assertThatThrownBy(() -> service.submit("kb", documents(1)))
+                .isInstanceOf(RejectedExecutionException.class);
+
+        uploader.interrupt();
+        uploader.join(5000);
+        assertThat(thrown.get()).isInstanceOf(InterruptedException.class);
+
+        IngestionJob stream = service.recentJobs(10).stream()
+                .filter(job -> job != submitted)
+                .findFirst()
+                .orElseThrow();
+        // 两个已入队的窗口 + 一个代表中断的失败文档
+        assertThat(stream.getDocumentsTotal()).isEqualTo(3);
+        assertThat(stream.getDocumentsFailed()).hasValue(1);
+        assertThat(stream.isSealed()).isTrue();
+        assertThat((List<?>) stream.toMap().get("errors")).hasSize(1);
+        assertThat(service.status()).containsEntry("queued_documents", QUEUE_CAPACITY);
+    }
+
+    @Test
+    void abortedStreamWithNothingQueuedFinishesAsFailed() throws Exception {
+        service.submit("kb", documents(QUEUE_CAPACITY));
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread uploader = new Thread(() -> {
+            try {
+                service.ingestStream("kb", new StringReader("x".repeat(16)), new Metadata());
+            } catch (Throwable e) {
+                thrown.set(e);
+            }
+        });
+        uploader.start();
+        awaitBlocked(uploader);
+        uploader.interrupt();
+        uploader.join(5000);
+
+        assertThat(thrown.get()).isInstanceOf(InterruptedException.class);
+        IngestionJob stream = service.recentJobs(10).stream()
+                .filter(job -> job.getDocumentsTotal() == 1 && job.getDocumentsFailed().get() == 1)
+                .findFirst()
+                .orElseThrow();
+        assertThat(stream.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(stream.getState()).isEqualTo(IngestionJob.State.FAILED);
+    }
+
+    private static List<Document> documents(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> Document.from("文档 " + i))
+                .toList();
+    }
+
+    private static void awaitBlocked(Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (thread.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(thread.getState()).isEqualTo(Thread.State.WAITING);
+    }
+}
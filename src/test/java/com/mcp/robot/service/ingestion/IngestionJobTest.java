@@ -0,0 +1,43 @@
+package com.mcp.robot.service.ingestion;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngestionJobTest {
+
+    @Test
+    void batchJobRemembersEveryClaim() {
+        IngestionJob job = new IngestionJob("job", "kb", 1);
+        for (int i = 0; i < 20_000; i++) {
+            assertThat(job.claim("hash-" + i)).isTrue();
+        }
+        assertThat(job.claim("hash-0")).isFalse();
+        assertThat(job.claim("hash-19999")).isFalse();
+    }
+
+    @Test
+    void streamingJobOnlyRemembersRecentClaims() {
+        IngestionJob job = new IngestionJob("job", "kb");
+        for (int i = 0; i < 20_000; i++) {
+            assertThat(job.claim("hash-" + i)).isTrue();
+        }
+        // 最近认领的哈希仍然去重，最早的已被淘汰（对应片段早已落库，由库内去重兜底）
+        assertThat(job.claim("hash-19999")).isFalse();
+        assertThat(job.claim("hash-0")).isTrue();
+    }
+
+    @Test
+    void streamingJobFinishesWhenSealedAfterLastDocument() {
+        IngestionJob job = new IngestionJob("job", "kb");
+        job.addDocument();
+        job.addDocument();
+        job.documentCompleted(false);
+        job.documentCompleted(true);
+        assertThat(job.getFinishedTime()).isNull();
+
+        job.seal();
+        assertThat(job.getState()).isEqualTo(IngestionJob.State.COMPLETED_WITH_ERRORS);
+        assertThat(job.getProgress()).isEqualTo(1.0);
+    }
+}
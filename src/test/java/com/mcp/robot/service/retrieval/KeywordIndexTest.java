@@ -0,0 +1,106 @@
+package com.mcp.robot.service.retrieval;
+
+import com.mcp.robot.service.vector.ScoredId;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KeywordIndexTest {
+
+    private final KeywordIndex index = new KeywordIndex(new TextTokenizer(List.of("学生成绩")));
+
+    @Test
+    void ranksDocumentsByBm25() {
+        index.add("students", "CREATE TABLE students (student_no VARCHAR(20), name VARCHAR(50))");
+        index.add("scores", "CREATE TABLE scores (student_no VARCHAR(20), course_id INT, score DECIMAL) 学生成绩");
+        index.add("courses", "CREATE TABLE courses (course_id INT, course_name VARCHAR(100))");
+
+        assertThat(ids(index.search("学生成绩", 10, null))).containsExactly("scores");
+        assertThat(ids(index.search("student_no", 10, null))).containsExactlyInAnyOrder("students", "scores");
+        assertThat(ids(index.search("course_name", 1, null))).containsExactly("courses");
+        assertThat(index.search("不存在的词", 10, null)).isEmpty();
+    }
+
+    @Test
+    void candidateFilterRestrictsResults() {
+        index.add("a", "alpha beta");
+        index.add("b", "alpha gamma");
+
+        assertThat(ids(index.search("alpha", 10, Set.of("b")))).containsExactly("b");
+    }
+
+    @Test
+    void reAddingReplacesTheDocument() {
+        index.add("doc", "alpha");
+        index.add("doc", "beta");
+
+        assertThat(index.search("alpha", 10, null)).isEmpty();
+        assertThat(ids(index.search("beta", 10, null))).containsExactly("doc");
+        assertThat(index.stats()).containsEntry("documents", 1);
+    }
+
+    @Test
+    void purgedDocumentNumbersAreReusedWithoutStalePostings() {
+        int total = 4000;
+        for (int i = 0; i < total; i++) {
+            index.add("doc-" + i, "common old" + i);
+        }
+        // 删除到 1024 条且占剩余文档 1/4 以上时统一清理倒排表
+        for (int i = 0; i < 1100; i++) {
+            index.remove("doc-" + i);
+        }
+        assertThat(index.stats()).containsEntry("documents", total - 1100)
+                .containsEntry("deleted_pending", 1100 - 1024);
+        assertThat(index.search("old5", 10, null)).isEmpty();
+
+        // 新文档复用回收的编号，不能命中旧文档留下的词
+        for (int i = 0; i < 1024; i++) {
+            index.add("new-" + i, "common fresh" + i);
+        }
+        for (int i = 0; i < 1024; i += 97) {
+            assertThat(index.search("old" + i, 10, null)).isEmpty();
+            assertThat(ids(index.search("fresh" + i, 10, null))).containsExactly("new-" + i);
+        }
+        assertThat(ids(index.search("old3999", 10, null))).containsExactly("doc-3999");
+        assertThat(index.search("common", total, null)).hasSize(total - 1100 + 1024)
+                .extracting(ScoredId::getId).noneMatch(id -> id.equals("doc-0") || id.equals("doc-1099"));
+    }
+
+    @Test
+    void repeatedSearchesDoNotLeakScores() {
+        for (int i = 0; i < 500; i++) {
+            index.add("doc-" + i, i % 2 == 0 ? "alpha beta" : "alpha gamma gamma");
+        }
+        List<ScoredId> first = index.search("alpha gamma", 5, null);
+        index.search("beta", 5, null);
+        List<ScoredId> second = index.search("alpha gamma", 5, null);
+
+        assertThat(second).extracting(ScoredId::getScore).isEqualTo(first.stream().map(ScoredId::getScore).toList());
+
+        // 另一个更小的索引在同一线程上复用打分缓冲
+        KeywordIndex small = new KeywordIndex(new TextTokenizer(List.of()));
+        small.add("only", "gamma");
+        List<ScoredId> hits = small.search("gamma", 5, null);
+        assertThat(hits).extracting(ScoredId::getId).containsExactly("only");
+        assertThat(index.search("alpha gamma", 5, null)).extracting(ScoredId::getScore)
+                .isEqualTo(first.stream().map(ScoredId::getScore).toList());
+    }
+
+    @Test
+    void clearResetsEverything() {
+        index.add("a", "alpha");
+        index.clear();
+
+        assertThat(index.search("alpha", 10, null)).isEmpty();
+        assertThat(index.stats()).containsEntry("documents", 0).containsEntry("terms", 0);
+        index.add("b", "alpha");
+        assertThat(ids(index.search("alpha", 10, null))).containsExactly("b");
+    }
+
+    private static List<String> ids(List<ScoredId> hits) {
+        return hits.stream().map(ScoredId::getId).toList();
+    }
+}
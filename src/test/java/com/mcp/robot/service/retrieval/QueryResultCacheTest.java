@@ -0,0 +1,41 @@
+package com.mcp.robot.service.retrieval;
+
+import com.mcp.robot.service.vector.ScoredId;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class QueryResultCacheTest {
+
+    private static final float[] QUERY = {0.6f, 0.8f, 0f};
+
+    private final QueryResultCache cache = new QueryResultCache(true, 100, 60, 16);
+
+    @Test
+    void rescoredVectorsAreNotCached() {
+        cache.putByEmbedding("kb", QUERY, "k=2", 1, List.of(
+                new ScoredId("a", 0.9, new float[]{1, 0, 0}),
+                new ScoredId("b", 0.5)));
+        cache.putByText("kb", "退款", "k=2", 1, List.of(new ScoredId("a", 0.9, new float[]{1, 0, 0})));
+
+        assertThat(cache.getByEmbedding("kb", QUERY, "k=2", 1))
+                .extracting(ScoredId::getId, ScoredId::getScore, ScoredId::getVector)
+                .containsExactly(tuple("a", 0.9, null), tuple("b", 0.5, null));
+        assertThat(cache.getByText("kb", "退款", "k=2", 1)).singleElement()
+                .extracting(ScoredId::getVector)
+                .isNull();
+    }
+
+    @Test
+    void staleVersionMisses() {
+        cache.putByEmbedding("kb", QUERY, "k=1", 1, List.of(new ScoredId("a", 0.9)));
+
+        assertThat(cache.getByEmbedding("kb", new float[]{0.6f, 0.8f, 0.001f}, "k=1", 1))
+                .extracting(ScoredId::getId).containsExactly("a");
+        assertThat(cache.getByEmbedding("kb", QUERY, "k=1", 2)).isNull();
+        assertThat(cache.getByEmbedding("kb", QUERY, "k=1", 1)).isNull();
+    }
+}
@@ -0,0 +1,50 @@
+package com.mcp.robot.service.retrieval;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TermDictionaryTest {
+
+    @Test
+    void idsAreStableAcrossRehashGrowth() {
+        TermDictionary dictionary = new TermDictionary();
+        // 初始表 4096 槽、元数据数组 2048 项，写入 10000 个词会多次扩容
+        int count = 10_000;
+        for (int i = 0; i < count; i++) {
+            assertThat(dictionary.intern("term" + i)).isEqualTo(i);
+        }
+
+        assertThat(dictionary.size()).isEqualTo(count);
+        for (int i = 0; i < count; i++) {
+            assertThat(dictionary.lookup("term" + i)).isEqualTo(i);
+            assertThat(dictionary.term(i)).isEqualTo("term" + i);
+        }
+        assertThat(dictionary.intern("term42")).isEqualTo(42);
+        assertThat(dictionary.size()).isEqualTo(count);
+    }
+
+    @Test
+    void lookupComparesSlicesWithoutCopying() {
+        TermDictionary dictionary = new TermDictionary();
+        int id = dictionary.intern("scores");
+        char[] buffer = "select * from scores where".toCharArray();
+
+        assertThat(dictionary.lookup(buffer, 14, 6)).isEqualTo(id);
+        assertThat(dictionary.lookup(buffer, 14, 5)).isEqualTo(-1);
+        assertThat(dictionary.lookup("score")).isEqualTo(-1);
+    }
+
+    @Test
+    void clearForgetsAllTerms() {
+        TermDictionary dictionary = new TermDictionary();
+        for (int i = 0; i < 3000; i++) {
+            dictionary.intern("term" + i);
+        }
+        dictionary.clear();
+
+        assertThat(dictionary.size()).isZero();
+        assertThat(dictionary.lookup("term1")).isEqualTo(-1);
+        assertThat(dictionary.intern("fresh")).isZero();
+    }
+}
@@ -0,0 +1,56 @@
+package com.mcp.robot.service.retrieval;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextTokenizerTest {
+
+    private final TextTokenizer tokenizer = new TextTokenizer(List.of("平均分", "平均分数", "学生成绩", "成绩"));
+
+    @Test
+    void identifiersAreKeptWholeAndSplitOnUnderscore() {
+        assertThat(tokenizer.tokenize("student_no")).containsExactly("student_no", "student", "no");
+        assertThat(tokenizer.tokenize("scores")).containsExactly("scores");
+        assertThat(tokenizer.tokenize("_tmp_")).containsExactly("_tmp_", "tmp");
+    }
+
+    @Test
+    void asciiIsLowercasedAndPunctuationSeparatesWords() {
+        assertThat(tokenizer.tokenize("SELECT CS101, s.Student_No")).containsExactly(
+                "select", "cs101", "s", "student_no", "student", "no");
+    }
+
+    @Test
+    void cjkRunsProduceBigrams() {
+        assertThat(tokenizer.tokenize("张三")).containsExactly("张三");
+        assertThat(tokenizer.tokenize("查询学号")).containsExactly("查询", "询学", "学号");
+        assertThat(tokenizer.tokenize("表")).containsExactly("表");
+    }
+
+    @Test
+    void dictionaryWordsUseForwardMaximumMatch() {
+        // 两字词由二元组覆盖，词典只收录三字及以上
+        assertThat(tokenizer.dictionarySize()).isEqualTo(3);
+        assertThat(tokenizer.tokenize("计算平均分数")).containsExactly(
+                "计算", "算平", "平均", "均分", "分数", "平均分数");
+        assertThat(tokenizer.tokenize("平均分")).containsExactly("平均", "均分", "平均分");
+        assertThat(tokenizer.tokenize("学生成绩平均分")).containsExactly(
+                "学生", "生成", "成绩", "绩平", "平均", "均分", "学生成绩", "平均分");
+    }
+
+    @Test
+    void mixedTextSwitchesBetweenScripts() {
+        assertThat(tokenizer.tokenize("scores表的score字段")).containsExactly(
+                "scores", "表的", "score", "字段");
+    }
+
+    @Test
+    void defaultDictionaryIsLoadedFromClasspath() {
+        TextTokenizer defaults = TextTokenizer.withDefaultDictionary();
+        assertThat(defaults.dictionarySize()).isPositive();
+        assertThat(defaults.tokenize("学生成绩")).contains("学生成绩");
+    }
+}
@@ -0,0 +1,85 @@
+package com.mcp.robot.service.schema;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class DdlSchemaParserTest {
+
+    @Test
+    void studentDdlIsGroupedByTable() {
+        List<TableSchema> tables = DdlSchemaParser.parse(studentDdl());
+
+        assertThat(tables).extracting(TableSchema::getName).containsExactly(
+                "students", "majors", "departments", "classes", "courses", "teachers", "exam_arrangements", "scores");
+        TableSchema scores = tables.get(tables.size() - 1);
+        assertThat(scores.getDescription()).isEqualTo("创建成绩表");
+        assertThat(scores.getColumns()).extracting(TableSchema.Column::getName, TableSchema.Column::getType,
+                        TableSchema.Column::getComment)
+                .contains(tuple("score", "DECIMAL(5, 2)", "成绩"), tuple("exam_id", "INT", "考试ID"))
+                .hasSize(8);
+        // 建表语句 + 两条 CREATE INDEX + 两条 ALTER TABLE 外键
+        assertThat(scores.getStatements()).hasSize(5);
+        assertThat(scores.getForeignKeys()).extracting(TableSchema.ForeignKey::getColumn,
+                        TableSchema.ForeignKey::getReferencedTable, TableSchema.ForeignKey::getReferencedColumn)
+                .containsExactly(tuple("student_id", "students", "student_id"),
+                        tuple("exam_id", "exam_arrangements", "exam_id"));
+        assertThat(scores.referencedTables()).containsExactly("students", "exam_arrangements");
+    }
+
+    @Test
+    void semicolonsAndParenthesesInQuotesAndCommentsAreSkipped() {
+        String sql = """
+                -- 订单表; 说明里的分号
+                CREATE TABLE `shop`.`orders` (
+                    id BIGINT PRIMARY KEY, /* 主键; 自增) */
+                    status VARCHAR(20) DEFAULT 'a;b' COMMENT '状态：待付款;已付款',
+                    note TEXT COMMENT 'it''s; done', -- 行尾注释; 不切分
+                    user_id BIGINT REFERENCES users(id)
+                ) COMMENT = '订单(含退款)';
+                CREATE INDEX idx_orders_status ON orders (status);
+                ALTER TABLE missing ADD COLUMN x INT;
+                """;
+
+        List<TableSchema> tables = DdlSchemaParser.parse(sql);
+
+        assertThat(tables).hasSize(1);
+        TableSchema orders = tables.get(0);
+        assertThat(orders.getName()).isEqualTo("orders");
+        assertThat(orders.getDescription()).isEqualTo("订单表; 说明里的分号");
+        assertThat(orders.getComment()).isEqualTo("订单(含退款)");
+        assertThat(orders.getColumns()).extracting(TableSchema.Column::getName, TableSchema.Column::getComment)
+                .containsExactly(tuple("id", null), tuple("status", "状态：待付款;已付款"),
+                        tuple("note", "it's; done"), tuple("user_id", null));
+        assertThat(orders.referencedTables()).containsExactly("users");
+        assertThat(orders.getStatements()).hasSize(2);
+    }
+
+    @Test
+    void commentSeparatedByBlankLineIsNotDescription() {
+        String sql = """
+                -- 文件头注释
+
+                CREATE TABLE logs (id INT);
+                """;
+
+        assertThat(DdlSchemaParser.parse(sql)).singleElement()
+                .extracting(TableSchema::getDescription)
+                .isNull();
+    }
+
+    static String studentDdl() {
+        try (InputStream in = DdlSchemaParserTest.class.getResourceAsStream("/student_ddl.sql")) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
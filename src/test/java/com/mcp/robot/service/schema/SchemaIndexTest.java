@@ -0,0 +1,83 @@
+package com.mcp.robot.service.schema;
+
+import com.mcp.robot.service.vector.ScoredId;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+class SchemaIndexTest {
+
+    private final SchemaIndex index = studentIndex();
+
+    @Test
+    void indexesEveryTable() {
+        assertThat(index.size()).isEqualTo(8);
+        assertThat(index.segment("scores").text()).startsWith("-- 创建成绩表");
+    }
+
+    @Test
+    void tableCommentKeywordFindsTableAndItsReferences() {
+        var hits = index.lookup("查询每门考试的成绩", 5);
+
+        assertThat(hits).extracting(ScoredId::getId).startsWith("scores");
+        // 直接命中之后补充外键引用的表，分数按比例折减
+        assertThat(hits).extracting(ScoredId::getId).contains("students", "exam_arrangements");
+        double scores = score(hits, "scores");
+        assertThat(score(hits, "students")).isLessThan(scores);
+    }
+
+    @Test
+    void referencedTablesFollowDirectHit() {
+        var hits = index.lookup("成绩", 5);
+
+        assertThat(hits).extracting(ScoredId::getId).containsExactly("scores", "students", "exam_arrangements");
+        assertThat(hits.get(1).getScore()).isCloseTo(hits.get(0).getScore() * 0.3, offset(1e-9));
+    }
+
+    @Test
+    void englishIdentifiersMatchWholeWords() {
+        assertThat(index.lookup("select * from teachers", 1)).extracting(ScoredId::getId)
+                .containsExactly("teachers");
+    }
+
+    @Test
+    void columnUniqueToOneTableIsEnough() {
+        assertThat(index.lookup("按学号查询", 1)).extracting(ScoredId::getId).containsExactly("students");
+    }
+
+    @Test
+    void sharedColumnsAloneFallBack() {
+        // 多张表共有的列分数被摊薄，不足以确定是哪张表
+        assertThat(index.lookup("最近的创建时间", 5)).isEmpty();
+        assertThat(index.lookup("邮箱和电话", 5)).isEmpty();
+        assertThat(index.lookup("今天天气怎么样", 5)).isEmpty();
+    }
+
+    @Test
+    void maxResultsCapsReferencedTables() {
+        assertThat(index.lookup("成绩", 1)).extracting(ScoredId::getId).containsExactly("scores");
+    }
+
+    private static double score(Iterable<ScoredId> hits, String id) {
+        for (ScoredId hit : hits) {
+            if (hit.getId().equals(id)) {
+                return hit.getScore();
+            }
+        }
+        throw new AssertionError("未命中: " + id);
+    }
+
+    private static SchemaIndex studentIndex() {
+        Map<String, TextSegment> segments = new LinkedHashMap<>();
+        for (TableSchema table : DdlSchemaParser.parse(DdlSchemaParserTest.studentDdl())) {
+            segments.put(table.getName(), table.toSegment(new Metadata()));
+        }
+        return new SchemaIndex(segments);
+    }
+}
@@ -0,0 +1,165 @@
+package com.mcp.robot.service.vector;
+
+import com.mcp.robot.benchmark.SyntheticCorpus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.mcp.robot.service.vector.VectorIndexTestSupport.DIMENSION;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+class DurableVectorIndexTest {
+
+    private static final long NO_TIMED_CHECKPOINT = 3600;
+
+    private final SyntheticCorpus corpus = new SyntheticCorpus(100, DIMENSION, 13);
+    private final List<DurableVectorIndex> opened = new ArrayList<>();
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void tearDown() {
+        opened.forEach(DurableVectorIndex::close);
+    }
+
+    @Test
+    void reopenRestoresVectorsAndRemovals() {
+        DurableVectorIndex index = open(1000);
+        addRange(index, 0, 20);
+        index.remove(SyntheticCorpus.id(3));
+        close(index);
+
+        DurableVectorIndex reopened = open(1000);
+        assertThat(reopened.size()).isEqualTo(19);
+        assertThat(reopened.get(SyntheticCorpus.id(3))).isNull();
+        assertThat(reopened.get(SyntheticCorpus.id(7))).containsExactly(corpus.vector(7), offset(1e-5f));
+        assertThat(reopened.persistedIds()).hasSize(19).doesNotContain(SyntheticCorpus.id(3));
+    }
+
+    @Test
+    void walRecordCountSurvivesRestart() throws Exception {
+        DurableVectorIndex index = open(10);
+        addRange(index, 0, 6);
+        close(index);
+
+        // 回放的 6 条计入阈值，再写 4 条即触发 checkpoint
+        DurableVectorIndex reopened = open(10);
+        assertThat(walRecords(reopened)).isEqualTo(6L);
+        addRange(reopened, 6, 10);
+        awaitCheckpoints(reopened, 1);
+
+        assertThat(walRecords(reopened)).isEqualTo(0L);
+        assertThat(Files.size(directory.resolve("snapshot.vec"))).isPositive();
+        close(reopened);
+        assertThat(open(10).size()).isEqualTo(10);
+    }
+
+    @Test
+    void tornTailIsTruncatedOnRestore() throws Exception {
+        DurableVectorIndex index = open(1000);
+        addRange(index, 0, 5);
+        close(index);
+
+        Path wal = directory.resolve("wal.log");
+        long validBytes = Files.size(wal);
+        // 模拟写到一半崩溃：只有 op 和部分 ID 长度
+        Files.write(wal, new byte[]{VectorLogFile.ADD, 0, 0}, StandardOpenOption.APPEND);
+
+        DurableVectorIndex reopened = open(1000);
+        assertThat(Files.size(wal)).isEqualTo(validBytes);
+        assertThat(reopened.size()).isEqualTo(5);
+        assertThat(walRecords(reopened)).isEqualTo(5L);
+
+        // 截断后追加的记录在下次重启时仍能读到
+        addRange(reopened, 5, 8);
+        close(reopened);
+        assertThat(open(1000).size()).isEqualTo(8);
+    }
+
+    @Test
+    void crashDuringCheckpointIsCompletedOnNextStart() throws Exception {
+        DurableVectorIndex index = open(1000);
+        addRange(index, 0, 10);
+        index.checkpoint();
+        index.remove(SyntheticCorpus.id(0));
+        addRange(index, 10, 12);
+        close(index);
+        // 模拟 WAL 已轮换为 wal.prev、合并前进程退出
+        Files.move(directory.resolve("wal.log"), directory.resolve("wal.prev.log"));
+
+        DurableVectorIndex restarted = open(1000);
+        assertThat(restarted.size()).isEqualTo(11);
+        assertThat(restarted.get(SyntheticCorpus.id(0))).isNull();
+        addRange(restarted, 12, 13);
+
+        restarted.checkpoint();
+        assertThat(directory.resolve("wal.prev.log")).doesNotExist();
+        // 当前 WAL 留到下一次 checkpoint，重启后快照与 WAL 合起来完整
+        assertThat(walRecords(restarted)).isEqualTo(1L);
+        close(restarted);
+
+        DurableVectorIndex reopened = open(1000);
+        assertThat(reopened.size()).isEqualTo(12);
+        assertThat(reopened.get(SyntheticCorpus.id(0))).isNull();
+        assertThat(reopened.get(SyntheticCorpus.id(12))).containsExactly(corpus.vector(12), offset(1e-5f));
+    }
+
+    @Test
+    void corruptSnapshotFallsBackToEmptyIndex() throws Exception {
+        DurableVectorIndex index = open(1000);
+        addRange(index, 0, 5);
+        index.checkpoint();
+        close(index);
+        Files.write(directory.resolve("snapshot.vec"), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        DurableVectorIndex reopened = open(1000);
+        assertThat(reopened.size()).isZero();
+        assertThat(reopened.persistedIds()).isEmpty();
+        assertThat(directory.resolve("snapshot.vec")).doesNotExist();
+    }
+
+    private void close(DurableVectorIndex index) {
+        index.close();
+        opened.remove(index);
+    }
+
+    private DurableVectorIndex open(long checkpointRecords) {
+        DurableVectorIndex index = new DurableVectorIndex(new FlatVectorIndex(), directory,
+                checkpointRecords, NO_TIMED_CHECKPOINT);
+        opened.add(index);
+        return index;
+    }
+
+    private void addRange(DurableVectorIndex index, int from, int to) {
+        for (int i = from; i < to; i++) {
+            index.add(SyntheticCorpus.id(i), corpus.vector(i));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object walRecords(DurableVectorIndex index) {
+        return ((Map<String, Object>) index.stats().get("persistence")).get("wal_records");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void awaitCheckpoints(DurableVectorIndex index, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            Map<String, Object> persistence = (Map<String, Object>) index.stats().get("persistence");
+            if ((long) persistence.get("checkpoints") >= expected) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("checkpoint 未在 5 秒内完成");
+    }
+}
@@ -0,0 +1,126 @@
+package com.mcp.robot.service.vector;
+
+import com.mcp.robot.benchmark.SyntheticCorpus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.mcp.robot.service.vector.VectorIndexTestSupport.DIMENSION;
+import static com.mcp.robot.service.vector.VectorIndexTestSupport.fill;
+import static com.mcp.robot.service.vector.VectorIndexTestSupport.ids;
+import static com.mcp.robot.service.vector.VectorIndexTestSupport.recall;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+class HnswVectorIndexTest {
+
+    private static final int SIZE = 3000;
+    private static final int QUERIES = 50;
+    private static final int K = 10;
+
+    private final SyntheticCorpus corpus = new SyntheticCorpus(SIZE, DIMENSION, 7);
+    private FlatVectorIndex flat;
+    private HnswVectorIndex hnsw;
+
+    @BeforeEach
+    void setUp() {
+        flat = new FlatVectorIndex();
+        hnsw = new HnswVectorIndex(16, 100, 64, 0.2);
+        fill(corpus, flat, hnsw);
+    }
+
+    @Test
+    void recallMatchesFlatIndex() {
+        assertThat(hnsw.size()).isEqualTo(SIZE);
+        assertThat(recall(corpus, flat, hnsw, QUERIES, K)).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    void existingVectorIsItsOwnNearestNeighbour() {
+        for (int i = 0; i < SIZE; i += 97) {
+            List<ScoredId> hits = hnsw.search(corpus.vector(i), 1, -1);
+            assertThat(hits).extracting(ScoredId::getId).containsExactly(SyntheticCorpus.id(i));
+            assertThat(hits.get(0).getScore()).isCloseTo(1.0, offset(1e-4));
+        }
+    }
+
+    @Test
+    void removedVectorsAreNeverReturned() {
+        Set<String> removed = removeEveryThird();
+
+        assertThat(hnsw.size()).isEqualTo(flat.size());
+        assertThat(hnsw.get(removed.iterator().next())).isNull();
+        for (int q = 0; q < QUERIES; q++) {
+            assertThat(ids(hnsw.search(corpus.outside(q), K, -1))).doesNotContainAnyElementsOf(removed);
+        }
+        assertThat(recall(corpus, flat, hnsw, QUERIES, K)).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    void overwriteReplacesVector() {
+        float[] replacement = corpus.outside(1000);
+        hnsw.add(SyntheticCorpus.id(0), replacement);
+
+        assertThat(hnsw.size()).isEqualTo(SIZE);
+        assertThat(hnsw.search(replacement, 1, -1)).extracting(ScoredId::getId)
+                .containsExactly(SyntheticCorpus.id(0));
+        assertThat(hnsw.stats().get("tombstones")).isEqualTo(1);
+    }
+
+    @Test
+    void maintenanceRebuildDropsTombstones() {
+        Set<String> removed = removeEveryThird();
+        assertThat(hnsw.needsMaintenance()).isTrue();
+
+        int steps = 0;
+        while (hnsw.maintenanceStep()) {
+            steps++;
+            // 重建过程中写入的向量要同步进新图
+            if (steps == 2) {
+                String id = SyntheticCorpus.id(SIZE);
+                flat.add(id, corpus.outside(0));
+                hnsw.add(id, corpus.outside(0));
+            }
+        }
+
+        assertThat(steps).isGreaterThan(1);
+        assertThat(hnsw.needsMaintenance()).isFalse();
+        assertThat(hnsw.stats()).containsEntry("tombstones", 0).containsEntry("rebuilds", 1L);
+        assertThat(hnsw.size()).isEqualTo(flat.size());
+        assertThat(hnsw.search(corpus.outside(0), 1, -1)).extracting(ScoredId::getId)
+                .containsExactly(SyntheticCorpus.id(SIZE));
+        for (int q = 0; q < QUERIES; q++) {
+            assertThat(ids(hnsw.search(corpus.outside(q), K, -1))).doesNotContainAnyElementsOf(removed);
+        }
+        assertThat(recall(corpus, flat, hnsw, QUERIES, K)).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    void candidateFilterRestrictsResults() {
+        Set<String> candidates = new HashSet<>();
+        for (int i = 0; i < SIZE; i += 10) {
+            candidates.add(SyntheticCorpus.id(i));
+        }
+        for (int q = 0; q < 10; q++) {
+            List<ScoredId> hits = hnsw.search(corpus.outside(q), K, -1, candidates);
+            assertThat(hits).hasSize(K);
+            assertThat(ids(hits)).isSubsetOf(candidates)
+                    .isEqualTo(ids(flat.search(corpus.outside(q), K, -1, candidates)));
+        }
+    }
+
+    private Set<String> removeEveryThird() {
+        Set<String> removed = new HashSet<>();
+        for (int i = 0; i < SIZE; i += 3) {
+            String id = SyntheticCorpus.id(i);
+            assertThat(hnsw.remove(id)).isTrue();
+            flat.remove(id);
+            removed.add(id);
+        }
+        assertThat(hnsw.remove(SyntheticCorpus.id(0))).isFalse();
+        return removed;
+    }
+}
@@ -0,0 +1,128 @@
+package com.mcp.robot.service.vector;
+
+import com.mcp.robot.benchmark.SyntheticCorpus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static com.mcp.robot.service.vector.VectorIndexTestSupport.DIMENSION;
+import static com.mcp.robot.service.vector.VectorIndexTestSupport.fill;
+import static com.mcp.robot.service.vector.VectorIndexTestSupport.ids;
+import static com.mcp.robot.service.vector.VectorIndexTestSupport.recall;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+class MappedVectorIndexTest {
+
+    private static final int SIZE = 2000;
+    private static final int RECORDS_PER_SEGMENT = 256;
+    private static final int QUERIES = 30;
+    private static final int K = 10;
+
+    @TempDir
+    Path directory;
+
+    private final SyntheticCorpus corpus = new SyntheticCorpus(SIZE, DIMENSION, 13);
+    private FlatVectorIndex flat;
+    private MappedVectorIndex mapped;
+
+    @BeforeEach
+    void setUp() {
+        flat = new FlatVectorIndex();
+        mapped = open();
+        fill(corpus, flat, mapped);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mapped.close();
+    }
+
+    @Test
+    void scanMatchesFlatIndex() {
+        assertThat(mapped.size()).isEqualTo(SIZE);
+        assertThat(mapped.stats()).containsEntry("segments", (SIZE + RECORDS_PER_SEGMENT - 1) / RECORDS_PER_SEGMENT);
+        assertThat(recall(corpus, flat, mapped, QUERIES, K)).isEqualTo(1.0);
+    }
+
+    @Test
+    void reopenRestoresVectorsAndTombstones() throws IOException {
+        Set<String> removed = removeFirstSegments(3);
+        mapped.add(SyntheticCorpus.id(SIZE - 1), corpus.outside(500));
+        flat.add(SyntheticCorpus.id(SIZE - 1), corpus.outside(500));
+        mapped.close();
+
+        mapped = open();
+
+        assertThat(mapped.size()).isEqualTo(flat.size());
+        assertThat(mapped.persistedIds()).doesNotContainAnyElementsOf(removed);
+        assertThat(mapped.get(SyntheticCorpus.id(SIZE - 1))).containsExactly(flat.get(SyntheticCorpus.id(SIZE - 1)),
+                offset(1e-5f));
+        assertThat(mapped.search(corpus.outside(500), 1, -1)).extracting(ScoredId::getId)
+                .containsExactly(SyntheticCorpus.id(SIZE - 1));
+        assertThat(recall(corpus, flat, mapped, QUERIES, K)).isEqualTo(1.0);
+        // 覆盖写入追加到最后一个未写满的段，不产生新文件
+        assertThat(segmentFiles()).hasSize((SIZE + RECORDS_PER_SEGMENT - 1) / RECORDS_PER_SEGMENT);
+    }
+
+    @Test
+    void compactionRewritesSparseSegments() throws IOException {
+        Set<String> removed = removeFirstSegments(3);
+        int filesBefore = segmentFiles().size();
+        assertThat(mapped.needsMaintenance()).isTrue();
+
+        mapped.compact();
+
+        assertThat(mapped.needsMaintenance()).isFalse();
+        assertThat(mapped.stats().get("compacted_segments")).isEqualTo(3L);
+        assertThat(mapped.stats()).containsEntry("tombstones", 0);
+        assertThat(segmentFiles().size()).isLessThan(filesBefore);
+        assertThat(mapped.size()).isEqualTo(flat.size());
+        assertThat(recall(corpus, flat, mapped, QUERIES, K)).isEqualTo(1.0);
+
+        // 合并结果落盘，重新打开后一致
+        mapped.close();
+        mapped = open();
+        assertThat(mapped.size()).isEqualTo(flat.size());
+        assertThat(mapped.persistedIds()).doesNotContainAnyElementsOf(removed);
+        for (int q = 0; q < QUERIES; q++) {
+            assertThat(ids(mapped.search(corpus.outside(q), K, -1)))
+                    .isEqualTo(ids(flat.search(corpus.outside(q), K, -1)));
+        }
+    }
+
+    private MappedVectorIndex open() {
+        return new MappedVectorIndex(directory, RECORDS_PER_SEGMENT, 0.3);
+    }
+
+    /**
+     * 删除前若干个段中三分之二的向量，使其墓碑比例超过合并阈值
+     */
+    private Set<String> removeFirstSegments(int segments) {
+        Set<String> removed = new HashSet<>();
+        for (int i = 0; i < segments * RECORDS_PER_SEGMENT; i++) {
+            if (i % 3 != 0) {
+                String id = SyntheticCorpus.id(i);
+                assertThat(mapped.remove(id)).isTrue();
+                flat.remove(id);
+                removed.add(id);
+            }
+        }
+        return removed;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.toList();
+        }
+    }
+}
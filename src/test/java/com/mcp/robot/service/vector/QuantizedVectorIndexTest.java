@@ -0,0 +1,153 @@
+package com.mcp.robot.service.vector;
+
+import com.mcp.robot.benchmark.SyntheticCorpus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.mcp.robot.service.vector.VectorIndexTestSupport.DIMENSION;
+import static com.mcp.robot.service.vector.VectorIndexTestSupport.ids;
+import static com.mcp.robot.service.vector.VectorIndexTestSupport.recall;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+class QuantizedVectorIndexTest {
+
+    private static final int SIZE = 3000;
+    private static final int CALIBRATION = 500;
+    private static final int QUERIES = 50;
+    private static final int K = 10;
+
+    private final SyntheticCorpus corpus = new SyntheticCorpus(SIZE, DIMENSION, 11);
+    private final MapVectorSource source = new MapVectorSource();
+    private FlatVectorIndex flat;
+    private QuantizedVectorIndex int8;
+
+    @BeforeEach
+    void setUp() {
+        flat = new FlatVectorIndex();
+        int8 = new QuantizedVectorIndex(source, 4, CALIBRATION, 0.01);
+        for (int i = 0; i < SIZE; i++) {
+            add(SyntheticCorpus.id(i), corpus.vector(i));
+        }
+    }
+
+    @Test
+    void recallMatchesFlatIndex() {
+        assertThat(int8.size()).isEqualTo(SIZE);
+        assertThat(int8.stats()).containsEntry("calibrated", true).containsEntry("quantized", SIZE);
+        assertThat(recall(corpus, flat, int8, QUERIES, K)).isGreaterThanOrEqualTo(0.95);
+    }
+
+    @Test
+    void rescoredScoresAreExact() {
+        float[] query = corpus.outside(0);
+        var expected = flat.search(query, K, -1);
+        var actual = int8.search(query, K, -1);
+        assertThat(actual.get(0).getId()).isEqualTo(expected.get(0).getId());
+        for (ScoredId hit : actual) {
+            expected.stream().filter(e -> e.getId().equals(hit.getId())).findFirst()
+                    .ifPresent(e -> assertThat(hit.getScore()).isCloseTo(e.getScore(), offset(1e-5)));
+        }
+    }
+
+    @Test
+    void rescoredHitsCarryFullVectors() {
+        int before = source.fetches;
+        var hits = int8.search(corpus.outside(1), K, -1);
+
+        assertThat(source.fetches - before).isEqualTo(1);
+        assertThat(hits).hasSize(K);
+        for (ScoredId hit : hits) {
+            assertThat(hit.getVector()).containsExactly(source.vectors.get(hit.getId()));
+        }
+    }
+
+    @Test
+    void pendingVectorsAreSearchableBeforeCalibration() {
+        QuantizedVectorIndex fresh = new QuantizedVectorIndex(source, 4, CALIBRATION, 0.01);
+        for (int i = 0; i < 100; i++) {
+            fresh.add(SyntheticCorpus.id(i), corpus.vector(i));
+        }
+        assertThat(fresh.stats()).containsEntry("calibrated", false).containsEntry("pending_calibration", 100);
+        assertThat(fresh.search(corpus.vector(42), 1, -1)).extracting(ScoredId::getId)
+                .containsExactly(SyntheticCorpus.id(42));
+        assertThat(fresh.remove(SyntheticCorpus.id(42))).isTrue();
+        assertThat(fresh.search(corpus.vector(42), 1, -1)).extracting(ScoredId::getId)
+                .doesNotContain(SyntheticCorpus.id(42));
+    }
+
+    @Test
+    void removedVectorsAreNeverReturned() {
+        Set<String> removed = new HashSet<>();
+        for (int i = 0; i < SIZE; i += 3) {
+            String id = SyntheticCorpus.id(i);
+            assertThat(int8.remove(id)).isTrue();
+            flat.remove(id);
+            removed.add(id);
+        }
+        assertThat(int8.size()).isEqualTo(flat.size());
+        for (int q = 0; q < QUERIES; q++) {
+            assertThat(ids(int8.search(corpus.outside(q), K, -1))).doesNotContainAnyElementsOf(removed);
+        }
+        assertThat(recall(corpus, flat, int8, QUERIES, K)).isGreaterThanOrEqualTo(0.95);
+    }
+
+    @Test
+    void driftTriggersRecalibration() {
+        // 幅度放大 4 倍的新数据大量分量超出校准范围
+        for (int i = 0; i < SIZE; i++) {
+            float[] vector = corpus.outside(100 + i);
+            for (int d = 0; d < vector.length; d++) {
+                vector[d] *= 4;
+            }
+            add("drift-" + i, vector);
+        }
+        assertThat(int8.needsMaintenance()).isTrue();
+        double before = recall(corpus, flat, int8, QUERIES, K);
+
+        int steps = 0;
+        while (int8.maintenanceStep()) {
+            steps++;
+        }
+
+        assertThat(steps).isGreaterThan(1);
+        assertThat(int8.needsMaintenance()).isFalse();
+        assertThat(int8.stats()).containsEntry("recalibrations", 1L).containsEntry("quantized", 2 * SIZE);
+        assertThat(recall(corpus, flat, int8, QUERIES, K)).isGreaterThanOrEqualTo(Math.min(before, 0.95));
+    }
+
+    private void add(String id, float[] vector) {
+        source.vectors.put(id, vector);
+        flat.add(id, vector);
+        int8.add(id, vector);
+    }
+
+    /**
+     * 内存中的全精度向量来源，记录读取次数
+     */
+    static class MapVectorSource implements VectorSource {
+
+        final Map<String, float[]> vectors = new ConcurrentHashMap<>();
+        int fetches;
+
+        @Override
+        public Map<String, float[]> fetch(Collection<String> ids) {
+            fetches++;
+            Map<String, float[]> result = new HashMap<>();
+            for (String id : ids) {
+                float[] vector = vectors.get(id);
+                if (vector != null) {
+                    result.put(id, vector.clone());
+                }
+            }
+            return result;
+        }
+    }
+}
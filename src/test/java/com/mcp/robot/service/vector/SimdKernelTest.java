@@ -0,0 +1,86 @@
+package com.mcp.robot.service.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+class SimdKernelTest {
+
+    private final VectorKernels.Kernel simd = new SimdKernel();
+    private final VectorKernels.Kernel scalar = new VectorKernels.ScalarKernel();
+    private final Random random = new Random(5);
+
+    @Test
+    void floatDotMatchesScalar() {
+        for (int length : lengths()) {
+            float[] a = randomFloats(length + 3);
+            float[] b = randomFloats(length + 7);
+            assertThat(simd.dot(a, 3, b, 7, length))
+                    .isCloseTo(scalar.dot(a, 3, b, 7, length), offset(tolerance(length)));
+        }
+    }
+
+    @Test
+    void int8DotMatchesScalar() {
+        for (int length : lengths()) {
+            float[] weights = randomFloats(length);
+            byte[] codes = new byte[length + 5];
+            random.nextBytes(codes);
+            assertThat(simd.dotInt8(weights, codes, 5, length))
+                    .isCloseTo(scalar.dotInt8(weights, codes, 5, length), offset(tolerance(length) * 128));
+        }
+    }
+
+    @Test
+    void int8DotCoversFullByteRange() {
+        // 覆盖 -128..127 全部码值，确认扩展为浮点时按有符号处理
+        byte[] codes = new byte[256];
+        float[] weights = new float[256];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = (byte) (i - 128);
+            weights[i] = 1f;
+        }
+        assertThat(simd.dotInt8(weights, codes, 0, codes.length)).isEqualTo(-128f);
+    }
+
+    @Test
+    void mappedBufferDotMatchesArrayDot() {
+        for (int length : lengths()) {
+            float[] query = randomFloats(length);
+            float[] row = randomFloats(length);
+            // 与映射区相同的直接内存、小端布局，行前留出记录头
+            FloatBuffer vectors = ByteBuffer.allocateDirect((length + 16) * Float.BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asFloatBuffer();
+            vectors.put(16, row);
+            float expected = scalar.dot(query, 0, row, 0, length);
+            assertThat(simd.dot(query, vectors, 16, length)).isCloseTo(expected, offset(tolerance(length)));
+            assertThat(scalar.dot(query, vectors, 16, length)).isCloseTo(expected, offset(tolerance(length)));
+        }
+    }
+
+    /**
+     * 覆盖短于一个 SIMD 宽度、整倍数以及带尾部余数的长度
+     */
+    private static int[] lengths() {
+        return new int[]{0, 1, 3, 4, 7, 8, 15, 16, 17, 31, 63, 64, 65, 127, 384, 768, 1000, 1536};
+    }
+
+    private static float tolerance(int length) {
+        return 1e-4f * Math.max(1, length);
+    }
+
+    private float[] randomFloats(int length) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = random.nextFloat() * 2 - 1;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,47 @@
+package com.mcp.robot.service.vector;
+
+import com.mcp.robot.benchmark.SyntheticCorpus;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 索引测试的公共工具：写入合成语料，以扁平索引的精确结果为基准计算 recall@K
+ */
+final class VectorIndexTestSupport {
+
+    static final int DIMENSION = 64;
+
+    private VectorIndexTestSupport() {
+    }
+
+    static void fill(SyntheticCorpus corpus, VectorIndex... indexes) {
+        for (int i = 0; i < corpus.size(); i++) {
+            float[] vector = corpus.vector(i);
+            for (VectorIndex index : indexes) {
+                index.add(SyntheticCorpus.id(i), vector);
+            }
+        }
+    }
+
+    /**
+     * 语料外查询的平均 recall@k：actual 的 top-k 中属于 expected top-k 的比例
+     */
+    static double recall(SyntheticCorpus corpus, VectorIndex expected, VectorIndex actual, int queries, int k) {
+        double hits = 0;
+        for (int q = 0; q < queries; q++) {
+            float[] query = corpus.outside(q);
+            Set<String> truth = ids(expected.search(query, k, -1));
+            Set<String> found = ids(actual.search(query, k, -1));
+            found.retainAll(truth);
+            hits += (double) found.size() / Math.max(1, truth.size());
+        }
+        return hits / queries;
+    }
+
+    static Set<String> ids(List<ScoredId> hits) {
+        return hits.stream().map(ScoredId::getId).collect(Collectors.toCollection(HashSet::new));
+    }
+}